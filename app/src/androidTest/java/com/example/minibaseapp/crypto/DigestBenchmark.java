@@ -0,0 +1,153 @@
+package com.example.minibaseapp.crypto;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.liboqs.Digest;
+
+import org.bouncycastle.crypto.digests.SHA3Digest;
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rendimiento de SHA3-256 y SHAKE256: Digest de liboqs (nativo, o Keccak en Java si la
+ * compilación de liboqs no exporta OQS_SHA3_*) frente a SHA3Digest de BouncyCastle y al
+ * MessageDigest de la plataforma. SHA-256 de la plataforma se incluye como referencia.
+ *
+ * Se resume un búfer de {@link #SIZE} bytes en actualizaciones de {@link #UPDATE} bytes, se
+ * descartan unas rondas de calentamiento y se toma la mediana. Resultados en logcat, etiqueta
+ * DigestBenchmark.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DigestBenchmark {
+
+    private static final String TAG = "DigestBenchmark";
+    private static final int SIZE = 8 << 20;
+    private static final int UPDATE = 64 * 1024;
+    private static final int WARMUP = 3;
+    private static final int RUNS = 15;
+
+    private static byte[] data;
+
+    private interface Hash {
+        byte[] run() throws Exception;
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        data = new byte[SIZE];
+        new Random(42).nextBytes(data);
+        Log.i(TAG, "Digest nativo: " + Digest.is_native_available());
+    }
+
+    @Test
+    public void sha3_256() throws Exception {
+        try (Digest oqs = new Digest(Digest.SHA3_256)) {
+            byte[] expected = oqs.do_final(data);
+            measure("SHA3-256 liboqs", expected, () -> {
+                for (int off = 0; off < SIZE; off += UPDATE) {
+                    oqs.update(data, off, UPDATE);
+                }
+                return oqs.do_final();
+            });
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(SIZE);
+            direct.put(data);
+            measure("SHA3-256 liboqs directo", expected, () -> {
+                direct.clear();
+                oqs.update(direct);
+                return oqs.do_final();
+            });
+
+            SHA3Digest bc = new SHA3Digest(256);
+            measure("SHA3-256 BouncyCastle", expected, () -> {
+                for (int off = 0; off < SIZE; off += UPDATE) {
+                    bc.update(data, off, UPDATE);
+                }
+                byte[] out = new byte[bc.getDigestSize()];
+                bc.doFinal(out, 0);
+                return out;
+            });
+
+            MessageDigest platform = platform("SHA3-256");
+            if (platform != null) {
+                measure("SHA3-256 plataforma", expected, () -> update(platform).digest());
+            }
+        }
+    }
+
+    @Test
+    public void shake256() throws Exception {
+        try (Digest oqs = new Digest(Digest.SHAKE256)) {
+            byte[] expected = oqs.do_final(data);
+            measure("SHAKE256 liboqs", expected, () -> {
+                for (int off = 0; off < SIZE; off += UPDATE) {
+                    oqs.update(data, off, UPDATE);
+                }
+                return oqs.do_final();
+            });
+
+            SHAKEDigest bc = new SHAKEDigest(256);
+            measure("SHAKE256 BouncyCastle", expected, () -> {
+                for (int off = 0; off < SIZE; off += UPDATE) {
+                    bc.update(data, off, UPDATE);
+                }
+                byte[] out = new byte[expected.length];
+                bc.doFinal(out, 0, out.length);
+                return out;
+            });
+        }
+    }
+
+    @Test
+    public void sha256Reference() throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        byte[] expected = sha256.digest(data);
+        measure("SHA-256 plataforma", expected, () -> update(sha256).digest());
+    }
+
+    private static MessageDigest update(MessageDigest md) {
+        for (int off = 0; off < SIZE; off += UPDATE) {
+            md.update(data, off, UPDATE);
+        }
+        return md;
+    }
+
+    // null si el proveedor de la plataforma no implementa el algoritmo en esta versión
+    private static MessageDigest platform(String alg) {
+        try {
+            return MessageDigest.getInstance(alg);
+        } catch (NoSuchAlgorithmException e) {
+            Log.i(TAG, alg + " no disponible en la plataforma");
+            return null;
+        }
+    }
+
+    private static void measure(String name, byte[] expected, Hash hash) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            assertArrayEquals(name, expected, hash.run());
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long t0 = System.nanoTime();
+            hash.run();
+            times[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(times);
+        long p50 = times[RUNS / 2];
+        Log.i(TAG, String.format(Locale.US, "%s: p50=%.1f ms (%.1f MB/s)",
+                name, p50 / 1e6, SIZE / (p50 / 1e9) / (1 << 20)));
+    }
+}
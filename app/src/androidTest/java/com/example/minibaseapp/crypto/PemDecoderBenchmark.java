@@ -0,0 +1,128 @@
+package com.example.minibaseapp.crypto;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.minibaseapp.metrics.AllocationMeter;
+
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Carga de certificado y clave privada ML-DSA desde PEM: PEMParser + conversores Jca (el camino
+ * anterior, que sigue siendo el de reserva) frente a PemDecoder.
+ *
+ * Se descartan unas rondas de calentamiento y se toma la mediana. Resultados en logcat, etiqueta
+ * PemDecoderBenchmark.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PemDecoderBenchmark {
+
+    private static final String TAG = "PemDecoderBenchmark";
+    private static final String BC = "BC";
+    private static final int WARMUP = 20;
+    private static final int RUNS = 200;
+
+    private static byte[] certPem;
+    private static byte[] keyPem;
+
+    private interface Decode {
+        byte[] run() throws Exception;
+    }
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        PqcCertificateManager.ensureProvider();
+        KeyPair kp = KeyPairGenerator.getInstance("ML-DSA-65", BC).generateKeyPair();
+        X500Name name = new X500Name("CN=Benchmark");
+        Date now = new Date();
+        X509CertificateHolder holder = new JcaX509v3CertificateBuilder(name, BigInteger.ONE,
+                now, new Date(now.getTime() + 86_400_000L), name, kp.getPublic())
+                .build(new JcaContentSignerBuilder("ML-DSA-65").setProvider(BC).build(kp.getPrivate()));
+        certPem = pem(holder);
+        keyPem = pem(kp.getPrivate());
+    }
+
+    private static byte[] pem(Object obj) throws Exception {
+        StringWriter out = new StringWriter();
+        try (JcaPEMWriter w = new JcaPEMWriter(out)) {
+            w.writeObject(obj);
+        }
+        return out.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static PEMParser parser(byte[] data) {
+        return new PEMParser(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void certificate() throws Exception {
+        long parser = measure("certificado PEMParser", () -> {
+            try (PEMParser p = parser(certPem)) {
+                return new JcaX509CertificateConverter().setProvider(BC)
+                        .getCertificate((X509CertificateHolder) p.readObject()).getEncoded();
+            }
+        });
+        long direct = measure("certificado PemDecoder",
+                () -> PemDecoder.decodeCertificate(certPem, BC).getEncoded());
+        Log.i(TAG, String.format(Locale.US, "certificado: %.2fx", (double) parser / direct));
+    }
+
+    @Test
+    public void privateKey() throws Exception {
+        long parser = measure("clave PEMParser", () -> {
+            try (PEMParser p = parser(keyPem)) {
+                return new JcaPEMKeyConverter().setProvider(BC)
+                        .getPrivateKey((PrivateKeyInfo) p.readObject()).getEncoded();
+            }
+        });
+        long direct = measure("clave PemDecoder",
+                () -> PemDecoder.decodePrivateKey(keyPem, BC).getEncoded());
+        Log.i(TAG, String.format(Locale.US, "clave: %.2fx", (double) parser / direct));
+    }
+
+    private static long measure(String name, Decode decode) throws Exception {
+        byte[] expected = decode.run();
+        for (int i = 0; i < WARMUP; i++) {
+            assertArrayEquals(expected, decode.run());
+        }
+        long[] times = new long[RUNS];
+        long a0 = AllocationMeter.allocatedBytes();
+        for (int i = 0; i < RUNS; i++) {
+            long t0 = System.nanoTime();
+            decode.run();
+            times[i] = System.nanoTime() - t0;
+        }
+        long allocated = AllocationMeter.allocatedSince(a0);
+        Arrays.sort(times);
+        long p50 = times[RUNS / 2];
+        Log.i(TAG, String.format(Locale.US, "%s: p50=%.1f µs p90=%.1f µs heap/op=%d B",
+                name, p50 / 1e3, times[RUNS * 9 / 10] / 1e3,
+                allocated < 0 ? -1 : allocated / RUNS));
+        return p50;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.minibaseapp.crypto;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.minibaseapp.metrics.AllocationMeter;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.security.KeyStore;
+import java.security.Provider;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Coste de arranque del proveedor BC completo frente al recortado: construcción más la primera
+ * búsqueda de los servicios que usa la app (ML-DSA, PKCS#12, X.509), que en el recortado es
+ * cuando se registran.
+ *
+ * La primera medida de cada proveedor incluye la carga de sus clases (en frío) y solo se puede
+ * tomar una vez por proceso; las siguientes son en caliente. Resultados en logcat, etiqueta
+ * ProviderStartupBenchmark.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProviderStartupBenchmark {
+
+    private static final String TAG = "ProviderStartupBenchmark";
+    private static final int RUNS = 20;
+
+    private interface ProviderFactory {
+        Provider create();
+    }
+
+    @Test
+    public void trimmedVersusFull() throws Exception {
+        // El recortado primero: así el completo no le deja clases de BC ya cargadas
+        Result trimmed = measure("trimmed", TrimmedBouncyCastleProvider::new);
+        Result full = measure("full", BouncyCastleProvider::new);
+
+        assertTrue(trimmed.entries * 10 < full.entries);
+    }
+
+    private static Result measure(String name, ProviderFactory factory) throws Exception {
+        long cold = firstUse(factory);
+        long[] warm = new long[RUNS];
+        long allocated = -1;
+        int entries = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long a0 = AllocationMeter.allocatedBytes();
+            long t0 = System.nanoTime();
+            Provider p = factory.create();
+            lookUpServices(p);
+            warm[i] = System.nanoTime() - t0;
+            if (i == RUNS - 1) {
+                allocated = AllocationMeter.allocatedSince(a0);
+                entries = p.size();
+            }
+        }
+        Arrays.sort(warm);
+        Result r = new Result(entries);
+        Log.i(TAG, String.format(Locale.US,
+                "%s: entradas=%d frío=%.2f ms caliente(p50)=%.2f ms heap=%d B",
+                name, entries, cold / 1e6, warm[RUNS / 2] / 1e6, allocated));
+        return r;
+    }
+
+    private static long firstUse(ProviderFactory factory) throws Exception {
+        long t0 = System.nanoTime();
+        lookUpServices(factory.create());
+        return System.nanoTime() - t0;
+    }
+
+    private static void lookUpServices(Provider p) throws Exception {
+        Signature.getInstance("ML-DSA-44", p);
+        KeyStore.getInstance("PKCS12", p);
+        CertificateFactory.getInstance("X.509", p);
+    }
+
+    private static final class Result {
+        final int entries;
+
+        Result(int entries) {
+            this.entries = entries;
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.example.minibaseapp;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.SystemClock;
 import android.text.InputType;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -21,14 +20,13 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.example.minibaseapp.crypto.ImportedCert;
 import com.example.minibaseapp.crypto.PqcCertificateManager;
 import com.example.minibaseapp.security.KeystoreAuthManager;
+import com.example.minibaseapp.task.CryptoExecutor;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
 
 public class CertificatesActivity extends AppCompatActivity {
 
-    private static final String TAG_BENCH = "BENCH";
 
     private TextView tvCertList;
     private PqcCertificateManager certManager;
@@ -48,6 +46,7 @@ public class CertificatesActivity extends AppCompatActivity {
     private ActivityResultLauncher<Intent> pickUserCertLauncher;
     private ActivityResultLauncher<Intent> pickUserKeyLauncher;
     private ActivityResultLauncher<Intent> pickCaCertLauncher;
+    private ActivityResultLauncher<Intent> pickCrlLauncher;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -58,6 +57,7 @@ public class CertificatesActivity extends AppCompatActivity {
 
         tvCertList = findViewById(R.id.tvCertList);
         Button btnAddCredential = findViewById(R.id.btnAddCredential);
+        Button btnImportCrl = findViewById(R.id.btnImportCrl);
 
         // Inicializa auth biométrico
         try {
@@ -101,7 +101,17 @@ public class CertificatesActivity extends AppCompatActivity {
                     }
                 });
 
+        // 4) Launcher para seleccionar una CRL (completa o delta)
+        pickCrlLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == RESULT_OK && result.getData() != null) {
+                        importCrl(result.getData().getData());
+                    }
+                });
+
         btnAddCredential.setOnClickListener(v -> showAddCredentialDialog());
+        btnImportCrl.setOnClickListener(v -> launchPickCrl());
 
         // Al entrar: intentamos huella si está configurada; si no, pedimos contraseña
         requestKeystoreAccessThenRefreshList();
@@ -276,6 +286,43 @@ public class CertificatesActivity extends AppCompatActivity {
         pickCaCertLauncher.launch(intent);
     }
 
+    // -----------------------
+    // CRLs
+    // -----------------------
+
+    private void launchPickCrl() {
+        if (keystorePassword == null) {
+            requestKeystoreAccessThenRefreshList();
+            Toast.makeText(this, "Primero debes abrir el almacén.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        pickCrlLauncher.launch(intent);
+    }
+
+    private void importCrl(Uri crlUri) {
+        if (crlUri == null || keystorePassword == null) return;
+        final char[] password = keystorePassword;
+        CryptoExecutor.getInstance().submit(this,
+                ctx -> certManager.importCrlFromUri(crlUri, password),
+                new CryptoExecutor.Callback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean changed) {
+                        Toast.makeText(CertificatesActivity.this,
+                                changed ? "CRL importada correctamente" : "La CRL no es más reciente que la ya importada",
+                                Toast.LENGTH_LONG).show();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Toast.makeText(CertificatesActivity.this,
+                                "Error al importar la CRL: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    }
+                });
+    }
+
     private void importCredentialWithCa(String alias,
                                         char[] password,
                                         Uri userCertUri,
@@ -290,31 +337,35 @@ public class CertificatesActivity extends AppCompatActivity {
             return;
         }
 
-        // ---- START TIMER (solo import/parse/guardar en keystore) ----
-        final long t0 = SystemClock.elapsedRealtimeNanos();
+        tvCertList.setText("Importando certificado...");
 
-        try {
+        CryptoExecutor.getInstance().submit(this, ctx -> {
+            // La latencia de import/parse/guardar en keystore la registra PqcCertificateManager
             certManager.importCredentialFromPemAndKey(userCertUri, userKeyUri, caCertUri, alias, password);
+            return Boolean.TRUE;
+        }, new CryptoExecutor.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean ok) {
+                Toast.makeText(CertificatesActivity.this,
+                        "Certificado + CA importados correctamente", Toast.LENGTH_LONG).show();
+
+                // Limpiamos estado temporal
+                pendingAlias = null;
+                pendingUserCertUri = null;
+                pendingUserKeyUri = null;
+
+                // Refrescamos la lista
+                refreshCertList();
+            }
 
-            // ---- STOP TIMER ----
-            double ms = (SystemClock.elapsedRealtimeNanos() - t0) / 1_000_000.0;
-            Log.i(TAG_BENCH, "IMPORT_MS=" + String.format(Locale.US, "%.3f", ms)
-                    + " alias=" + alias);
-
-            Toast.makeText(this, "Certificado + CA importados correctamente", Toast.LENGTH_LONG).show();
-
-            // Limpiamos estado temporal
-            pendingAlias = null;
-            pendingUserCertUri = null;
-            pendingUserKeyUri = null;
-
-            // Refrescamos la lista
-            refreshCertList();
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Error al importar: " + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+            @Override
+            public void onError(Exception e) {
+                Log.e("CertificatesActivity", "Error al importar", e);
+                Toast.makeText(CertificatesActivity.this,
+                        "Error al importar: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                refreshCertList();
+            }
+        });
     }
 
     private void refreshCertList() {
@@ -323,25 +374,38 @@ public class CertificatesActivity extends AppCompatActivity {
             return;
         }
 
-        try {
-            List<ImportedCert> certs = certManager.listCertificates(lastKeystorePassword);
-            if (certs.isEmpty()) {
-                tvCertList.setText("No hay certificados.");
-                return;
+        final char[] password = lastKeystorePassword;
+        CryptoExecutor.getInstance().submit(this, ctx -> {
+            // CRLs nuevas en el punto de distribución local
+            try {
+                certManager.refreshCrlsFromLocalDistributionPoint(password);
+            } catch (Exception e) {
+                Log.w("CertificatesActivity", "No se pudieron refrescar las CRLs locales: " + e.getMessage());
             }
+            return certManager.listCertificates(password);
+        }, new CryptoExecutor.Callback<List<ImportedCert>>() {
+            @Override
+            public void onSuccess(List<ImportedCert> certs) {
+                if (certs.isEmpty()) {
+                    tvCertList.setText("No hay certificados.");
+                    return;
+                }
 
-            StringBuilder sb = new StringBuilder();
-            for (ImportedCert c : certs) {
-                sb.append("Alias: ").append(c.alias).append("\n");
-                sb.append("Expira: ").append(c.notAfter).append("\n");
-                sb.append("Vigente ahora: ").append(c.currentlyValid ? "Sí" : "No").append("\n");
-                sb.append("-----------------------------\n");
+                StringBuilder sb = new StringBuilder();
+                for (ImportedCert c : certs) {
+                    sb.append("Alias: ").append(c.alias).append("\n");
+                    sb.append("Expira: ").append(c.notAfter).append("\n");
+                    sb.append("Vigente ahora: ").append(c.currentlyValid ? "Sí" : "No").append("\n");
+                    sb.append("-----------------------------\n");
+                }
+                tvCertList.setText(sb.toString());
             }
-            tvCertList.setText(sb.toString());
 
-        } catch (Exception e) {
-            tvCertList.setText("Error al cargar certificados: " + e.getMessage());
-        }
+            @Override
+            public void onError(Exception e) {
+                tvCertList.setText("Error al cargar certificados: " + e.getMessage());
+            }
+        });
     }
 
     @Override
@@ -1,15 +1,34 @@
 package com.example.minibaseapp;
 
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.widget.Button;
+import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.task.CryptoExecutor;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
 public class MainActivity extends AppCompatActivity {
 
+    // Último volcado de métricas, también accesible con "adb shell run-as"
+    private static final String METRICS_DIR = "metrics";
+    private static final String METRICS_FILE = "metrics.prom";
+
     private Button btnKeyPair;
     private Button btnCertificates;
+    private Button btnExportMetrics;
+
+    private ActivityResultLauncher<Intent> exportMetricsLauncher;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -18,6 +37,7 @@ public class MainActivity extends AppCompatActivity {
 
         btnKeyPair = findViewById(R.id.btnKeyPair);
         btnCertificates = findViewById(R.id.btnCertificates);
+        btnExportMetrics = findViewById(R.id.btnExportMetrics);
 
         btnKeyPair.setOnClickListener(v -> {
             Intent i = new Intent(MainActivity.this, SignKeyPairActivity.class);
@@ -28,5 +48,48 @@ public class MainActivity extends AppCompatActivity {
             Intent i = new Intent(MainActivity.this, CertificatesMenuActivity.class);
             startActivity(i);
         });
+
+        exportMetricsLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == RESULT_OK && result.getData() != null
+                            && result.getData().getData() != null) {
+                        exportMetrics(result.getData().getData());
+                    }
+                });
+
+        btnExportMetrics.setOnClickListener(v -> {
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("text/plain");
+            intent.putExtra(Intent.EXTRA_TITLE, METRICS_FILE);
+            exportMetricsLauncher.launch(intent);
+        });
+    }
+
+    /** Vuelca la instantánea actual en el destino elegido y en files/metrics/metrics.prom. */
+    private void exportMetrics(Uri target) {
+        CryptoExecutor.getInstance().submit(this, ctx -> {
+            MetricsRegistry metrics = MetricsRegistry.get();
+            metrics.dumpToFile(new File(new File(getFilesDir(), METRICS_DIR), METRICS_FILE));
+            try (OutputStream os = getContentResolver().openOutputStream(target)) {
+                if (os == null) {
+                    throw new Exception("No se pudo abrir el fichero de destino");
+                }
+                metrics.writePrometheus(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+            }
+            return Boolean.TRUE;
+        }, new CryptoExecutor.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean ok) {
+                Toast.makeText(MainActivity.this, "Métricas exportadas", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(MainActivity.this,
+                        "Error al exportar las métricas: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
     }
 }
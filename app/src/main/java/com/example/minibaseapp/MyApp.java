@@ -2,15 +2,14 @@ package com.example.minibaseapp;
 
 import android.app.Application;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-
-import java.security.Security;
+import com.example.minibaseapp.task.StartupOrchestrator;
 
 public class MyApp extends Application {
 
     @Override
     public void onCreate() {
         super.onCreate();
-        Security.insertProviderAt(new BouncyCastleProvider(), 1);
+        // Registro de BC, carga de liboqs y calentamiento en segundo plano
+        StartupOrchestrator.get().start(this, SignKeyPairActivity.ALGORITHM_NAME);
     }
 }
\ No newline at end of file
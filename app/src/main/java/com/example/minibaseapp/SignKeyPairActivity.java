@@ -14,8 +14,15 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.liboqs.Common;
+import com.example.liboqs.KeyPairPool;
+import com.example.liboqs.MechanismRegistry;
+import com.example.liboqs.NativeMemory;
+import com.example.liboqs.PreparedSigningKey;
 import com.example.liboqs.Sigs;
-import com.example.liboqs.Signature;
+import com.example.liboqs.Verifier;
+import com.example.minibaseapp.metrics.AllocationMeter;
+import com.example.minibaseapp.metrics.MetricsRegistry;
 
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
@@ -26,9 +33,17 @@ import java.util.List;
 
 public class SignKeyPairActivity extends AppCompatActivity {
 
-    private static final String ALGORITHM_NAME = "Dilithium2"; // Cambia a tu algoritmo deseado
+    static final String ALGORITHM_NAME = "Dilithium2"; // Cambia a tu algoritmo deseado
+    // Pares de claves pregenerados en segundo plano; se rellena por debajo de POOL_LOW_WATER
+    private static final int POOL_CAPACITY = 4;
+    private static final int POOL_LOW_WATER = 2;
+    // Carga del núcleo y primera operación de cada familia de algoritmos de liboqs
+    private static final String FAMILY_LOAD = "minibase_liboqs_family_load_seconds";
+    private static final String FAMILY_RESIDENT = "minibase_liboqs_family_resident_bytes";
+    private static KeyPairPool keyPairPool;
+    private static boolean familyMetricsRegistered;
     private Uri selectedFileUri;
-    private Signature signature;
+    private PreparedSigningKey signingKey;
     private byte[] privateKey;
     private byte[] publicKey;
 
@@ -45,6 +60,9 @@ public class SignKeyPairActivity extends AppCompatActivity {
 
         // Inicializa la clase Sigs
         Sigs.get_instance();
+        registerNativeMemoryGauges();
+        registerFamilyMetrics();
+        keyPairPool().prefill();
 
         // Verifica permisos
         checkPermissions();
@@ -77,10 +95,16 @@ public class SignKeyPairActivity extends AppCompatActivity {
         // Generar claves
         generateKeysButton.setOnClickListener(v -> {
             try {
-                // Generar clave
-                signature = new Signature(ALGORITHM_NAME);
-                publicKey = signature.generate_keypair();
-                privateKey = signature.export_secret_key();
+                // Generar clave: se toma del pool (solo se genera aquí si está vacío)
+                closeSigningKey();
+                long t0 = System.nanoTime();
+                long a0 = AllocationMeter.allocatedBytes();
+                KeyPairPool.KeyPair keyPair = keyPairPool().take();
+                recordLiboqs(MetricsRegistry.OP_KEYGEN, t0, a0, -1);
+                publicKey = keyPair.public_key;
+                privateKey = keyPair.secret_key;
+                // La clave privada pasa a memoria nativa una vez y se reutiliza en cada firma
+                signingKey = new PreparedSigningKey(ALGORITHM_NAME, privateKey);
 
                 // Guardar las claves en archivos locales
                 saveToFile("publicKey.bin", publicKey);
@@ -97,19 +121,19 @@ public class SignKeyPairActivity extends AppCompatActivity {
         // Firmar archivo
         signFileButton.setOnClickListener(v -> {
             try {
-                if (privateKey == null) {
+                if (signingKey == null) {
                     resultText.setText("Primero genera las claves privadas.");
                     return;
                 }
 
-                // Inicializar la firma con la clave privada
-                signature = new Signature(ALGORITHM_NAME, privateKey);
-
                 // Leer el archivo seleccionado
                 byte[] fileContent = readFileContent(selectedFileUri);
 
                 // Firmar el contenido del archivo
-                byte[] signatureBytes = signature.sign(fileContent);
+                long t0 = System.nanoTime();
+                long a0 = AllocationMeter.allocatedBytes();
+                byte[] signatureBytes = signingKey.sign(fileContent);
+                recordLiboqs(MetricsRegistry.OP_SIGN, t0, a0, fileContent.length);
 
                 // Guardar la firma en un archivo
                 saveToFile("signature.bin", signatureBytes);
@@ -131,8 +155,16 @@ public class SignKeyPairActivity extends AppCompatActivity {
                 // Leer la firma desde el archivo
                 byte[] signatureBytes = readFromFile("signature.bin");
 
-                // Verificar la firma
-                boolean isValid = signature.verify(fileContent, signatureBytes, publicKey);
+                if (publicKey == null) {
+                    resultText.setText("Primero genera las claves.");
+                    return;
+                }
+
+                // Verificar la firma (clave pública preparada una vez y reutilizada)
+                long t0 = System.nanoTime();
+                long a0 = AllocationMeter.allocatedBytes();
+                boolean isValid = Verifier.get_instance().verify(ALGORITHM_NAME, publicKey, fileContent, signatureBytes);
+                recordLiboqs(MetricsRegistry.OP_VERIFY, t0, a0, fileContent.length);
 
                 // Mostrar resultados
                 resultText.setText(isValid ? "Firma válida" : "Firma inválida");
@@ -143,6 +175,88 @@ public class SignKeyPairActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        closeSigningKey();
+        super.onDestroy();
+    }
+
+    // La clave preparada retiene un OQS_SIG y la clave privada en memoria nativa hasta close()
+    private void closeSigningKey() {
+        if (signingKey != null) {
+            signingKey.close();
+            signingKey = null;
+        }
+    }
+
+    private static void recordLiboqs(String op, long t0, long a0, long documentBytes) {
+        MetricsRegistry metrics = MetricsRegistry.get();
+        metrics.recordCrypto(op, ALGORITHM_NAME, MetricsRegistry.BACKEND_LIBOQS, t0, true);
+        metrics.recordAllocation(op, ALGORITHM_NAME, MetricsRegistry.BACKEND_LIBOQS, documentBytes,
+                AllocationMeter.allocatedSince(a0));
+    }
+
+    // Un pool por proceso: sobrevive a la actividad para que la siguiente apertura ya lo encuentre lleno
+    private static synchronized KeyPairPool keyPairPool() {
+        if (keyPairPool == null) {
+            keyPairPool = KeyPairPool.for_signature(ALGORITHM_NAME, POOL_CAPACITY, POOL_LOW_WATER);
+            registerKeyPairPoolGauges(keyPairPool);
+        }
+        return keyPairPool;
+    }
+
+    private static void registerKeyPairPoolGauges(KeyPairPool pool) {
+        MetricsRegistry metrics = MetricsRegistry.get();
+        metrics.registerGauge("minibase_keypair_pool_available",
+                "Pares de claves pregenerados disponibles en el pool", false,
+                () -> pool.get_stats().available);
+        metrics.registerGauge("minibase_keypair_pool_hits_total",
+                "Generaciones de claves servidas desde el pool", true,
+                () -> pool.get_stats().hits);
+        metrics.registerGauge("minibase_keypair_pool_misses_total",
+                "Generaciones de claves con el pool vacío (generación síncrona)", true,
+                () -> pool.get_stats().misses);
+        metrics.registerGauge("minibase_keypair_pool_refills_total",
+                "Rellenos del pool lanzados en segundo plano", true,
+                () -> pool.get_stats().refills);
+        metrics.registerGauge("minibase_keypair_pool_generated_total",
+                "Pares de claves generados por el pool", true,
+                () -> pool.get_stats().generated);
+    }
+
+    // Memoria nativa de liboqs en el registro de métricas (la librería ya está cargada)
+    private static void registerNativeMemoryGauges() {
+        MetricsRegistry metrics = MetricsRegistry.get();
+        metrics.registerGauge("minibase_liboqs_live_handles",
+                "Objetos OQS_SIG/OQS_KEM sin liberar", false, NativeMemory::live_handles);
+        metrics.registerGauge("minibase_liboqs_live_handle_bytes",
+                "Bytes nativos retenidos por objetos liboqs sin liberar", false, NativeMemory::live_handle_bytes);
+        metrics.registerGauge("minibase_liboqs_jni_copied_bytes_total",
+                "Bytes copiados de arrays Java a memoria nativa en llamadas JNI", true, NativeMemory::jni_copied_bytes);
+        // Variante nativa cargada según la CPU e implementación (avx2/ref) que usa el algoritmo
+        metrics.registerInfo("minibase_liboqs_implementation_info",
+                "Implementación de liboqs en uso en este dispositivo",
+                "alg", ALGORITHM_NAME, "impl", Sigs.get_implementation(ALGORITHM_NAME),
+                "variant", Common.get_loaded_variant());
+    }
+
+    // Coste de carga del núcleo de liboqs y de la primera operación de cada familia (una vez por proceso)
+    private static synchronized void registerFamilyMetrics() {
+        if (familyMetricsRegistered) return;
+        familyMetricsRegistered = true;
+        MetricsRegistry metrics = MetricsRegistry.get();
+        MechanismRegistry registry = MechanismRegistry.get_instance();
+        metrics.histogram(FAMILY_LOAD, "family", MechanismRegistry.CORE)
+                .recordNanos((long) (registry.get_core_stats().load_ms * 1_000_000));
+        metrics.registerGauge("minibase_liboqs_core_resident_bytes",
+                "Memoria nativa residente de liboqs no atribuida a ninguna familia", false,
+                () -> registry.get_core_stats().resident_bytes);
+        registry.set_listener(stats -> {
+            metrics.histogram(FAMILY_LOAD, "family", stats.family).recordNanos((long) (stats.load_ms * 1_000_000));
+            metrics.histogram(FAMILY_RESIDENT, "family", stats.family).record(stats.resident_bytes);
+        });
+    }
+
     private void checkPermissions() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.READ_EXTERNAL_STORAGE)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -1,10 +1,10 @@
 package com.example.minibaseapp;
 
+import android.content.ClipData;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.SystemClock;
 import android.provider.OpenableColumns;
 import android.text.InputType;
 import android.util.Log;
@@ -20,20 +20,23 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.minibaseapp.crypto.ImportedCert;
 import com.example.minibaseapp.crypto.PqcCertificateManager;
+import com.example.minibaseapp.crypto.SignatureContainer;
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.metrics.Tracer;
 import com.example.minibaseapp.security.KeystoreAuthManager;
+import com.example.minibaseapp.task.CryptoExecutor;
+import com.example.minibaseapp.task.SigningJobQueue;
+import com.example.minibaseapp.task.SpeculativeSigner;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class SignWithCertActivity extends AppCompatActivity {
 
-    private static final String TAG_BENCH = "BENCH";
 
     private TextView tvSelectedCert;
     private TextView tvSelectedFile;
@@ -53,9 +56,23 @@ public class SignWithCertActivity extends AppCompatActivity {
 
     private String selectedAlias;
     private Uri selectedFileUri;
+    // Selección múltiple: si hay más de un documento se firman todos en lote
+    private final List<Uri> selectedFileUris = new ArrayList<>();
+
+    // Clave del alias descifrada al elegirlo (una sola vez mientras la Activity está viva) y
+    // documento leído por adelantado: al pulsar 'Firmar' solo queda terminar la firma
+    private SpeculativeSigner speculation;
+
+    // Firma en curso (en segundo plano); mientras tanto el botón 'Firmar' la cancela
+    private CryptoExecutor.Handle runningTask;
+
+    // Firma por lotes persistente: sigue aunque se salga de la pantalla y se reanuda al desbloquear
+    private SigningJobQueue signingQueue;
+    private final SigningJobQueue.Listener queueListener = this::showQueueStats;
 
     private ActivityResultLauncher<Intent> selectFileLauncher;
     private ActivityResultLauncher<Intent> createSignatureFileLauncher;
+    private ActivityResultLauncher<Intent> selectOutputDirLauncher;
 
     // Firma generada en memoria (se limpia al salir de la Activity)
     private byte[] lastSignatureBytes;
@@ -73,6 +90,9 @@ public class SignWithCertActivity extends AppCompatActivity {
         btnSign = findViewById(R.id.btnSign);
 
         certManager = new PqcCertificateManager(this);
+        speculation = new SpeculativeSigner(this, certManager);
+        signingQueue = SigningJobQueue.getInstance(this);
+        signingQueue.addListener(queueListener);
 
         try {
             ksAuth = new KeystoreAuthManager(this);
@@ -85,6 +105,7 @@ public class SignWithCertActivity extends AppCompatActivity {
 
         setupFilePicker();
         setupCreateSignatureFileLauncher();
+        setupOutputDirLauncher();
         setupSignButton();
 
         // Antes pedías contraseña siempre: ahora intentamos huella si está configurada
@@ -107,6 +128,9 @@ public class SignWithCertActivity extends AppCompatActivity {
 
         if (ksAuth != null) ksAuth.clearCachedPassword();
 
+        speculation.close();
+        signingQueue.removeListener(queueListener);
+
         if (keystorePassword != null) {
             Arrays.fill(keystorePassword, '\0');
             keystorePassword = null;
@@ -215,24 +239,34 @@ public class SignWithCertActivity extends AppCompatActivity {
     }
 
     private void loadCertificatesFromStore() {
-        try {
-            certsInStore = certManager.listCertificates(keystorePassword);
-            aliasList.clear();
-
-            if (certsInStore.isEmpty()) {
-                tvStatus.setText("No hay certificados. Añade uno en 'Gestionar certificados'.");
-                return;
-            }
+        final char[] password = keystorePassword;
+        tvStatus.setText("Abriendo el almacén de certificados...");
+        CryptoExecutor.getInstance().submit(this,
+                ctx -> certManager.listCertificates(password),
+                new CryptoExecutor.Callback<List<ImportedCert>>() {
+                    @Override
+                    public void onSuccess(List<ImportedCert> certs) {
+                        certsInStore = certs;
+                        aliasList.clear();
+
+                        if (certsInStore.isEmpty()) {
+                            tvStatus.setText("No hay certificados. Añade uno en 'Gestionar certificados'.");
+                            return;
+                        }
 
-            for (ImportedCert c : certsInStore) {
-                aliasList.add(c.alias);
-            }
+                        for (ImportedCert c : certsInStore) {
+                            aliasList.add(c.alias);
+                        }
 
-            updateStatusText();
+                        updateStatusText();
+                        offerResumePendingJobs();
+                    }
 
-        } catch (Exception e) {
-            tvStatus.setText("Error al cargar certificados: " + e.getMessage());
-        }
+                    @Override
+                    public void onError(Exception e) {
+                        tvStatus.setText("Error al cargar certificados: " + e.getMessage());
+                    }
+                });
     }
 
     // Selección del certificado con el que firmar
@@ -244,6 +278,8 @@ public class SignWithCertActivity extends AppCompatActivity {
                 .setItems(aliasArray, (dialog, which) -> {
                     selectedAlias = aliasArray[which];
                     tvSelectedCert.setText(selectedAlias);
+                    // Desbloqueo de la clave mientras se elige el documento
+                    speculation.selectAlias(selectedAlias, keystorePassword);
 
                     if (lastSignatureBytes != null) {
                         Arrays.fill(lastSignatureBytes, (byte) 0);
@@ -262,8 +298,22 @@ public class SignWithCertActivity extends AppCompatActivity {
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                        selectedFileUri = result.getData().getData();
-                        if (selectedFileUri != null) {
+                        selectedFileUris.clear();
+                        ClipData clip = result.getData().getClipData();
+                        if (clip != null) {
+                            for (int i = 0; i < clip.getItemCount(); i++) {
+                                selectedFileUris.add(clip.getItemAt(i).getUri());
+                            }
+                        } else if (result.getData().getData() != null) {
+                            selectedFileUris.add(result.getData().getData());
+                        }
+
+                        selectedFileUri = selectedFileUris.isEmpty() ? null : selectedFileUris.get(0);
+                        // Un solo documento: se lee por adelantado (el lote va por la cola de firma)
+                        speculation.selectDocument(selectedFileUris.size() == 1 ? selectedFileUri : null);
+                        if (selectedFileUris.size() > 1) {
+                            tvSelectedFile.setText(selectedFileUris.size() + " documentos seleccionados");
+                        } else if (selectedFileUri != null) {
                             String displayName = getDisplayNameFromUri(selectedFileUri);
                             tvSelectedFile.setText(displayName);
                         }
@@ -288,6 +338,7 @@ public class SignWithCertActivity extends AppCompatActivity {
                     "application/pdf",
                     "text/plain"
             });
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
 
             selectFileLauncher.launch(intent);
         });
@@ -319,6 +370,9 @@ public class SignWithCertActivity extends AppCompatActivity {
 
                                 selectedAlias = null;
                                 selectedFileUri = null;
+                                selectedFileUris.clear();
+                                speculation.selectAlias(null, null);
+                                speculation.selectDocument(null);
 
                                 tvSelectedCert.setText("Ningún certificado seleccionado");
                                 tvSelectedFile.setText("Ningún documento seleccionado");
@@ -359,7 +413,7 @@ public class SignWithCertActivity extends AppCompatActivity {
             }
         }
 
-        String suggestedName = "firma_" + aliasPart + "_" + docName + ".bin";
+        String suggestedName = "firma_" + aliasPart + "_" + docName + SignatureContainer.FILE_EXTENSION;
 
         Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
         intent.addCategory(Intent.CATEGORY_OPENABLE);
@@ -372,6 +426,10 @@ public class SignWithCertActivity extends AppCompatActivity {
     // Firmado del documento
     private void setupSignButton() {
         btnSign.setOnClickListener(v -> {
+            if (runningTask != null && !runningTask.isDone()) {
+                runningTask.cancel();
+                return;
+            }
             if (selectedAlias == null) {
                 tvStatus.setText("Selecciona un certificado.");
                 return;
@@ -385,40 +443,188 @@ public class SignWithCertActivity extends AppCompatActivity {
                 return;
             }
 
-            // Medicion del firmado
-            final long t0 = SystemClock.elapsedRealtimeNanos();
+            if (selectedFileUris.size() > 1) {
+                // Lote: primero se elige la carpeta de salida
+                tvStatus.setText("Elige la carpeta donde guardar las " + selectedFileUris.size() + " firmas.");
+                selectOutputDirLauncher.launch(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE));
+                return;
+            }
+
+            // Medición del firmado (sin el diálogo SAF de guardado)
+            final long t0 = System.nanoTime();
+            final Tracer.Span e2e = Tracer.beginAsync("ui.sign");
+            final String alias = selectedAlias;
+            final Uri fileUri = selectedFileUri;
+            final char[] password = keystorePassword;
+
+            tvStatus.setText("Firmando documento...");
+            setBusy(true);
+
+            // Firma en streaming: el documento no se carga entero en memoria. Si ya se leyó
+            // al elegirlo y la clave está desbloqueada, solo queda el paso final
+            runningTask = CryptoExecutor.getInstance().submit(this, ctx -> {
+                try (Tracer.Span task = Tracer.begin("sign.task")) {
+                    return speculation.sign(alias, password, fileUri, ctx).toByteArray();
+                }
+            }, new CryptoExecutor.Callback<byte[]>() {
+                @Override
+                public void onSuccess(byte[] sig) {
+                    setBusy(false);
 
-            try {
-                byte[] data = readFileContent(selectedFileUri);
-                byte[] sig = certManager.signDataWithAlias(selectedAlias, keystorePassword, data);
+                    recordSign(t0, true);
 
-                //STOP TIMER
-                double ms = (SystemClock.elapsedRealtimeNanos() - t0) / 1_000_000.0;
+                    if (lastSignatureBytes != null) {
+                        Arrays.fill(lastSignatureBytes, (byte) 0);
+                    }
+                    lastSignatureBytes = sig;
+
+                    tvStatus.setText(
+                            "Documento firmado correctamente con el certificado '" + alias + "'.\n" +
+                                    "Ahora elige dónde guardar el archivo de firma y si quieres cambia el nombre sugerido."
+                    );
 
-                // Log
-                Log.i(TAG_BENCH, "SIGN_MS=" + String.format(Locale.US, "%.3f", ms)
-                        + " alias=" + selectedAlias);
+                    e2e.close();
 
-                if (lastSignatureBytes != null) {
-                    Arrays.fill(lastSignatureBytes, (byte) 0);
+                    // SAF (no entra en el benchmark)
+                    launchCreateSignatureDocument();
                 }
-                lastSignatureBytes = sig;
 
-                tvStatus.setText(
-                        "Documento firmado correctamente con el certificado '" + selectedAlias + "'.\n" +
-                                "Ahora elige dónde guardar el archivo de firma y si quieres cambia el nombre sugerido."
-                );
+                @Override
+                public void onError(Exception e) {
+                    setBusy(false);
+                    recordSign(t0, false);
+                    e2e.close();
+                    tvStatus.setText("Error al firmar: " + e.getMessage());
+                }
 
-                // SAF (no entra en el benchmark)
-                launchCreateSignatureDocument();
+                @Override
+                public void onProgress(long done, long total) {
+                    tvStatus.setText(formatProgress("Firmando documento", done, total));
+                }
 
-            } catch (Exception e) {
-                // Si quieres que el benchmark también salga en errores, podrías loguearlo aquí con ok=false
-                tvStatus.setText("Error al firmar: " + e.getMessage());
-            }
+                @Override
+                public void onCancelled() {
+                    setBusy(false);
+                    e2e.close();
+                    tvStatus.setText("Firma cancelada.");
+                }
+            });
         });
     }
 
+    // Mientras hay una tarea en curso solo se permite cancelarla
+    private void setBusy(boolean busy) {
+        btnSign.setText(busy ? "Cancelar" : "Firmar");
+        btnSign.setEnabled(busy || (selectedAlias != null && selectedFileUri != null));
+        btnSelectFile.setEnabled(!busy);
+        btnChooseCert.setEnabled(!busy);
+        if (!busy) runningTask = null;
+    }
+
+    private static String formatProgress(String prefix, long done, long total) {
+        if (total > 0) {
+            return String.format(Locale.getDefault(), "%s... %d %%", prefix, done * 100 / total);
+        }
+        return String.format(Locale.getDefault(), "%s... %.1f MB", prefix, done / (1024.0 * 1024.0));
+    }
+
+    // Latencia de extremo a extremo de la firma en el registro de métricas
+    private void recordSign(long t0, boolean ok) {
+        MetricsRegistry.get().recordUi(MetricsRegistry.OP_SIGN,
+                speculation.getAlgorithm(), MetricsRegistry.BACKEND_BC, t0, ok);
+    }
+
+    // Firma por lotes
+    private void setupOutputDirLauncher() {
+        selectOutputDirLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == RESULT_OK && result.getData() != null
+                            && result.getData().getData() != null) {
+                        signSelectedDocuments(result.getData().getData());
+                    } else {
+                        tvStatus.setText("No se ha elegido carpeta de salida. No se ha firmado nada.");
+                    }
+                }
+        );
+    }
+
+    private void signSelectedDocuments(Uri outputTreeUri) {
+        final String alias = selectedAlias;
+        final List<Uri> uris = new ArrayList<>(selectedFileUris);
+        final char[] password = keystorePassword;
+
+        tvStatus.setText("Añadiendo " + uris.size() + " documentos a la cola de firma...");
+
+        CryptoExecutor.getInstance().submit(this,
+                ctx -> signingQueue.enqueue(alias, outputTreeUri, uris),
+                new CryptoExecutor.Callback<Long>() {
+                    @Override
+                    public void onSuccess(Long jobId) {
+                        selectedFileUris.clear();
+                        selectedFileUri = null;
+                        speculation.selectDocument(null);
+                        tvSelectedFile.setText("Ningún documento seleccionado");
+                        updateSignButtonState();
+
+                        if (!signingQueue.resume(certManager, alias, password)) {
+                            tvStatus.setText("Documentos añadidos a la cola. Se firmarán cuando termine el trabajo en curso.");
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        tvStatus.setText("Error al preparar la firma por lotes: " + e.getMessage());
+                    }
+                });
+    }
+
+    private void showQueueStats(SigningJobQueue.Stats st) {
+        if (st.runningAlias == null && st.depth() == 0 && st.failed == 0) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        if (st.runningAlias != null) {
+            sb.append("Firmando por lotes con '").append(st.runningAlias).append("'.\n");
+        } else if (st.depth() > 0) {
+            sb.append("Cola de firma en pausa.\n");
+        }
+        sb.append(String.format(Locale.getDefault(),
+                "Pendientes: %d · Firmados: %d · Fallidos: %d · %.1f documentos/s",
+                st.depth(), st.done, st.failed, st.docsPerSecond));
+        tvStatus.setText(sb.toString());
+    }
+
+    // Tras abrir el almacén: trabajos de firma que quedaron a medias (p. ej. el proceso murió)
+    private void offerResumePendingJobs() {
+        if (signingQueue.isRunning()) return;
+        CryptoExecutor.getInstance().submit(this,
+                ctx -> signingQueue.pendingByAlias(),
+                new CryptoExecutor.Callback<Map<String, Integer>>() {
+                    @Override
+                    public void onSuccess(Map<String, Integer> pending) {
+                        for (Map.Entry<String, Integer> e : pending.entrySet()) {
+                            if (!aliasList.contains(e.getKey())) continue;
+                            final String alias = e.getKey();
+                            new AlertDialog.Builder(SignWithCertActivity.this)
+                                    .setTitle("Firmas pendientes")
+                                    .setMessage("Hay " + e.getValue() + " documentos pendientes de firmar con '"
+                                            + alias + "'. ¿Reanudar ahora?")
+                                    .setPositiveButton("Reanudar", (d, w) ->
+                                            signingQueue.resume(certManager, alias, keystorePassword))
+                                    .setNegativeButton("Más tarde", null)
+                                    .show();
+                            return; // la cola ejecuta un alias cada vez
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Log.w("SignWithCertActivity", "No se pudo consultar la cola de firma: " + e.getMessage());
+                    }
+                });
+    }
+
     // Estado UI
     private void updateSignButtonState() {
         btnSign.setEnabled(selectedAlias != null && selectedFileUri != null);
@@ -469,24 +675,4 @@ public class SignWithCertActivity extends AppCompatActivity {
 
         return result;
     }
-
-    private byte[] readFileContent(Uri uri) {
-        try (InputStream in = getContentResolver().openInputStream(uri);
-             BufferedInputStream bin = new BufferedInputStream(in);
-             ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-
-            if (in == null) {
-                throw new RuntimeException("No se pudo abrir InputStream para el fichero");
-            }
-
-            byte[] tmp = new byte[4096];
-            int n;
-            while ((n = bin.read(tmp)) != -1) {
-                buffer.write(tmp, 0, n);
-            }
-            return buffer.toByteArray();
-        } catch (Exception e) {
-            throw new RuntimeException("Error al leer fichero a firmar: " + e.getMessage(), e);
-        }
-    }
 }
@@ -4,33 +4,48 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.SystemClock;
+import android.provider.DocumentsContract;
 import android.provider.OpenableColumns;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.minibaseapp.crypto.BatchVerifier;
+import com.example.minibaseapp.crypto.DocumentSource;
 import com.example.minibaseapp.crypto.PqcCertificateManager;
+import com.example.minibaseapp.crypto.SignatureContainer;
+import com.example.minibaseapp.crypto.SignerDirectory;
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.metrics.Tracer;
+import com.example.minibaseapp.task.CryptoExecutor;
+import com.example.minibaseapp.task.SpeculativeVerifier;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class VerifySignatureActivity extends AppCompatActivity {
 
-    private static final String TAG_BENCH = "BENCH";
 
     private Button btnSelectCert;
     private Button btnSelectDocument;
     private Button btnSelectSignature;
     private Button btnVerify;
     private Button btnResetVerification;
+    private Button btnVerifyFolder;
 
     private TextView tvSelectedCert;
     private TextView tvSelectedDocument;
@@ -43,12 +58,31 @@ public class VerifySignatureActivity extends AppCompatActivity {
     private Uri selectedCertUri = null;
     private Uri selectedDocumentUri = null;
     private Uri selectedSignatureUri = null;
+    // Fichero de firma que se está leyendo (la selección solo se completa al terminar)
+    private Uri loadingSignatureUri = null;
 
     private X509Certificate selectedCert = null;
+    // Firmante resuelto en el directorio local (clave pública ya decodificada)
+    private SignerDirectory.Entry selectedSigner = null;
+
+    // Firma en formato contenedor (.pqsig); null si es un .bin con la firma en bruto
+    private SignatureContainer selectedContainer = null;
+    // Firma en bruto (.bin) leída al seleccionarla; null si es un contenedor
+    private byte[] selectedLegacySignature = null;
+    // Contenedor generado a partir de un .bin, pendiente de guardar
+    private SignatureContainer pendingConvertedContainer = null;
+
+    // Verificación adelantada mientras se completa la selección
+    private SpeculativeVerifier speculation;
 
     private ActivityResultLauncher<Intent> pickCertLauncher;
     private ActivityResultLauncher<Intent> pickDocumentLauncher;
     private ActivityResultLauncher<Intent> pickSignatureLauncher;
+    private ActivityResultLauncher<Intent> saveContainerLauncher;
+    private ActivityResultLauncher<Intent> pickFolderLauncher;
+
+    // Verificación en curso (en segundo plano); el botón 'Verificar' la cancela
+    private CryptoExecutor.Handle runningTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -56,6 +90,7 @@ public class VerifySignatureActivity extends AppCompatActivity {
         setContentView(R.layout.activity_verify_signature);
 
         certManager = new PqcCertificateManager(getApplicationContext());
+        speculation = new SpeculativeVerifier(this, certManager);
 
         initViews();
         setupLaunchers();
@@ -68,12 +103,19 @@ public class VerifySignatureActivity extends AppCompatActivity {
         tvSummary.setText("Selecciona certificado, documento y fichero de firma para empezar.");
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        speculation.close();
+    }
+
     private void initViews() {
         btnSelectCert = findViewById(R.id.btnSelectCert);
         btnSelectDocument = findViewById(R.id.btnSelectDocument);
         btnSelectSignature = findViewById(R.id.btnSelectSignature);
         btnVerify = findViewById(R.id.btnVerify);
         btnResetVerification = findViewById(R.id.btnResetVerification);
+        btnVerifyFolder = findViewById(R.id.btnVerifyFolder);
 
         tvSelectedCert = findViewById(R.id.tvSelectedCert);
         tvSelectedDocument = findViewById(R.id.tvSelectedDocument);
@@ -92,16 +134,7 @@ public class VerifySignatureActivity extends AppCompatActivity {
                         if (uri != null) {
                             selectedCertUri = uri;
                             tvSelectedCert.setText(getDisplayNameFromUri(uri));
-
-                            try {
-                                selectedCert = certManager.loadCertificateFromUri(
-                                        getApplicationContext(),
-                                        uri
-                                );
-                            } catch (Exception e) {
-                                selectedCert = null;
-                                tvSummary.setText("Error al leer el certificado: " + e.getMessage());
-                            }
+                            loadCertificateFile(uri);
 
                             // Si cambias selección, ocultamos botón de reset hasta que haya verificación real
                             btnResetVerification.setVisibility(View.GONE);
@@ -122,6 +155,8 @@ public class VerifySignatureActivity extends AppCompatActivity {
                         if (uri != null) {
                             selectedDocumentUri = uri;
                             tvSelectedDocument.setText(getDisplayNameFromUri(uri));
+                            // Resumen del documento mientras se elige lo demás
+                            speculation.selectDocument(uri);
 
                             btnResetVerification.setVisibility(View.GONE);
                             tvDetails.setText("");
@@ -132,15 +167,15 @@ public class VerifySignatureActivity extends AppCompatActivity {
                 }
         );
 
-        // Fichero de firma (.bin)
+        // Fichero de firma (.pqsig o .bin)
         pickSignatureLauncher = registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == RESULT_OK && result.getData() != null) {
                         Uri uri = result.getData().getData();
                         if (uri != null) {
-                            selectedSignatureUri = uri;
                             tvSelectedSignature.setText(getDisplayNameFromUri(uri));
+                            loadSignatureFile(uri);
 
                             btnResetVerification.setVisibility(View.GONE);
                             tvDetails.setText("");
@@ -150,14 +185,146 @@ public class VerifySignatureActivity extends AppCompatActivity {
                     }
                 }
         );
+
+        // Guardar .bin convertido a contenedor
+        saveContainerLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    final SignatureContainer container = pendingConvertedContainer;
+                    pendingConvertedContainer = null;
+                    if (result.getResultCode() == RESULT_OK && result.getData() != null
+                            && result.getData().getData() != null && container != null) {
+                        saveContainer(container, result.getData().getData());
+                    }
+                }
+        );
+
+        // Carpeta para verificación por lotes
+        pickFolderLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == RESULT_OK && result.getData() != null
+                            && result.getData().getData() != null) {
+                        runBatchVerification(result.getData().getData());
+                    }
+                }
+        );
+    }
+
+    // Certificado elegido como fichero: se lee y se decodifica en segundo plano, solo en memoria
+    // (entra en el directorio de firmantes si verifica una firma)
+    private void loadCertificateFile(Uri uri) {
+        selectedCert = null;
+        selectedSigner = null;
+        speculation.selectSigner(null, null);
+        CryptoExecutor.getInstance().submit(this,
+                ctx -> certManager.getSignerDirectory().decode(
+                        certManager.loadCertificateFromUri(getApplicationContext(), uri)),
+                new CryptoExecutor.Callback<SignerDirectory.Entry>() {
+                    @Override
+                    public void onSuccess(SignerDirectory.Entry entry) {
+                        if (!uri.equals(selectedCertUri)) return; // se eligió otro mientras tanto
+                        selectedSigner = entry;
+                        selectedCert = entry.certificate;
+                        speculation.selectSigner(selectedCert, selectedSigner);
+                        updateVerifyButtonState();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        if (!uri.equals(selectedCertUri)) return;
+                        tvSummary.setText("Error al leer el certificado: " + e.getMessage());
+                    }
+                });
+    }
+
+    // Fichero de firma leído en segundo plano
+    private static class LoadedSignature {
+        SignatureContainer container;
+        byte[] legacySignature;
+        SignerDirectory.Entry signer;
+    }
+
+    /**
+     * Si el fichero de firma es un contenedor, el firmante se resuelve por su huella en el
+     * directorio local y no hace falta seleccionar el certificado. El fichero se lee en segundo
+     * plano; hasta entonces no se puede verificar.
+     */
+    private void loadSignatureFile(Uri uri) {
+        loadingSignatureUri = uri;
+        selectedSignatureUri = null;
+        selectedContainer = null;
+        selectedLegacySignature = null;
+        speculation.selectSignature(null, null);
+        CryptoExecutor.getInstance().submit(this, ctx -> {
+            LoadedSignature out = new LoadedSignature();
+            byte[] sigBytes = readAllBytesFromUri(uri);
+            if (!SignatureContainer.hasContainerHeader(sigBytes)) {
+                out.legacySignature = sigBytes;
+                return out;
+            }
+            out.container = SignatureContainer.readFrom(new ByteArrayInputStream(sigBytes));
+            out.signer = certManager.getSignerDirectory().findByFingerprint(out.container.signerFingerprint);
+            return out;
+        }, new CryptoExecutor.Callback<LoadedSignature>() {
+            @Override
+            public void onSuccess(LoadedSignature out) {
+                if (!uri.equals(loadingSignatureUri)) return; // se eligió otro mientras tanto
+                selectedSignatureUri = uri;
+                selectedContainer = out.container;
+                selectedLegacySignature = out.legacySignature;
+                if (out.signer != null) {
+                    selectedSigner = out.signer;
+                    selectedCert = out.signer.certificate;
+                    selectedCertUri = null;
+                    tvSelectedCert.setText(out.signer.displayName() + " (resuelto automáticamente)");
+                    speculation.selectSigner(selectedCert, selectedSigner);
+                }
+                speculation.selectSignature(selectedContainer, selectedLegacySignature);
+                updateVerifyButtonState();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (!uri.equals(loadingSignatureUri)) return;
+                // Como firma en bruto se volverá a leer al verificar
+                selectedSignatureUri = uri;
+                updateVerifyButtonState();
+                tvSummary.setText("Error al leer el fichero de firma: " + e.getMessage());
+            }
+        });
+    }
+
+    // Guarda el .bin convertido en el destino elegido, fuera del hilo principal
+    private void saveContainer(SignatureContainer container, Uri target) {
+        CryptoExecutor.getInstance().submit(this, ctx -> {
+            try (OutputStream os = getContentResolver().openOutputStream(target)) {
+                if (os == null) {
+                    throw new IOException("No se pudo abrir el destino");
+                }
+                container.writeTo(os);
+            }
+            return target;
+        }, new CryptoExecutor.Callback<Uri>() {
+            @Override
+            public void onSuccess(Uri saved) {
+                tvSummary.append("\n✔ Firma convertida a contenedor " + SignatureContainer.FILE_EXTENSION + ".");
+            }
+
+            @Override
+            public void onError(Exception e) {
+                tvSummary.append("\nError al guardar el contenedor: " + e.getMessage());
+            }
+        });
     }
 
     private void setupButtons() {
         btnSelectCert.setOnClickListener(v -> {
-            Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
-            intent.addCategory(Intent.CATEGORY_OPENABLE);
-            intent.setType("*/*");
-            pickCertLauncher.launch(intent);
+            if (certManager.getSignerDirectory().isEmpty()) {
+                launchPickCertFile();
+            } else {
+                showSignerDirectoryDialog();
+            }
         });
 
         btnSelectDocument.setOnClickListener(v -> {
@@ -177,10 +344,49 @@ public class VerifySignatureActivity extends AppCompatActivity {
         btnVerify.setOnClickListener(v -> performVerification());
 
         btnResetVerification.setOnClickListener(v -> resetVerificationState());
+
+        btnVerifyFolder.setOnClickListener(v ->
+                pickFolderLauncher.launch(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE)));
+    }
+
+    private void launchPickCertFile() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        pickCertLauncher.launch(intent);
+    }
+
+    // Firmantes ya conocidos: se eligen sin volver a leer ni parsear el certificado
+    private void showSignerDirectoryDialog() {
+        List<SignerDirectory.Entry> signers = certManager.getSignerDirectory().list();
+        String[] items = new String[signers.size() + 1];
+        for (int i = 0; i < signers.size(); i++) {
+            items[i] = signers.get(i).displayName();
+        }
+        items[signers.size()] = "Seleccionar fichero…";
+
+        new AlertDialog.Builder(this)
+                .setTitle("Certificado del firmante")
+                .setItems(items, (dialog, which) -> {
+                    if (which == signers.size()) {
+                        launchPickCertFile();
+                        return;
+                    }
+                    selectedSigner = signers.get(which);
+                    selectedCert = selectedSigner.certificate;
+                    selectedCertUri = null;
+                    tvSelectedCert.setText(selectedSigner.displayName());
+                    speculation.selectSigner(selectedCert, selectedSigner);
+
+                    btnResetVerification.setVisibility(View.GONE);
+                    tvDetails.setText("");
+                    updateVerifyButtonState();
+                })
+                .show();
     }
 
     private void updateVerifyButtonState() {
-        boolean enabled = (selectedCert != null
+        boolean enabled = ((selectedCert != null || selectedContainer != null)
                 && selectedDocumentUri != null
                 && selectedSignatureUri != null);
         btnVerify.setEnabled(enabled);
@@ -189,97 +395,355 @@ public class VerifySignatureActivity extends AppCompatActivity {
         updateStatusText();
     }
 
+    // Resultado de la parte pesada de la verificación (hilo de trabajo)
+    private static class VerifyOutcome {
+        String alg = "unknown";
+        boolean signatureOk;
+        String failureDetail = "La firma no coincide con el contenido del documento o el certificado proporcionado.";
+        byte[] legacySigBytes;
+        SignerDirectory.Entry signer;
+        PqcCertificateManager.CertValidationResult cv;
+    }
+
     private void performVerification() {
         // Medición E2E: desde click hasta resultado final en pantalla
-        final long t0 = SystemClock.elapsedRealtimeNanos();
+        final long t0 = System.nanoTime();
 
-        if (selectedCert == null || selectedDocumentUri == null || selectedSignatureUri == null) {
+        if (runningTask != null && !runningTask.isDone()) {
+            runningTask.cancel();
+            return;
+        }
+
+        if ((selectedCert == null && selectedContainer == null)
+                || selectedDocumentUri == null || selectedSignatureUri == null) {
             tvSummary.setText("Faltan datos para realizar la verificación.");
-            logBenchVerify("unknown", false, msSince(t0));
+            recordVerify(null, false, t0);
             return;
         }
 
         tvSummary.setText("Verificando firma...");
         tvDetails.setText("");
+        setBusy(true);
+        final Tracer.Span e2e = Tracer.beginAsync("ui.verify");
+
+        final SignatureContainer container = selectedContainer;
+        final X509Certificate cert = selectedCert;
+        final SignerDirectory.Entry signer = selectedSigner;
+        final Uri documentUri = selectedDocumentUri;
+        final Uri signatureUri = selectedSignatureUri;
+        final byte[] legacySignature = selectedLegacySignature;
+
+        runningTask = CryptoExecutor.getInstance().submit(this, ctx -> {
+            try (Tracer.Span task = Tracer.begin("verify.task")) {
+                VerifyOutcome out = new VerifyOutcome();
+                byte[] rawSignature = null;
+                if (container == null) {
+                    // Firma en bruto (.bin): normalmente ya leída al seleccionarla
+                    rawSignature = legacySignature;
+                    if (rawSignature == null) {
+                        try (Tracer.Span read = Tracer.begin("io.readSignature")) {
+                            rawSignature = readAllBytesFromUri(signatureUri);
+                        }
+                    }
+                }
 
-        boolean success = false;
-        String alg = "unknown";
-
-        try {
-            // 1) Leemos documento y firma
-            byte[] docBytes = readAllBytesFromUri(selectedDocumentUri);
-            byte[] sigBytes = readAllBytesFromUri(selectedSignatureUri);
-
-            // 2) Verificación criptográfica
-            alg = safeAlgFromCert(selectedCert);
-            boolean signatureOk = certManager.verifyDataWithCertificate(
-                    selectedCert,
-                    docBytes,
-                    sigBytes
-            );
-
-            if (!signatureOk) {
-                tvSummary.setText("❌ La firma NO es válida.");
-                tvDetails.setText("La firma no coincide con el contenido del documento o el certificado proporcionado.");
-                btnResetVerification.setVisibility(View.VISIBLE);
+                // 1-2) Firmante, lectura del documento y verificación PQC. Si la selección no ha
+                // cambiado desde que se completó, esto ya está hecho (o en curso) en segundo plano.
+                // Un contenedor se descarta antes de la verificación PQC si la longitud o el
+                // resumen no coinciden
+                SpeculativeVerifier.Result res = speculation.verify(cert, signer, container,
+                        rawSignature, documentUri, ctx);
+                out.signatureOk = res.valid;
+                out.signer = res.signer;
+                if (container != null) {
+                    out.alg = container.algorithm;
+                    out.failureDetail = describeContainerFailure(res.status);
+                } else {
+                    out.legacySigBytes = rawSignature;
+                    out.alg = safeAlgFromCert(out.signer.certificate);
+                }
 
-                logBenchVerify(alg, false, msSince(t0));
-                return;
+                // 3) Validaciones básicas del certificado (sin CA)
+                if (out.signatureOk) {
+                    // Firma válida: ahora sí se recuerda el firmante (no hace nada si ya estaba)
+                    try {
+                        certManager.getSignerDirectory().ingest(out.signer.certificate);
+                    } catch (Exception e) {
+                        Log.w("VerifySignatureActivity", "No se pudo añadir el certificado al directorio de firmantes: " + e.getMessage());
+                    }
+                    try (Tracer.Span validate = Tracer.begin("cert.validate")) {
+                        out.cv = certManager.validateCertificate(out.signer.certificate, null);
+                    }
+                }
+                return out;
+            }
+        }, new CryptoExecutor.Callback<VerifyOutcome>() {
+            @Override
+            public void onSuccess(VerifyOutcome out) {
+                setBusy(false);
+                try (Tracer.Span render = Tracer.begin("ui.render")) {
+                    showVerificationOutcome(out, t0);
+                }
+                e2e.close();
             }
 
-            // 3) Validaciones básicas del certificado (sin CA)
-            PqcCertificateManager.CertValidationResult cv =
-                    certManager.validateCertificate(selectedCert, null);
-
-            // Construimos resumen final (sin CA)
-            StringBuilder summary = new StringBuilder();
-            summary.append("✅ La firma es VÁLIDA.\n");
+            @Override
+            public void onError(Exception e) {
+                setBusy(false);
+                if (e instanceof IOException) {
+                    tvSummary.setText("Error leyendo documento o firma: " + e.getMessage());
+                } else {
+                    tvSummary.setText("Error durante la verificación: " + e.getMessage());
+                }
+                recordVerify(container != null ? container.algorithm : safeAlgFromCert(cert), false, t0);
+                e2e.close();
+            }
 
-            // Vigencia temporal
-            if (!cv.timeValid) {
-                summary.append("❌ Certificado NO vigente (caducado o aún no válido).\n");
-            } else {
-                summary.append("✔ Certificado vigente.\n");
+            @Override
+            public void onProgress(long done, long total) {
+                if (total > 0) {
+                    tvSummary.setText("Verificando firma... " + (done * 100 / total) + " %");
+                }
             }
 
-            // End-entity
-            if (!cv.isEndEntity) {
-                summary.append("❌ Certificado no apto: es un certificado de CA.\n");
+            @Override
+            public void onCancelled() {
+                setBusy(false);
+                e2e.close();
+                tvSummary.setText("Verificación cancelada.");
             }
+        });
+    }
+
+    private void showVerificationOutcome(VerifyOutcome out, long t0) {
+        String alg = out.alg;
+        if (out.signer != null) {
+            selectedSigner = out.signer;
+            selectedCert = out.signer.certificate;
+        }
+
+        if (!out.signatureOk) {
+            tvSummary.setText("❌ La firma NO es válida.");
+            tvDetails.setText(out.failureDetail);
+            btnResetVerification.setVisibility(View.VISIBLE);
+
+            recordVerify(alg, false, t0);
+            return;
+        }
+
+        PqcCertificateManager.CertValidationResult cv = out.cv;
+
+        // Construimos resumen final (sin CA)
+        StringBuilder summary = new StringBuilder();
+        summary.append("✅ La firma es VÁLIDA.\n");
 
-            // KeyUsage estricto (si falta o es false, cv.keyUsageOk será false con tu cambio)
+        // Vigencia temporal
+        if (!cv.timeValid) {
+            summary.append("❌ Certificado NO vigente (caducado o aún no válido).\n");
+        } else {
+            summary.append("✔ Certificado vigente.\n");
+        }
+
+        // End-entity
+        if (!cv.isEndEntity) {
+            summary.append("❌ Certificado no apto: es un certificado de CA.\n");
+        }
+
+        // Revocación (CRL en caché)
+        if (cv.revoked) {
+            summary.append("❌ Certificado REVOCADO según la CRL del emisor.\n");
+        } else if (cv.revocationChecked) {
+            summary.append("✔ Certificado no revocado.\n");
+        }
+
+        // KeyUsage estricto (si falta o es false, cv.keyUsageOk será false con tu cambio)
+        if (!cv.keyUsageOk || cv.revoked) {
             if (!cv.keyUsageOk) {
                 summary.append("❌ Certificado no apto para firma electrónica.\n");
-                tvSummary.setText(summary.toString());
+            }
+            tvSummary.setText(summary.toString());
 
-                // Detalle técnico
-                tvDetails.setText("Detalles técnicos:\n\n" + cv.diagnostics);
-                btnResetVerification.setVisibility(View.VISIBLE);
+            // Detalle técnico
+            tvDetails.setText("Detalles técnicos:\n\n" + cv.diagnostics);
+            btnResetVerification.setVisibility(View.VISIBLE);
+
+            recordVerify(alg, false, t0);
+            return;
+        }
+
+        // Si pasa requisitos mínimos, ok final
+        tvSummary.setText(summary.toString());
+
+        // Detalles técnicos (útiles para tribunal; si quieres, puedes acortarlo)
+        tvDetails.setText("Detalles técnicos:\n\n" + cv.diagnostics);
+
+        btnResetVerification.setVisibility(View.VISIBLE);
+
+        recordVerify(alg, true, t0);
 
-                logBenchVerify(alg, false, msSince(t0));
-                return;
+        if (out.legacySigBytes != null) {
+            offerLegacyConversion(out.legacySigBytes);
+        }
+    }
+
+    // Mientras hay una tarea en curso solo se permite cancelarla
+    private void setBusy(boolean busy) {
+        btnVerify.setText(busy ? "Cancelar" : "Verificar firma");
+        btnSelectCert.setEnabled(!busy);
+        btnSelectDocument.setEnabled(!busy);
+        btnSelectSignature.setEnabled(!busy);
+        btnVerifyFolder.setEnabled(!busy);
+        if (busy) {
+            btnVerify.setEnabled(true);
+        } else {
+            runningTask = null;
+            btnVerify.setEnabled((selectedCert != null || selectedContainer != null)
+                    && selectedDocumentUri != null
+                    && selectedSignatureUri != null);
+        }
+    }
+
+    // -------------------------------
+    // Verificación por lotes
+    // -------------------------------
+
+    /**
+     * Verifica todas las firmas de la carpeta en un hilo de trabajo y guarda el informe JSONL
+     * en la propia carpeta. Las firmas .bin se verifican con el firmante seleccionado, si lo hay.
+     */
+    private static class BatchOutcome {
+        final BatchVerifier.Report report;
+        final String reportName;
+
+        BatchOutcome(BatchVerifier.Report report, String reportName) {
+            this.report = report;
+            this.reportName = reportName;
+        }
+    }
+
+    private void runBatchVerification(Uri treeUri) {
+        tvSummary.setText("Buscando firmas en la carpeta...");
+        tvDetails.setText("");
+        setBusy(true);
+
+        final SignerDirectory.Entry legacySigner = selectedSigner;
+        runningTask = CryptoExecutor.getInstance().submit(this, ctx -> {
+            List<DocumentSource> files = DocumentSource.listTree(this, treeUri);
+            List<BatchVerifier.Pair> pairs = BatchVerifier.pair(files, legacySigner != null);
+            if (pairs.isEmpty()) {
+                return null;
+            }
+            BatchVerifier verifier = new BatchVerifier(certManager,
+                    Runtime.getRuntime().availableProcessors(), legacySigner);
+            BatchVerifier.Report report = verifier.verifyAll(pairs,
+                    (r, done, total) -> ctx.reportProgress(done, total));
+            ctx.throwIfCancelled();
+            return new BatchOutcome(report, writeBatchReport(treeUri, report));
+        }, new CryptoExecutor.Callback<BatchOutcome>() {
+            @Override
+            public void onSuccess(BatchOutcome result) {
+                setBusy(false);
+                btnResetVerification.setVisibility(View.VISIBLE);
+                if (result == null) {
+                    tvSummary.setText("No se han encontrado ficheros de firma en la carpeta.");
+                    return;
+                }
+                BatchVerifier.Report report = result.report;
+                tvSummary.setText(String.format(Locale.getDefault(),
+                        "Lote verificado: %d firmas, %d válidas, %d con errores.",
+                        report.items.size(), report.valid, report.failed));
+                tvDetails.setText(String.format(Locale.getDefault(),
+                        "Tiempo total: %.1f s (%.1f documentos/s)\nInforme: %s",
+                        report.wallMs / 1000.0, report.documentsPerSecond(), result.reportName));
             }
 
-            // Si pasa requisitos mínimos, ok final
-            tvSummary.setText(summary.toString());
+            @Override
+            public void onError(Exception e) {
+                setBusy(false);
+                tvSummary.setText("Error en la verificación por lotes: " + e.getMessage());
+            }
 
-            // Detalles técnicos (útiles para tribunal; si quieres, puedes acortarlo)
-            tvDetails.setText("Detalles técnicos:\n\n" + cv.diagnostics);
+            @Override
+            public void onProgress(long done, long total) {
+                tvSummary.setText("Verificando lote: " + done + " / " + total);
+            }
 
-            btnResetVerification.setVisibility(View.VISIBLE);
-            success = true;
+            @Override
+            public void onCancelled() {
+                setBusy(false);
+                tvSummary.setText("Verificación por lotes cancelada.");
+            }
+        });
+    }
 
-            logBenchVerify(alg, true, msSince(t0));
+    private String writeBatchReport(Uri treeUri, BatchVerifier.Report report) throws Exception {
+        String name = "informe_verificacion_"
+                + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".jsonl";
+        Uri dirUri = DocumentsContract.buildDocumentUriUsingTree(treeUri,
+                DocumentsContract.getTreeDocumentId(treeUri));
+        Uri reportUri = DocumentsContract.createDocument(getContentResolver(), dirUri,
+                "application/octet-stream", name);
+        if (reportUri == null) {
+            throw new IOException("No se pudo crear el informe en la carpeta");
+        }
+        try (OutputStream os = getContentResolver().openOutputStream(reportUri)) {
+            if (os == null) {
+                throw new IOException("No se pudo abrir el informe para escritura");
+            }
+            report.writeJsonl(os);
+        }
+        return name;
+    }
 
-        } catch (IOException e) {
-            tvSummary.setText("Error leyendo documento o firma: " + e.getMessage());
-            logBenchVerify(alg, false, msSince(t0));
-        } catch (Exception e) {
-            tvSummary.setText("Error durante la verificación: " + e.getMessage());
-            logBenchVerify(alg, false, msSince(t0));
+    private static String describeContainerFailure(PqcCertificateManager.ContainerVerification.Status status) {
+        switch (status) {
+            case UNKNOWN_SIGNER:
+                return "El firmante del contenedor no está en el directorio local. Selecciona su certificado.";
+            case ALGORITHM_MISMATCH:
+                return "El algoritmo del contenedor no coincide con el del certificado del firmante.";
+            case LENGTH_MISMATCH:
+                return "El documento no tiene la longitud del documento firmado.";
+            case DIGEST_MISMATCH:
+                return "El documento no coincide con el resumen del documento firmado.";
+            default:
+                return "La firma no coincide con el contenido del documento.";
         }
     }
 
+    // Firma .bin válida: se ofrece guardarla como contenedor autodescriptivo
+    private void offerLegacyConversion(byte[] rawSignature) {
+        final X509Certificate cert = selectedCert;
+        final Uri docUri = selectedDocumentUri;
+        new AlertDialog.Builder(this)
+                .setTitle("Convertir firma")
+                .setMessage("La firma está en formato antiguo (.bin). ¿Guardarla como contenedor "
+                        + SignatureContainer.FILE_EXTENSION + "? No será necesario seleccionar el certificado al verificarla.")
+                .setPositiveButton("Convertir", (d, w) -> CryptoExecutor.getInstance().submit(this,
+                        ctx -> certManager.convertLegacySignature(rawSignature, cert, docUri),
+                        new CryptoExecutor.Callback<SignatureContainer>() {
+                            @Override
+                            public void onSuccess(SignatureContainer container) {
+                                pendingConvertedContainer = container;
+                                String name = tvSelectedSignature.getText().toString();
+                                int dot = name.lastIndexOf('.');
+                                if (dot > 0) name = name.substring(0, dot);
+
+                                Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                                intent.setType("application/octet-stream");
+                                intent.putExtra(Intent.EXTRA_TITLE, name + SignatureContainer.FILE_EXTENSION);
+                                saveContainerLauncher.launch(intent);
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                tvSummary.append("\nError al convertir la firma: " + e.getMessage());
+                            }
+                        }))
+                .setNegativeButton("No", null)
+                .show();
+    }
+
     private byte[] readAllBytesFromUri(Uri uri) throws IOException {
         try (InputStream is = getContentResolver().openInputStream(uri);
              BufferedInputStream bis = new BufferedInputStream(is)) {
@@ -322,7 +786,7 @@ public class VerifySignatureActivity extends AppCompatActivity {
             return;
         }
 
-        if (selectedCert == null) {
+        if (selectedCert == null && selectedContainer == null) {
             tvSummary.setText("Selecciona primero el certificado del firmante.");
             return;
         }
@@ -349,7 +813,15 @@ public class VerifySignatureActivity extends AppCompatActivity {
         selectedCertUri = null;
         selectedDocumentUri = null;
         selectedSignatureUri = null;
+        loadingSignatureUri = null;
         selectedCert = null;
+        selectedSigner = null;
+        selectedContainer = null;
+        selectedLegacySignature = null;
+        pendingConvertedContainer = null;
+        speculation.selectSigner(null, null);
+        speculation.selectSignature(null, null);
+        speculation.selectDocument(null);
 
         tvSelectedCert.setText("Ningún certificado seleccionado");
         tvSelectedDocument.setText("Ningún documento seleccionado");
@@ -366,9 +838,6 @@ public class VerifySignatureActivity extends AppCompatActivity {
     // -------------------------------
     // Helpers para mediciones de rendimiento
     // -------------------------------
-    private static double msSince(long startNanos) {
-        return (SystemClock.elapsedRealtimeNanos() - startNanos) / 1_000_000.0;
-    }
 
     private static String safeAlgFromCert(X509Certificate cert) {
         try {
@@ -381,12 +850,9 @@ public class VerifySignatureActivity extends AppCompatActivity {
     }
 
     /**
-     * Log para medición de tiempos
+     * Latencia de extremo a extremo (clic -> resultado en pantalla) en el registro de métricas
      */
-    private void logBenchVerify(String alg, boolean ok, double ms) {
-        android.util.Log.i("BENCH", "VERIFY_MS=" +
-                String.format(java.util.Locale.US, "%.3f", ms) +
-                " alg=" + alg +
-                " ok=" + ok);
+    private void recordVerify(String alg, boolean ok, long t0) {
+        MetricsRegistry.get().recordUi(MetricsRegistry.OP_VERIFY, alg, MetricsRegistry.BACKEND_BC, t0, ok);
     }
 }
@@ -0,0 +1,117 @@
+package com.example.minibaseapp.crypto;
+
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.metrics.Tracer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Resultado de verificar la firma de la raíz de un lote (ver {@link MerkleTree}).
+ *
+ * Todos los documentos de un lote comparten la misma firma sobre la misma raíz: la verificación
+ * PQC se hace una vez por (algoritmo, clave, raíz, firma) y el resto de documentos del lote solo
+ * pagan el resumen y la prueba de inclusión. Si varios hilos piden la misma raíz a la vez
+ * (verificación por lotes), esperan a la primera verificación en vez de repetirla.
+ */
+public final class BatchRootCache {
+
+    static final String CACHE_LOOKUPS = "minibase_batch_root_cache_lookups_total";
+
+    private static final int MAX_ENTRIES = 64;
+
+    private static final BatchRootCache INSTANCE = new BatchRootCache(MetricsRegistry.get(), PreparedVerifierCache.get());
+
+    private final MetricsRegistry metrics;
+    private final PreparedVerifierCache verifiers;
+    // LRU por orden de acceso
+    private final LinkedHashMap<String, FutureTask<Boolean>> results = new LinkedHashMap<>(16, 0.75f, true);
+
+    BatchRootCache(MetricsRegistry metrics, PreparedVerifierCache verifiers) {
+        this.metrics = metrics;
+        this.verifiers = verifiers;
+    }
+
+    public static BatchRootCache get() {
+        return INSTANCE;
+    }
+
+    /** Verifica la firma de rootMessage, o devuelve el resultado ya conocido. */
+    public boolean verify(String algorithm, PublicKey publicKey, String provider,
+                          byte[] rootMessage, byte[] signature) throws Exception {
+        String key = key(algorithm, publicKey, rootMessage, signature);
+        FutureTask<Boolean> task;
+        boolean owner = false;
+        synchronized (results) {
+            task = results.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> {
+                    try (Tracer.Span pqc = Tracer.begin("pqc.verifyRoot").arg("alg", algorithm);
+                         PreparedVerifierCache.Lease sig = verifiers.acquire(algorithm, publicKey, provider,
+                                 SigningContext.BATCH_ROOT)) {
+                        sig.update(rootMessage);
+                        return sig.verify(signature);
+                    }
+                });
+                results.put(key, task);
+                owner = true;
+                if (results.size() > MAX_ENTRIES) {
+                    Iterator<Map.Entry<String, FutureTask<Boolean>>> it = results.entrySet().iterator();
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+        metrics.counter(CACHE_LOOKUPS, "alg", algorithm, "result", owner ? "miss" : "hit").increment();
+        if (owner) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            // Un error no es un resultado: el siguiente lo vuelve a intentar
+            synchronized (results) {
+                results.remove(key, task);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    /** Solo para pruebas. */
+    int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    private static String key(String algorithm, PublicKey publicKey, byte[] rootMessage, byte[] signature)
+            throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        for (byte[] part : new byte[][]{algorithm.getBytes(StandardCharsets.UTF_8), publicKey.getEncoded(),
+                rootMessage, signature}) {
+            md.update(ByteBuffer.allocate(4).putInt(part.length).array());
+            md.update(part);
+        }
+        byte[] h = md.digest();
+        StringBuilder sb = new StringBuilder(h.length * 2);
+        for (byte b : h) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
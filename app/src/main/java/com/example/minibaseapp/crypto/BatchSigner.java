@@ -0,0 +1,832 @@
+package com.example.minibaseapp.crypto;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.minibaseapp.metrics.AllocationMeter;
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.metrics.TimedInputStream;
+import com.example.minibaseapp.metrics.Tracer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sesión de firma con un alias desbloqueado una sola vez.
+ *
+ * La clave privada se descifra del almacén al abrir la sesión y se reutiliza para todos los
+ * documentos hasta {@link #close()}. Los lotes se firman en paralelo: cada hilo de trabajo tiene
+ * su propia instancia de Signature/MessageDigest y lee su documento en streaming, de modo que la
+ * E/S de unos documentos se solapa con la firma de otros. En el modo Merkle
+ * ({@link #signAllMerkle}) el lote entero lleva una sola firma PQC.
+ */
+public class BatchSigner implements AutoCloseable {
+
+    private static final String TAG = "BatchSigner";
+    private static final String KEYSTORE_PROVIDER = "BC";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /** Destino de los contenedores generados. */
+    public interface Output {
+        /** Abre "name" para escribir; el destino puede guardarlo con otro nombre. */
+        Target create(String name) throws IOException;
+    }
+
+    /** Contenedor abierto en un {@link Output}, con el nombre que ha quedado realmente. */
+    public static final class Target implements Closeable {
+        public final String name;
+        public final OutputStream stream;
+        @Nullable public final String uri;     // documento creado, si el destino lo conoce
+
+        public Target(String name, OutputStream stream) {
+            this(name, stream, null);
+        }
+
+        public Target(String name, OutputStream stream, @Nullable String uri) {
+            this.name = name;
+            this.stream = stream;
+            this.uri = uri;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+
+    public interface ProgressListener {
+        /** Se invoca desde los hilos de trabajo. */
+        void onDocumentSigned(ItemResult result, int done, int total);
+    }
+
+    public static class ItemResult {
+        public final DocumentSource source;
+        public final String document;
+        @Nullable public final String output;    // nombre del .pqsig, null si ha fallado
+        public final long bytes;
+        public final double latencyMs;
+        @Nullable public final String error;
+
+        ItemResult(DocumentSource source, @Nullable String output, long bytes, double latencyMs, @Nullable String error) {
+            this.source = source;
+            this.document = source.name();
+            this.output = output;
+            this.bytes = bytes;
+            this.latencyMs = latencyMs;
+            this.error = error;
+        }
+
+        public boolean isOk() {
+            return error == null;
+        }
+    }
+
+    public static class Report {
+        public final List<ItemResult> items;
+        public final int signed;
+        public final long totalBytes;
+        public final double wallMs;
+
+        Report(List<ItemResult> items, double wallMs) {
+            this.items = items;
+            int ok = 0;
+            long bytes = 0;
+            for (ItemResult r : items) {
+                if (r.isOk()) {
+                    ok++;
+                    bytes += r.bytes;
+                }
+            }
+            this.signed = ok;
+            this.totalBytes = bytes;
+            this.wallMs = wallMs;
+        }
+
+        public double documentsPerSecond() {
+            return wallMs > 0 ? items.size() * 1000.0 / wallMs : 0;
+        }
+    }
+
+    private final String alias;
+    private final String algorithm;
+    private final byte[] signerFingerprint;
+    private volatile PrivateKey privateKey;
+    // Signatures ya inicializadas con la clave para sign(InputStream): initSign se hace una vez
+    // por instancia y no por documento (tras sign() la instancia queda lista para el siguiente)
+    private final ConcurrentLinkedQueue<Signature> idleSigners = new ConcurrentLinkedQueue<>();
+    // Las de raíces de lote y resúmenes en árbol llevan su contexto ({@link SigningContext}) y no
+    // se mezclan con las de documentos
+    private final ConcurrentLinkedQueue<Signature> idleRootSigners = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Signature> idlePrehashSigners = new ConcurrentLinkedQueue<>();
+
+    // Las pruebas lo crean con una clave en memoria, sin almacén
+    BatchSigner(String alias, PqcCertificateManager.KeyAndCert kc) throws Exception {
+        this.alias = alias;
+        this.privateKey = kc.privateKey;
+        this.algorithm = kc.privateKey.getAlgorithm();
+        this.signerFingerprint = SignerDirectory.fingerprint(kc.certificate);
+    }
+
+    /** Descifra la clave del alias (una sola vez) y abre la sesión. */
+    public static BatchSigner open(PqcCertificateManager certManager, String alias,
+                                   char[] keystorePassword) throws Exception {
+        return new BatchSigner(alias, certManager.getKeyAndCertificate(alias, keystorePassword));
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    // -------------------------
+    // Firma
+    // -------------------------
+
+    /** Firma un documento en streaming y devuelve el contenedor. */
+    public SignatureContainer sign(InputStream document) throws Exception {
+        Signature sig = idleSigners.poll();
+        if (sig == null) {
+            sig = newSigner();
+        }
+        MessageDigest md = SignatureContainer.newDigest(SignatureContainer.DIGEST_SHA256);
+        SignatureContainer container = sign(sig, md, new byte[STREAM_BUFFER_SIZE], document);
+        // Solo vuelve si ha firmado: una firma a medias arrastraría datos al siguiente documento
+        if (privateKey != null) {
+            idleSigners.offer(sig);
+        }
+        return container;
+    }
+
+    /**
+     * Firma en modo pre-hash: el documento ya está resumido con {@link TreeHash} y se firma
+     * {@link TreeHash#signedMessage}, no el documento.
+     */
+    public SignatureContainer signPrehashed(TreeHash treeHash) throws Exception {
+        final long t0 = System.nanoTime();
+        boolean failed = false;
+        try (Tracer.Span pqc = Tracer.begin("pqc.sign").arg("alg", algorithm).arg("prehash", true)) {
+            Signature sig = idlePrehashSigners.poll();
+            if (sig == null) {
+                sig = newSigner(SigningContext.TREE_HASH);
+            }
+            sig.update(TreeHash.signedMessage(treeHash.length, treeHash.digest));
+            SignatureContainer container = new SignatureContainer(algorithm, signerFingerprint, treeHash.length,
+                    SignatureContainer.DIGEST_TREE_SHA256, treeHash.digest, sig.sign());
+            if (privateKey != null) {
+                idlePrehashSigners.offer(sig);
+            }
+            return container;
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            MetricsRegistry.get().recordCrypto(MetricsRegistry.OP_SIGN, algorithm, MetricsRegistry.BACKEND_BC,
+                    t0, !failed);
+        }
+    }
+
+    /**
+     * Deja una instancia de firma ya inicializada con la clave, para que la primera firma no
+     * pague Signature.getInstance ni initSign.
+     */
+    public void prepare() throws Exception {
+        if (idleSigners.isEmpty()) {
+            idleSigners.offer(newSigner());
+        }
+    }
+
+    /**
+     * Firma incremental: el documento se entrega por partes (por ejemplo mientras el usuario
+     * aún no ha pulsado "Firmar") y la firma se calcula en {@link Pending#finish}.
+     */
+    public Pending begin() throws Exception {
+        Signature sig = idleSigners.poll();
+        if (sig == null) {
+            sig = newSigner();
+        }
+        return new Pending(sig, SignatureContainer.newDigest(SignatureContainer.DIGEST_SHA256));
+    }
+
+    /**
+     * Firma con el documento ya absorbido a falta del paso final. Cerrar si no se termina.
+     *
+     * El resumen del contenedor se calcula sobre los mismos bytes que recibe la firma: un resumen
+     * obtenido en otra lectura podría ser de otro contenido si el documento cambió entre medias.
+     */
+    public final class Pending implements AutoCloseable {
+        private Signature signature;
+        private final MessageDigest digest;
+        @Nullable private byte[] documentDigest;
+        private long length;
+
+        Pending(Signature signature, MessageDigest digest) {
+            this.signature = signature;
+            this.digest = digest;
+        }
+
+        public void update(byte[] data, int off, int len) throws Exception {
+            if (documentDigest != null) {
+                throw new IllegalStateException("El documento ya se ha cerrado");
+            }
+            signature.update(data, off, len);
+            digest.update(data, off, len);
+            length += len;
+        }
+
+        /** SHA-256 de lo entregado. Cierra el documento: no admite más update(). */
+        public byte[] documentDigest() {
+            if (documentDigest == null) {
+                documentDigest = digest.digest();
+            }
+            return documentDigest.clone();
+        }
+
+        /** Bytes del documento entregados hasta ahora. */
+        public long length() {
+            return length;
+        }
+
+        /** Calcula la firma y devuelve el contenedor. */
+        public SignatureContainer finish() throws Exception {
+            Signature sig = signature;
+            if (sig == null) {
+                throw new IllegalStateException("La firma ya se ha terminado o descartado");
+            }
+            signature = null;
+            final long t0 = System.nanoTime();
+            final long a0 = AllocationMeter.allocatedBytes();
+            boolean failed = false;
+            try (Tracer.Span pqc = Tracer.begin("pqc.sign").arg("alg", algorithm)) {
+                SignatureContainer container = new SignatureContainer(algorithm, signerFingerprint, length,
+                        SignatureContainer.DIGEST_SHA256, documentDigest(), sig.sign());
+                if (privateKey != null) {
+                    idleSigners.offer(sig);
+                }
+                return container;
+            } catch (Exception e) {
+                failed = true;
+                throw e;
+            } finally {
+                // Solo el trabajo que quedaba: el documento ya se leyó antes
+                MetricsRegistry metrics = MetricsRegistry.get();
+                metrics.recordCrypto(MetricsRegistry.OP_SIGN, algorithm, MetricsRegistry.BACKEND_BC, t0, !failed);
+                if (!failed) {
+                    metrics.recordAllocation(MetricsRegistry.OP_SIGN, algorithm, MetricsRegistry.BACKEND_BC,
+                            length, AllocationMeter.allocatedSince(a0));
+                }
+            }
+        }
+
+        /** Descarta la firma a medias (la instancia tiene datos del documento y no se reutiliza). */
+        @Override
+        public void close() {
+            signature = null;
+        }
+    }
+
+    private Signature newSigner() throws Exception {
+        return newSigner(null);
+    }
+
+    private Signature newSigner(@Nullable byte[] context) throws Exception {
+        PrivateKey key = privateKey;
+        if (key == null) {
+            throw new IllegalStateException("La sesión de firma está cerrada");
+        }
+        Signature sig = Signature.getInstance(algorithm, KEYSTORE_PROVIDER);
+        sig.initSign(key);
+        SigningContext.apply(sig, algorithm, context);
+        return sig;
+    }
+
+    private SignatureContainer sign(Signature sig, MessageDigest md, byte[] buf, InputStream document) throws Exception {
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        long docBytes = -1;
+        boolean failed = false;
+        try (Tracer.Span span = Tracer.begin("sign.container").arg("alg", algorithm)) {
+            long length = 0;
+            int n;
+            try (Tracer.Span stream = Tracer.begin("sign.stream")) {
+                TimedInputStream in = new TimedInputStream(document);
+                while ((n = in.read(buf)) != -1) {
+                    sig.update(buf, 0, n);
+                    md.update(buf, 0, n);
+                    length += n;
+                }
+                stream.arg("bytes", length).arg("read_ms", in.readMillis());
+                docBytes = length;
+            }
+            byte[] signature;
+            try (Tracer.Span pqc = Tracer.begin("pqc.sign")) {
+                signature = sig.sign();
+            }
+            return new SignatureContainer(algorithm, signerFingerprint, length,
+                    SignatureContainer.DIGEST_SHA256, md.digest(), signature);
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            MetricsRegistry metrics = MetricsRegistry.get();
+            metrics.recordCrypto(MetricsRegistry.OP_SIGN, algorithm, MetricsRegistry.BACKEND_BC, t0, !failed);
+            if (!failed) {
+                metrics.recordAllocation(MetricsRegistry.OP_SIGN, algorithm, MetricsRegistry.BACKEND_BC,
+                        docBytes, AllocationMeter.allocatedSince(a0));
+            }
+        }
+    }
+
+    /**
+     * Firma todos los documentos y escribe "&lt;documento&gt;.pqsig" en el destino (con
+     * {@link #outputNamesFor} si hay nombres repetidos). Bloquea hasta terminar: llamar desde un
+     * hilo de trabajo.
+     */
+    public Report signAll(List<DocumentSource> documents, Output output, int parallelism,
+                          @Nullable ProgressListener listener) throws InterruptedException {
+        return signAll(documents, outputNamesFor(names(documents)), output, parallelism, listener);
+    }
+
+    /** Como {@link #signAll(List, Output, int, ProgressListener)} con los nombres de salida ya elegidos. */
+    public Report signAll(List<DocumentSource> documents, List<String> outputNames, Output output,
+                          int parallelism, @Nullable ProgressListener listener) throws InterruptedException {
+        final int total = documents.size();
+        final int threads = Math.max(1, Math.min(parallelism, total));
+        final long t0 = System.nanoTime();
+
+        // Estado por hilo: Signature ya inicializada con la clave, resumen y buffer
+        final ThreadLocal<Worker> workers = new ThreadLocal<>();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 2),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        ExecutorCompletionService<ItemResult> ecs = new ExecutorCompletionService<>(pool);
+        final AtomicInteger done = new AtomicInteger();
+
+        List<ItemResult> results = new ArrayList<>(total);
+        try {
+            for (int i = 0; i < total; i++) {
+                final DocumentSource doc = documents.get(i);
+                final String outName = outputNames.get(i);
+                ecs.submit(() -> {
+                    ItemResult r = signOne(workers, doc, outName, output);
+                    int n = done.incrementAndGet();
+                    if (listener != null) listener.onDocumentSigned(r, n, total);
+                    return r;
+                });
+            }
+            for (int i = 0; i < total; i++) {
+                try {
+                    results.add(ecs.take().get());
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Fallo inesperado en la firma por lotes", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Report report = new Report(results, (System.nanoTime() - t0) / 1_000_000.0);
+        Log.i(TAG, String.format(Locale.US, "Lote firmado: %d docs, %d ok, %.1f docs/s, alias=%s",
+                total, report.signed, report.documentsPerSecond(), alias));
+        return report;
+    }
+
+    /**
+     * Firma el lote con una sola firma PQC: se resumen todos los documentos en paralelo, se
+     * construye un {@link MerkleTree} sobre ellos y se firma su raíz. Cada "&lt;documento&gt;.pqsig"
+     * lleva la firma compartida y su prueba de inclusión, de modo que el coste por documento es
+     * el del resumen. Los documentos de {@link TreeHash#PREHASH_THRESHOLD} o más se resumen en
+     * árbol (digestAlg 2 en la hoja y en el contenedor). Bloquea hasta terminar: llamar desde un
+     * hilo de trabajo.
+     */
+    public Report signAllMerkle(List<DocumentSource> documents, Output output, int parallelism,
+                                @Nullable ProgressListener listener) throws InterruptedException {
+        return signAllMerkle(documents, outputNamesFor(names(documents)), output, parallelism, listener);
+    }
+
+    /** Como {@link #signAllMerkle(List, Output, int, ProgressListener)} con los nombres de salida ya elegidos. */
+    public Report signAllMerkle(List<DocumentSource> documents, List<String> outputNames, Output output,
+                                int parallelism, @Nullable ProgressListener listener) throws InterruptedException {
+        final int total = documents.size();
+        final int threads = Math.max(1, Math.min(parallelism, total));
+        final long t0 = System.nanoTime();
+
+        // Estado por hilo: resumen y buffer (aquí no hace falta Signature)
+        final ThreadLocal<Worker> workers = new ThreadLocal<>();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 2),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        final AtomicInteger done = new AtomicInteger();
+
+        List<ItemResult> results = new ArrayList<>(total);
+        try (Tracer.Span span = Tracer.begin("sign.merkle").arg("alg", algorithm).arg("documents", total)) {
+            // 1) Resumen de cada documento
+            ExecutorCompletionService<Digested> hashed = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < total; i++) {
+                final int index = i;
+                hashed.submit(() -> digestOne(workers, index, documents.get(index)));
+            }
+            Digested[] digests = new Digested[total];
+            for (int i = 0; i < total; i++) {
+                try {
+                    Digested d = hashed.take().get();
+                    digests[d.index] = d;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Fallo inesperado en la firma por lotes", e.getCause());
+                }
+            }
+
+            // Los que no se pudieron leer se notifican ya y quedan fuera del árbol
+            List<Digested> members = new ArrayList<>(total);
+            List<byte[]> leaves = new ArrayList<>(total);
+            for (Digested d : digests) {
+                if (d == null) continue;
+                if (d.error != null) {
+                    results.add(notify(listener, new ItemResult(d.source, null, 0, d.hashMs, d.error), done, total));
+                } else {
+                    members.add(d);
+                    leaves.add(MerkleTree.leafHash(d.length, d.digestAlgorithm, d.digest));
+                }
+            }
+            if (members.isEmpty()) {
+                return finish(results, t0, total);
+            }
+
+            // 2) Una sola firma sobre la raíz
+            final MerkleTree tree = new MerkleTree(leaves);
+            final byte[] signature;
+            try {
+                signature = signRoot(tree);
+            } catch (Exception e) {
+                Log.w(TAG, "No se pudo firmar la raíz del lote: " + e.getMessage());
+                String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                for (Digested d : members) {
+                    results.add(notify(listener, new ItemResult(d.source, null, 0, d.hashMs, error), done, total));
+                }
+                return finish(results, t0, total);
+            }
+
+            // 3) Un contenedor por documento con su prueba
+            ExecutorCompletionService<ItemResult> written = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < members.size(); i++) {
+                final Digested d = members.get(i);
+                final MerkleTree.Proof proof = tree.proof(i);
+                final String outName = outputNames.get(d.index);
+                written.submit(() -> notify(listener, writeMember(d, proof, signature, outName, output), done, total));
+            }
+            for (int i = 0; i < members.size(); i++) {
+                try {
+                    results.add(written.take().get());
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Fallo inesperado en la firma por lotes", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return finish(results, t0, total);
+    }
+
+    private Report finish(List<ItemResult> results, long t0, int total) {
+        Report report = new Report(results, (System.nanoTime() - t0) / 1_000_000.0);
+        Log.i(TAG, String.format(Locale.US, "Lote Merkle firmado: %d docs, %d ok, %.1f docs/s, alias=%s",
+                total, report.signed, report.documentsPerSecond(), alias));
+        return report;
+    }
+
+    private static ItemResult notify(@Nullable ProgressListener listener, ItemResult r, AtomicInteger done, int total) {
+        int n = done.incrementAndGet();
+        if (listener != null) listener.onDocumentSigned(r, n, total);
+        return r;
+    }
+
+    private static final class Digested {
+        final int index;
+        final DocumentSource source;
+        final long length;
+        final int digestAlgorithm;
+        @Nullable final byte[] digest;
+        final double hashMs;
+        @Nullable final String error;
+
+        Digested(int index, DocumentSource source, long length, int digestAlgorithm, @Nullable byte[] digest,
+                 double hashMs, @Nullable String error) {
+            this.index = index;
+            this.source = source;
+            this.length = length;
+            this.digestAlgorithm = digestAlgorithm;
+            this.digest = digest;
+            this.hashMs = hashMs;
+            this.error = error;
+        }
+    }
+
+    private static Digested digestOne(ThreadLocal<Worker> workers, int index, DocumentSource doc) {
+        final long t0 = System.nanoTime();
+        try {
+            if (TreeHash.appliesTo(doc.length())) {
+                // Documento grande: resumen en árbol con todos los núcleos, igual que en signOne
+                try (InputStream in = doc.open()) {
+                    TreeHash tree = TreeHash.compute(in, null, () -> Thread.currentThread().isInterrupted());
+                    return new Digested(index, doc, tree.length, SignatureContainer.DIGEST_TREE_SHA256,
+                            tree.digest, msSince(t0), null);
+                }
+            }
+            Worker w = workers.get();
+            if (w == null) {
+                w = new Worker(null, SignatureContainer.newDigest(SignatureContainer.DIGEST_SHA256));
+                workers.set(w);
+            }
+            long length = 0;
+            int n;
+            try (InputStream in = new BufferedInputStream(doc.open(), STREAM_BUFFER_SIZE)) {
+                while ((n = in.read(w.buffer)) != -1) {
+                    w.digest.update(w.buffer, 0, n);
+                    length += n;
+                }
+            } catch (Exception e) {
+                w.digest.reset();
+                throw e;
+            }
+            return new Digested(index, doc, length, SignatureContainer.DIGEST_SHA256, w.digest.digest(),
+                    msSince(t0), null);
+        } catch (Exception e) {
+            Log.w(TAG, "No se pudo leer " + doc.name() + ": " + e.getMessage());
+            return new Digested(index, doc, 0, SignatureContainer.DIGEST_SHA256, null, msSince(t0),
+                    e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    private byte[] signRoot(MerkleTree tree) throws Exception {
+        final long t0 = System.nanoTime();
+        boolean failed = false;
+        try (Tracer.Span pqc = Tracer.begin("pqc.sign").arg("alg", algorithm).arg("leaves", tree.leafCount())) {
+            Signature sig = idleRootSigners.poll();
+            if (sig == null) {
+                sig = newSigner(SigningContext.BATCH_ROOT);
+            }
+            sig.update(MerkleTree.rootMessage(tree.leafCount(), tree.root()));
+            byte[] signature = sig.sign();
+            if (privateKey != null) {
+                idleRootSigners.offer(sig);
+            }
+            return signature;
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            MetricsRegistry.get().recordCrypto(MetricsRegistry.OP_SIGN, algorithm, MetricsRegistry.BACKEND_BC,
+                    t0, !failed);
+        }
+    }
+
+    private ItemResult writeMember(Digested d, MerkleTree.Proof proof, byte[] signature, String outName,
+                                   Output output) {
+        final long t0 = System.nanoTime();
+        try {
+            SignatureContainer container = new SignatureContainer(algorithm, signerFingerprint, d.length,
+                    d.digestAlgorithm, d.digest, signature, proof);
+            String written;
+            try (Target target = output.create(outName)) {
+                container.writeTo(target.stream);
+                written = target.name;
+            }
+            return new ItemResult(d.source, written, d.length, d.hashMs + msSince(t0), null);
+        } catch (Exception e) {
+            Log.w(TAG, "No se pudo escribir " + outName + ": " + e.getMessage());
+            return new ItemResult(d.source, null, 0, d.hashMs + msSince(t0),
+                    e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    private static final class Worker {
+        @Nullable final Signature signature;   // null en el modo Merkle
+        final MessageDigest digest;
+        final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+
+        Worker(@Nullable Signature signature, MessageDigest digest) {
+            this.signature = signature;
+            this.digest = digest;
+        }
+    }
+
+    private ItemResult signOne(ThreadLocal<Worker> workers, DocumentSource doc, String outName, Output output) {
+        final long t0 = System.nanoTime();
+        String docName = doc.name();
+        try {
+            Worker w = workers.get();
+            if (w == null) {
+                w = new Worker(newSigner(), SignatureContainer.newDigest(SignatureContainer.DIGEST_SHA256));
+                workers.set(w);
+            }
+
+            SignatureContainer container;
+            if (TreeHash.appliesTo(doc.length())) {
+                // Documento grande: resumen en árbol con todos los núcleos
+                try (InputStream in = doc.open()) {
+                    container = signPrehashed(TreeHash.compute(in, null,
+                            () -> Thread.currentThread().isInterrupted()));
+                }
+            } else {
+                try (InputStream in = new BufferedInputStream(doc.open(), STREAM_BUFFER_SIZE)) {
+                    // sign() deja la Signature lista para el siguiente documento
+                    container = sign(w.signature, w.digest, w.buffer, in);
+                } catch (Exception e) {
+                    // Si falla a mitad de lectura la Signature y el resumen tienen datos a medias
+                    workers.remove();
+                    throw e;
+                }
+            }
+            String written;
+            try (Target target = output.create(outName)) {
+                container.writeTo(target.stream);
+                written = target.name;
+            }
+            return new ItemResult(doc, written, container.documentLength, msSince(t0), null);
+        } catch (Exception e) {
+            Log.w(TAG, "No se pudo firmar " + docName + ": " + e.getMessage());
+            return new ItemResult(doc, null, 0, msSince(t0),
+                    e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    /** "sub/informe.pdf" -> "informe.pdf.pqsig" (lo que espera la verificación por lotes). */
+    public static String outputNameFor(String documentName) {
+        int slash = documentName.lastIndexOf('/');
+        return documentName.substring(slash + 1) + SignatureContainer.FILE_EXTENSION;
+    }
+
+    /**
+     * Nombres de salida de un lote, sin repetidos: el primer documento de cada nombre se queda
+     * "informe.pdf.pqsig" y los siguientes "informe (2).pdf.pqsig", "informe (3).pdf.pqsig"...
+     * Solo depende del orden de la lista, así que al reanudar un lote salen los mismos nombres.
+     */
+    public static List<String> outputNamesFor(List<String> documentNames) {
+        Set<String> taken = new HashSet<>();
+        for (String name : documentNames) {
+            taken.add(outputNameFor(name));
+        }
+        Set<String> used = new HashSet<>();
+        List<String> out = new ArrayList<>(documentNames.size());
+        for (String name : documentNames) {
+            String candidate = outputNameFor(name);
+            if (!used.add(candidate)) {
+                // Repetido: el primer número libre que no sea el nombre de otro documento del lote
+                int k = 2;
+                do {
+                    candidate = outputNameFor(withCopyNumber(name, k++));
+                } while (taken.contains(candidate) || !used.add(candidate));
+            }
+            out.add(candidate);
+        }
+        return out;
+    }
+
+    // "sub/informe.pdf", 2 -> "informe (2).pdf"
+    private static String withCopyNumber(String documentName, int k) {
+        String file = documentName.substring(documentName.lastIndexOf('/') + 1);
+        int dot = file.lastIndexOf('.');
+        return dot > 0
+                ? file.substring(0, dot) + " (" + k + ")" + file.substring(dot)
+                : file + " (" + k + ")";
+    }
+
+    private static List<String> names(List<DocumentSource> documents) {
+        List<String> names = new ArrayList<>(documents.size());
+        for (DocumentSource doc : documents) {
+            names.add(doc.name());
+        }
+        return names;
+    }
+
+    // -------------------------
+    // Destinos
+    // -------------------------
+
+    /**
+     * Crea los contenedores en una carpeta SAF (Uri de ACTION_OPEN_DOCUMENT_TREE). Si ya hay un
+     * fichero con ese nombre (un lote que se reanuda) se sobrescribe en vez de crear otro: el
+     * proveedor le añadiría " (1)" y el lote quedaría con copias.
+     */
+    public static Output treeOutput(Context context, Uri treeUri) {
+        return new TreeOutput(context.getApplicationContext().getContentResolver(), treeUri);
+    }
+
+    private static final class TreeOutput implements Output {
+        private final ContentResolver resolver;
+        private final Uri treeUri;
+        private final Uri dirUri;
+        // Nombre -> documento de la carpeta; se lee una vez, en la primera creación
+        @Nullable private Map<String, Uri> existing;
+
+        TreeOutput(ContentResolver resolver, Uri treeUri) {
+            this.resolver = resolver;
+            this.treeUri = treeUri;
+            this.dirUri = DocumentsContract.buildDocumentUriUsingTree(treeUri,
+                    DocumentsContract.getTreeDocumentId(treeUri));
+        }
+
+        @Override
+        public Target create(String name) throws IOException {
+            Uri doc;
+            String actual = name;
+            String mode = "w";
+            synchronized (this) {
+                if (existing == null) {
+                    existing = listChildren();
+                }
+                doc = existing.get(name);
+                if (doc != null) {
+                    mode = "wt";
+                } else {
+                    doc = DocumentsContract.createDocument(resolver, dirUri, "application/octet-stream", name);
+                    if (doc == null) {
+                        throw new IOException("No se pudo crear " + name);
+                    }
+                    String shown = displayName(doc);
+                    if (shown != null) {
+                        actual = shown;
+                    }
+                    existing.put(name, doc);
+                }
+            }
+            OutputStream os = resolver.openOutputStream(doc, mode);
+            if (os == null) {
+                throw new IOException("No se pudo abrir " + actual);
+            }
+            return new Target(actual, os, doc.toString());
+        }
+
+        private Map<String, Uri> listChildren() {
+            Map<String, Uri> out = new HashMap<>();
+            Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri,
+                    DocumentsContract.getDocumentId(dirUri));
+            try (Cursor c = resolver.query(children, new String[]{
+                    DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                    DocumentsContract.Document.COLUMN_DISPLAY_NAME}, null, null, null)) {
+                while (c != null && c.moveToNext()) {
+                    out.put(c.getString(1), DocumentsContract.buildDocumentUriUsingTree(treeUri, c.getString(0)));
+                }
+            } catch (RuntimeException e) {
+                // Sin listado se crean todos: como mucho quedan copias con " (1)"
+                Log.w(TAG, "No se pudo listar la carpeta de salida: " + e.getMessage());
+            }
+            return out;
+        }
+
+        @Nullable
+        private String displayName(Uri doc) {
+            try (Cursor c = resolver.query(doc, new String[]{DocumentsContract.Document.COLUMN_DISPLAY_NAME},
+                    null, null, null)) {
+                return c != null && c.moveToFirst() ? c.getString(0) : null;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /** Suelta la referencia a la clave privada; la sesión deja de poder firmar. */
+    @Override
+    public void close() {
+        privateKey = null;
+        idleSigners.clear();
+        idleRootSigners.clear();
+        idlePrehashSigners.clear();
+    }
+
+    private static double msSince(long t0) {
+        return (System.nanoTime() - t0) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,403 @@
+package com.example.minibaseapp.crypto;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verificación por lotes de una carpeta de documentos firmados.
+ *
+ * Cada documento se empareja con su firma por nombre ("informe.pdf" con "informe.pdf.pqsig"
+ * o "informe.pqsig"; las firmas .bin antiguas solo si se indica un firmante por defecto) y se
+ * verifica en un pool acotado de hilos, leyendo el documento en streaming. El resultado es un
+ * informe JSONL con una línea por documento (veredicto y latencia) y una línea final de resumen.
+ */
+public class BatchVerifier {
+
+    private static final String TAG = "BatchVerifier";
+
+    private static final String LEGACY_EXTENSION = ".bin";
+    private static final int MAX_SIGNATURE_FILE_SIZE = 2 * 1024 * 1024;
+
+    // -------------------------
+    // Emparejado documento / firma
+    // -------------------------
+    public static class Pair {
+        @Nullable public final DocumentSource document;
+        public final DocumentSource signature;
+        // Documentos que encajan por igual con la firma; null si no hay ambigüedad
+        @Nullable public final List<String> candidates;
+
+        Pair(@Nullable DocumentSource document, DocumentSource signature) {
+            this(document, signature, null);
+        }
+
+        Pair(@Nullable DocumentSource document, DocumentSource signature, @Nullable List<String> candidates) {
+            this.document = document;
+            this.signature = signature;
+            this.candidates = candidates;
+        }
+    }
+
+    /**
+     * Empareja cada fichero de firma con su documento. Las firmas sin documento se devuelven
+     * con document == null para que aparezcan en el informe; si varios documentos encajan por
+     * igual ("doc.pdf" y "doc.txt" para "doc.pqsig") no se elige ninguno y se devuelven en
+     * {@link Pair#candidates}.
+     */
+    public static List<Pair> pair(List<DocumentSource> files, boolean includeLegacy) {
+        Map<String, List<DocumentSource>> byName = new HashMap<>();
+        Map<String, List<DocumentSource>> byStem = new HashMap<>();
+        List<DocumentSource> signatures = new ArrayList<>();
+        for (DocumentSource s : files) {
+            if (isSignatureName(s.name(), includeLegacy)) {
+                signatures.add(s);
+            } else {
+                add(byName, s.name(), s);
+                add(byStem, stripExtension(s.name()), s);
+            }
+        }
+
+        List<Pair> pairs = new ArrayList<>(signatures.size());
+        for (DocumentSource sig : signatures) {
+            String base = stripExtension(sig.name());
+            // "doc.pdf.pqsig" -> "doc.pdf"; si no, "doc.pqsig" -> "doc.<extensión>"
+            List<DocumentSource> docs = byName.get(base);
+            if (docs == null) docs = byStem.get(base);
+            if (docs == null) {
+                pairs.add(new Pair(null, sig));
+            } else if (docs.size() == 1) {
+                pairs.add(new Pair(docs.get(0), sig));
+            } else {
+                List<String> names = new ArrayList<>(docs.size());
+                for (DocumentSource d : docs) {
+                    names.add(d.name());
+                }
+                pairs.add(new Pair(null, sig, names));
+            }
+        }
+        return pairs;
+    }
+
+    private static void add(Map<String, List<DocumentSource>> index, String key, DocumentSource doc) {
+        List<DocumentSource> docs = index.get(key);
+        if (docs == null) {
+            docs = new ArrayList<>(1);
+            index.put(key, docs);
+        }
+        docs.add(doc);
+    }
+
+    private static boolean isSignatureName(String name, boolean includeLegacy) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(SignatureContainer.FILE_EXTENSION)
+                || (includeLegacy && lower.endsWith(LEGACY_EXTENSION));
+    }
+
+    private static String stripExtension(String name) {
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        return dot > slash + 1 ? name.substring(0, dot) : name;
+    }
+
+    // -------------------------
+    // Resultado por documento
+    // -------------------------
+    public enum Verdict {
+        VALID,
+        INVALID_SIGNATURE,
+        LENGTH_MISMATCH,
+        DIGEST_MISMATCH,
+        ALGORITHM_MISMATCH,
+        UNKNOWN_SIGNER,
+        CERTIFICATE_NOT_ACCEPTABLE, // firma correcta pero certificado caducado, revocado o no apto
+        MISSING_DOCUMENT,
+        AMBIGUOUS_DOCUMENT,         // varios documentos encajan con la firma
+        ERROR
+    }
+
+    public static class ItemResult {
+        public final String document;
+        public final String signature;
+        public final Verdict verdict;
+        @Nullable public final String signer;
+        public final long bytes;
+        public final double latencyMs;
+        @Nullable public final String error;
+
+        ItemResult(String document, String signature, Verdict verdict, @Nullable String signer,
+                   long bytes, double latencyMs, @Nullable String error) {
+            this.document = document;
+            this.signature = signature;
+            this.verdict = verdict;
+            this.signer = signer;
+            this.bytes = bytes;
+            this.latencyMs = latencyMs;
+            this.error = error;
+        }
+
+        String toJson() {
+            StringBuilder sb = new StringBuilder(160);
+            sb.append('{');
+            appendField(sb, "document", document).append(',');
+            appendField(sb, "signature", signature).append(',');
+            appendField(sb, "verdict", verdict.name()).append(',');
+            appendField(sb, "signer", signer).append(',');
+            sb.append("\"bytes\":").append(bytes).append(',');
+            sb.append("\"latency_ms\":").append(String.format(Locale.US, "%.3f", latencyMs));
+            if (error != null) {
+                sb.append(',');
+                appendField(sb, "error", error);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    public static class Report {
+        public final List<ItemResult> items;
+        public final int valid;
+        public final int failed;
+        public final double wallMs;
+
+        Report(List<ItemResult> items, double wallMs) {
+            this.items = items;
+            int ok = 0;
+            for (ItemResult r : items) {
+                if (r.verdict == Verdict.VALID) ok++;
+            }
+            this.valid = ok;
+            this.failed = items.size() - ok;
+            this.wallMs = wallMs;
+        }
+
+        public double documentsPerSecond() {
+            return wallMs > 0 ? items.size() * 1000.0 / wallMs : 0;
+        }
+
+        /** Escribe el informe en JSONL (una línea por documento y una línea final de resumen). */
+        public void writeJsonl(OutputStream os) throws IOException {
+            Writer w = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+            for (ItemResult r : items) {
+                w.write(r.toJson());
+                w.write('\n');
+            }
+            w.write(String.format(Locale.US,
+                    "{\"summary\":true,\"total\":%d,\"valid\":%d,\"failed\":%d,\"wall_ms\":%.3f,\"docs_per_s\":%.2f}\n",
+                    items.size(), valid, failed, wallMs, documentsPerSecond()));
+            w.flush();
+        }
+    }
+
+    public interface ProgressListener {
+        /** Se invoca desde los hilos de trabajo. */
+        void onItemVerified(ItemResult result, int done, int total);
+    }
+
+    // -------------------------
+    // Verificación
+    // -------------------------
+
+    private final PqcCertificateManager certManager;
+    private final int parallelism;
+    @Nullable private final SignerDirectory.Entry legacySigner;
+
+    // Validación del certificado cacheada por firmante: en un lote suelen repetirse
+    private final Map<String, PqcCertificateManager.CertValidationResult> certChecks = new ConcurrentHashMap<>();
+
+    /**
+     * @param legacySigner firmante a usar con las firmas .bin (que no lo identifican); null para
+     *                     ignorarlas
+     */
+    public BatchVerifier(PqcCertificateManager certManager, int parallelism,
+                         @Nullable SignerDirectory.Entry legacySigner) {
+        this.certManager = certManager;
+        this.parallelism = Math.max(1, parallelism);
+        this.legacySigner = legacySigner;
+    }
+
+    public BatchVerifier(PqcCertificateManager certManager) {
+        this(certManager, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Verifica todos los pares. Bloquea hasta terminar: llamar desde un hilo de trabajo.
+     */
+    public Report verifyAll(List<Pair> pairs, @Nullable ProgressListener listener) throws InterruptedException {
+        final int total = pairs.size();
+        final long t0 = System.nanoTime();
+
+        // Cola acotada + CallerRunsPolicy: si los hilos van por detrás, el productor ayuda
+        // en lugar de encolar miles de tareas (y sus buffers) a la vez
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(parallelism * 2),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        ExecutorCompletionService<ItemResult> ecs = new ExecutorCompletionService<>(pool);
+
+        final AtomicInteger done = new AtomicInteger();
+        List<ItemResult> results = new ArrayList<>(total);
+        // Para poner en el informe el par de una tarea que haya fallado
+        Map<Future<ItemResult>, Pair> submitted = new IdentityHashMap<>();
+        try {
+            for (final Pair p : pairs) {
+                submitted.put(ecs.submit(() -> {
+                    ItemResult r = verifyOne(p);
+                    int n = done.incrementAndGet();
+                    if (listener != null) listener.onItemVerified(r, n, total);
+                    return r;
+                }), p);
+            }
+            for (int i = 0; i < total; i++) {
+                Future<ItemResult> f = ecs.take();
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    // verifyOne no lanza (quizá el listener): el par sale como error, no se pierde
+                    Log.e(TAG, "Fallo inesperado en la verificación por lotes", e.getCause());
+                    results.add(failed(submitted.get(f), e.getCause()));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double wallMs = (System.nanoTime() - t0) / 1_000_000.0;
+        Report report = new Report(results, wallMs);
+        Log.i(TAG, String.format(Locale.US, "Lote verificado: %d docs, %d válidos, %.1f docs/s",
+                total, report.valid, report.documentsPerSecond()));
+        return report;
+    }
+
+    private static ItemResult failed(Pair p, Throwable cause) {
+        String error = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+        return new ItemResult(p.document != null ? p.document.name() : "", p.signature.name(), Verdict.ERROR,
+                null, 0, 0, error);
+    }
+
+    ItemResult verifyOne(Pair p) {
+        final long t0 = System.nanoTime();
+        String sigName = p.signature.name();
+        if (p.candidates != null) {
+            return new ItemResult("", sigName, Verdict.AMBIGUOUS_DOCUMENT, null, 0, msSince(t0),
+                    "Varios documentos posibles: " + String.join(", ", p.candidates));
+        }
+        if (p.document == null) {
+            return new ItemResult("", sigName, Verdict.MISSING_DOCUMENT, null, 0, msSince(t0), null);
+        }
+        String docName = p.document.name();
+        long docLength = p.document.length();
+
+        try {
+            byte[] sigBytes = readSmall(p.signature);
+            SignerDirectory.Entry signer;
+            Verdict verdict;
+
+            if (SignatureContainer.hasContainerHeader(sigBytes)) {
+                SignatureContainer container = SignatureContainer.readFrom(
+                        new ByteArrayInputStream(sigBytes));
+                PqcCertificateManager.ContainerVerification res;
+                try (InputStream in = new BufferedInputStream(p.document.open(), 64 * 1024)) {
+                    res = certManager.verifyContainer(container, in, docLength, null);
+                }
+                signer = res.signer;
+                verdict = Verdict.valueOf(res.status.name());
+                docLength = container.documentLength;
+            } else if (legacySigner != null) {
+                signer = legacySigner;
+                try (InputStream in = new BufferedInputStream(p.document.open(), 64 * 1024)) {
+                    verdict = certManager.verifyStreamWithSigner(legacySigner, in, sigBytes)
+                            ? Verdict.VALID : Verdict.INVALID_SIGNATURE;
+                }
+            } else {
+                return new ItemResult(docName, sigName, Verdict.UNKNOWN_SIGNER, null,
+                        docLength, msSince(t0), "Firma .bin sin firmante por defecto");
+            }
+
+            if (verdict == Verdict.VALID && signer != null && !isCertificateAcceptable(signer)) {
+                verdict = Verdict.CERTIFICATE_NOT_ACCEPTABLE;
+            }
+            return new ItemResult(docName, sigName, verdict,
+                    signer != null ? signer.displayName() : null, docLength, msSince(t0), null);
+
+        } catch (Exception e) {
+            return new ItemResult(docName, sigName, Verdict.ERROR, null, docLength, msSince(t0), e.getMessage());
+        }
+    }
+
+    private boolean isCertificateAcceptable(SignerDirectory.Entry signer) {
+        PqcCertificateManager.CertValidationResult cv = certChecks.get(signer.fingerprintHex);
+        if (cv == null) {
+            cv = certManager.validateCertificate(signer.certificate, null);
+            certChecks.put(signer.fingerprintHex, cv);
+        }
+        return cv.timeValid && cv.isEndEntity && cv.keyUsageOk && !cv.revoked;
+    }
+
+    private static byte[] readSmall(DocumentSource s) throws IOException {
+        try (InputStream in = s.open()) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(8 * 1024);
+            byte[] buf = new byte[8 * 1024];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                bos.write(buf, 0, n);
+                if (bos.size() > MAX_SIGNATURE_FILE_SIZE) {
+                    throw new IOException("Fichero de firma demasiado grande");
+                }
+            }
+            return bos.toByteArray();
+        }
+    }
+
+    private static double msSince(long t0) {
+        return (System.nanoTime() - t0) / 1_000_000.0;
+    }
+
+    private static StringBuilder appendField(StringBuilder sb, String key, @Nullable String value) {
+        sb.append('"').append(key).append("\":");
+        if (value == null) {
+            return sb.append("null");
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+}
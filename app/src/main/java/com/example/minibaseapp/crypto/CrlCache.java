@@ -0,0 +1,537 @@
+package com.example.minibaseapp.crypto;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.Extension;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.cert.CRLReason;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Caché local de CRLs para comprobar revocación sin conexión.
+ *
+ * Cada CRL se parsea una sola vez al ingerirla. De ella solo se guarda, por emisor, un índice
+ * compacto con las huellas de 64 bits de los números de serie revocados (array ordenado de long)
+ * con un filtro de Bloom delante. La consulta "¿está revocado este serial?" no vuelve a tocar
+ * el ASN.1 de la CRL: en el caso habitual (no revocado) la responde el filtro de Bloom en tiempo
+ * constante y solo los positivos bajan a la búsqueda binaria.
+ *
+ * El índice se persiste en el almacenamiento interno y se actualiza de forma incremental con
+ * delta CRLs (RFC 5280, 5.2.4).
+ */
+public class CrlCache {
+
+    private static final String TAG = "CrlCache";
+    private static final String INDEX_FILE_NAME = "crl_index.bin";
+    // Directorio que hace de punto de distribución local (sustituye a la descarga HTTP)
+    private static final String LOCAL_DP_DIR_NAME = "crl";
+
+    private static final int FILE_MAGIC = 0x50514352; // "PQCR"
+    private static final int FILE_VERSION = 1;
+    // Un fichero local que no se pudo ingerir no se reintenta hasta que cambie o pase este tiempo
+    private static final long FAILED_SOURCE_RETRY_MS = 6 * 60 * 60 * 1000L;
+
+    private static volatile CrlCache instance;
+
+    private final File indexFile;
+    private final File localDpDir;
+
+    // Índices inmutables por emisor; se reemplazan enteros al refrescar (lecturas sin bloqueo)
+    private final Map<String, IssuerIndex> indexByIssuer = new ConcurrentHashMap<>();
+    // Ficheros del punto de distribución local ya procesados: nombre -> "lastModified:length",
+    // o "lastModified:length|reintentoMs" si falló la ingesta
+    private final Map<String, String> seenLocalSources = new ConcurrentHashMap<>();
+
+    private CrlCache(Context context) {
+        File filesDir = context.getApplicationContext().getFilesDir();
+        this.indexFile = new File(filesDir, INDEX_FILE_NAME);
+        this.localDpDir = new File(filesDir, LOCAL_DP_DIR_NAME);
+        load();
+    }
+
+    public static CrlCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (CrlCache.class) {
+                if (instance == null) {
+                    instance = new CrlCache(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    // -------------------------
+    // Resultado de una consulta
+    // -------------------------
+    public static class RevocationStatus {
+        public final boolean checked;   // hay CRL del emisor en caché
+        public final boolean revoked;
+        public final boolean stale;     // la CRL ha superado su nextUpdate
+        public final BigInteger crlNumber;
+
+        RevocationStatus(boolean checked, boolean revoked, boolean stale, BigInteger crlNumber) {
+            this.checked = checked;
+            this.revoked = revoked;
+            this.stale = stale;
+            this.crlNumber = crlNumber;
+        }
+    }
+
+    private static final RevocationStatus NOT_CHECKED =
+            new RevocationStatus(false, false, false, null);
+
+    /**
+     * Consulta si el serial está revocado por el emisor indicado. No parsea ASN.1 ni hace E/S.
+     */
+    public RevocationStatus check(X500Principal issuer, BigInteger serial) {
+        IssuerIndex idx = indexByIssuer.get(issuerKey(issuer));
+        if (idx == null) {
+            return NOT_CHECKED;
+        }
+        boolean stale = idx.nextUpdate > 0 && System.currentTimeMillis() > idx.nextUpdate;
+        return new RevocationStatus(true, idx.contains(serialFingerprint(serial)), stale, idx.crlNumber);
+    }
+
+    public boolean hasCrlFor(X500Principal issuer) {
+        return indexByIssuer.containsKey(issuerKey(issuer));
+    }
+
+    public File getLocalDistributionPointDir() {
+        return localDpDir;
+    }
+
+    // -------------------------
+    // Ingesta
+    // -------------------------
+
+    /**
+     * Ingiere una CRL (DER o PEM) completa o delta. Si se pasan los certificados de CA de
+     * confianza, la CRL solo se acepta si la ha firmado una de ellas (evita que una CRL falsa
+     * con un número mayor "des-revoque" certificados).
+     *
+     * @return true si el índice ha cambiado
+     */
+    public synchronized boolean ingest(InputStream in,
+                                       @Nullable Collection<X509Certificate> trustedIssuers) throws Exception {
+        CertificateFactory cf = CertificateFactory.getInstance("X.509", "BC");
+        X509CRL crl = (X509CRL) cf.generateCRL(new BufferedInputStream(in));
+        if (crl == null) {
+            throw new Exception("El fichero no contiene una CRL válida");
+        }
+
+        if (trustedIssuers != null) {
+            X509Certificate issuerCert = null;
+            for (X509Certificate ca : trustedIssuers) {
+                if (crl.getIssuerX500Principal().equals(ca.getSubjectX500Principal())) {
+                    issuerCert = ca;
+                    break;
+                }
+            }
+            if (issuerCert == null) {
+                throw new Exception("La CRL no ha sido emitida por ninguna CA del almacén");
+            }
+            crl.verify(issuerCert.getPublicKey());
+        }
+
+        boolean changed = apply(crl);
+        if (changed) {
+            persist();
+        }
+        return changed;
+    }
+
+    public boolean ingestFile(File file, @Nullable Collection<X509Certificate> trustedIssuers) throws Exception {
+        try (InputStream in = new FileInputStream(file)) {
+            return ingest(in, trustedIssuers);
+        }
+    }
+
+    /** true si el punto de distribución local tiene ficheros nuevos o modificados. */
+    public boolean hasPendingLocalSources() {
+        File[] files = localDpDir.listFiles();
+        if (files == null) return false;
+        long now = System.currentTimeMillis();
+        for (File f : files) {
+            if (f.isFile() && isPendingSource(seenLocalSources.get(f.getName()), stampOf(f), now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stampOf(File f) {
+        return f.lastModified() + ":" + f.length();
+    }
+
+    /**
+     * Si hay que procesar un fichero local con la marca {@code stamp}, dado lo recordado de él
+     * ({@code seen}, null si nunca se vio).
+     */
+    static boolean isPendingSource(@Nullable String seen, String stamp, long now) {
+        if (seen == null) return true;
+        int bar = seen.indexOf('|');
+        if (bar < 0) return !seen.equals(stamp);
+        if (!seen.substring(0, bar).equals(stamp)) return true;
+        try {
+            return now >= Long.parseLong(seen.substring(bar + 1));
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    static String failedSourceStamp(String stamp, long now) {
+        return stamp + "|" + (now + FAILED_SOURCE_RETRY_MS);
+    }
+
+    /**
+     * Recorre el punto de distribución local e ingiere solo los ficheros nuevos o modificados
+     * desde la última pasada. Las CRLs completas se procesan antes que las delta.
+     *
+     * @return número de CRLs que han modificado el índice
+     */
+    public synchronized int refreshFromLocalDistributionPoint(
+            @Nullable Collection<X509Certificate> trustedIssuers) {
+        File[] files = localDpDir.listFiles();
+        if (files == null || files.length == 0) {
+            return 0;
+        }
+
+        // Primero bases y luego deltas; dentro de cada grupo, por orden de modificación
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+
+        int updated = 0;
+        int processed = 0;
+        long now = System.currentTimeMillis();
+        for (int pass = 0; pass < 2; pass++) {
+            for (File f : files) {
+                if (!f.isFile()) continue;
+                boolean isDelta = f.getName().toLowerCase(java.util.Locale.ROOT).contains("delta");
+                if ((pass == 0) == isDelta) continue;
+
+                String stamp = stampOf(f);
+                if (!isPendingSource(seenLocalSources.get(f.getName()), stamp, now)) continue;
+
+                processed++;
+                try {
+                    if (ingestFile(f, trustedIssuers)) updated++;
+                    seenLocalSources.put(f.getName(), stamp);
+                } catch (Exception e) {
+                    Log.w(TAG, "No se pudo ingerir la CRL local " + f.getName() + ": " + e.getMessage());
+                    // Sin marca se reintentaría (y se abriría el almacén) en cada pasada
+                    seenLocalSources.put(f.getName(), failedSourceStamp(stamp, now));
+                }
+            }
+        }
+        if (processed > 0) {
+            // ingest() guarda el índice antes de anotar el fichero: las marcas se guardan aquí
+            persistQuietly();
+        }
+        return updated;
+    }
+
+    private boolean apply(X509CRL crl) throws IOException {
+        String key = issuerKey(crl.getIssuerX500Principal());
+        BigInteger crlNumber = readIntegerExtension(crl, Extension.cRLNumber.getId());
+        BigInteger baseNumber = readIntegerExtension(crl, Extension.deltaCRLIndicator.getId());
+        if (crlNumber == null) {
+            crlNumber = BigInteger.valueOf(crl.getThisUpdate().getTime());
+        }
+
+        IssuerIndex current = indexByIssuer.get(key);
+        if (current != null && current.crlNumber.compareTo(crlNumber) >= 0) {
+            Log.d(TAG, "CRL ignorada (número " + crlNumber + " no es más reciente que " + current.crlNumber + ")");
+            return false;
+        }
+
+        long thisUpdate = crl.getThisUpdate().getTime();
+        long nextUpdate = crl.getNextUpdate() != null ? crl.getNextUpdate().getTime() : 0L;
+        Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+
+        IssuerIndex updated;
+        if (baseNumber == null) {
+            // CRL completa: reemplaza el índice del emisor
+            long[] serials = new long[entries != null ? entries.size() : 0];
+            int n = 0;
+            if (entries != null) {
+                for (X509CRLEntry e : entries) {
+                    if (e.getRevocationReason() == CRLReason.REMOVE_FROM_CRL) continue;
+                    serials[n++] = serialFingerprint(e.getSerialNumber());
+                }
+            }
+            updated = IssuerIndex.build(crl.getIssuerX500Principal().getName(), crlNumber,
+                    thisUpdate, nextUpdate, Arrays.copyOf(serials, n));
+        } else {
+            // Delta CRL: solo aplicable sobre una base igual o posterior a la indicada
+            if (current == null || current.crlNumber.compareTo(baseNumber) < 0) {
+                throw new IOException("Delta CRL sin CRL base compatible en caché (base requerida: "
+                        + baseNumber + ")");
+            }
+            int size = entries != null ? entries.size() : 0;
+            long[] added = new long[size];
+            long[] removed = new long[size];
+            int na = 0, nr = 0;
+            if (entries != null) {
+                for (X509CRLEntry e : entries) {
+                    long fp = serialFingerprint(e.getSerialNumber());
+                    if (e.getRevocationReason() == CRLReason.REMOVE_FROM_CRL) {
+                        removed[nr++] = fp;
+                    } else {
+                        added[na++] = fp;
+                    }
+                }
+            }
+            updated = current.merge(crlNumber, thisUpdate, nextUpdate,
+                    Arrays.copyOf(added, na), Arrays.copyOf(removed, nr));
+        }
+
+        indexByIssuer.put(key, updated);
+        Log.i(TAG, "CRL aplicada: emisor=" + updated.issuerName + " número=" + crlNumber
+                + (baseNumber != null ? " (delta)" : "") + " revocados=" + updated.serials.length);
+        return true;
+    }
+
+    @Nullable
+    private static BigInteger readIntegerExtension(X509CRL crl, String oid) {
+        byte[] ext = crl.getExtensionValue(oid);
+        if (ext == null) return null;
+        byte[] inner = ASN1OctetString.getInstance(ext).getOctets();
+        return ASN1Integer.getInstance(inner).getValue();
+    }
+
+    // -------------------------
+    // Claves y huellas
+    // -------------------------
+
+    static String issuerKey(X500Principal issuer) {
+        return toHex(sha256(issuer.getEncoded()), 16);
+    }
+
+    /**
+     * Huella de 64 bits del número de serie. Una colisión solo puede producir un falso
+     * "revocado" (fallo seguro), nunca ocultar una revocación.
+     */
+    static long serialFingerprint(BigInteger serial) {
+        byte[] h = sha256(serial.toByteArray());
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (h[i] & 0xFF);
+        }
+        return v;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes, int len) {
+        StringBuilder sb = new StringBuilder(len * 2);
+        for (int i = 0; i < len; i++) {
+            sb.append(String.format(java.util.Locale.ROOT, "%02x", bytes[i]));
+        }
+        return sb.toString();
+    }
+
+    // -------------------------
+    // Persistencia
+    // -------------------------
+
+    private void load() {
+        if (!indexFile.exists()) return;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Índice de CRL con formato desconocido, se descarta");
+                return;
+            }
+            int issuers = in.readInt();
+            for (int i = 0; i < issuers; i++) {
+                String key = in.readUTF();
+                String name = in.readUTF();
+                byte[] num = new byte[in.readUnsignedShort()];
+                in.readFully(num);
+                long thisUpdate = in.readLong();
+                long nextUpdate = in.readLong();
+                long[] serials = new long[in.readInt()];
+                for (int j = 0; j < serials.length; j++) {
+                    serials[j] = in.readLong();
+                }
+                indexByIssuer.put(key, IssuerIndex.fromSorted(name, new BigInteger(num),
+                        thisUpdate, nextUpdate, serials));
+            }
+            int sources = in.readInt();
+            for (int i = 0; i < sources; i++) {
+                seenLocalSources.put(in.readUTF(), in.readUTF());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "No se pudo cargar el índice de CRL: " + e.getMessage());
+            indexByIssuer.clear();
+            seenLocalSources.clear();
+        }
+    }
+
+    private synchronized void persist() throws IOException {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(indexByIssuer.size());
+            for (Map.Entry<String, IssuerIndex> e : indexByIssuer.entrySet()) {
+                IssuerIndex idx = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeUTF(idx.issuerName);
+                byte[] num = idx.crlNumber.toByteArray();
+                out.writeShort(num.length);
+                out.write(num);
+                out.writeLong(idx.thisUpdate);
+                out.writeLong(idx.nextUpdate);
+                out.writeInt(idx.serials.length);
+                for (long s : idx.serials) {
+                    out.writeLong(s);
+                }
+            }
+            out.writeInt(seenLocalSources.size());
+            for (Map.Entry<String, String> e : seenLocalSources.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue());
+            }
+        }
+        // Reemplazo atómico para no dejar un índice a medias si el proceso muere
+        if (!tmp.renameTo(indexFile)) {
+            throw new IOException("No se pudo guardar el índice de CRL");
+        }
+    }
+
+    private void persistQuietly() {
+        try {
+            persist();
+        } catch (IOException e) {
+            Log.w(TAG, "No se pudo guardar el índice de CRL: " + e.getMessage());
+        }
+    }
+
+    // -------------------------
+    // Índice por emisor: long[] ordenado + filtro de Bloom
+    // -------------------------
+    static final class IssuerIndex {
+        private static final int BLOOM_BITS_PER_ENTRY = 10; // ~1% de falsos positivos
+        private static final int BLOOM_HASHES = 7;
+
+        final String issuerName;
+        final BigInteger crlNumber;
+        final long thisUpdate;
+        final long nextUpdate;
+        final long[] serials;    // ordenado y sin duplicados
+        private final long[] bloom;
+        private final int bloomBits;
+
+        private IssuerIndex(String issuerName, BigInteger crlNumber, long thisUpdate,
+                            long nextUpdate, long[] sortedSerials) {
+            this.issuerName = issuerName;
+            this.crlNumber = crlNumber;
+            this.thisUpdate = thisUpdate;
+            this.nextUpdate = nextUpdate;
+            this.serials = sortedSerials;
+
+            int words = Math.max(1, (sortedSerials.length * BLOOM_BITS_PER_ENTRY + 63) / 64);
+            this.bloom = new long[words];
+            this.bloomBits = words * 64;
+            for (long s : sortedSerials) {
+                int h1 = (int) s;
+                int h2 = (int) (s >>> 32);
+                for (int i = 0; i < BLOOM_HASHES; i++) {
+                    int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bloomBits;
+                    bloom[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+
+        static IssuerIndex build(String issuerName, BigInteger crlNumber, long thisUpdate,
+                                 long nextUpdate, long[] serials) {
+            long[] sorted = serials.clone();
+            Arrays.sort(sorted);
+            return fromSorted(issuerName, crlNumber, thisUpdate, nextUpdate, dedup(sorted));
+        }
+
+        static IssuerIndex fromSorted(String issuerName, BigInteger crlNumber, long thisUpdate,
+                                      long nextUpdate, long[] sortedSerials) {
+            return new IssuerIndex(issuerName, crlNumber, thisUpdate, nextUpdate, sortedSerials);
+        }
+
+        boolean contains(long fingerprint) {
+            int h1 = (int) fingerprint;
+            int h2 = (int) (fingerprint >>> 32);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bloomBits;
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return Arrays.binarySearch(serials, fingerprint) >= 0;
+        }
+
+        /** Aplica una delta CRL por fusión de arrays ordenados, sin reconstruir desde cero. */
+        IssuerIndex merge(BigInteger newCrlNumber, long thisUpdate, long nextUpdate,
+                          long[] added, long[] removed) {
+            long[] add = added.clone();
+            long[] rem = removed.clone();
+            Arrays.sort(add);
+            Arrays.sort(rem);
+
+            long[] out = new long[serials.length + add.length];
+            int i = 0, j = 0, n = 0;
+            while (i < serials.length || j < add.length) {
+                long next;
+                if (j >= add.length || (i < serials.length && serials[i] <= add[j])) {
+                    next = serials[i++];
+                } else {
+                    next = add[j++];
+                }
+                if (n > 0 && out[n - 1] == next) continue;
+                if (Arrays.binarySearch(rem, next) >= 0) continue;
+                out[n++] = next;
+            }
+            return new IssuerIndex(issuerName, newCrlNumber, thisUpdate, nextUpdate,
+                    Arrays.copyOf(out, n));
+        }
+
+        private static long[] dedup(long[] sorted) {
+            if (sorted.length < 2) return sorted;
+            int n = 1;
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] != sorted[n - 1]) sorted[n++] = sorted[i];
+            }
+            return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+        }
+    }
+}
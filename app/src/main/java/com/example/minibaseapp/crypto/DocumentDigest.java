@@ -0,0 +1,102 @@
+package com.example.minibaseapp.crypto;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+
+import com.example.minibaseapp.metrics.Tracer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Resumen SHA-256 y longitud de un documento, calculados por adelantado (al seleccionarlo) para
+ * no tener que hacerlo al firmar o verificar.
+ *
+ * Guarda también la "marca" del documento (tamaño y fecha de modificación según el proveedor):
+ * si al usar el resumen la marca ha cambiado, el documento se ha modificado y el resumen no vale.
+ * Si el proveedor no informa de alguno de los dos, la marca no distingue contenidos y el resumen
+ * nunca se da por vigente.
+ */
+public final class DocumentDigest {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    public final long length;
+    public final byte[] sha256;
+    public final String stamp;
+
+    DocumentDigest(long length, byte[] sha256, String stamp) {
+        this.length = length;
+        this.sha256 = sha256;
+        this.stamp = stamp;
+    }
+
+    /** Algoritmo del resumen, con la numeración de {@link SignatureContainer}. */
+    public int digestAlgorithm() {
+        return SignatureContainer.DIGEST_SHA256;
+    }
+
+    /**
+     * Lee el documento entero. Bloquea: llamar desde un hilo de trabajo.
+     *
+     * @param cancelled se consulta en cada bloque leído; si devuelve true se aborta con
+     *                  CancellationException
+     */
+    public static DocumentDigest compute(Context context, Uri uri, BooleanSupplier cancelled) throws Exception {
+        String stamp = stamp(context, uri);
+        try (Tracer.Span span = Tracer.begin("digest.prefetch");
+             InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) {
+                throw new IOException("No se pudo abrir InputStream para " + uri);
+            }
+            MessageDigest md = SignatureContainer.newDigest(SignatureContainer.DIGEST_SHA256);
+            byte[] buf = new byte[STREAM_BUFFER_SIZE];
+            long length = 0;
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                if (cancelled.getAsBoolean()) throw new CancellationException();
+                md.update(buf, 0, n);
+                length += n;
+            }
+            span.arg("bytes", length);
+            return new DocumentDigest(length, md.digest(), stamp);
+        }
+    }
+
+    /** Tamaño y fecha de modificación que informa el proveedor ("-1" si no los informa). */
+    public static String stamp(Context context, Uri uri) {
+        long size = -1;
+        long modified = -1;
+        try (Cursor c = context.getContentResolver().query(uri,
+                new String[]{OpenableColumns.SIZE, DocumentsContract.Document.COLUMN_LAST_MODIFIED},
+                null, null, null)) {
+            if (c != null && c.moveToFirst()) {
+                if (!c.isNull(0)) size = c.getLong(0);
+                if (c.getColumnCount() > 1 && !c.isNull(1)) modified = c.getLong(1);
+            }
+        } catch (Exception ignored) {
+        }
+        return size + ":" + modified;
+    }
+
+    /** Si la marca identifica el contenido: el proveedor informó del tamaño y de la fecha. */
+    public static boolean isKnown(String stamp) {
+        return !stamp.startsWith("-1:") && !stamp.endsWith(":-1");
+    }
+
+    /** Misma marca que ahora, y esa marca es fiable. */
+    public static boolean isSameDocument(String stamp, String current) {
+        return isKnown(stamp) && stamp.equals(current);
+    }
+
+    /** Sigue describiendo el documento: misma marca (fiable) que ahora. */
+    public boolean isCurrent(Context context, Uri uri) {
+        return isSameDocument(stamp, stamp(context, uri));
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.minibaseapp.crypto;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Documento que se lee en streaming: un fichero local o un documento SAF.
+ * Lo usan las operaciones por lotes (firma y verificación) para no depender del origen.
+ */
+public interface DocumentSource {
+
+    /** Nombre, o ruta relativa a la raíz del lote ("sub/doc.pdf"). */
+    String name();
+
+    /** Longitud en bytes, o -1 si no se conoce. */
+    long length();
+
+    InputStream open() throws IOException;
+
+    // -------------------------
+    // Fábricas
+    // -------------------------
+
+    static DocumentSource forFile(final File file, final String name) {
+        return new DocumentSource() {
+            @Override public String name() { return name; }
+            @Override public long length() { return file.length(); }
+            @Override public InputStream open() throws IOException { return new FileInputStream(file); }
+        };
+    }
+
+    static DocumentSource forUri(Context context, final Uri uri, final String name, final long length) {
+        final Context app = context.getApplicationContext();
+        return new DocumentSource() {
+            @Override public String name() { return name; }
+            @Override public long length() { return length; }
+            @Override public InputStream open() throws IOException {
+                InputStream in = app.getContentResolver().openInputStream(uri);
+                if (in == null) throw new IOException("No se pudo abrir " + name);
+                return in;
+            }
+        };
+    }
+
+    /** Documento SAF suelto (ACTION_OPEN_DOCUMENT); nombre y tamaño se consultan al proveedor. */
+    static DocumentSource forUri(Context context, Uri uri) {
+        String name = null;
+        long size = -1;
+        try (Cursor c = context.getContentResolver().query(uri,
+                new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE}, null, null, null)) {
+            if (c != null && c.moveToFirst()) {
+                name = c.getString(0);
+                if (!c.isNull(1)) size = c.getLong(1);
+            }
+        } catch (Exception ignored) {
+        }
+        if (name == null) {
+            name = uri.getLastPathSegment() != null ? uri.getLastPathSegment() : uri.toString();
+        }
+        return forUri(context, uri, name, size);
+    }
+
+    // -------------------------
+    // Listado recursivo
+    // -------------------------
+
+    static List<DocumentSource> listDirectory(File root) {
+        List<DocumentSource> out = new ArrayList<>();
+        Listing.collectFiles(root, "", out);
+        return out;
+    }
+
+    /** Documentos de un árbol SAF (Uri obtenido con ACTION_OPEN_DOCUMENT_TREE). */
+    static List<DocumentSource> listTree(Context context, Uri treeUri) {
+        List<DocumentSource> out = new ArrayList<>();
+        Listing.collectTree(context.getApplicationContext(), treeUri,
+                DocumentsContract.getTreeDocumentId(treeUri), "", out);
+        return out;
+    }
+
+    final class Listing {
+        private Listing() {}
+
+        static void collectFiles(File dir, String prefix, List<DocumentSource> out) {
+            File[] children = dir.listFiles();
+            if (children == null) return;
+            for (File f : children) {
+                if (f.isDirectory()) {
+                    collectFiles(f, prefix + f.getName() + "/", out);
+                } else {
+                    out.add(forFile(f, prefix + f.getName()));
+                }
+            }
+        }
+
+        static void collectTree(Context context, Uri treeUri, String parentId,
+                                String prefix, List<DocumentSource> out) {
+            Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentId);
+            String[] projection = {
+                    DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                    DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+                    DocumentsContract.Document.COLUMN_MIME_TYPE,
+                    DocumentsContract.Document.COLUMN_SIZE
+            };
+            try (Cursor c = context.getContentResolver().query(children, projection, null, null, null)) {
+                if (c == null) return;
+                while (c.moveToNext()) {
+                    String id = c.getString(0);
+                    String name = prefix + c.getString(1);
+                    String mime = c.getString(2);
+                    long size = c.isNull(3) ? -1 : c.getLong(3);
+
+                    if (DocumentsContract.Document.MIME_TYPE_DIR.equals(mime)) {
+                        collectTree(context, treeUri, id, name + "/", out);
+                    } else {
+                        out.add(forUri(context,
+                                DocumentsContract.buildDocumentUriUsingTree(treeUri, id), name, size));
+                    }
+                }
+            }
+        }
+    }
+}
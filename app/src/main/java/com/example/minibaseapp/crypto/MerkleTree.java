@@ -0,0 +1,177 @@
+package com.example.minibaseapp.crypto;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Árbol de Merkle (SHA-256) sobre los resúmenes de un lote de documentos.
+ *
+ * En la firma por lotes solo se firma la raíz; cada documento lleva en su contenedor la prueba
+ * de inclusión (hermanos desde la hoja hasta la raíz) y la firma compartida. Hojas y nodos
+ * internos usan prefijos distintos (0x00 / 0x01, como en RFC 6962) para que un nodo interno no
+ * pueda hacerse pasar por hoja. Con un número impar de nodos en un nivel, el último sube sin
+ * emparejar (no se duplica).
+ */
+public final class MerkleTree {
+
+    public static final int HASH_LENGTH = 32;
+    // Límite de cordura al leer: 2^32 hojas como mucho
+    static final int MAX_PATH_LENGTH = 32;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+    private static final byte[] ROOT_LABEL = "PQSG-MERKLE-ROOT".getBytes(StandardCharsets.US_ASCII);
+
+    // levels[0] = hojas, levels[último] = {raíz}
+    private final byte[][][] levels;
+
+    public MerkleTree(List<byte[]> leaves) {
+        if (leaves.isEmpty()) {
+            throw new IllegalArgumentException("Lote vacío");
+        }
+        MessageDigest md = sha256();
+        int depth = 1;
+        for (int n = leaves.size(); n > 1; n = (n + 1) / 2) {
+            depth++;
+        }
+        levels = new byte[depth][][];
+        levels[0] = leaves.toArray(new byte[0][]);
+        for (int l = 1; l < depth; l++) {
+            byte[][] below = levels[l - 1];
+            byte[][] level = new byte[(below.length + 1) / 2][];
+            for (int i = 0; i < level.length; i++) {
+                int left = 2 * i;
+                level[i] = left + 1 < below.length ? node(md, below[left], below[left + 1]) : below[left];
+            }
+            levels[l] = level;
+        }
+    }
+
+    public int leafCount() {
+        return levels[0].length;
+    }
+
+    public byte[] root() {
+        return levels[levels.length - 1][0].clone();
+    }
+
+    /** Prueba de inclusión de la hoja index. */
+    public Proof proof(int index) {
+        if (index < 0 || index >= leafCount()) {
+            throw new IndexOutOfBoundsException("Hoja fuera del árbol: " + index);
+        }
+        byte[][] path = new byte[levels.length - 1][];
+        int n = 0;
+        int i = index;
+        for (int l = 0; l < levels.length - 1; l++) {
+            int sibling = i ^ 1;
+            if (sibling < levels[l].length) {
+                path[n++] = levels[l][sibling];
+            }
+            i >>= 1;
+        }
+        byte[][] trimmed = new byte[n][];
+        System.arraycopy(path, 0, trimmed, 0, n);
+        return new Proof(index, leafCount(), trimmed);
+    }
+
+    /** Posición de un documento en el lote y hermanos hasta la raíz. */
+    public static final class Proof {
+        public final int leafIndex;
+        public final int leafCount;
+        final byte[][] path;
+
+        public Proof(int leafIndex, int leafCount, byte[][] path) {
+            if (leafCount <= 0 || leafIndex < 0 || leafIndex >= leafCount) {
+                throw new IllegalArgumentException("Posición en el lote no válida");
+            }
+            if (path.length > MAX_PATH_LENGTH) {
+                throw new IllegalArgumentException("Prueba de inclusión demasiado larga");
+            }
+            for (byte[] h : path) {
+                if (h.length != HASH_LENGTH) {
+                    throw new IllegalArgumentException("Hash de la prueba con longitud incorrecta");
+                }
+            }
+            this.leafIndex = leafIndex;
+            this.leafCount = leafCount;
+            this.path = path;
+        }
+
+        public int pathLength() {
+            return path.length;
+        }
+
+        byte[] sibling(int i) {
+            return path[i];
+        }
+
+        /**
+         * Raíz que resulta de la hoja y la prueba, o null si la prueba no encaja con la posición
+         * (sobran o faltan hermanos).
+         */
+        @Nullable
+        public byte[] rootFor(byte[] leaf) {
+            MessageDigest md = sha256();
+            byte[] r = leaf;
+            int used = 0;
+            long i = leafIndex;
+            long last = leafCount - 1L;
+            while (last > 0) {
+                if ((i & 1) == 1) {
+                    if (used == path.length) return null;
+                    r = node(md, path[used++], r);
+                } else if (i < last) {
+                    if (used == path.length) return null;
+                    r = node(md, r, path[used++]);
+                }
+                // si no, es el último de un nivel impar y sube tal cual
+                i >>= 1;
+                last >>= 1;
+            }
+            return used == path.length ? r : null;
+        }
+    }
+
+    // -------------------------
+    // Hashes
+    // -------------------------
+
+    /** Hoja de un documento: su longitud y su resumen. */
+    public static byte[] leafHash(long documentLength, int digestAlgorithm, byte[] documentDigest) {
+        MessageDigest md = sha256();
+        md.update(LEAF_PREFIX);
+        md.update(ByteBuffer.allocate(9).putLong(documentLength).put((byte) digestAlgorithm).array());
+        md.update(documentDigest);
+        return md.digest();
+    }
+
+    /**
+     * Mensaje que se firma: etiqueta, número de hojas y raíz. La etiqueta separa estas firmas de
+     * las de un documento normal.
+     */
+    public static byte[] rootMessage(int leafCount, byte[] root) {
+        return ByteBuffer.allocate(ROOT_LABEL.length + 4 + root.length)
+                .put(ROOT_LABEL).putInt(leafCount).put(root).array();
+    }
+
+    private static byte[] node(MessageDigest md, byte[] left, byte[] right) {
+        md.update(NODE_PREFIX);
+        md.update(left);
+        md.update(right);
+        return md.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.minibaseapp.crypto;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * Decodificador directo de certificados y claves en PEM o DER.
+ *
+ * PEMParser convierte los bytes a caracteres, lee línea a línea, construye objetos ASN.1
+ * genéricos y JcaX509CertificateConverter vuelve a codificarlos para parsearlos otra vez. Aquí se
+ * busca la armadura en los propios bytes, el Base64 se decodifica directamente en un búfer
+ * reutilizado por hilo y el DER resultante pasa por un único parseo (CertificateFactory o
+ * KeyFactory del proveedor).
+ *
+ * Solo cubre los casos habituales: "CERTIFICATE" / "X509 CERTIFICATE" y clave PKCS#8 sin cifrar
+ * ("PRIVATE KEY"), o esos mismos objetos en DER sin armadura. Para cualquier otra cosa (otro tipo
+ * de bloque, cabeceras de cifrado, Base64 mal formado) los métodos devuelven null y quien llama
+ * sigue con PEMParser, que da los mensajes de error detallados.
+ */
+public final class PemDecoder {
+
+    private static final byte[] BEGIN = "-----BEGIN ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "-----END ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DASHES = "-----".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[][] CERTIFICATE_LABELS = {
+            "CERTIFICATE".getBytes(StandardCharsets.US_ASCII),
+            "X509 CERTIFICATE".getBytes(StandardCharsets.US_ASCII),
+    };
+    private static final byte[][] PRIVATE_KEY_LABELS = {
+            "PRIVATE KEY".getBytes(StandardCharsets.US_ASCII),
+    };
+
+    private static final int DER_SEQUENCE = 0x30;
+    private static final int DER_INTEGER = 0x02;
+    private static final int DER_OID = 0x06;
+
+    // Un certificado ML-DSA-87 ronda los 7,5 KB; búferes mayores no se conservan
+    private static final int INITIAL_BUFFER = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final byte[] BASE64 = new byte[128];
+
+    static {
+        Arrays.fill(BASE64, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[INITIAL_BUFFER];
+        }
+    };
+
+    private PemDecoder() {
+    }
+
+    // -------------------------
+    // Certificados y claves
+    // -------------------------
+
+    /**
+     * Certificado X.509 en PEM ("CERTIFICATE") o DER.
+     *
+     * @return el certificado, o null si los datos no son un caso que cubra el camino rápido
+     */
+    public static X509Certificate decodeCertificate(byte[] data, String provider)
+            throws GeneralSecurityException {
+        if (isDer(data)) {
+            return generateCertificate(data, 0, data.length, provider);
+        }
+        byte[] buf = BUFFER.get();
+        int len = decodePem(data, CERTIFICATE_LABELS, buf);
+        if (len == -1) return null;
+        if (len < -1) {
+            // No cabía en el búfer del hilo: se decodifica en uno del tamaño justo
+            buf = new byte[-len];
+            len = decodePem(data, CERTIFICATE_LABELS, buf);
+            retain(buf);
+        }
+        return generateCertificate(buf, 0, len, provider);
+    }
+
+    /**
+     * Clave privada PKCS#8 sin cifrar en PEM ("PRIVATE KEY") o DER. La KeyFactory se elige por el
+     * OID del algoritmo de la propia clave.
+     *
+     * @return la clave, o null si los datos no son un caso que cubra el camino rápido
+     */
+    public static PrivateKey decodePrivateKey(byte[] data, String provider)
+            throws GeneralSecurityException {
+        if (isDer(data)) {
+            return generatePrivateKey(data, 0, data.length, provider);
+        }
+        byte[] buf = BUFFER.get();
+        int len = decodePem(data, PRIVATE_KEY_LABELS, buf);
+        if (len == -1) return null;
+        if (len < -1) {
+            buf = new byte[-len];
+            len = decodePem(data, PRIVATE_KEY_LABELS, buf);
+            retain(buf);
+            if (len < 0) return null;
+        }
+        try {
+            return generatePrivateKey(buf, 0, len, provider);
+        } finally {
+            // El búfer del hilo no debe conservar material de clave
+            Arrays.fill(buf, 0, len, (byte) 0);
+        }
+    }
+
+    private static X509Certificate generateCertificate(byte[] der, int off, int len, String provider)
+            throws GeneralSecurityException {
+        CertificateFactory cf = CertificateFactory.getInstance("X.509", provider);
+        return (X509Certificate) cf.generateCertificate(new ByteArrayInputStream(der, off, len));
+    }
+
+    private static PrivateKey generatePrivateKey(byte[] der, int off, int len, String provider)
+            throws GeneralSecurityException {
+        String oid = privateKeyAlgorithm(der, off, len);
+        if (oid == null) return null;
+        byte[] encoded = Arrays.copyOfRange(der, off, off + len);
+        try {
+            // PKCS8EncodedKeySpec guarda su propia copia
+            return KeyFactory.getInstance(oid, provider).generatePrivate(new PKCS8EncodedKeySpec(encoded));
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    private static void retain(byte[] buf) {
+        if (buf.length <= MAX_RETAINED_BUFFER) {
+            BUFFER.set(buf);
+        }
+    }
+
+    // -------------------------
+    // PEM
+    // -------------------------
+
+    /**
+     * Una SEQUENCE con una longitud válida que ocupa justo todos los datos. Un PEM cuyo texto
+     * previo empiece por '0' (0x30) no pasa por DER: su longitud no cuadra, y si cuadrase por
+     * casualidad la armadura lo delata.
+     */
+    private static boolean isDer(byte[] data) {
+        int[] pos = {0};
+        int length = readHeader(data, pos, data.length, DER_SEQUENCE);
+        return length >= 0 && pos[0] + length == data.length && indexOf(data, BEGIN, 0) < 0;
+    }
+
+    /**
+     * Decodifica en out el primer bloque PEM de data si su etiqueta es una de labels.
+     *
+     * @return bytes escritos; -1 si no aplica el camino rápido; si out es pequeño, menos el
+     * tamaño necesario (siempre menor que -1)
+     */
+    static int decodePem(byte[] data, byte[][] labels, byte[] out) {
+        int begin = indexOf(data, BEGIN, 0);
+        if (begin < 0) return -1;
+        int labelStart = begin + BEGIN.length;
+        int labelEnd = indexOf(data, DASHES, labelStart);
+        if (labelEnd < 0) return -1;
+        byte[] label = matchLabel(data, labelStart, labelEnd, labels);
+        if (label == null) return -1;
+
+        // El cuerpo empieza en la línea siguiente a la cabecera
+        int bodyStart = labelEnd + DASHES.length;
+        while (bodyStart < data.length && (data[bodyStart] == '\r' || data[bodyStart] == '\n')) {
+            bodyStart++;
+        }
+        int bodyEnd = indexOf(data, END, bodyStart);
+        if (bodyEnd < 0) return -1;
+        int endLabelStart = bodyEnd + END.length;
+        if (!regionMatches(data, endLabelStart, label)
+                || !regionMatches(data, endLabelStart + label.length, DASHES)) {
+            return -1;
+        }
+
+        int needed = (bodyEnd - bodyStart) / 4 * 3 + 3;
+        if (needed > out.length) return -needed;
+        return decodeBase64(data, bodyStart, bodyEnd, out);
+    }
+
+    /**
+     * Base64 estándar ignorando espacios y saltos de línea; -1 si hay algo más (p. ej. cabeceras).
+     * Si falla a mitad borra lo que ya había escrito en out: puede ser parte de una clave privada.
+     */
+    private static int decodeBase64(byte[] in, int from, int to, byte[] out) {
+        int acc = 0;
+        int bits = 0;
+        int n = 0;
+        int padding = 0;
+        for (int i = from; i < to; i++) {
+            int c = in[i] & 0xff;
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') continue;
+            if (c == '=') {
+                padding++;
+                continue;
+            }
+            int v = c < 128 ? BASE64[c] : -1;
+            if (v < 0 || padding > 0) {
+                Arrays.fill(out, 0, n, (byte) 0);
+                return -1;
+            }
+            acc = (acc << 6) | v;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out[n++] = (byte) (acc >> bits);
+            }
+        }
+        if (padding > 2 || bits >= 6) {
+            Arrays.fill(out, 0, n, (byte) 0);
+            return -1;
+        }
+        return n;
+    }
+
+    private static byte[] matchLabel(byte[] data, int from, int to, byte[][] labels) {
+        for (byte[] label : labels) {
+            if (to - from == label.length && regionMatches(data, from, label)) {
+                return label;
+            }
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(byte[] data, int from, byte[] pattern) {
+        if (from < 0 || from + pattern.length > data.length) return false;
+        for (int i = 0; i < pattern.length; i++) {
+            if (data[from + i] != pattern[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        int last = data.length - pattern.length;
+        for (int i = Math.max(0, from); i <= last; i++) {
+            if (data[i] == pattern[0] && regionMatches(data, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // -------------------------
+    // DER (solo lo necesario para elegir la KeyFactory)
+    // -------------------------
+
+    /**
+     * OID del algoritmo de un PrivateKeyInfo:
+     * SEQUENCE { INTEGER version, SEQUENCE { OID algorithm, ... }, ... }.
+     *
+     * @return el OID en forma de puntos, o null si la estructura no es la esperada
+     */
+    static String privateKeyAlgorithm(byte[] der, int off, int len) {
+        int end = off + len;
+        int[] pos = {off};
+        if (readHeader(der, pos, end, DER_SEQUENCE) < 0) return null;
+        int versionLen = readHeader(der, pos, end, DER_INTEGER);
+        if (versionLen < 0) return null;
+        pos[0] += versionLen;
+        if (readHeader(der, pos, end, DER_SEQUENCE) < 0) return null;
+        int oidStart = pos[0];
+        int oidLen = readHeader(der, pos, end, DER_OID);
+        if (oidLen < 0 || pos[0] + oidLen > end) return null;
+        try {
+            return ASN1ObjectIdentifier.getInstance(
+                    Arrays.copyOfRange(der, oidStart, pos[0] + oidLen)).getId();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Lee etiqueta y longitud definida; deja pos[0] en el contenido y devuelve su longitud. */
+    private static int readHeader(byte[] der, int[] pos, int end, int tag) {
+        int p = pos[0];
+        if (p + 2 > end || (der[p] & 0xff) != tag) return -1;
+        p++;
+        int length = der[p++] & 0xff;
+        if (length > 0x7f) {
+            int count = length & 0x7f;
+            if (count == 0 || count > 3 || p + count > end) return -1;
+            length = 0;
+            for (int i = 0; i < count; i++) {
+                length = (length << 8) | (der[p++] & 0xff);
+            }
+        }
+        if (p + length > end) return -1;
+        pos[0] = p;
+        return length;
+    }
+}
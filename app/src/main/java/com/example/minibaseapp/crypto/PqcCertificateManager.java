@@ -1,13 +1,18 @@
 package com.example.minibaseapp.crypto;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.net.Uri;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import com.example.minibaseapp.metrics.AllocationMeter;
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.metrics.TimedInputStream;
+import com.example.minibaseapp.metrics.Tracer;
+
 import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
 import org.bouncycastle.cert.X509CertificateHolder;
@@ -22,6 +27,7 @@ import java.io.InputStreamReader;
 
 import java.security.Key;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Security;
@@ -45,15 +51,40 @@ public class PqcCertificateManager {
     private static final String KEYSTORE_TYPE = "PKCS12";
     private static final String KEYSTORE_PROVIDER = "BC";
     private static final String KEYSTORE_FILE_NAME = "pqc_keystore.p12";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    static final String PEM_DECODE = "minibase_pem_decode_total";
 
     private final Context context;
+    private final CrlCache crlCache;
+    private final SignerDirectory signerDirectory;
+    private final MetricsRegistry metrics = MetricsRegistry.get();
+    private final PreparedVerifierCache verifiers = PreparedVerifierCache.get();
+    private final BatchRootCache batchRoots = BatchRootCache.get();
+
+    private static volatile boolean providerInstalled;
 
     // Aseguro que BC está registrado
     public PqcCertificateManager(Context context) {
         this.context = context.getApplicationContext();
-        Security.removeProvider("BC"); // evitar conflicto con Android-BC
-        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
-            Security.addProvider(new BouncyCastleProvider());
+        ensureProvider();
+        this.crlCache = CrlCache.getInstance(this.context);
+        this.signerDirectory = SignerDirectory.getInstance(this.context);
+    }
+
+    /**
+     * Registra BouncyCastle una sola vez por proceso, delante del BC recortado de Android.
+     * Normalmente ya lo ha hecho el arranque en segundo plano (StartupOrchestrator); si aún está
+     * en curso, se espera a que termine.
+     */
+    public static void ensureProvider() {
+        if (providerInstalled) return;
+        synchronized (PqcCertificateManager.class) {
+            if (providerInstalled) return;
+            Security.removeProvider("BC"); // evitar conflicto con Android-BC
+            // Solo los servicios que usamos (PKCS#12, X.509, ML-DSA), registrados al pedirlos
+            Security.insertProviderAt(new TrimmedBouncyCastleProvider(), 1);
+            providerInstalled = true;
         }
     }
 
@@ -89,13 +120,17 @@ public class PqcCertificateManager {
         public boolean caSignatureChecked;  // true si hemos intentado verificar
         public boolean caSignatureOk;       // true si la verificación con la CA ha ido bien
 
+        // Revocación (CRL local en caché)
+        public boolean revocationChecked;   // true si hay CRL del emisor en caché
+        public boolean revoked;
+
         // Texto explicativo para logs / UI técnica
         public String diagnostics;
 
         // Helpers cómodos
         public boolean isOverallAcceptableForSigning() {
             // Aquí puedes decidir tu criterio mínimo
-            return timeValid && isEndEntity && keyUsageOk;
+            return timeValid && isEndEntity && keyUsageOk && !revoked;
         }
     }
 
@@ -103,7 +138,8 @@ public class PqcCertificateManager {
     /** Pasamos la uri (documento .pem y .key que nos sube el usuario del dispositivo)
     * a bytes para luego poder importar el certificado y la clave*/
     private byte[] readAllBytesFromUri(android.net.Uri uri) throws IOException {
-        try (InputStream in = context.getContentResolver().openInputStream(uri);
+        try (Tracer.Span span = Tracer.begin("io.readUri");
+             InputStream in = context.getContentResolver().openInputStream(uri);
              ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
             if (in == null) {
                 throw new IOException("No se pudo abrir InputStream para Uri: " + uri);
@@ -119,7 +155,20 @@ public class PqcCertificateManager {
 
     // Importamos el certificado
     private X509Certificate parseCertificateFromPemBytes(byte[] certBytes) throws Exception {
-        try (PEMParser pemParser = new PEMParser(
+        // Camino rápido: armadura y Base64 en bytes y un único parseo del DER
+        try (Tracer.Span span = Tracer.begin("pem.decodeCertificate")) {
+            X509Certificate cert = PemDecoder.decodeCertificate(certBytes, KEYSTORE_PROVIDER);
+            if (cert != null) {
+                metrics.counter(PEM_DECODE, "kind", "certificate", "path", "fast").increment();
+                return cert;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Decodificación directa del certificado fallida, se usa PEMParser: " + e.getMessage());
+        }
+        metrics.counter(PEM_DECODE, "kind", "certificate", "path", "parser").increment();
+
+        try (Tracer.Span span = Tracer.begin("pem.parseCertificate");
+             PEMParser pemParser = new PEMParser(
                 new InputStreamReader(new ByteArrayInputStream(certBytes), StandardCharsets.UTF_8))) {
 
             Object obj = pemParser.readObject();
@@ -147,7 +196,19 @@ public class PqcCertificateManager {
 
     // Importamos la clave privada
     private PrivateKey parsePrivateKeyFromPemBytes(byte[] keyBytes) throws Exception {
-        try (PEMParser pemParser = new PEMParser(
+        try (Tracer.Span span = Tracer.begin("pem.decodePrivateKey")) {
+            PrivateKey key = PemDecoder.decodePrivateKey(keyBytes, KEYSTORE_PROVIDER);
+            if (key != null) {
+                metrics.counter(PEM_DECODE, "kind", "private_key", "path", "fast").increment();
+                return key;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Decodificación directa de la clave privada fallida, se usa PEMParser: " + e.getMessage());
+        }
+        metrics.counter(PEM_DECODE, "kind", "private_key", "path", "parser").increment();
+
+        try (Tracer.Span span = Tracer.begin("pem.parsePrivateKey");
+             PEMParser pemParser = new PEMParser(
                 new InputStreamReader(new ByteArrayInputStream(keyBytes), StandardCharsets.UTF_8))) {
 
             Object obj = pemParser.readObject();
@@ -190,63 +251,100 @@ public class PqcCertificateManager {
     /** Creamos un keystore PKCS#12 para almacenar el certificado y la clave
     * Si existe un keystore lo abre y si no crea uno nuevo*/
     private KeyStore loadOrCreateKeyStore(char[] password) throws Exception {
-        KeyStore ks = KeyStore.getInstance(KEYSTORE_TYPE, KEYSTORE_PROVIDER);
-        try {
-            // Intentamos abrir un p12 existente
-            try (FileInputStream fis = context.openFileInput(KEYSTORE_FILE_NAME)) {
-                ks.load(fis, password);
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        boolean failed = false;
+        // Incluye la comprobación del MAC del PKCS#12 (PBKDF con la contraseña del almacén)
+        try (Tracer.Span span = Tracer.begin("keystore.load")) {
+            KeyStore ks = KeyStore.getInstance(KEYSTORE_TYPE, KEYSTORE_PROVIDER);
+            try {
+                // Intentamos abrir un p12 existente
+                try (FileInputStream fis = context.openFileInput(KEYSTORE_FILE_NAME)) {
+                    ks.load(fis, password);
+                }
+            } catch (IOException e) {
+                // Si no existe o hay problema al leer, creamos uno nuevo vacío
+                ks.load(null, password);
             }
-        } catch (IOException e) {
-            // Si no existe o hay problema al leer, creamos uno nuevo vacío
-            ks.load(null, password);
+            return ks;
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            recordCrypto(MetricsRegistry.OP_KEYSTORE_OPEN, KEYSTORE_TYPE, t0, a0, -1, !failed);
+        }
+    }
+
+    // Latencia (o fallo) y bytes asignados de una operación del backend BC
+    private void recordCrypto(String op, @Nullable String alg, long t0, long a0, long documentBytes, boolean ok) {
+        metrics.recordCrypto(op, alg, MetricsRegistry.BACKEND_BC, t0, ok);
+        if (ok) {
+            metrics.recordAllocation(op, alg, MetricsRegistry.BACKEND_BC, documentBytes,
+                    AllocationMeter.allocatedSince(a0));
         }
-        return ks;
     }
 
     // Guardamos el keystore generado
     private void storeKeyStore(KeyStore ks, char[] password) throws Exception {
-        try (FileOutputStream fos = context.openFileOutput(KEYSTORE_FILE_NAME, Context.MODE_PRIVATE)) {
+        try (Tracer.Span span = Tracer.begin("keystore.store");
+             FileOutputStream fos = context.openFileOutput(KEYSTORE_FILE_NAME, Context.MODE_PRIVATE)) {
             ks.store(fos, password);
         }
     }
 
     public void importCredentialFromPemAndKey(Uri certUri, Uri keyUri, Uri caCertUri, String alias, char[] keystorePassword) throws Exception {
-        // Leo los bytes desde la Uri tanto del certificado como de la clave privada
-        byte[] certBytes = readAllBytesFromUri(certUri);
-        byte[] keyBytes = readAllBytesFromUri(keyUri);
-        byte[] caCertBytes   = readAllBytesFromUri(caCertUri);
-
-        // Parseo el certificado y clave privada
-        X509Certificate cert = parseCertificateFromPemBytes(certBytes);
-        PrivateKey privateKey = parsePrivateKeyFromPemBytes(keyBytes);
-        X509Certificate caCert   = parseCertificateFromPemBytes(caCertBytes);
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        boolean failed = false;
+        try (Tracer.Span span = Tracer.begin("import")) {
+            // Leo los bytes desde la Uri tanto del certificado como de la clave privada
+            byte[] certBytes = readAllBytesFromUri(certUri);
+            byte[] keyBytes = readAllBytesFromUri(keyUri);
+            byte[] caCertBytes   = readAllBytesFromUri(caCertUri);
+
+            // Parseo el certificado y clave privada
+            X509Certificate cert = parseCertificateFromPemBytes(certBytes);
+            PrivateKey privateKey = parsePrivateKeyFromPemBytes(keyBytes);
+            X509Certificate caCert   = parseCertificateFromPemBytes(caCertBytes);
+
+            // Validación básica (modo estricto) antes de guardar en el almacén
+            CertValidationResult vr;
+            try (Tracer.Span validate = Tracer.begin("cert.validate")) {
+                vr = validateCertificate(cert, caCert);
+            }
 
-        // Validación básica (modo estricto) antes de guardar en el almacén
-        CertValidationResult vr = validateCertificate(cert, caCert);
+            // Criterio mínimo: debe ser end-entity, vigente y con KeyUsage.digitalSignature
+            if (!vr.isOverallAcceptableForSigning()) {
+                Log.w(TAG, "Certificado rechazado en importación:\n" + vr.diagnostics);
+                throw new Exception("Certificado no apto para firma electrónica.\n" +
+                        "Motivo:\n" + vr.diagnostics);
+            }
 
-        // Criterio mínimo: debe ser end-entity, vigente y con KeyUsage.digitalSignature
-        if (!vr.isOverallAcceptableForSigning()) {
-            Log.w(TAG, "Certificado rechazado en importación:\n" + vr.diagnostics);
-            throw new Exception("Certificado no apto para firma electrónica.\n" +
-                    "Motivo:\n" + vr.diagnostics);
-        }
+            // Carga o creación del KeyStore PKCS#12
+            KeyStore ks = loadOrCreateKeyStore(keystorePassword);
 
-        // Carga o creación del KeyStore PKCS#12
-        KeyStore ks = loadOrCreateKeyStore(keystorePassword);
+            // Creación de la entrada PrivateKeyEntry con cadena de certificados
+            Certificate[] chain = new Certificate[]{cert, caCert};
+            KeyStore.PrivateKeyEntry entry = new KeyStore.PrivateKeyEntry(privateKey, chain);
 
-        // Creación de la entrada PrivateKeyEntry con cadena de certificados
-        Certificate[] chain = new Certificate[]{cert, caCert};
-        KeyStore.PrivateKeyEntry entry = new KeyStore.PrivateKeyEntry(privateKey, chain);
+            /**Creación de la contraseña del contenedor PKCS#12 el usuario deberá introducirla
+            * cada vez que quiera utilizar el certificado*/
+            KeyStore.ProtectionParameter protParam = new KeyStore.PasswordProtection(keystorePassword);
 
-        /**Creación de la contraseña del contenedor PKCS#12 el usuario deberá introducirla
-        * cada vez que quiera utilizar el certificado*/
-        KeyStore.ProtectionParameter protParam = new KeyStore.PasswordProtection(keystorePassword);
+            // Creación/actualización del alias
+            ks.setEntry(alias, entry, protParam);
 
-        // Creación/actualización del alias
-        ks.setEntry(alias, entry, protParam);
+            // Guardado del KeyStore
+            storeKeyStore(ks, keystorePassword);
 
-        // Guardado del KeyStore
-        storeKeyStore(ks, keystorePassword);
+            // El certificado propio también queda disponible para verificar sin seleccionarlo
+            signerDirectory.ingest(cert);
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            recordCrypto(MetricsRegistry.OP_IMPORT, null, t0, a0, -1, !failed);
+        }
     }
     /**
      * Lista todos los certificados del keystore PKCS#12 interno.
@@ -291,7 +389,17 @@ public class PqcCertificateManager {
     public KeyAndCert getKeyAndCertificate(String alias, char[] keystorePassword) throws Exception {
         KeyStore ks = loadOrCreateKeyStore(keystorePassword);
 
-        Key key = ks.getKey(alias, keystorePassword);
+        // Descifrado de la clave privada (PBE del PKCS#12): es la parte cara del desbloqueo
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        Key key;
+        try (Tracer.Span span = Tracer.begin("keystore.getKey")) {
+            key = ks.getKey(alias, keystorePassword);
+        } catch (Exception e) {
+            recordCrypto(MetricsRegistry.OP_KEY_UNLOCK, null, t0, a0, -1, false);
+            throw e;
+        }
+        recordCrypto(MetricsRegistry.OP_KEY_UNLOCK, key != null ? key.getAlgorithm() : null, t0, a0, -1, key != null);
         if (!(key instanceof PrivateKey)) {
             throw new Exception("El alias " + alias + " no tiene una clave privada asociada");
         }
@@ -314,17 +422,28 @@ public class PqcCertificateManager {
         String algName = privateKey.getAlgorithm(); // debería reflejar ML-DSA-44, etc.
         Log.d(TAG, "Algoritmo de la clave privada: " + algName);
 
-        Signature sig = Signature.getInstance(algName, KEYSTORE_PROVIDER);
-        sig.initSign(privateKey);
-        sig.update(data);
-        return sig.sign();
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        boolean failed = false;
+        try (Tracer.Span span = Tracer.begin("pqc.sign").arg("alg", algName).arg("bytes", data.length)) {
+            Signature sig = Signature.getInstance(algName, KEYSTORE_PROVIDER);
+            sig.initSign(privateKey);
+            sig.update(data);
+            return sig.sign();
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            recordCrypto(MetricsRegistry.OP_SIGN, algName, t0, a0, data.length, !failed);
+        }
     }
 
     /**
      * Carga un certificado X.509 desde un Uri (por ejemplo, un .pem que el usuario selecciona
      * con el gestor de archivos del dispositivo).
      *
-     * Reutiliza el parseo PEM ya existente en parseCertificateFromPemBytes(...).
+     * Reutiliza el parseo PEM ya existente en parseCertificateFromPemBytes(...). Solo lo parsea:
+     * no se añade al directorio de firmantes hasta que verifica una firma.
      */
     public X509Certificate loadCertificateFromUri(Context ctx, Uri certUri) throws Exception {
         // Leemos todos los bytes del fichero (PEM)
@@ -333,6 +452,10 @@ public class PqcCertificateManager {
         return parseCertificateFromPemBytes(certBytes);
     }
 
+    public SignerDirectory getSignerDirectory() {
+        return signerDirectory;
+    }
+
     /**
      * Verifica criptográficamente una firma sobre unos datos usando la clave pública
      * del certificado proporcionado.
@@ -354,13 +477,417 @@ public class PqcCertificateManager {
             // Fallback por si acaso
             algName = cert.getSigAlgName();
         }
+        return verifyWithPublicKey(publicKey, algName, data, signatureBytes);
+    }
+
+    /**
+     * Igual que {@link #verifyDataWithCertificate} pero con un firmante del directorio,
+     * cuya clave pública ya está decodificada.
+     */
+    public boolean verifyDataWithSigner(
+            SignerDirectory.Entry signer,
+            byte[] data,
+            byte[] signatureBytes
+    ) throws Exception {
+        return verifyWithPublicKey(signer.publicKey, signer.algorithm, data, signatureBytes);
+    }
+
+    /**
+     * Verifica una firma en bruto leyendo el documento en streaming.
+     */
+    public boolean verifyStreamWithSigner(
+            SignerDirectory.Entry signer,
+            InputStream document,
+            byte[] signatureBytes
+    ) throws Exception {
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        long docBytes = -1;
+        boolean failed = false;
+        try (Tracer.Span span = Tracer.begin("verify.raw").arg("alg", signer.algorithm);
+             PreparedVerifierCache.Lease sig = verifiers.acquire(signer.algorithm, signer.publicKey, KEYSTORE_PROVIDER)) {
+            byte[] buf = new byte[STREAM_BUFFER_SIZE];
+            int n;
+            try (Tracer.Span stream = Tracer.begin("verify.stream")) {
+                TimedInputStream in = new TimedInputStream(document);
+                long length = 0;
+                while ((n = in.read(buf)) != -1) {
+                    sig.update(buf, 0, n);
+                    length += n;
+                }
+                stream.arg("bytes", length).arg("read_ms", in.readMillis());
+                docBytes = length;
+            }
+            try (Tracer.Span pqc = Tracer.begin("pqc.verify")) {
+                return sig.verify(signatureBytes);
+            }
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            recordCrypto(MetricsRegistry.OP_VERIFY, signer.algorithm, t0, a0, docBytes, !failed);
+        }
+    }
+
+    private boolean verifyWithPublicKey(PublicKey publicKey, String algName,
+                                        byte[] data, byte[] signatureBytes) throws Exception {
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        boolean failed = false;
+        try (Tracer.Span span = Tracer.begin("pqc.verify").arg("alg", algName).arg("bytes", data.length);
+             PreparedVerifierCache.Lease sig = verifiers.acquire(algName, publicKey, KEYSTORE_PROVIDER)) {
+            Log.d(TAG, "Verificando firma con algoritmo: " + algName);
+
+            sig.update(data);
+            return sig.verify(signatureBytes);
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            recordCrypto(MetricsRegistry.OP_VERIFY, algName, t0, a0, data.length, !failed);
+        }
+    }
+
+    // -------------------------
+    // Contenedor de firma (.pqsig)
+    // -------------------------
+    public static class ContainerVerification {
+        public enum Status {
+            VALID,
+            INVALID_SIGNATURE,
+            LENGTH_MISMATCH,      // el documento no tiene la longitud firmada
+            DIGEST_MISMATCH,      // el documento no es el firmado
+            ALGORITHM_MISMATCH,   // el certificado no corresponde al algoritmo del contenedor
+            UNKNOWN_SIGNER        // la huella no está en el directorio de firmantes
+        }
+
+        public final Status status;
+        @Nullable public final SignerDirectory.Entry signer;
+
+        ContainerVerification(Status status, @Nullable SignerDirectory.Entry signer) {
+            this.status = status;
+            this.signer = signer;
+        }
+
+        public boolean isValid() {
+            return status == Status.VALID;
+        }
+    }
+
+    /**
+     * Firma un documento leyéndolo en streaming (una sola pasada para la firma y el resumen)
+     * y devuelve el contenedor autodescriptivo.
+     */
+    public SignatureContainer signToContainer(String alias, char[] keystorePassword, InputStream document) throws Exception {
+        KeyAndCert kc = getKeyAndCertificate(alias, keystorePassword);
+        String algName = kc.privateKey.getAlgorithm();
+
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        long docBytes = -1;
+        boolean failed = false;
+        try (Tracer.Span span = Tracer.begin("sign.container").arg("alg", algName)) {
+            Signature sig = Signature.getInstance(algName, KEYSTORE_PROVIDER);
+            sig.initSign(kc.privateKey);
+            MessageDigest md = SignatureContainer.newDigest(SignatureContainer.DIGEST_SHA256);
+
+            byte[] buf = new byte[STREAM_BUFFER_SIZE];
+            long length = 0;
+            int n;
+            try (Tracer.Span stream = Tracer.begin("sign.stream")) {
+                TimedInputStream in = new TimedInputStream(document);
+                while ((n = in.read(buf)) != -1) {
+                    sig.update(buf, 0, n);
+                    md.update(buf, 0, n);
+                    length += n;
+                }
+                stream.arg("bytes", length).arg("read_ms", in.readMillis());
+                docBytes = length;
+            }
+
+            byte[] signature;
+            try (Tracer.Span pqc = Tracer.begin("pqc.sign")) {
+                signature = sig.sign();
+            }
+            return new SignatureContainer(algName, SignerDirectory.fingerprint(kc.certificate), length,
+                    SignatureContainer.DIGEST_SHA256, md.digest(), signature);
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            recordCrypto(MetricsRegistry.OP_SIGN, algName, t0, a0, docBytes, !failed);
+        }
+    }
+
+    public SignatureContainer signToContainer(String alias, char[] keystorePassword, Uri documentUri) throws Exception {
+        try (InputStream in = openInputStream(documentUri)) {
+            return signToContainer(alias, keystorePassword, in);
+        }
+    }
+
+    /**
+     * Verifica un contenedor contra un documento.
+     *
+     * El firmante se resuelve por huella en el directorio (salvo que se indique uno). Si se conoce
+     * la longitud del documento y no coincide, se rechaza sin leerlo; en otro caso se lee una sola
+     * vez y, si la longitud o el resumen no coinciden, se rechaza sin llegar a la verificación PQC.
+     *
+     * @param knownLength longitud del documento si se conoce de antemano, o -1
+     */
+    public ContainerVerification verifyContainer(SignatureContainer container, InputStream document,
+                                                 long knownLength,
+                                                 @Nullable SignerDirectory.Entry signerOverride) throws Exception {
+        return verifyContainer(container, document, knownLength, signerOverride, null);
+    }
+
+    /**
+     * Igual, con el resumen del documento calculado de antemano (al seleccionarlo): si no
+     * coincide con el del contenedor se rechaza sin leer el documento y, si coincide, el
+     * documento solo se entrega al verificador (los miembros de un lote se vuelven a resumir).
+     */
+    public ContainerVerification verifyContainer(SignatureContainer container, InputStream document,
+                                                 @Nullable SignerDirectory.Entry signerOverride,
+                                                 DocumentDigest known) throws Exception {
+        return verifyContainer(container, document, known.length, signerOverride, known);
+    }
+
+    private ContainerVerification verifyContainer(SignatureContainer container, InputStream document,
+                                                  long knownLength,
+                                                  @Nullable SignerDirectory.Entry signerOverride,
+                                                  @Nullable DocumentDigest known) throws Exception {
+        final long t0 = System.nanoTime();
+        final long a0 = AllocationMeter.allocatedBytes();
+        boolean failed = false;
+        try (Tracer.Span span = Tracer.begin("verify.container").arg("alg", container.algorithm)) {
+            SignerDirectory.Entry signer = signerOverride != null
+                    ? signerOverride
+                    : signerDirectory.findByFingerprint(container.signerFingerprint);
+            if (signer == null) {
+                return new ContainerVerification(ContainerVerification.Status.UNKNOWN_SIGNER, null);
+            }
+            if (!signer.algorithm.equalsIgnoreCase(container.algorithm)) {
+                return new ContainerVerification(ContainerVerification.Status.ALGORITHM_MISMATCH, signer);
+            }
+            if (knownLength >= 0 && knownLength != container.documentLength) {
+                return new ContainerVerification(ContainerVerification.Status.LENGTH_MISMATCH, signer);
+            }
+
+            if (known != null && known.digestAlgorithm() != container.digestAlgorithm) {
+                known = null; // resumen de otro algoritmo: se calcula al leer
+            }
+            if (known != null && !MessageDigest.isEqual(known.sha256, container.documentDigest)) {
+                return new ContainerVerification(ContainerVerification.Status.DIGEST_MISMATCH, signer);
+            }
+            if (container.isBatch()) {
+                return verifyBatchMember(container, document, signer);
+            }
+            if (container.isPrehashed()) {
+                return verifyPrehashed(container, document, signer);
+            }
+
+            try (PreparedVerifierCache.Lease sig = verifiers.acquire(signer.algorithm, signer.publicKey, KEYSTORE_PROVIDER)) {
+                MessageDigest md = known == null ? SignatureContainer.newDigest(container.digestAlgorithm) : null;
+
+                byte[] buf = new byte[STREAM_BUFFER_SIZE];
+                long length = 0;
+                int n;
+                try (Tracer.Span stream = Tracer.begin("verify.stream")) {
+                    TimedInputStream in = new TimedInputStream(document);
+                    while ((n = in.read(buf)) != -1) {
+                        length += n;
+                        if (length > container.documentLength) {
+                            return new ContainerVerification(ContainerVerification.Status.LENGTH_MISMATCH, signer);
+                        }
+                        if (md != null) md.update(buf, 0, n);
+                        sig.update(buf, 0, n);
+                    }
+                    stream.arg("bytes", length).arg("read_ms", in.readMillis());
+                }
+                if (length != container.documentLength) {
+                    return new ContainerVerification(ContainerVerification.Status.LENGTH_MISMATCH, signer);
+                }
+                if (md != null && !MessageDigest.isEqual(md.digest(), container.documentDigest)) {
+                    return new ContainerVerification(ContainerVerification.Status.DIGEST_MISMATCH, signer);
+                }
+
+                boolean valid;
+                try (Tracer.Span pqc = Tracer.begin("pqc.verify")) {
+                    valid = sig.verify(container.signature);
+                }
+                return new ContainerVerification(valid
+                        ? ContainerVerification.Status.VALID
+                        : ContainerVerification.Status.INVALID_SIGNATURE, signer);
+            }
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        } finally {
+            recordCrypto(MetricsRegistry.OP_VERIFY, container.algorithm, t0, a0, container.documentLength, !failed);
+        }
+    }
+
+    /**
+     * Documento de un lote: se comprueba su resumen y su prueba de inclusión, y la firma de la
+     * raíz se verifica una sola vez para todo el lote ({@link BatchRootCache}).
+     *
+     * El documento se resume siempre al leerlo, aunque haya un resumen calculado al elegirlo: la
+     * firma de la raíz no cubre sus bytes, así que un resumen de antes (que solo sirve para
+     * descartar pronto) no prueba que el documento sea el mismo ahora.
+     */
+    private ContainerVerification verifyBatchMember(SignatureContainer container, InputStream document,
+                                                    SignerDirectory.Entry signer) throws Exception {
+        if (container.isPrehashed()) {
+            // Documento grande del lote: resumen en árbol, como en verifyPrehashed
+            TreeHash tree = TreeHash.compute(document, null, () -> Thread.currentThread().isInterrupted());
+            if (tree.length != container.documentLength) {
+                return new ContainerVerification(ContainerVerification.Status.LENGTH_MISMATCH, signer);
+            }
+            if (!MessageDigest.isEqual(tree.digest, container.documentDigest)) {
+                return new ContainerVerification(ContainerVerification.Status.DIGEST_MISMATCH, signer);
+            }
+        } else {
+            MessageDigest md = SignatureContainer.newDigest(container.digestAlgorithm);
+            byte[] buf = new byte[STREAM_BUFFER_SIZE];
+            long length = 0;
+            int n;
+            try (Tracer.Span stream = Tracer.begin("verify.stream")) {
+                TimedInputStream in = new TimedInputStream(document);
+                while ((n = in.read(buf)) != -1) {
+                    length += n;
+                    if (length > container.documentLength) {
+                        return new ContainerVerification(ContainerVerification.Status.LENGTH_MISMATCH, signer);
+                    }
+                    md.update(buf, 0, n);
+                }
+                stream.arg("bytes", length).arg("read_ms", in.readMillis());
+            }
+            if (length != container.documentLength) {
+                return new ContainerVerification(ContainerVerification.Status.LENGTH_MISMATCH, signer);
+            }
+            if (!MessageDigest.isEqual(md.digest(), container.documentDigest)) {
+                return new ContainerVerification(ContainerVerification.Status.DIGEST_MISMATCH, signer);
+            }
+        }
 
-        Log.d(TAG, "Verificando firma con algoritmo: " + algName);
+        // Una prueba que no encaja con su posición no lleva a ninguna raíz firmada
+        byte[] root = container.batchProof.rootFor(container.leafHash());
+        if (root == null) {
+            return new ContainerVerification(ContainerVerification.Status.INVALID_SIGNATURE, signer);
+        }
+        boolean valid = batchRoots.verify(signer.algorithm, signer.publicKey, KEYSTORE_PROVIDER,
+                MerkleTree.rootMessage(container.batchProof.leafCount, root), container.signature);
+        return new ContainerVerification(valid
+                ? ContainerVerification.Status.VALID
+                : ContainerVerification.Status.INVALID_SIGNATURE, signer);
+    }
+
+    /**
+     * Contenedor en modo pre-hash: el documento se resume en árbol en paralelo
+     * ({@link TreeHash}) y la firma se verifica sobre el resumen.
+     */
+    private ContainerVerification verifyPrehashed(SignatureContainer container, InputStream document,
+                                                  SignerDirectory.Entry signer) throws Exception {
+        TreeHash tree = TreeHash.compute(document, null, () -> Thread.currentThread().isInterrupted());
+        if (tree.length != container.documentLength) {
+            return new ContainerVerification(ContainerVerification.Status.LENGTH_MISMATCH, signer);
+        }
+        if (!MessageDigest.isEqual(tree.digest, container.documentDigest)) {
+            return new ContainerVerification(ContainerVerification.Status.DIGEST_MISMATCH, signer);
+        }
+        try (PreparedVerifierCache.Lease sig = verifiers.acquire(signer.algorithm, signer.publicKey, KEYSTORE_PROVIDER,
+                SigningContext.TREE_HASH);
+             Tracer.Span pqc = Tracer.begin("pqc.verify").arg("prehash", true)) {
+            sig.update(TreeHash.signedMessage(tree.length, tree.digest));
+            return new ContainerVerification(sig.verify(container.signature)
+                    ? ContainerVerification.Status.VALID
+                    : ContainerVerification.Status.INVALID_SIGNATURE, signer);
+        }
+    }
 
-        Signature sig = Signature.getInstance(algName, KEYSTORE_PROVIDER);
-        sig.initVerify(publicKey);
-        sig.update(data);
-        return sig.verify(signatureBytes);
+    public ContainerVerification verifyContainer(SignatureContainer container, Uri documentUri,
+                                                 @Nullable SignerDirectory.Entry signerOverride) throws Exception {
+        long knownLength = queryLength(documentUri);
+        try (InputStream in = openInputStream(documentUri)) {
+            return verifyContainer(container, in, knownLength, signerOverride);
+        }
+    }
+
+    /**
+     * Convierte una firma .bin antigua en contenedor. No verifica la firma: hacerlo antes.
+     */
+    public SignatureContainer convertLegacySignature(byte[] rawSignature, X509Certificate signerCert,
+                                                     Uri documentUri) throws Exception {
+        signerDirectory.ingest(signerCert);
+        try (InputStream in = openInputStream(documentUri)) {
+            return SignatureContainer.fromRawSignature(rawSignature, signerCert, in);
+        }
+    }
+
+    private InputStream openInputStream(Uri uri) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new IOException("No se pudo abrir InputStream para " + uri);
+        }
+        return in;
+    }
+
+    /** Longitud del documento según el proveedor, o -1 si no la informa. */
+    private long queryLength(Uri uri) {
+        try (AssetFileDescriptor afd = context.getContentResolver().openAssetFileDescriptor(uri, "r")) {
+            return afd != null ? afd.getLength() : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    // -------------------------
+    // CRLs (revocación sin conexión)
+    // -------------------------
+
+    /**
+     * Importa una CRL (completa o delta) seleccionada por el usuario. Solo se acepta si está
+     * firmada por una de las CA guardadas en el almacén junto a los certificados de usuario.
+     */
+    public boolean importCrlFromUri(Uri crlUri, char[] keystorePassword) throws Exception {
+        List<X509Certificate> issuers = listCaCertificates(keystorePassword);
+        try (InputStream in = context.getContentResolver().openInputStream(crlUri)) {
+            if (in == null) {
+                throw new IOException("No se pudo abrir InputStream para Uri: " + crlUri);
+            }
+            return crlCache.ingest(in, issuers);
+        }
+    }
+
+    public boolean importCrlFromFile(java.io.File crlFile, char[] keystorePassword) throws Exception {
+        return crlCache.ingestFile(crlFile, listCaCertificates(keystorePassword));
+    }
+
+    /**
+     * Procesa las CRLs nuevas del punto de distribución local (directorio "crl" del
+     * almacenamiento interno), que sustituye a la descarga desde la URL del certificado.
+     */
+    public int refreshCrlsFromLocalDistributionPoint(char[] keystorePassword) throws Exception {
+        if (!crlCache.hasPendingLocalSources()) {
+            return 0; // evitamos abrir el almacén si no hay nada nuevo
+        }
+        return crlCache.refreshFromLocalDistributionPoint(listCaCertificates(keystorePassword));
+    }
+
+    // Certificados de CA que acompañan a cada alias (posición 1 de la cadena)
+    private List<X509Certificate> listCaCertificates(char[] keystorePassword) throws Exception {
+        List<X509Certificate> result = new ArrayList<>();
+        KeyStore ks = loadOrCreateKeyStore(keystorePassword);
+        Enumeration<String> aliases = ks.aliases();
+        while (aliases.hasMoreElements()) {
+            Certificate[] chain = ks.getCertificateChain(aliases.nextElement());
+            if (chain == null) continue;
+            for (int i = 1; i < chain.length; i++) {
+                if (chain[i] instanceof X509Certificate) {
+                    result.add((X509Certificate) chain[i]);
+                }
+            }
+        }
+        return result;
     }
 
     public CertValidationResult validateCertificate(
@@ -428,6 +955,21 @@ public class PqcCertificateManager {
                     .append(digitalSignature ? "true (OK)\n" : "false -> NO apto para firma\n");
         }
 
+        // 5) Revocación contra la CRL en caché (sin E/S ni parseo de la CRL)
+        CrlCache.RevocationStatus rs =
+                crlCache.check(userCert.getIssuerX500Principal(), userCert.getSerialNumber());
+        result.revocationChecked = rs.checked;
+        result.revoked = rs.revoked;
+        if (!rs.checked) {
+            diag.append("Revocación: no comprobada (no hay CRL del emisor en caché)\n");
+        } else {
+            diag.append("Revocación (CRL nº ").append(rs.crlNumber).append("): ")
+                    .append(rs.revoked ? "REVOCADO -> NO apto para firma\n" : "no revocado (OK)\n");
+            if (rs.stale) {
+                diag.append("Aviso: la CRL en caché ha superado su nextUpdate\n");
+            }
+        }
+
         result.diagnostics = diag.toString();
         return result;
     }
@@ -0,0 +1,164 @@
+package com.example.minibaseapp.crypto;
+
+import androidx.annotation.Nullable;
+
+import com.example.minibaseapp.metrics.MetricsRegistry;
+
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Verificadores ya inicializados con la clave pública de cada firmante, reutilizados entre
+ * verificaciones.
+ *
+ * Signature.getInstance + initVerify busca el proveedor y decodifica la clave (y en ML-DSA
+ * calcula el hash tr de la clave pública) en cada verificación. Como se verifica mucho contra
+ * pocos firmantes, se guarda por (algoritmo, huella SHA-256 de la clave) un pequeño grupo de
+ * instancias ya inicializadas: tras verify() una Signature vuelve al estado de initVerify y se
+ * puede reutilizar. Una instancia que no llega a verify() (error o rechazo a mitad de lectura)
+ * tiene datos a medias y se descarta.
+ */
+public final class PreparedVerifierCache {
+
+    static final String CACHE_LOOKUPS = "minibase_verifier_cache_lookups_total";
+
+    private static final int MAX_KEYS = 16;
+    private static final int MAX_IDLE_PER_KEY = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final PreparedVerifierCache INSTANCE = new PreparedVerifierCache(MetricsRegistry.get());
+
+    private final MetricsRegistry metrics;
+    // LRU por orden de acceso
+    private final LinkedHashMap<String, ConcurrentLinkedQueue<Signature>> idle =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    PreparedVerifierCache(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    public static PreparedVerifierCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Verificador inicializado con publicKey. Cerrar siempre (try-with-resources): si se llegó a
+     * llamar a {@link Lease#verify} la instancia vuelve al grupo.
+     */
+    public Lease acquire(String algorithm, PublicKey publicKey, String provider) throws Exception {
+        return acquire(algorithm, publicKey, provider, null);
+    }
+
+    /**
+     * Igual, para firmas hechas con una cadena de contexto ({@link SigningContext}); cada contexto
+     * tiene su propio grupo de instancias.
+     */
+    public Lease acquire(String algorithm, PublicKey publicKey, String provider,
+                         @Nullable byte[] context) throws Exception {
+        String key = algorithm + ":" + keyFingerprint(publicKey) + ":" + SigningContext.key(context);
+        ConcurrentLinkedQueue<Signature> queue;
+        synchronized (idle) {
+            queue = idle.get(key);
+            if (queue == null) {
+                queue = new ConcurrentLinkedQueue<>();
+                idle.put(key, queue);
+                if (idle.size() > MAX_KEYS) {
+                    Iterator<Map.Entry<String, ConcurrentLinkedQueue<Signature>>> it = idle.entrySet().iterator();
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+        Signature sig = queue.poll();
+        if (sig != null) {
+            metrics.counter(CACHE_LOOKUPS, "alg", algorithm, "result", "hit").increment();
+        } else {
+            metrics.counter(CACHE_LOOKUPS, "alg", algorithm, "result", "miss").increment();
+            sig = Signature.getInstance(algorithm, provider);
+            sig.initVerify(publicKey);
+            SigningContext.apply(sig, algorithm, context);
+        }
+        return new Lease(sig, queue);
+    }
+
+    /**
+     * Deja un verificador inicializado para la clave si no hay ninguno libre, para que la
+     * siguiente verificación no pague getInstance ni initVerify.
+     */
+    public void prewarm(String algorithm, PublicKey publicKey, String provider) throws Exception {
+        String key = algorithm + ":" + keyFingerprint(publicKey) + ":" + SigningContext.key(null);
+        ConcurrentLinkedQueue<Signature> queue;
+        synchronized (idle) {
+            queue = idle.get(key);
+        }
+        if (queue != null && !queue.isEmpty()) return;
+        try (Lease lease = acquire(algorithm, publicKey, provider)) {
+            // Sin verify() la instancia no volvería: se marca como reutilizable (no tiene datos)
+            lease.completed = true;
+        }
+    }
+
+    /** Solo para pruebas. */
+    int idleCount() {
+        synchronized (idle) {
+            int n = 0;
+            for (ConcurrentLinkedQueue<Signature> q : idle.values()) {
+                n += q.size();
+            }
+            return n;
+        }
+    }
+
+    public void clear() {
+        synchronized (idle) {
+            idle.clear();
+        }
+    }
+
+    private static String keyFingerprint(PublicKey publicKey) throws Exception {
+        byte[] fp = MessageDigest.getInstance("SHA-256").digest(publicKey.getEncoded());
+        StringBuilder sb = new StringBuilder(fp.length * 2);
+        for (byte b : fp) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final Signature signature;
+        private final ConcurrentLinkedQueue<Signature> home;
+        private boolean completed;
+
+        Lease(Signature signature, ConcurrentLinkedQueue<Signature> home) {
+            this.signature = signature;
+            this.home = home;
+        }
+
+        public void update(byte[] data) throws SignatureException {
+            signature.update(data);
+        }
+
+        public void update(byte[] data, int off, int len) throws SignatureException {
+            signature.update(data, off, len);
+        }
+
+        public boolean verify(byte[] signatureBytes) throws SignatureException {
+            boolean valid = signature.verify(signatureBytes);
+            completed = true;
+            return valid;
+        }
+
+        @Override
+        public void close() {
+            // Si la clave salió del LRU mientras tanto, la cola ya no es accesible y se descarta sola
+            if (completed && home.size() < MAX_IDLE_PER_KEY) {
+                home.offer(signature);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.minibaseapp.crypto;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * Contenedor binario autodescriptivo para firmas (.pqsig).
+ *
+ * A diferencia del .bin con la firma en bruto, el contenedor incluye lo necesario para
+ * resolver el firmante y descartar un documento equivocado antes de la operación PQC:
+ *
+ * <pre>
+ *  magic      4   "PQSG"
+ *  version    1   1 = documento, 2 = lote (firma sobre la raíz de Merkle)
+ *  flags      1   reservado (0)
+ *  algLen     1   longitud del nombre del algoritmo
+ *  algorithm  n   UTF-8, p.ej. "ML-DSA-44"
+ *  signerFp   32  SHA-256 del certificado del firmante (DER)
+ *  docLength  8   longitud del documento firmado
+ *  digestAlg  1   1 = SHA-256, 2 = árbol SHA-256 por bloques ({@link TreeHash}, pre-hash)
+ *  digestLen  1
+ *  digest     n   resumen del documento
+ *  -- solo en la versión 2 --
+ *  leafIndex  4   posición del documento en el lote
+ *  leafCount  4   documentos del lote
+ *  pathLen    1
+ *  path       n*32 prueba de inclusión (ver {@link MerkleTree})
+ *  --
+ *  sigLen     4
+ *  signature  n   firma sobre el documento completo (igual que el .bin); con digestAlg 2, sobre
+ *                 {@link TreeHash#signedMessage}; en la versión 2, sobre {@link MerkleTree#rootMessage}
+ * </pre>
+ *
+ * Todos los enteros en big-endian.
+ *
+ * Las firmas de raíces de lote y de resúmenes en árbol usan la cadena de contexto de ML-DSA /
+ * SLH-DSA ({@link SigningContext}: "PQSG-MERKLE-ROOT" y "PQSG-TREEHASH"); las de documentos, el
+ * contexto vacío. La etiqueta del mensaje sola no separa los dominios, porque el contenido de un
+ * documento lo elige quien pide la firma.
+ */
+public class SignatureContainer {
+
+    public static final String FILE_EXTENSION = ".pqsig";
+
+    private static final byte[] MAGIC = {'P', 'Q', 'S', 'G'};
+    private static final int VERSION = 1;
+    private static final int VERSION_BATCH = 2;
+
+    public static final int DIGEST_SHA256 = 1;
+    // Modo pre-hash de documentos grandes: se firma el resumen en árbol, no el documento
+    public static final int DIGEST_TREE_SHA256 = 2;
+
+    // Límite de cordura al leer (SLH-DSA ronda los 50 KB)
+    private static final int MAX_SIGNATURE_LENGTH = 1 << 20;
+
+    public final String algorithm;
+    public final byte[] signerFingerprint;
+    public final long documentLength;
+    public final int digestAlgorithm;
+    public final byte[] documentDigest;
+    public final byte[] signature;
+    // Solo en contenedores de un lote: la firma es de la raíz, no del documento
+    @Nullable public final MerkleTree.Proof batchProof;
+
+    public SignatureContainer(String algorithm, byte[] signerFingerprint, long documentLength,
+                              int digestAlgorithm, byte[] documentDigest, byte[] signature) {
+        this(algorithm, signerFingerprint, documentLength, digestAlgorithm, documentDigest, signature, null);
+    }
+
+    public SignatureContainer(String algorithm, byte[] signerFingerprint, long documentLength,
+                              int digestAlgorithm, byte[] documentDigest, byte[] signature,
+                              @Nullable MerkleTree.Proof batchProof) {
+        if (signerFingerprint.length != SignerDirectory.FINGERPRINT_LENGTH) {
+            throw new IllegalArgumentException("Huella del firmante con longitud incorrecta");
+        }
+        this.algorithm = algorithm;
+        this.signerFingerprint = signerFingerprint;
+        this.documentLength = documentLength;
+        this.digestAlgorithm = digestAlgorithm;
+        this.documentDigest = documentDigest;
+        this.signature = signature;
+        this.batchProof = batchProof;
+    }
+
+    public boolean isPrehashed() {
+        return digestAlgorithm == DIGEST_TREE_SHA256;
+    }
+
+    public boolean isBatch() {
+        return batchProof != null;
+    }
+
+    /** Hoja del documento en el árbol del lote. */
+    public byte[] leafHash() {
+        return MerkleTree.leafHash(documentLength, digestAlgorithm, documentDigest);
+    }
+
+    // -------------------------
+    // Escritura / lectura en streaming
+    // -------------------------
+
+    public void writeTo(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        byte[] alg = algorithm.getBytes(StandardCharsets.UTF_8);
+        if (alg.length > 255) {
+            throw new IOException("Nombre de algoritmo demasiado largo");
+        }
+        out.write(MAGIC);
+        out.writeByte(batchProof != null ? VERSION_BATCH : VERSION);
+        out.writeByte(0);
+        out.writeByte(alg.length);
+        out.write(alg);
+        out.write(signerFingerprint);
+        out.writeLong(documentLength);
+        out.writeByte(digestAlgorithm);
+        out.writeByte(documentDigest.length);
+        out.write(documentDigest);
+        if (batchProof != null) {
+            out.writeInt(batchProof.leafIndex);
+            out.writeInt(batchProof.leafCount);
+            out.writeByte(batchProof.pathLength());
+            for (int i = 0; i < batchProof.pathLength(); i++) {
+                out.write(batchProof.sibling(i));
+            }
+        }
+        out.writeInt(signature.length);
+        out.write(signature);
+        out.flush();
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(
+                64 + algorithm.length() + documentDigest.length + signature.length
+                        + (batchProof != null ? 9 + batchProof.pathLength() * MerkleTree.HASH_LENGTH : 0));
+        try {
+            writeTo(bos);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Lee un contenedor. Lanza IOException si el flujo no empieza por la cabecera del formato.
+     */
+    public static SignatureContainer readFrom(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("No es un contenedor de firma");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION && version != VERSION_BATCH) {
+            throw new IOException("Versión de contenedor no soportada: " + version);
+        }
+        in.readUnsignedByte(); // flags
+
+        byte[] alg = new byte[in.readUnsignedByte()];
+        in.readFully(alg);
+        byte[] fp = new byte[SignerDirectory.FINGERPRINT_LENGTH];
+        in.readFully(fp);
+        long docLength = in.readLong();
+        int digestAlg = in.readUnsignedByte();
+        if (digestAlg != DIGEST_SHA256 && digestAlg != DIGEST_TREE_SHA256) {
+            throw new IOException("Algoritmo de resumen no soportado: " + digestAlg);
+        }
+        byte[] digest = new byte[in.readUnsignedByte()];
+        in.readFully(digest);
+        MerkleTree.Proof proof = null;
+        if (version == VERSION_BATCH) {
+            int leafIndex = in.readInt();
+            int leafCount = in.readInt();
+            int pathLen = in.readUnsignedByte();
+            if (pathLen > MerkleTree.MAX_PATH_LENGTH) {
+                throw new IOException("Prueba de inclusión demasiado larga: " + pathLen);
+            }
+            byte[][] path = new byte[pathLen][MerkleTree.HASH_LENGTH];
+            for (byte[] h : path) {
+                in.readFully(h);
+            }
+            try {
+                proof = new MerkleTree.Proof(leafIndex, leafCount, path);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+        int sigLen = in.readInt();
+        if (sigLen <= 0 || sigLen > MAX_SIGNATURE_LENGTH) {
+            throw new IOException("Longitud de firma no válida: " + sigLen);
+        }
+        byte[] sig = new byte[sigLen];
+        in.readFully(sig);
+
+        return new SignatureContainer(new String(alg, StandardCharsets.UTF_8), fp, docLength,
+                digestAlg, digest, sig, proof);
+    }
+
+    /** Comprueba la cabecera sin consumir más bytes de los necesarios. */
+    public static boolean hasContainerHeader(byte[] data) {
+        if (data == null || data.length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    // -------------------------
+    // Conversión desde .bin
+    // -------------------------
+
+    /**
+     * Convierte una firma en bruto (.bin) en contenedor, leyendo el documento en streaming
+     * para calcular su longitud y resumen. No verifica la firma.
+     */
+    public static SignatureContainer fromRawSignature(byte[] rawSignature, X509Certificate signerCert,
+                                                      InputStream document) throws Exception {
+        MessageDigest md = newDigest(DIGEST_SHA256);
+        byte[] buf = new byte[64 * 1024];
+        long length = 0;
+        int n;
+        while ((n = document.read(buf)) != -1) {
+            md.update(buf, 0, n);
+            length += n;
+        }
+        String alg = signerCert.getPublicKey().getAlgorithm();
+        if (alg == null || alg.isEmpty()) {
+            alg = signerCert.getSigAlgName();
+        }
+        return new SignatureContainer(alg, SignerDirectory.fingerprint(signerCert), length,
+                DIGEST_SHA256, md.digest(), rawSignature.clone());
+    }
+
+    static MessageDigest newDigest(int digestAlgorithm) throws Exception {
+        if (digestAlgorithm == DIGEST_SHA256) {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        throw new Exception("Algoritmo de resumen no soportado: " + digestAlgorithm);
+    }
+
+}
@@ -0,0 +1,240 @@
+package com.example.minibaseapp.crypto;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Directorio local de certificados de firmantes.
+ *
+ * Los certificados se ingieren una vez (se guardan en DER en el almacenamiento interno) y se
+ * indexan en memoria por huella SHA-256, SubjectKeyIdentifier y emisor+serial. Cada entrada
+ * conserva la clave pública ya decodificada, de modo que resolver el firmante de una firma es
+ * una consulta en un mapa, sin E/S ni parseo.
+ */
+public class SignerDirectory {
+
+    private static final String TAG = "SignerDirectory";
+    private static final String DIR_NAME = "signers";
+
+    public static final int FINGERPRINT_LENGTH = 32;
+
+    private static volatile SignerDirectory instance;
+
+    private final File dir;
+
+    private final Map<String, Entry> byFingerprint = new ConcurrentHashMap<>();
+    private final Map<String, Entry> bySubjectKeyId = new ConcurrentHashMap<>();
+    private final Map<String, Entry> byIssuerSerial = new ConcurrentHashMap<>();
+
+    private SignerDirectory(Context context) {
+        this.dir = new File(context.getApplicationContext().getFilesDir(), DIR_NAME);
+        load();
+    }
+
+    public static SignerDirectory getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SignerDirectory.class) {
+                if (instance == null) {
+                    instance = new SignerDirectory(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    // -------------------------
+    // Entrada del directorio
+    // -------------------------
+    public static class Entry {
+        public final X509Certificate certificate;
+        public final PublicKey publicKey;   // decodificada una sola vez
+        public final String algorithm;
+        public final byte[] fingerprint;    // SHA-256 del DER
+        public final String fingerprintHex;
+        @Nullable public final byte[] subjectKeyId;
+
+        Entry(X509Certificate certificate, byte[] fingerprint, @Nullable byte[] subjectKeyId) {
+            this.certificate = certificate;
+            this.publicKey = certificate.getPublicKey();
+            String alg = publicKey.getAlgorithm();
+            this.algorithm = (alg != null && !alg.isEmpty()) ? alg : certificate.getSigAlgName();
+            this.fingerprint = fingerprint;
+            this.fingerprintHex = toHex(fingerprint);
+            this.subjectKeyId = subjectKeyId;
+        }
+
+        public String displayName() {
+            return certificate.getSubjectX500Principal().getName();
+        }
+    }
+
+    // -------------------------
+    // Ingesta
+    // -------------------------
+
+    /**
+     * Añade el certificado al directorio (si no estaba) y devuelve su entrada.
+     */
+    public Entry ingest(X509Certificate cert) throws Exception {
+        byte[] der = cert.getEncoded();
+        byte[] fp = sha256(der);
+        Entry existing = byFingerprint.get(toHex(fp));
+        if (existing != null) {
+            return existing;
+        }
+
+        synchronized (this) {
+            existing = byFingerprint.get(toHex(fp));
+            if (existing != null) {
+                return existing;
+            }
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("No se pudo crear el directorio de firmantes");
+            }
+            File out = new File(dir, toHex(fp) + ".der");
+            try (FileOutputStream fos = new FileOutputStream(out)) {
+                fos.write(der);
+            }
+            Entry entry = new Entry(cert, fp, subjectKeyIdOf(cert));
+            index(entry);
+            Log.i(TAG, "Firmante añadido: " + entry.displayName() + " fp=" + entry.fingerprintHex);
+            return entry;
+        }
+    }
+
+    /**
+     * Entrada del certificado sin añadirlo al directorio: la ya indexada si existe, o una nueva
+     * solo en memoria. Para trabajo especulativo, que no debe dejar nada en disco.
+     */
+    public Entry decode(X509Certificate cert) throws Exception {
+        byte[] fp = sha256(cert.getEncoded());
+        Entry existing = byFingerprint.get(toHex(fp));
+        return existing != null ? existing : new Entry(cert, fp, subjectKeyIdOf(cert));
+    }
+
+    private void index(Entry e) {
+        byFingerprint.put(e.fingerprintHex, e);
+        if (e.subjectKeyId != null) {
+            bySubjectKeyId.put(toHex(e.subjectKeyId), e);
+        }
+        byIssuerSerial.put(issuerSerialKey(e.certificate.getIssuerX500Principal(),
+                e.certificate.getSerialNumber()), e);
+    }
+
+    private void load() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        try {
+            CertificateFactory cf = CertificateFactory.getInstance("X.509", "BC");
+            for (File f : files) {
+                if (!f.getName().endsWith(".der")) continue;
+                try (InputStream in = new FileInputStream(f)) {
+                    X509Certificate cert = (X509Certificate) cf.generateCertificate(in);
+                    index(new Entry(cert, sha256(cert.getEncoded()), subjectKeyIdOf(cert)));
+                } catch (Exception e) {
+                    Log.w(TAG, "Certificado del directorio ilegible: " + f.getName() + " - " + e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "No se pudo cargar el directorio de firmantes", e);
+        }
+    }
+
+    // -------------------------
+    // Consultas (O(1), sin E/S)
+    // -------------------------
+
+    @Nullable
+    public Entry findByFingerprint(byte[] sha256Fingerprint) {
+        return byFingerprint.get(toHex(sha256Fingerprint));
+    }
+
+    @Nullable
+    public Entry findBySubjectKeyId(byte[] subjectKeyId) {
+        return bySubjectKeyId.get(toHex(subjectKeyId));
+    }
+
+    @Nullable
+    public Entry findByIssuerAndSerial(X500Principal issuer, BigInteger serial) {
+        return byIssuerSerial.get(issuerSerialKey(issuer, serial));
+    }
+
+    public List<Entry> list() {
+        return new ArrayList<>(byFingerprint.values());
+    }
+
+    public boolean isEmpty() {
+        return byFingerprint.isEmpty();
+    }
+
+    // -------------------------
+    // Utilidades
+    // -------------------------
+
+    public static byte[] fingerprint(X509Certificate cert) throws Exception {
+        return sha256(cert.getEncoded());
+    }
+
+    /**
+     * SubjectKeyIdentifier de la extensión; si no existe, el método 1 de RFC 5280
+     * (SHA-1 de la clave pública) para poder indexar igualmente.
+     */
+    @Nullable
+    static byte[] subjectKeyIdOf(X509Certificate cert) {
+        try {
+            byte[] ext = cert.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+            if (ext != null) {
+                byte[] inner = ASN1OctetString.getInstance(ext).getOctets();
+                return ASN1OctetString.getInstance(inner).getOctets();
+            }
+            SubjectPublicKeyInfo spki = SubjectPublicKeyInfo.getInstance(cert.getPublicKey().getEncoded());
+            return MessageDigest.getInstance("SHA-1").digest(spki.getPublicKeyData().getBytes());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String issuerSerialKey(X500Principal issuer, BigInteger serial) {
+        return toHex(sha256(issuer.getEncoded())) + ":" + serial.toString(16);
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format(Locale.ROOT, "%02x", b));
+        }
+        return sb.toString();
+    }
+}
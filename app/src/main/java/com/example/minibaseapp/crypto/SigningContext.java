@@ -0,0 +1,50 @@
+package com.example.minibaseapp.crypto;
+
+import androidx.annotation.Nullable;
+
+import org.bouncycastle.jcajce.spec.ContextParameterSpec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Signature;
+import java.util.Locale;
+
+/**
+ * Cadenas de contexto de ML-DSA / SLH-DSA (FIPS 204 y 205) para lo que no es un documento.
+ *
+ * Con la misma clave se firman documentos, raíces de lote ({@link MerkleTree#rootMessage}) y
+ * resúmenes en árbol ({@link TreeHash#signedMessage}). La etiqueta al principio de esos mensajes
+ * no basta para separarlos: el contenido de un documento lo elige quien pide la firma, y un
+ * documento que empezase por "PQSG-MERKLE-ROOT" daría una firma válida de una raíz. Con el
+ * contexto, el algoritmo mezcla el dominio en lo que se firma y ninguna firma de un dominio
+ * verifica en otro. Los documentos se firman con el contexto vacío, como hasta ahora.
+ *
+ * BouncyCastle solo acepta el contexto justo después de initSign/initVerify y la instancia lo
+ * conserva tras sign()/verify(): las instancias con contexto se reutilizan solo para ese mismo
+ * contexto.
+ */
+final class SigningContext {
+
+    static final byte[] BATCH_ROOT = "PQSG-MERKLE-ROOT".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] TREE_HASH = "PQSG-TREEHASH".getBytes(StandardCharsets.US_ASCII);
+
+    private SigningContext() {
+    }
+
+    /** Si el algoritmo admite cadena de contexto. Para los demás solo queda la etiqueta. */
+    static boolean supports(String algorithm) {
+        String alg = algorithm.toUpperCase(Locale.ROOT);
+        return alg.startsWith("ML-DSA") || alg.startsWith("SLH-DSA");
+    }
+
+    /** Fija el contexto en una Signature recién inicializada (antes de cualquier update). */
+    static void apply(Signature sig, String algorithm, @Nullable byte[] context) throws Exception {
+        if (context != null && supports(algorithm)) {
+            sig.setParameter(new ContextParameterSpec(context));
+        }
+    }
+
+    /** Clave para agrupar instancias por contexto ("" para documentos). */
+    static String key(@Nullable byte[] context) {
+        return context == null ? "" : new String(context, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.minibaseapp.crypto;
+
+import androidx.annotation.Nullable;
+
+import com.example.minibaseapp.metrics.Tracer;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Resumen en árbol de documentos grandes, calculado en paralelo.
+ *
+ * Signature.update consume el documento en orden en un solo núcleo; con documentos de varios GB
+ * eso limita la firma. En el modo "pre-hash" el documento se parte en bloques de
+ * {@link #CHUNK_SIZE}, cada bloque se resume por separado en un ForkJoinPool y los resúmenes se
+ * combinan con un {@link MerkleTree} (hoja = SHA-256(0x00 || bloque)). Lo que se firma es
+ * {@link #signedMessage}: la longitud y la raíz. La forma del árbol depende solo de la longitud,
+ * así que el verificador obtiene el mismo resumen con cualquier número de hilos.
+ *
+ * Si el flujo es de un fichero (FileInputStream con canal posicionable) los bloques se proyectan
+ * en memoria y se resumen sin copiarlos; si no, se leen en orden y se resumen en paralelo
+ * mientras se lee el siguiente.
+ */
+public final class TreeHash {
+
+    public static final int CHUNK_SIZE = 1 << 20;
+    // Por debajo, el resumen secuencial de siempre sale igual de rápido
+    public static final long PREHASH_THRESHOLD = 64L << 20;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte[] SIGNED_LABEL = "PQSG-TREEHASH".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    public final long length;
+    public final byte[] digest;
+
+    private TreeHash(long length, byte[] digest) {
+        this.length = length;
+        this.digest = digest;
+    }
+
+    /** Si un documento de esta longitud se firma en modo pre-hash. */
+    public static boolean appliesTo(long length) {
+        return length >= PREHASH_THRESHOLD;
+    }
+
+    /** Mensaje que se firma en modo pre-hash. */
+    public static byte[] signedMessage(long length, byte[] digest) {
+        return ByteBuffer.allocate(SIGNED_LABEL.length + 4 + 8 + digest.length)
+                .put(SIGNED_LABEL).putInt(CHUNK_SIZE).putLong(length).put(digest).array();
+    }
+
+    /**
+     * Lee el flujo hasta el final. Bloquea: llamar desde un hilo de trabajo.
+     *
+     * @param progress  bytes resumidos hasta ahora (desde cualquier hilo), puede ser null
+     * @param cancelled se consulta en cada bloque; si devuelve true se aborta con
+     *                  CancellationException
+     */
+    public static TreeHash compute(InputStream in, @Nullable LongConsumer progress,
+                                   BooleanSupplier cancelled) throws IOException {
+        try (Tracer.Span span = Tracer.begin("digest.tree")) {
+            TreeHash mapped = in instanceof FileInputStream
+                    ? computeMapped(((FileInputStream) in).getChannel(), progress, cancelled)
+                    : null;
+            TreeHash result = mapped != null ? mapped : computeStreamed(in, progress, cancelled);
+            span.arg("bytes", result.length).arg("mapped", mapped != null);
+            return result;
+        }
+    }
+
+    // -------------------------
+    // Fichero proyectado en memoria
+    // -------------------------
+
+    @Nullable
+    private static TreeHash computeMapped(FileChannel channel, @Nullable LongConsumer progress,
+                                          BooleanSupplier cancelled) throws IOException {
+        long start;
+        long length;
+        try {
+            start = channel.position();
+            length = channel.size() - start;
+        } catch (IOException e) {
+            return null; // tubería u otro canal sin posición: se lee en orden
+        }
+        if (length <= 0) {
+            return null; // un tamaño 0 también puede ser una tubería
+        }
+        int chunks = (int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        byte[][] leaves = new byte[chunks][];
+        AtomicLong done = new AtomicLong();
+        try {
+            POOL.invoke(new MappedLeaves(channel, start, length, 0, chunks, leaves, done, progress, cancelled));
+        } catch (UncheckedIO e) {
+            throw e.io;
+        }
+        channel.position(start + length);
+        return new TreeHash(length, new MerkleTree(Arrays.asList(leaves)).root());
+    }
+
+    private static final class MappedLeaves extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long length;
+        private final int from;
+        private final int to;
+        private final byte[][] leaves;
+        private final AtomicLong done;
+        @Nullable private final LongConsumer progress;
+        private final BooleanSupplier cancelled;
+
+        MappedLeaves(FileChannel channel, long start, long length, int from, int to, byte[][] leaves,
+                     AtomicLong done, @Nullable LongConsumer progress, BooleanSupplier cancelled) {
+            this.channel = channel;
+            this.start = start;
+            this.length = length;
+            this.from = from;
+            this.to = to;
+            this.leaves = leaves;
+            this.done = done;
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MappedLeaves(channel, start, length, from, mid, leaves, done, progress, cancelled),
+                        new MappedLeaves(channel, start, length, mid, to, leaves, done, progress, cancelled));
+                return;
+            }
+            if (cancelled.getAsBoolean()) throw new CancellationException();
+            long offset = (long) from * CHUNK_SIZE;
+            int size = (int) Math.min(CHUNK_SIZE, length - offset);
+            try {
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start + offset, size);
+                leaves[from] = leaf(chunk);
+            } catch (IOException e) {
+                throw new UncheckedIO(e);
+            }
+            long total = done.addAndGet(size);
+            if (progress != null) progress.accept(total);
+        }
+    }
+
+    private static final class UncheckedIO extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final IOException io;
+
+        UncheckedIO(IOException io) {
+            super(io);
+            this.io = io;
+        }
+    }
+
+    // -------------------------
+    // Flujo leído en orden
+    // -------------------------
+
+    private static TreeHash computeStreamed(InputStream in, @Nullable LongConsumer progress,
+                                            BooleanSupplier cancelled) throws IOException {
+        // Bloques en vuelo acotados: la lectura no se adelanta más de dos bloques por hilo
+        BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(PARALLELISM * 2);
+        for (int i = 0; i < PARALLELISM * 2; i++) {
+            buffers.add(new byte[CHUNK_SIZE]);
+        }
+        List<ForkJoinTask<byte[]>> leaves = new ArrayList<>();
+        AtomicLong done = new AtomicLong();
+        long length = 0;
+        try {
+            while (true) {
+                if (cancelled.getAsBoolean()) throw new CancellationException();
+                byte[] buf = buffers.take();
+                int n = readChunk(in, buf);
+                if (n == 0 && !leaves.isEmpty()) {
+                    break;
+                }
+                length += n;
+                leaves.add(POOL.submit(() -> {
+                    try {
+                        byte[] h = leaf(ByteBuffer.wrap(buf, 0, n));
+                        long total = done.addAndGet(n);
+                        if (progress != null) progress.accept(total);
+                        return h;
+                    } finally {
+                        buffers.add(buf);
+                    }
+                }));
+                if (n < CHUNK_SIZE) {
+                    break;
+                }
+            }
+            List<byte[]> hashes = new ArrayList<>(leaves.size());
+            for (ForkJoinTask<byte[]> leaf : leaves) {
+                hashes.add(leaf.get());
+            }
+            return new TreeHash(length, new MerkleTree(hashes).root());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (ForkJoinTask<byte[]> leaf : leaves) {
+                leaf.cancel(false);
+            }
+        }
+    }
+
+    // Llena buf salvo al final del flujo; devuelve los bytes leídos
+    private static int readChunk(InputStream in, byte[] buf) throws IOException {
+        int off = 0;
+        int n;
+        while (off < buf.length && (n = in.read(buf, off, buf.length - off)) != -1) {
+            off += n;
+        }
+        return off;
+    }
+
+    private static byte[] leaf(ByteBuffer chunk) {
+        MessageDigest md = DIGESTS.get();
+        md.update(LEAF_PREFIX);
+        md.update(chunk);
+        return md.digest();
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.minibaseapp.crypto;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.jcajce.provider.asymmetric.MLDSA;
+import org.bouncycastle.jcajce.provider.asymmetric.X509;
+import org.bouncycastle.jcajce.provider.config.ConfigurableProvider;
+import org.bouncycastle.jcajce.provider.keystore.PKCS12;
+import org.bouncycastle.jcajce.provider.util.AsymmetricKeyInfoConverter;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.security.Provider;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Proveedor "BC" con solo los servicios que usa la app: almacén PKCS#12, CertificateFactory
+ * X.509 (certificados y CRLs, usada también por JcaX509CertificateConverter) y ML-DSA (firma,
+ * KeyFactory para el parseo PEM de claves y generación de claves).
+ *
+ * new BouncyCastleProvider() registra miles de entradas y carga cientos de clases al
+ * construirse. Aquí construir el proveedor no registra nada: cada grupo de servicios se
+ * configura con las mismas clases Mappings de BouncyCastle la primera vez que se pide un servicio
+ * de su tipo.
+ *
+ * Las operaciones internas de BouncyCastle que no pasan por el proveedor registrado (cifrado
+ * PBE y MAC del PKCS#12, verificación de firmas de CRL) siguen resolviéndose con una instancia
+ * completa privada que BouncyCastle crea por su cuenta la primera vez que las necesita.
+ *
+ * No hay CertPathValidator ni firmas clásicas: las cadenas se validan enlace a enlace con
+ * X509Certificate.verify (PqcCertificateManager#validateCertificate) y solo se admiten cadenas
+ * firmadas con ML-DSA.
+ */
+public final class TrimmedBouncyCastleProvider extends Provider implements ConfigurableProvider {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String INFO = "BouncyCastle recortado (PKCS12, X.509, ML-DSA)";
+
+    // Grupo de servicios por configurar -> tipos de servicio que lo activan
+    private static final String GROUP_KEYSTORE = "keystore";
+    private static final String GROUP_X509 = "x509";
+    private static final String GROUP_MLDSA = "mldsa";
+
+    private static final Map<String, String> GROUP_BY_TYPE = new HashMap<>();
+
+    static {
+        GROUP_BY_TYPE.put("KeyStore", GROUP_KEYSTORE);
+        GROUP_BY_TYPE.put("CertificateFactory", GROUP_X509);
+        GROUP_BY_TYPE.put("Signature", GROUP_MLDSA);
+        GROUP_BY_TYPE.put("KeyFactory", GROUP_MLDSA);
+        GROUP_BY_TYPE.put("KeyPairGenerator", GROUP_MLDSA);
+    }
+
+    private final Map<String, Boolean> configured = new HashMap<>();
+    private final Map<ASN1ObjectIdentifier, AsymmetricKeyInfoConverter> keyInfoConverters = new HashMap<>();
+
+    @SuppressWarnings("deprecation") // el constructor con versión String no existe en Android
+    public TrimmedBouncyCastleProvider() {
+        super(BouncyCastleProvider.PROVIDER_NAME, 1.0, INFO);
+    }
+
+    // -------------------------
+    // Configuración bajo demanda
+    // -------------------------
+
+    @Override
+    public synchronized Service getService(String type, String algorithm) {
+        String group = GROUP_BY_TYPE.get(type);
+        if (group != null) {
+            configureGroup(group);
+        }
+        return super.getService(type, algorithm);
+    }
+
+    @Override
+    public synchronized Set<Service> getServices() {
+        configureGroup(GROUP_KEYSTORE);
+        configureGroup(GROUP_X509);
+        configureGroup(GROUP_MLDSA);
+        return super.getServices();
+    }
+
+    /** Solo para pruebas y para la medida de arranque: número de entradas registradas. */
+    synchronized int registeredEntries() {
+        return size();
+    }
+
+    private void configureGroup(String group) {
+        if (configured.containsKey(group)) return;
+        configured.put(group, Boolean.TRUE);
+        switch (group) {
+            case GROUP_KEYSTORE:
+                new PKCS12.Mappings().configure(this);
+                break;
+            case GROUP_X509:
+                new X509.Mappings().configure(this);
+                break;
+            case GROUP_MLDSA:
+                new MLDSA.Mappings().configure(this);
+                break;
+            default:
+                throw new IllegalArgumentException(group);
+        }
+    }
+
+    // -------------------------
+    // ConfigurableProvider (lo que llaman las clases Mappings, como en BouncyCastleProvider)
+    // -------------------------
+
+    @Override
+    public void setParameter(String parameterName, Object parameter) {
+        // Solo lo usan EC y DH, que no se registran
+    }
+
+    @Override
+    public void addAlgorithm(String key, String value) {
+        if (containsKey(key)) {
+            throw new IllegalStateException("duplicate provider key (" + key + ") found");
+        }
+        put(key, value);
+    }
+
+    @Override
+    public void addAlgorithm(String key, String value, Map<String, String> attributes) {
+        addAlgorithm(key, value);
+        addAttributes(key, attributes);
+    }
+
+    @Override
+    public void addAlgorithm(String type, ASN1ObjectIdentifier oid, String className) {
+        addAlgorithm(type + "." + oid, className);
+        addAlgorithm(type + ".OID." + oid, className);
+    }
+
+    @Override
+    public void addAlgorithm(String type, ASN1ObjectIdentifier oid, String className, Map<String, String> attributes) {
+        addAlgorithm(type, oid, className);
+        addAttributes(type + "." + oid, attributes);
+        addAttributes(type + ".OID." + oid, attributes);
+    }
+
+    @Override
+    public boolean hasAlgorithm(String type, String name) {
+        return containsKey(type + "." + name) || containsKey("Alg.Alias." + type + "." + name);
+    }
+
+    @Override
+    public void addKeyInfoConverter(ASN1ObjectIdentifier oid, AsymmetricKeyInfoConverter keyInfoConverter) {
+        synchronized (keyInfoConverters) {
+            keyInfoConverters.put(oid, keyInfoConverter);
+        }
+    }
+
+    @Override
+    public AsymmetricKeyInfoConverter getKeyInfoConverter(ASN1ObjectIdentifier oid) {
+        synchronized (keyInfoConverters) {
+            return keyInfoConverters.get(oid);
+        }
+    }
+
+    @Override
+    public void addAttributes(String key, Map<String, String> attributeMap) {
+        for (Map.Entry<String, String> e : attributeMap.entrySet()) {
+            String attributeKey = key + " " + e.getKey();
+            if (containsKey(attributeKey)) {
+                throw new IllegalStateException("duplicate provider attribute key (" + attributeKey + ") found");
+            }
+            put(attributeKey, e.getValue());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.minibaseapp.metrics;
+
+import android.os.Debug;
+
+import java.lang.reflect.Method;
+
+/**
+ * Bytes de heap Java asignados, para medir cuánto asigna cada operación.
+ *
+ * En la JVM de pruebas se usa el contador por hilo de com.sun.management.ThreadMXBean, que es
+ * exacto para la operación medida. En ART no hay contador por hilo sin el perfilador de
+ * asignaciones, así que se usa el total del proceso (art.gc.bytes-allocated): la medida de una
+ * operación incluye lo que asignen a la vez otros hilos, y sirve para comparar en reposo.
+ */
+public final class AllocationMeter {
+
+    private static final boolean ON_DEVICE = "Dalvik".equals(System.getProperty("java.vm.name"));
+    private static final String ART_BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+    // java.lang.management no existe en Android: ThreadMXBean se resuelve por reflexión
+    private static final Object threadBean;
+    private static final Method threadAllocatedBytes;
+
+    static {
+        Object bean = null;
+        Method method = null;
+        if (!ON_DEVICE) {
+            try {
+                bean = Class.forName("java.lang.management.ManagementFactory")
+                        .getMethod("getThreadMXBean").invoke(null);
+                Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean");
+                if (sunBean.isInstance(bean)) {
+                    method = sunBean.getMethod("getThreadAllocatedBytes", long.class);
+                    sunBean.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, true);
+                }
+            } catch (Throwable ignored) {
+                method = null;
+            }
+        }
+        threadBean = bean;
+        threadAllocatedBytes = method;
+    }
+
+    private AllocationMeter() {
+    }
+
+    /** true si las medidas son del hilo actual y no del proceso. */
+    public static boolean isPerThread() {
+        return threadAllocatedBytes != null;
+    }
+
+    /** Contador acumulado de bytes asignados, o -1 si no se puede medir. */
+    public static long allocatedBytes() {
+        if (threadAllocatedBytes != null) {
+            try {
+                Object v = threadAllocatedBytes.invoke(threadBean, Thread.currentThread().getId());
+                return (Long) v;
+            } catch (Throwable e) {
+                return -1;
+            }
+        }
+        if (ON_DEVICE) {
+            try {
+                String v = Debug.getRuntimeStat(ART_BYTES_ALLOCATED);
+                return v != null ? Long.parseLong(v) : -1;
+            } catch (RuntimeException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Bytes asignados desde start (valor previo de {@link #allocatedBytes()}), o -1. */
+    public static long allocatedSince(long start) {
+        if (start < 0) return -1;
+        long now = allocatedBytes();
+        return now >= start ? now - start : -1;
+    }
+}
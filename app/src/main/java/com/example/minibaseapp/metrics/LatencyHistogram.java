@@ -0,0 +1,125 @@
+package com.example.minibaseapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias sin bloqueos, con cubetas log-lineales al estilo HdrHistogram.
+ *
+ * Los valores (nanosegundos) por debajo de 2^SUB_BUCKET_BITS van en cubetas de ancho 1; a partir
+ * de ahí cada potencia de dos se divide en 2^(SUB_BUCKET_BITS-1) cubetas iguales, con lo que el
+ * error relativo de cualquier percentil es menor que 2^-(SUB_BUCKET_BITS-1) (~1,6 %).
+ * Registrar un valor es un incremento atómico, apto para llamar desde cualquier hilo.
+ * Con {@link #record} sirve también para otras magnitudes no negativas (bytes asignados).
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;        // 128
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >>> 1;        // 64
+
+    // Valores por encima (~18 min) se acumulan en la última cubeta
+    static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        record(nanos);
+    }
+
+    public void record(long value) {
+        long v = value < 0 ? 0 : Math.min(value, MAX_TRACKABLE_NANOS);
+        counts.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        long m;
+        while (v > (m = max.get())) {
+            if (max.compareAndSet(m, v)) break;
+        }
+    }
+
+    /** Registra el tiempo transcurrido desde startNanos (System.nanoTime()). */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    // -------------------------
+    // Cubetas
+    // -------------------------
+
+    static int indexOf(long v) {
+        if (v < SUB_BUCKET_COUNT) {
+            return (int) v;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int shift = msb - (SUB_BUCKET_BITS - 1);                 // >= 1
+        int mantissa = (int) (v >>> shift);                       // [64, 128)
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (mantissa - SUB_BUCKET_HALF);
+    }
+
+    /** Mayor valor que cae en la cubeta. */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int rel = index - SUB_BUCKET_COUNT;
+        int shift = rel / SUB_BUCKET_HALF + 1;
+        long mantissa = SUB_BUCKET_HALF + (rel % SUB_BUCKET_HALF);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    // -------------------------
+    // Instantánea
+    // -------------------------
+
+    public Snapshot snapshot() {
+        long[] c = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            c[i] = counts.get(i);
+            total += c[i];
+        }
+        return new Snapshot(c, total, sum.sum(), max.get());
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        public final long count;
+        public final long sumNanos;
+        public final long maxNanos;
+
+        Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /** Percentil (0..1) en nanosegundos; 0 si no hay muestras. */
+        public long percentileNanos(double q) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) sumNanos / count;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.minibaseapp.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de métricas del proceso: contadores e histogramas de latencia etiquetados.
+ *
+ * Sustituye a las líneas "BENCH" del logcat. Cada operación se etiqueta con op (sign, verify,
+ * import, keystore_open, key_unlock...), alg y backend (bc, liboqs) y se puede volcar en
+ * formato de texto de Prometheus con {@link #writePrometheus}.
+ */
+public final class MetricsRegistry {
+
+    // Operaciones criptográficas (medidas dentro de la capa crypto)
+    public static final String CRYPTO_LATENCY = "minibase_crypto_op_latency_seconds";
+    public static final String CRYPTO_ERRORS = "minibase_crypto_op_errors_total";
+    // Operaciones de extremo a extremo vistas por el usuario (clic -> resultado)
+    public static final String UI_LATENCY = "minibase_ui_op_latency_seconds";
+    public static final String UI_ERRORS = "minibase_ui_op_errors_total";
+    // Bytes de heap Java asignados por operación criptográfica (ver AllocationMeter)
+    public static final String CRYPTO_ALLOC = "minibase_crypto_op_alloc_bytes";
+
+    public static final String OP_SIGN = "sign";
+    public static final String OP_VERIFY = "verify";
+    public static final String OP_IMPORT = "import";
+    public static final String OP_KEYSTORE_OPEN = "keystore_open";
+    public static final String OP_KEY_UNLOCK = "key_unlock";
+    public static final String OP_KEYGEN = "keygen";
+
+    public static final String BACKEND_BC = "bc";
+    public static final String BACKEND_LIBOQS = "liboqs";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final Map<String, String> help = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, LongAdder>> counters = new ConcurrentHashMap<>();
+    private final Map<String, RegisteredGauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, String> infos = new ConcurrentHashMap<>();
+
+    /** Valor leído en el momento de exportar (p. ej. memoria nativa de liboqs). */
+    public interface Gauge {
+        long value();
+    }
+
+    private static final class RegisteredGauge {
+        final String type;
+        final Gauge gauge;
+
+        RegisteredGauge(String type, Gauge gauge) {
+            this.type = type;
+            this.gauge = gauge;
+        }
+    }
+
+    MetricsRegistry() {
+        help.put(CRYPTO_LATENCY, "Latencia de las operaciones criptográficas");
+        help.put(CRYPTO_ERRORS, "Operaciones criptográficas fallidas");
+        help.put(UI_LATENCY, "Latencia de extremo a extremo de las operaciones de usuario");
+        help.put(UI_ERRORS, "Operaciones de usuario fallidas o con resultado negativo");
+        help.put(CRYPTO_ALLOC, "Bytes de heap Java asignados por operación criptográfica, por tamaño de documento");
+    }
+
+    public static MetricsRegistry get() {
+        return INSTANCE;
+    }
+
+    // -------------------------
+    // Registro
+    // -------------------------
+
+    /**
+     * @param tags pares clave, valor ("op", "sign", "alg", "ML-DSA-44")
+     */
+    public LatencyHistogram histogram(String name, String... tags) {
+        Map<String, LatencyHistogram> series = histograms.get(name);
+        if (series == null) {
+            histograms.putIfAbsent(name, new ConcurrentHashMap<String, LatencyHistogram>());
+            series = histograms.get(name);
+        }
+        String key = labels(tags);
+        LatencyHistogram h = series.get(key);
+        if (h == null) {
+            series.putIfAbsent(key, new LatencyHistogram());
+            h = series.get(key);
+        }
+        return h;
+    }
+
+    public LongAdder counter(String name, String... tags) {
+        Map<String, LongAdder> series = counters.get(name);
+        if (series == null) {
+            counters.putIfAbsent(name, new ConcurrentHashMap<String, LongAdder>());
+            series = counters.get(name);
+        }
+        String key = labels(tags);
+        LongAdder c = series.get(key);
+        if (c == null) {
+            series.putIfAbsent(key, new LongAdder());
+            c = series.get(key);
+        }
+        return c;
+    }
+
+    /**
+     * Operación criptográfica terminada (medida desde startNanos = System.nanoTime()).
+     * Si ha lanzado excepción solo se cuenta el error, para no mezclar su latencia.
+     */
+    public void recordCrypto(String op, String alg, String backend, long startNanos, boolean ok) {
+        String a = alg != null ? alg : "unknown";
+        if (ok) {
+            histogram(CRYPTO_LATENCY, "op", op, "alg", a, "backend", backend).recordSince(startNanos);
+        } else {
+            counter(CRYPTO_ERRORS, "op", op, "alg", a, "backend", backend).increment();
+        }
+    }
+
+    /**
+     * Operación de usuario de extremo a extremo terminada. A diferencia de las criptográficas,
+     * la latencia se registra también cuando el resultado es negativo (p. ej. firma no válida),
+     * que es un resultado legítimo que el usuario también espera.
+     */
+    public void recordUi(String op, String alg, String backend, long startNanos, boolean ok) {
+        String a = alg != null ? alg : "unknown";
+        histogram(UI_LATENCY, "op", op, "alg", a, "backend", backend).recordSince(startNanos);
+        if (!ok) {
+            counter(UI_ERRORS, "op", op, "alg", a, "backend", backend).increment();
+        }
+    }
+
+
+    /**
+     * Bytes asignados por una operación terminada, etiquetados además por tamaño de documento.
+     *
+     * @param documentBytes tamaño del documento procesado, o -1 si la operación no tiene documento
+     * @param allocatedBytes resultado de AllocationMeter.allocatedSince; si es -1 no se registra
+     */
+    public void recordAllocation(String op, String alg, String backend, long documentBytes, long allocatedBytes) {
+        if (allocatedBytes < 0) return;
+        histogram(CRYPTO_ALLOC, "op", op, "alg", alg != null ? alg : "unknown", "backend", backend,
+                "size", sizeClass(documentBytes)).record(allocatedBytes);
+    }
+
+    /** Tramo de tamaño de documento para las etiquetas (cardinalidad acotada). */
+    static String sizeClass(long bytes) {
+        if (bytes < 0) return "none";
+        if (bytes <= 4 * 1024) return "le_4KiB";
+        if (bytes <= 64 * 1024) return "le_64KiB";
+        if (bytes <= 1024 * 1024) return "le_1MiB";
+        if (bytes <= 16 * 1024 * 1024) return "le_16MiB";
+        return "gt_16MiB";
+    }
+
+    /**
+     * Registra un valor instantáneo.
+     *
+     * @param counter true si el valor solo crece (se exporta como counter en lugar de gauge)
+     */
+    public void registerGauge(String name, String description, boolean counter, Gauge gauge) {
+        help.put(name, description);
+        gauges.put(name, new RegisteredGauge(counter ? "counter" : "gauge", gauge));
+    }
+
+    /**
+     * Registra una serie informativa (valor constante 1) cuyas etiquetas describen el entorno,
+     * p. ej. la implementación de liboqs en uso. Volver a registrarla sustituye las etiquetas.
+     */
+    public void registerInfo(String name, String description, String... tags) {
+        help.put(name, description);
+        infos.put(name, labels(tags));
+    }
+
+    // Etiquetas ordenadas por clave para que la misma serie tenga siempre la misma clave
+    static String labels(String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Las etiquetas van en pares clave, valor");
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        for (int i = 0; i < tags.length; i += 2) {
+            sorted.put(tags[i], tags[i + 1]);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : sorted.entrySet()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(e.getKey()).append("=\"").append(escape(e.getValue())).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String v) {
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // -------------------------
+    // Exportación (formato de texto de Prometheus 0.0.4)
+    // -------------------------
+
+    public void writePrometheus(Writer w) throws IOException {
+        for (String name : sorted(histograms.keySet())) {
+            writeHeader(w, name, "summary");
+            Map<String, LatencyHistogram> series = histograms.get(name);
+            List<String> maxLines = new ArrayList<>();
+            for (String labels : sorted(series.keySet())) {
+                LatencyHistogram.Snapshot s = series.get(labels).snapshot();
+                for (double q : QUANTILES) {
+                    w.write(name + "{" + join(labels, "quantile=\"" + q + "\"") + "} "
+                            + value(name, s.percentileNanos(q)) + "\n");
+                }
+                w.write(name + "_sum" + braces(labels) + " " + value(name, s.sumNanos) + "\n");
+                w.write(name + "_count" + braces(labels) + " " + s.count + "\n");
+                maxLines.add(name + "_max" + braces(labels) + " " + value(name, s.maxNanos) + "\n");
+            }
+            writeHeader(w, name + "_max", "gauge");
+            for (String line : maxLines) {
+                w.write(line);
+            }
+        }
+        for (String name : sorted(counters.keySet())) {
+            writeHeader(w, name, "counter");
+            Map<String, LongAdder> series = counters.get(name);
+            for (String labels : sorted(series.keySet())) {
+                w.write(name + braces(labels) + " " + series.get(labels).sum() + "\n");
+            }
+        }
+        for (String name : sorted(gauges.keySet())) {
+            RegisteredGauge g = gauges.get(name);
+            long v;
+            try {
+                v = g.gauge.value();
+            } catch (RuntimeException | LinkageError e) {
+                continue; // p. ej. la librería nativa no se ha podido cargar
+            }
+            writeHeader(w, name, g.type);
+            w.write(name + " " + v + "\n");
+        }
+        for (String name : sorted(infos.keySet())) {
+            writeHeader(w, name, "gauge");
+            w.write(name + braces(infos.get(name)) + " 1\n");
+        }
+        w.flush();
+    }
+
+    private void writeHeader(Writer w, String name, String type) throws IOException {
+        String h = help.get(name);
+        if (h != null) {
+            w.write("# HELP " + name + " " + h + "\n");
+        }
+        w.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    // Los histogramas "_seconds" guardan nanosegundos; el resto, el valor tal cual (bytes)
+    private static String value(String name, long raw) {
+        if (name.endsWith("_seconds")) {
+            return String.format(Locale.US, "%.9f", raw / 1e9);
+        }
+        return Long.toString(raw);
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String join(String labels, String extra) {
+        return labels.isEmpty() ? extra : labels + "," + extra;
+    }
+
+    private static List<String> sorted(Set<String> keys) {
+        List<String> l = new ArrayList<>(keys);
+        Collections.sort(l);
+        return l;
+    }
+
+    /**
+     * Vuelca una instantánea en file de forma atómica (fichero temporal + rename), para que un
+     * lector nunca vea un volcado a medias.
+     */
+    public void dumpToFile(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("No se pudo crear " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            Writer w = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+            writePrometheus(w);
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("No se pudo escribir " + file);
+        }
+    }
+
+    /** Solo para pruebas. */
+    void clear() {
+        histograms.clear();
+        counters.clear();
+        gauges.clear();
+        infos.clear();
+    }
+}
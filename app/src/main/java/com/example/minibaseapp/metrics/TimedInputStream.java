@@ -0,0 +1,52 @@
+package com.example.minibaseapp.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Flujo que acumula el tiempo pasado dentro de read(), para separar en las trazas la E/S del
+ * documento del cálculo (resumen y firma) que se hace con lo leído. No es seguro entre hilos.
+ */
+public final class TimedInputStream extends FilterInputStream {
+
+    private long readNanos;
+
+    public TimedInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long t = System.nanoTime();
+        try {
+            return super.read();
+        } finally {
+            readNanos += System.nanoTime() - t;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long t = System.nanoTime();
+        try {
+            return super.read(b, off, len);
+        } finally {
+            readNanos += System.nanoTime() - t;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long t = System.nanoTime();
+        try {
+            return super.skip(n);
+        } finally {
+            readNanos += System.nanoTime() - t;
+        }
+    }
+
+    public double readMillis() {
+        return readNanos / 1_000_000.0;
+    }
+}
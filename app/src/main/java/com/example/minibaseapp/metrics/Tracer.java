@@ -0,0 +1,287 @@
+package com.example.minibaseapp.metrics;
+
+import android.os.Trace;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trazas por fases de las operaciones (E/S, PBKDF del almacén, parseo PEM, operación PQC, UI).
+ *
+ * Cada fase es un {@link Span} que se cierra con try-with-resources, de modo que las fases se
+ * anidan. En el dispositivo se emiten con android.os.Trace y aparecen en Perfetto/systrace; si
+ * además se activa la grabación ({@link #startRecording()}, o -Dminibase.trace=fichero.json en la
+ * JVM de pruebas) se guardan en memoria y se vuelcan como JSON de trace events de Chrome,
+ * que se abre en ui.perfetto.dev o chrome://tracing.
+ *
+ * Las fases que empiezan en un hilo y terminan en otro (clic -> resultado en pantalla) se abren
+ * con {@link #beginAsync}.
+ */
+public final class Tracer {
+
+    private static final String CATEGORY = "minibase";
+    private static final int MAX_EVENTS = 100_000;
+    // android.os.Trace limita el nombre de sección a 127 caracteres
+    private static final int MAX_SECTION_NAME = 127;
+
+    // En la JVM de pruebas android.os.Trace es un stub
+    private static final boolean ON_DEVICE = "Dalvik".equals(System.getProperty("java.vm.name"));
+    private static final long ORIGIN_NANOS = System.nanoTime();
+
+    private static final AtomicInteger asyncIds = new AtomicInteger();
+    private static final Object lock = new Object();
+    private static final List<Event> events = new ArrayList<>();
+    private static final Map<Long, String> threadNames = new LinkedHashMap<>();
+    private static volatile boolean recording;
+    private static int dropped;
+
+    private static final Span NOOP = new Span(null, 0, 0, false, false);
+
+    static {
+        final String path = System.getProperty("minibase.trace");
+        if (!ON_DEVICE && path != null && !path.isEmpty()) {
+            recording = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    writeChromeTrace(new File(path));
+                } catch (IOException ignored) {
+                }
+            }));
+        }
+    }
+
+    private Tracer() {
+    }
+
+    // -------------------------
+    // Fases
+    // -------------------------
+
+    /** Abre una fase en el hilo actual; cerrarla en el mismo hilo (try-with-resources). */
+    public static Span begin(String name) {
+        boolean system = ON_DEVICE && Trace.isEnabled();
+        if (!system && !recording) {
+            return NOOP;
+        }
+        if (system) {
+            Trace.beginSection(sectionName(name));
+        }
+        return new Span(name, System.nanoTime(), 0, false, system);
+    }
+
+    /** Abre una fase que puede cerrarse desde otro hilo. */
+    public static Span beginAsync(String name) {
+        boolean system = ON_DEVICE && Trace.isEnabled();
+        if (!system && !recording) {
+            return NOOP;
+        }
+        int id = asyncIds.incrementAndGet();
+        if (system) {
+            Trace.beginAsyncSection(sectionName(name), id);
+        }
+        if (recording) {
+            record(new Event(name, 'b', System.nanoTime(), 0, id, null));
+        }
+        return new Span(name, System.nanoTime(), id, true, system);
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final String name;
+        private final long startNanos;
+        private final int asyncId;
+        private final boolean async;
+        private final boolean system;
+        private Map<String, Object> args;
+        private boolean closed;
+
+        Span(String name, long startNanos, int asyncId, boolean async, boolean system) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.asyncId = asyncId;
+            this.async = async;
+            this.system = system;
+        }
+
+        /** Dato adicional de la fase (tamaño del documento, algoritmo...); solo va al JSON. */
+        public Span arg(String key, Object value) {
+            if (name != null && recording) {
+                if (args == null) args = new LinkedHashMap<>();
+                args.put(key, value);
+            }
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (name == null || closed) return;
+            closed = true;
+            long end = System.nanoTime();
+            if (system) {
+                if (async) {
+                    Trace.endAsyncSection(sectionName(name), asyncId);
+                } else {
+                    Trace.endSection();
+                }
+            }
+            if (recording) {
+                record(async
+                        ? new Event(name, 'e', end, 0, asyncId, args)
+                        : new Event(name, 'X', startNanos, end - startNanos, 0, args));
+            }
+        }
+    }
+
+    private static String sectionName(String name) {
+        return name.length() <= MAX_SECTION_NAME ? name : name.substring(0, MAX_SECTION_NAME);
+    }
+
+    // -------------------------
+    // Grabación en memoria
+    // -------------------------
+
+    private static final class Event {
+        final String name;
+        final char phase;          // X = completa, b/e = asíncrona
+        final long tsNanos;
+        final long durNanos;
+        final int id;
+        final long tid;
+        final Map<String, Object> args;
+
+        Event(String name, char phase, long tsNanos, long durNanos, int id, Map<String, Object> args) {
+            this.name = name;
+            this.phase = phase;
+            this.tsNanos = tsNanos;
+            this.durNanos = durNanos;
+            this.id = id;
+            this.tid = Thread.currentThread().getId();
+            this.args = args;
+        }
+    }
+
+    private static void record(Event e) {
+        synchronized (lock) {
+            if (events.size() >= MAX_EVENTS) {
+                dropped++;
+                return;
+            }
+            events.add(e);
+            if (!threadNames.containsKey(e.tid)) {
+                threadNames.put(e.tid, Thread.currentThread().getName());
+            }
+        }
+    }
+
+    /** Descarta lo grabado y empieza a grabar. */
+    public static void startRecording() {
+        synchronized (lock) {
+            events.clear();
+            threadNames.clear();
+            dropped = 0;
+        }
+        recording = true;
+    }
+
+    public static void stopRecording() {
+        recording = false;
+    }
+
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    // -------------------------
+    // Exportación (JSON de trace events de Chrome)
+    // -------------------------
+
+    public static void writeChromeTrace(File file) throws IOException {
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writeChromeTrace(w);
+        }
+    }
+
+    public static void writeChromeTrace(Writer w) throws IOException {
+        List<Event> snapshot;
+        Map<Long, String> names;
+        int lost;
+        synchronized (lock) {
+            snapshot = new ArrayList<>(events);
+            names = new LinkedHashMap<>(threadNames);
+            lost = dropped;
+        }
+
+        w.write("{\"displayTimeUnit\":\"ms\",\"otherData\":{\"dropped\":" + lost + "},\"traceEvents\":[");
+        boolean first = true;
+        for (Map.Entry<Long, String> t : names.entrySet()) {
+            if (!first) w.write(',');
+            first = false;
+            w.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + t.getKey()
+                    + ",\"args\":{\"name\":" + quote(t.getValue()) + "}}");
+        }
+        for (Event e : snapshot) {
+            if (!first) w.write(',');
+            first = false;
+            StringBuilder sb = new StringBuilder("\n{\"name\":").append(quote(e.name))
+                    .append(",\"cat\":\"").append(CATEGORY)
+                    .append("\",\"ph\":\"").append(e.phase)
+                    .append("\",\"ts\":").append(micros(e.tsNanos - ORIGIN_NANOS));
+            if (e.phase == 'X') {
+                sb.append(",\"dur\":").append(micros(e.durNanos));
+            } else {
+                sb.append(",\"id\":").append(e.id);
+            }
+            sb.append(",\"pid\":1,\"tid\":").append(e.tid);
+            if (e.args != null && !e.args.isEmpty()) {
+                sb.append(",\"args\":{");
+                boolean firstArg = true;
+                for (Map.Entry<String, Object> a : e.args.entrySet()) {
+                    if (!firstArg) sb.append(',');
+                    firstArg = false;
+                    sb.append(quote(a.getKey())).append(':');
+                    Object v = a.getValue();
+                    sb.append(v instanceof Number ? v.toString() : quote(String.valueOf(v)));
+                }
+                sb.append('}');
+            }
+            sb.append('}');
+            w.write(sb.toString());
+        }
+        w.write("\n]}\n");
+        w.flush();
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1000.0);
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.minibaseapp.task;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecutor compartido para las operaciones criptográficas y de E/S de las pantallas.
+ *
+ * Las tareas se ejecutan en un pool acotado (nunca en el hilo principal) y sus resultados,
+ * errores y progreso se entregan en el hilo principal solo mientras la Activity que las lanzó
+ * siga viva: al destruirse se cancelan y no se invoca ningún callback.
+ *
+ * La cancelación es cooperativa: la tarea consulta {@link TaskContext#isCancelled()} o lee a
+ * través de {@link TaskContext#track}, que aborta la lectura en cuanto se cancela.
+ */
+public final class CryptoExecutor {
+
+    private static final String TAG = "CryptoExecutor";
+
+    // Intervalo mínimo entre dos entregas de progreso al hilo principal
+    private static final long PROGRESS_INTERVAL_MS = 50;
+
+    private static volatile CryptoExecutor instance;
+
+    private final ThreadPoolExecutor pool;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private CryptoExecutor() {
+        int threads = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        pool = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(32),
+                new ThreadFactory() {
+                    private final AtomicInteger n = new AtomicInteger();
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread t = new Thread(r, "crypto-" + n.incrementAndGet());
+                        t.setPriority(Thread.NORM_PRIORITY - 1);
+                        return t;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public static CryptoExecutor getInstance() {
+        if (instance == null) {
+            synchronized (CryptoExecutor.class) {
+                if (instance == null) {
+                    instance = new CryptoExecutor();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // -------------------------
+    // Contratos
+    // -------------------------
+
+    public interface Task<T> {
+        @WorkerThread
+        T run(TaskContext ctx) throws Exception;
+    }
+
+    /** Todos los métodos se invocan en el hilo principal. */
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onError(Exception e);
+
+        /** @param total -1 si no se conoce */
+        default void onProgress(long done, long total) {}
+
+        default void onCancelled() {}
+    }
+
+    /** Tarea en curso. */
+    public interface Handle {
+        @MainThread
+        void cancel();
+
+        boolean isCancelled();
+
+        boolean isDone();
+    }
+
+    // -------------------------
+    // Envío
+    // -------------------------
+
+    /**
+     * Lanza la tarea ligada al ciclo de vida de owner. Llamar desde el hilo principal.
+     */
+    @MainThread
+    public <T> Handle submit(LifecycleOwner owner, Task<T> task, Callback<T> callback) {
+        final Job<T> job = new Job<>(owner.getLifecycle(), callback);
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            job.cancelled = true;
+            return job;
+        }
+        owner.getLifecycle().addObserver(job.observer);
+
+        try {
+            job.future = pool.submit(() -> job.execute(task));
+        } catch (RejectedExecutionException e) {
+            job.finish();
+            callback.onError(new Exception("Hay demasiadas operaciones en curso. Inténtalo de nuevo."));
+        }
+        return job;
+    }
+
+    // -------------------------
+    // Contexto de la tarea (hilo de trabajo)
+    // -------------------------
+
+    public interface TaskContext {
+        boolean isCancelled();
+
+        /** Lanza CancellationException si la tarea se ha cancelado. */
+        void throwIfCancelled();
+
+        /** Publica progreso; se limita la frecuencia de entrega al hilo principal. */
+        void reportProgress(long done, long total);
+
+        /**
+         * Envuelve un flujo para publicar progreso al leerlo y abortar la lectura si la tarea
+         * se cancela.
+         *
+         * @param total longitud esperada, o -1 si no se conoce
+         */
+        InputStream track(InputStream in, long total);
+    }
+
+    private final class Job<T> implements Handle, TaskContext {
+        private final Lifecycle lifecycle;
+        private final Callback<T> callback;
+        volatile Future<?> future;
+        volatile boolean cancelled;
+        private volatile boolean done;
+
+        private final Object progressLock = new Object();
+        private long lastProgressAt;
+
+        final LifecycleEventObserver observer = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                cancelSilently();
+            }
+        };
+
+        Job(Lifecycle lifecycle, Callback<T> callback) {
+            this.lifecycle = lifecycle;
+            this.callback = callback;
+        }
+
+        void execute(Task<T> task) {
+            T result = null;
+            Exception error = null;
+            try {
+                result = task.run(this);
+            } catch (Exception e) {
+                error = e;
+            }
+            final T r = result;
+            final Exception err = error;
+            mainHandler.post(() -> deliver(r, err));
+        }
+
+        @MainThread
+        private void deliver(T result, Exception error) {
+            if (done) return;
+            finish();
+            if (cancelled || error instanceof CancellationException) {
+                if (lifecycle.getCurrentState() != Lifecycle.State.DESTROYED) {
+                    callback.onCancelled();
+                }
+                return;
+            }
+            if (error != null) {
+                Log.w(TAG, "Tarea fallida: " + error);
+                callback.onError(error);
+            } else {
+                callback.onSuccess(result);
+            }
+        }
+
+        @MainThread
+        void finish() {
+            done = true;
+            lifecycle.removeObserver(observer);
+        }
+
+        @Override
+        public void cancel() {
+            if (done || cancelled) return;
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) f.cancel(true);
+            // Lo que la tarea entregue después se descarta en deliver()
+            finish();
+            callback.onCancelled();
+        }
+
+        // Activity destruida: no se entrega nada
+        private void cancelSilently() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) f.cancel(true);
+            finish();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public void throwIfCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+
+        @Override
+        public void reportProgress(final long doneBytes, final long total) {
+            long now = SystemClock.uptimeMillis();
+            synchronized (progressLock) {
+                boolean last = total > 0 && doneBytes >= total;
+                if (!last && now - lastProgressAt < PROGRESS_INTERVAL_MS) return;
+                lastProgressAt = now;
+            }
+            mainHandler.post(() -> {
+                if (!done && !cancelled) {
+                    callback.onProgress(doneBytes, total);
+                }
+            });
+        }
+
+        @Override
+        public InputStream track(InputStream in, long total) {
+            return new ProgressInputStream(in, total, this);
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.example.minibaseapp.task;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Flujo que publica los bytes leídos como progreso de la tarea y aborta la lectura
+ * (CancellationException) en cuanto la tarea se cancela.
+ */
+class ProgressInputStream extends FilterInputStream {
+
+    private final long total;
+    private final CryptoExecutor.TaskContext ctx;
+    private long read;
+
+    ProgressInputStream(InputStream in, long total, CryptoExecutor.TaskContext ctx) {
+        super(in);
+        this.total = total;
+        this.ctx = ctx;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkCancelled();
+        int b = super.read();
+        if (b >= 0) advance(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkCancelled();
+        int n = super.read(b, off, len);
+        if (n > 0) advance(n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkCancelled();
+        long s = super.skip(n);
+        if (s > 0) advance(s);
+        return s;
+    }
+
+    private void advance(long n) {
+        read += n;
+        ctx.reportProgress(read, total);
+    }
+
+    private void checkCancelled() {
+        if (ctx.isCancelled()) {
+            throw new CancellationException("Operación cancelada");
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package com.example.minibaseapp.task;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+
+import com.example.minibaseapp.crypto.BatchSigner;
+import com.example.minibaseapp.crypto.DocumentSource;
+import com.example.minibaseapp.crypto.PqcCertificateManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cola persistente de trabajos de firma por lotes.
+ *
+ * Cada trabajo (alias + carpeta de salida) y cada uno de sus documentos se guardan en SQLite
+ * ({@link SqliteJobStore}); el estado de cada documento se actualiza en cuanto se firma, de modo
+ * que si el proceso muere solo se repiten los documentos que estaban en curso.
+ *
+ * La clave privada no puede persistirse, así que un trabajo solo avanza con el alias
+ * desbloqueado: al volver a abrir el almacén se reanudan los pendientes de ese alias con
+ * {@link #resume}. Las ejecuciones de cada alias se encadenan en un único hilo: lo que se
+ * reanuda mientras otro alias está firmando empieza cuando este termina. La ejecución no
+ * depende de la Activity: sigue aunque se salga de la pantalla mientras el proceso esté vivo.
+ */
+public final class SigningJobQueue {
+
+    private static final String TAG = "SigningJobQueue";
+
+    // Documentos reclamados por vuelta: se resumen en paralelo y se firman con una sola firma
+    // PQC sobre la raíz de Merkle del bloque (BatchSigner#signAllMerkle)
+    static final int CLAIM_CHUNK = 32;
+    private static final long THROUGHPUT_WINDOW_MS = 60_000;
+    // Los trabajos terminados se conservan un día (para las estadísticas) y luego se borran
+    static final long RETENTION_MS = 24 * 60 * 60 * 1000L;
+
+    public static final String STATE_PENDING = "PENDING";
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_DONE = "DONE";
+    public static final String STATE_FAILED = "FAILED";
+
+    private static volatile SigningJobQueue instance;
+
+    @Nullable private final Context context;
+    private final Store store;
+    private final Platform platform;
+    private final ExecutorService runner;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Ejecuciones encoladas que aún no han empezado, por alias (protegido por this)
+    private final Map<String, Run> waiting = new LinkedHashMap<>();
+    private volatile Run active;
+
+    private SigningJobQueue(Context context) {
+        this(context.getApplicationContext(), new SqliteJobStore(context.getApplicationContext()),
+                new AndroidPlatform(context.getApplicationContext()),
+                Executors.newSingleThreadExecutor(r -> new Thread(r, "signing-queue")));
+    }
+
+    SigningJobQueue(@Nullable Context context, Store store, Platform platform, ExecutorService runner) {
+        this.context = context;
+        this.store = store;
+        this.platform = platform;
+        this.runner = runner;
+        // Lo que estaba en curso cuando murió el proceso vuelve a estar pendiente
+        runner.execute(() -> {
+            store.requeueRunning();
+            store.pruneFinished(System.currentTimeMillis() - RETENTION_MS);
+        });
+    }
+
+    public static SigningJobQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SigningJobQueue.class) {
+                if (instance == null) {
+                    instance = new SigningJobQueue(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    // -------------------------
+    // Estadísticas
+    // -------------------------
+    public static class Stats {
+        public final int pending;
+        public final int running;
+        public final int done;
+        public final int failed;
+        public final double docsPerSecond;   // en la última ventana de THROUGHPUT_WINDOW_MS
+        @Nullable public final String runningAlias;
+
+        Stats(int pending, int running, int done, int failed, double docsPerSecond, @Nullable String runningAlias) {
+            this.pending = pending;
+            this.running = running;
+            this.done = done;
+            this.failed = failed;
+            this.docsPerSecond = docsPerSecond;
+            this.runningAlias = runningAlias;
+        }
+
+        public int depth() {
+            return pending + running;
+        }
+    }
+
+    /** Se invoca en el hilo principal. */
+    public interface Listener {
+        void onQueueChanged(Stats stats);
+    }
+
+    @MainThread
+    public void addListener(Listener l) {
+        listeners.add(l);
+    }
+
+    @MainThread
+    public void removeListener(Listener l) {
+        listeners.remove(l);
+    }
+
+    /** Consulta la base de datos: no llamar desde el hilo principal. */
+    public Stats stats() {
+        Map<String, Integer> counts = store.countByState();
+        int recent = store.countDoneSince(System.currentTimeMillis() - THROUGHPUT_WINDOW_MS);
+        Run run = active;
+        return new Stats(count(counts, STATE_PENDING), count(counts, STATE_RUNNING),
+                count(counts, STATE_DONE), count(counts, STATE_FAILED),
+                recent * 1000.0 / THROUGHPUT_WINDOW_MS, run == null ? null : run.alias);
+    }
+
+    private static int count(Map<String, Integer> counts, String state) {
+        Integer n = counts.get(state);
+        return n == null ? 0 : n;
+    }
+
+    /** Documentos pendientes por alias (para ofrecer reanudar tras desbloquear). Consulta la base de datos. */
+    public Map<String, Integer> pendingByAlias() {
+        return store.pendingByAlias();
+    }
+
+    /** Si hay una ejecución en curso o esperando turno. */
+    public synchronized boolean isRunning() {
+        return active != null || !waiting.isEmpty();
+    }
+
+    // -------------------------
+    // Encolado
+    // -------------------------
+
+    /**
+     * Registra un trabajo. Se toman permisos persistentes sobre los documentos y la carpeta
+     * de salida para poder reanudarlo tras reiniciar la aplicación.
+     */
+    public long enqueue(String alias, Uri outputTreeUri, List<Uri> documents) {
+        takePermission(outputTreeUri, Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+        List<Item> items = new ArrayList<>(documents.size());
+        for (Uri uri : documents) {
+            takePermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            items.add(new Item(0, uri.toString(), DocumentSource.forUri(context, uri).name()));
+        }
+        return enqueue(alias, outputTreeUri.toString(), items);
+    }
+
+    long enqueue(String alias, String outputTree, List<Item> documents) {
+        // Nombres de salida de todo el trabajo de una vez: los bloques se firman por separado
+        // y dos documentos con el mismo nombre en bloques distintos se pisarían
+        List<String> names = new ArrayList<>(documents.size());
+        for (Item doc : documents) {
+            names.add(doc.name);
+        }
+        List<String> outputs = BatchSigner.outputNamesFor(names);
+        List<Item> items = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Item doc = documents.get(i);
+            items.add(new Item(doc.id, doc.uri, doc.name, outputs.get(i), null));
+        }
+        try {
+            return store.addJob(alias, outputTree, items, System.currentTimeMillis());
+        } finally {
+            notifyChanged();
+        }
+    }
+
+    // -------------------------
+    // Ejecución
+    // -------------------------
+
+    /**
+     * Reanuda los documentos pendientes del alias. La sesión de firma se abre (una vez) en el
+     * hilo de la cola; se hace una copia de la contraseña y se borra tras abrirla. Si ya hay
+     * una ejecución en curso, la del alias se encadena detrás.
+     *
+     * @return false si había otra ejecución en curso y esta empezará cuando termine
+     */
+    public synchronized boolean resume(PqcCertificateManager certManager, String alias, char[] keystorePassword) {
+        boolean idle = !isRunning();
+        if (!waiting.containsKey(alias)) {
+            Run run = new Run(certManager, alias, keystorePassword.clone());
+            waiting.put(alias, run);
+            runner.execute(run);
+        }
+        return idle;
+    }
+
+    // Ejecución de un alias; la copia de la contraseña se borra al abrir la sesión
+    private final class Run implements Runnable {
+        final PqcCertificateManager certManager;
+        final String alias;
+        final char[] password;
+
+        Run(PqcCertificateManager certManager, String alias, char[] password) {
+            this.certManager = certManager;
+            this.alias = alias;
+            this.password = password;
+        }
+
+        @Override
+        public void run() {
+            synchronized (SigningJobQueue.this) {
+                waiting.remove(alias);
+                active = this;
+            }
+            notifyChanged();
+            try {
+                // Otra ejecución del mismo alias pudo firmarlo ya todo: no se abre el almacén
+                if (store.pendingByAlias().containsKey(alias)) {
+                    try (Session session = openSession()) {
+                        runPending(session, alias);
+                    }
+                }
+            } catch (Exception e) {
+                platform.runFailed(alias, e);
+            } finally {
+                Arrays.fill(password, '\0');
+                synchronized (SigningJobQueue.this) {
+                    active = null;
+                }
+                notifyChanged();
+            }
+        }
+
+        private Session openSession() throws Exception {
+            try {
+                return platform.open(certManager, alias, password);
+            } finally {
+                Arrays.fill(password, '\0');
+            }
+        }
+    }
+
+    private void runPending(Session session, String alias) throws Exception {
+        Checkpoint checkpoint = new Checkpoint() {
+            @Override
+            public void onOutput(Item item, String output, String outputUri) {
+                store.recordOutput(item.id, output, outputUri);
+            }
+
+            @Override
+            public void onSigned(Item item, String output, long bytes, double latencyMs) {
+                store.markItem(item.id, STATE_DONE, output, null, bytes, latencyMs, System.currentTimeMillis());
+                notifyChanged();
+            }
+
+            @Override
+            public void onFailed(Item item, String error, double latencyMs) {
+                store.markItem(item.id, STATE_FAILED, null, error, 0, latencyMs, System.currentTimeMillis());
+                notifyChanged();
+            }
+        };
+        while (!Thread.currentThread().isInterrupted()) {
+            Claim claim = store.claimNext(alias, CLAIM_CHUNK, System.currentTimeMillis());
+            if (claim == null) {
+                return;
+            }
+            try {
+                session.sign(claim, checkpoint);
+            } finally {
+                // Si se interrumpe a mitad, lo reclamado y no terminado vuelve a la cola
+                store.releaseUnfinished(claim.jobId);
+            }
+            // Trabajo sin pendientes: se liberan los permisos persistentes que ya no hacen falta
+            List<String> documents = store.documentsIfFinished(claim.jobId);
+            if (documents != null) {
+                platform.jobFinished(claim.jobId, claim.outputTree, documents);
+                store.pruneFinished(System.currentTimeMillis() - RETENTION_MS);
+            }
+        }
+    }
+
+    private void takePermission(Uri uri, int flags) {
+        try {
+            context.getContentResolver().takePersistableUriPermission(uri, flags);
+        } catch (SecurityException e) {
+            // El proveedor no concede permisos persistentes: solo se podrá completar en esta sesión
+            Log.w(TAG, "Sin permiso persistente para " + uri);
+        }
+    }
+
+    private void notifyChanged() {
+        if (listeners.isEmpty()) return;
+        final Stats s = stats();
+        platform.post(() -> {
+            for (Listener l : listeners) {
+                l.onQueueChanged(s);
+            }
+        });
+    }
+
+    // -------------------------
+    // Piezas sustituibles (las pruebas usan versiones en memoria)
+    // -------------------------
+
+    /** Documento de un trabajo. */
+    static final class Item {
+        final long id;
+        final String uri;
+        final String name;
+        // Nombre del .pqsig, elegido al encolar (null hasta entonces)
+        @Nullable final String output;
+        // Fichero ya creado para el .pqsig: si se reanuda, se sobrescribe en vez de crear otro
+        @Nullable final String outputUri;
+
+        Item(long id, String uri, String name) {
+            this(id, uri, name, null, null);
+        }
+
+        Item(long id, String uri, String name, @Nullable String output, @Nullable String outputUri) {
+            this.id = id;
+            this.uri = uri;
+            this.name = name;
+            this.output = output;
+            this.outputUri = outputUri;
+        }
+    }
+
+    /** Bloque de documentos de un trabajo reclamado para firmar (PENDING -> RUNNING). */
+    static final class Claim {
+        final long jobId;
+        final String outputTree;
+        final List<Item> items;
+
+        Claim(long jobId, String outputTree, List<Item> items) {
+            this.jobId = jobId;
+            this.outputTree = outputTree;
+            this.items = Collections.unmodifiableList(items);
+        }
+    }
+
+    /** Estado persistente de trabajos y documentos. */
+    interface Store {
+        /** Lo que quedó RUNNING (el proceso murió firmándolo) vuelve a PENDING. */
+        void requeueRunning();
+
+        long addJob(String alias, String outputTree, List<Item> documents, long now);
+
+        /** Reclama hasta limit documentos PENDING del trabajo más antiguo del alias; null si no quedan. */
+        @Nullable
+        Claim claimNext(String alias, int limit, long now);
+
+        /** Fichero creado para el .pqsig del documento, antes de escribirlo y de marcarlo DONE. */
+        void recordOutput(long itemId, String output, String outputUri);
+
+        void markItem(long itemId, String state, @Nullable String output, @Nullable String error,
+                      long bytes, double latencyMs, long now);
+
+        /** Devuelve a PENDING lo que sigue RUNNING en el trabajo. */
+        void releaseUnfinished(long jobId);
+
+        /** Documentos del trabajo si ya no le queda nada pendiente, null si aún le queda. */
+        @Nullable
+        List<String> documentsIfFinished(long jobId);
+
+        Map<String, Integer> countByState();
+
+        int countDoneSince(long since);
+
+        /** Documentos PENDING o RUNNING por alias. */
+        Map<String, Integer> pendingByAlias();
+
+        /** Borra los trabajos sin nada pendiente cuyo último cambio es anterior a before. */
+        void pruneFinished(long before);
+    }
+
+    /** Resultado de cada documento en cuanto se conoce; se invoca desde los hilos de la sesión. */
+    interface Checkpoint {
+        /** Destino creado para el documento (antes de escribir en él). */
+        void onOutput(Item item, String output, String outputUri);
+
+        void onSigned(Item item, String output, long bytes, double latencyMs);
+
+        void onFailed(Item item, String error, double latencyMs);
+    }
+
+    /** Sesión de firma abierta para un alias. */
+    interface Session extends AutoCloseable {
+        void sign(Claim claim, Checkpoint checkpoint) throws Exception;
+
+        @Override
+        void close();
+    }
+
+    /** Lo que depende de Android: apertura de sesiones, permisos SAF, hilo principal y registro. */
+    interface Platform {
+        Session open(PqcCertificateManager certManager, String alias, char[] password) throws Exception;
+
+        void jobFinished(long jobId, String outputTree, List<String> documents);
+
+        void runFailed(String alias, Exception e);
+
+        void post(Runnable r);
+    }
+
+    private static final class AndroidPlatform implements Platform {
+        private final Context context;
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        AndroidPlatform(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public Session open(PqcCertificateManager certManager, String alias, char[] password) throws Exception {
+            return new BatchSession(context, BatchSigner.open(certManager, alias, password));
+        }
+
+        @Override
+        public void jobFinished(long jobId, String outputTree, List<String> documents) {
+            for (String uri : documents) {
+                releasePermission(Uri.parse(uri), Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            }
+            releasePermission(Uri.parse(outputTree),
+                    Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+            Log.i(TAG, "Trabajo de firma " + jobId + " completado");
+        }
+
+        @Override
+        public void runFailed(String alias, Exception e) {
+            Log.e(TAG, "No se pudo reanudar la cola de firma para " + alias, e);
+        }
+
+        @Override
+        public void post(Runnable r) {
+            mainHandler.post(r);
+        }
+
+        private void releasePermission(Uri uri, int flags) {
+            try {
+                context.getContentResolver().releasePersistableUriPermission(uri, flags);
+            } catch (SecurityException ignored) {
+            }
+        }
+    }
+
+    // Cada bloque reclamado se firma con una sola firma sobre su raíz de Merkle
+    private static final class BatchSession implements Session {
+        private final Context context;
+        private final BatchSigner signer;
+
+        BatchSession(Context context, BatchSigner signer) {
+            this.context = context;
+            this.signer = signer;
+        }
+
+        @Override
+        public void sign(Claim claim, Checkpoint checkpoint) throws InterruptedException {
+            List<DocumentSource> documents = new ArrayList<>(claim.items.size());
+            List<String> outputs = new ArrayList<>(claim.items.size());
+            final Map<String, Item> byOutput = new HashMap<>();
+            for (Item item : claim.items) {
+                documents.add(new QueuedDocument(item,
+                        DocumentSource.forUri(context, Uri.parse(item.uri), item.name, -1)));
+                String output = item.output != null ? item.output : BatchSigner.outputNameFor(item.name);
+                outputs.add(output);
+                byOutput.put(output, item);
+            }
+            final BatchSigner.Output tree = BatchSigner.treeOutput(context, Uri.parse(claim.outputTree));
+            BatchSigner.Output output = name -> {
+                Item item = byOutput.get(name);
+                BatchSigner.Target reused = item != null ? reopen(item) : null;
+                if (reused != null) {
+                    return reused;
+                }
+                BatchSigner.Target target = tree.create(name);
+                if (item != null && target.uri != null) {
+                    checkpoint.onOutput(item, target.name, target.uri);
+                }
+                return target;
+            };
+            signer.signAllMerkle(documents, outputs, output,
+                    Runtime.getRuntime().availableProcessors(), (r, done, total) -> {
+                        Item item = ((QueuedDocument) r.source).item;
+                        if (r.isOk()) {
+                            checkpoint.onSigned(item, r.output, r.bytes, r.latencyMs);
+                        } else {
+                            checkpoint.onFailed(item, r.error, r.latencyMs);
+                        }
+                    });
+        }
+
+        // Fichero ya creado en una vuelta anterior que no llegó a marcar el documento
+        @Nullable
+        private BatchSigner.Target reopen(Item item) {
+            if (item.outputUri == null) return null;
+            try {
+                OutputStream os = context.getContentResolver().openOutputStream(Uri.parse(item.outputUri), "wt");
+                String name = item.output != null ? item.output : BatchSigner.outputNameFor(item.name);
+                return os != null ? new BatchSigner.Target(name, os, item.outputUri) : null;
+            } catch (IOException | RuntimeException e) {
+                // Se borró o ya no hay permiso: se crea uno nuevo
+                Log.w(TAG, "No se pudo reabrir " + item.outputUri + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        @Override
+        public void close() {
+            signer.close();
+        }
+    }
+
+    private static final class QueuedDocument implements DocumentSource {
+        final Item item;
+        final DocumentSource delegate;
+
+        QueuedDocument(Item item, DocumentSource delegate) {
+            this.item = item;
+            this.delegate = delegate;
+        }
+
+        @Override public String name() { return delegate.name(); }
+        @Override public long length() { return delegate.length(); }
+        @Override public InputStream open() throws IOException { return delegate.open(); }
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.minibaseapp.task;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.minibaseapp.crypto.BatchSigner;
+import com.example.minibaseapp.crypto.DocumentDigest;
+import com.example.minibaseapp.crypto.DocumentSource;
+import com.example.minibaseapp.crypto.PqcCertificateManager;
+import com.example.minibaseapp.crypto.SignatureContainer;
+import com.example.minibaseapp.crypto.TreeHash;
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.metrics.Tracer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trabajo de firma adelantado mientras el usuario todavía elige alias y documento.
+ *
+ * Al elegir el alias se descifra su clave (PBKDF del almacén incluido) y se deja una Signature
+ * inicializada; al elegir el documento se calcula su resumen SHA-256. En cuanto se conocen los
+ * dos, el documento se entrega a esa Signature en segundo plano, que lo resume a la vez. Al pulsar
+ * "Firmar" solo queda el paso final de la firma, y solo si lo absorbido tiene el mismo resumen que
+ * el documento en ese momento; si la selección cambió o el documento se modificó entre tanto, lo
+ * adelantado se descarta y se firma como siempre.
+ *
+ * La firma en sí (sign()) nunca se calcula antes de que el usuario la pida. Los documentos
+ * grandes se firman en modo pre-hash ({@link TreeHash}), que se resume en paralelo al firmar, y
+ * para ellos no se adelanta nada.
+ */
+public final class SpeculativeSigner implements AutoCloseable {
+
+    static final String SPECULATION = "minibase_speculation_total";
+
+    // Resultado de la firma frente a lo adelantado
+    static final String RESULT_HIT = "hit";         // documento ya absorbido: solo el paso final
+    static final String RESULT_PARTIAL = "partial"; // solo parte aprovechable (firmante, resumen)
+    static final String RESULT_MISS = "miss";       // nada aprovechable
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final long WAIT_SLICE_MS = 50;
+
+    private final Context context;
+    private final PqcCertificateManager certManager;
+    private final MetricsRegistry metrics;
+    private final ExecutorService executor;
+
+    // Selección actual y lo adelantado para ella (protegido por this)
+    private String alias;
+    private CompletableFuture<BatchSigner> session;
+    private Uri document;
+    private CompletableFuture<DocumentDigest> digest;
+    private CompletableFuture<BatchSigner.Pending> absorbed;
+    // Cambian con cada selección: las lecturas de una selección anterior se abortan
+    private final AtomicInteger documentGeneration = new AtomicInteger();
+    private final AtomicInteger absorbGeneration = new AtomicInteger();
+
+    public SpeculativeSigner(Context context, PqcCertificateManager certManager) {
+        this.context = context.getApplicationContext();
+        this.certManager = certManager;
+        this.metrics = MetricsRegistry.get();
+        // Descifrado de la clave y lectura del documento a la vez
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2,
+                10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger n = new AtomicInteger();
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread t = new Thread(r, "speculative-sign-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        t.setPriority(Thread.NORM_PRIORITY - 1);
+                        return t;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    // -------------------------
+    // Selección (hilo principal)
+    // -------------------------
+
+    /** Alias elegido: se desbloquea su clave en segundo plano. */
+    public synchronized void selectAlias(@Nullable String newAlias, char[] keystorePassword) {
+        if (newAlias != null && newAlias.equals(alias)) return;
+        discardAbsorbed();
+        closeSession();
+        alias = newAlias;
+        if (newAlias == null) return;
+        session = CompletableFuture.supplyAsync(() -> {
+            try (Tracer.Span span = Tracer.begin("speculate.unlock")) {
+                BatchSigner s = BatchSigner.open(certManager, newAlias, keystorePassword);
+                s.prepare();
+                return s;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        startAbsorbing();
+    }
+
+    /** Documento elegido: se calcula su resumen en segundo plano. */
+    public synchronized void selectDocument(@Nullable Uri newDocument) {
+        if (newDocument != null && newDocument.equals(document)) return;
+        discardAbsorbed();
+        final int gen = documentGeneration.incrementAndGet();
+        document = newDocument;
+        digest = null;
+        if (newDocument == null) return;
+        digest = CompletableFuture.supplyAsync(() -> {
+            try {
+                if (isLarge(newDocument)) return null;
+                return DocumentDigest.compute(context, newDocument, () -> documentGeneration.get() != gen);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        startAbsorbing();
+    }
+
+    /** Algoritmo del alias elegido, si su clave ya está desbloqueada. */
+    @Nullable
+    public synchronized String getAlgorithm() {
+        CompletableFuture<BatchSigner> s = session;
+        if (s == null || !s.isDone() || s.isCompletedExceptionally()) return null;
+        return s.join().getAlgorithm();
+    }
+
+    // Con alias y documento elegidos, el documento se entrega a la firma en segundo plano
+    private void startAbsorbing() {
+        if (session == null || document == null) return;
+        final Uri uri = document;
+        final int gen = absorbGeneration.incrementAndGet();
+        absorbed = session.thenApplyAsync(s -> {
+            try (Tracer.Span span = Tracer.begin("speculate.absorb")) {
+                if (isLarge(uri)) throw new CancellationException();
+                BatchSigner.Pending pending = s.begin();
+                try (InputStream in = open(uri)) {
+                    byte[] buf = new byte[STREAM_BUFFER_SIZE];
+                    int n;
+                    while ((n = in.read(buf)) != -1) {
+                        if (absorbGeneration.get() != gen) throw new CancellationException();
+                        pending.update(buf, 0, n);
+                    }
+                } catch (Exception e) {
+                    pending.close();
+                    throw e;
+                }
+                span.arg("bytes", pending.length());
+                return pending;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // -------------------------
+    // Firma (hilo de trabajo)
+    // -------------------------
+
+    /**
+     * Firma el documento con el alias elegido aprovechando lo adelantado. Espera a lo que esté
+     * en curso (descifrado de la clave, lectura del documento) en vez de repetirlo.
+     */
+    @WorkerThread
+    public SignatureContainer sign(String forAlias, char[] keystorePassword, Uri forDocument,
+                                   CryptoExecutor.TaskContext ctx) throws Exception {
+        CompletableFuture<BatchSigner> s;
+        CompletableFuture<DocumentDigest> d;
+        CompletableFuture<BatchSigner.Pending> p;
+        synchronized (this) {
+            // Otro alias, o el desbloqueo adelantado falló (se reintenta, como antes)
+            if (!forAlias.equals(alias) || session.isCompletedExceptionally()) {
+                alias = null;
+                selectAlias(forAlias, keystorePassword);
+            }
+            s = session;
+            d = forDocument.equals(document) ? digest : null;
+            p = d != null ? absorbed : null;
+            // Lo absorbido se consume una sola vez
+            absorbed = null;
+        }
+
+        BatchSigner signer;
+        try (Tracer.Span unlock = Tracer.begin("session.open")) {
+            signer = await(s, ctx);
+        }
+        DocumentSource doc;
+        try (Tracer.Span query = Tracer.begin("io.queryDocument")) {
+            doc = DocumentSource.forUri(context, forDocument);
+        }
+
+        if (TreeHash.appliesTo(doc.length())) {
+            if (p != null) p.thenAccept(BatchSigner.Pending::close);
+            TreeHash tree;
+            try (InputStream in = doc.open()) {
+                // Sin track(): el flujo del proveedor se proyecta en memoria si es un fichero
+                tree = TreeHash.compute(in, done -> ctx.reportProgress(done, doc.length()), ctx::isCancelled);
+            }
+            return signer.signPrehashed(tree);
+        }
+
+        DocumentDigest known = d != null ? awaitOrNull(d, ctx) : null;
+        if (known != null && !known.isCurrent(context, forDocument)) {
+            known = null; // modificado después de elegirlo
+        }
+        BatchSigner.Pending pending = p != null ? awaitOrNull(p, ctx) : null;
+
+        // Lo absorbido y el resumen adelantado son dos lecturas distintas: solo se firma si
+        // coinciden byte a byte (mismo SHA-256); el contenedor lleva el resumen de lo absorbido
+        if (known != null && pending != null && pending.length() == known.length
+                && MessageDigest.isEqual(pending.documentDigest(), known.sha256)) {
+            record(signer, RESULT_HIT);
+            return pending.finish();
+        }
+        if (pending != null) pending.close();
+
+        record(signer, RESULT_MISS);
+        try (InputStream in = ctx.track(doc.open(), doc.length())) {
+            return signer.sign(in);
+        }
+    }
+
+    private void record(BatchSigner signer, String result) {
+        metrics.counter(SPECULATION, "op", "sign", "alg", signer.getAlgorithm(), "result", result).increment();
+    }
+
+    /** Suelta la clave descifrada y descarta todo lo adelantado. */
+    @Override
+    public synchronized void close() {
+        documentGeneration.incrementAndGet();
+        discardAbsorbed();
+        closeSession();
+        alias = null;
+        document = null;
+        digest = null;
+        executor.shutdown();
+    }
+
+    // -------------------------
+    // Utilidades
+    // -------------------------
+
+    private void discardAbsorbed() {
+        CompletableFuture<BatchSigner.Pending> p = absorbed;
+        absorbed = null;
+        absorbGeneration.incrementAndGet();
+        if (p != null) {
+            p.thenAccept(BatchSigner.Pending::close);
+        }
+    }
+
+    private void closeSession() {
+        CompletableFuture<BatchSigner> s = session;
+        session = null;
+        if (s != null) {
+            s.thenAccept(BatchSigner::close);
+        }
+    }
+
+    private boolean isLarge(Uri uri) {
+        return TreeHash.appliesTo(DocumentSource.forUri(context, uri).length());
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new IOException("No se pudo abrir InputStream para " + uri);
+        }
+        return in;
+    }
+
+    /** Espera sin bloquear la cancelación de la tarea; propaga el error original. */
+    static <T> T await(Future<T> future, CryptoExecutor.TaskContext ctx) throws Exception {
+        while (true) {
+            ctx.throwIfCancelled();
+            try {
+                return future.get(WAIT_SLICE_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+                // seguimos esperando
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw e;
+            }
+        }
+    }
+
+    /** Como {@link #await} pero un fallo de lo adelantado no es un error: null. */
+    @Nullable
+    static <T> T awaitOrNull(Future<T> future, CryptoExecutor.TaskContext ctx) {
+        try {
+            return await(future, ctx);
+        } catch (CancellationException e) {
+            ctx.throwIfCancelled();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.minibaseapp.task;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.minibaseapp.crypto.DocumentDigest;
+import com.example.minibaseapp.crypto.DocumentSource;
+import com.example.minibaseapp.crypto.PqcCertificateManager;
+import com.example.minibaseapp.crypto.PreparedVerifierCache;
+import com.example.minibaseapp.crypto.SignatureContainer;
+import com.example.minibaseapp.crypto.SignerDirectory;
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.metrics.Tracer;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trabajo de verificación adelantado mientras el usuario todavía elige certificado, documento y
+ * fichero de firma.
+ *
+ * Al elegir el certificado (o una firma en contenedor cuyo firmante se conoce) se decodifica su
+ * clave pública y se deja un verificador inicializado; al elegir el documento se calcula su
+ * resumen SHA-256, con el que un contenedor de otro documento se rechaza sin volver a leerlo. En
+ * cuanto están las tres piezas la verificación entera se hace en segundo plano: no tiene efectos
+ * ni datos secretos. El certificado elegido se decodifica solo en memoria (quien verifica lo añade
+ * al directorio de firmantes si la firma es válida). Al pulsar "Verificar" se usa
+ * el resultado adelantado si la selección sigue siendo la misma y el documento no se ha
+ * modificado; si no, se verifica como siempre.
+ */
+public final class SpeculativeVerifier implements AutoCloseable {
+
+    private static final String PROVIDER = "BC";
+
+    /** Resultado de la parte criptográfica (la validación del certificado se hace aparte). */
+    public static final class Result {
+        @Nullable public final SignerDirectory.Entry signer;
+        public final boolean valid;
+        /** Solo para contenedores; null para firmas en bruto. */
+        @Nullable public final PqcCertificateManager.ContainerVerification.Status status;
+        // Marca del documento cuando se leyó
+        final String stamp;
+
+        Result(@Nullable SignerDirectory.Entry signer, boolean valid,
+               @Nullable PqcCertificateManager.ContainerVerification.Status status, String stamp) {
+            this.signer = signer;
+            this.valid = valid;
+            this.status = status;
+            this.stamp = stamp;
+        }
+    }
+
+    // Selección de la que se parte para verificar (instantánea inmutable)
+    private static final class Inputs {
+        @Nullable final X509Certificate cert;
+        @Nullable final SignerDirectory.Entry entry;
+        @Nullable final CompletableFuture<SignerDirectory.Entry> signer;
+        @Nullable final SignatureContainer container;
+        @Nullable final byte[] rawSignature;
+        @Nullable final Uri document;
+        @Nullable final CompletableFuture<DocumentDigest> digest;
+        // Huella del firmante elegido: cambiar de certificado invalida lo adelantado
+        @Nullable final String signerKey;
+
+        Inputs(@Nullable X509Certificate cert, @Nullable SignerDirectory.Entry entry,
+               @Nullable CompletableFuture<SignerDirectory.Entry> signer,
+               @Nullable SignatureContainer container, @Nullable byte[] rawSignature,
+               @Nullable Uri document, @Nullable CompletableFuture<DocumentDigest> digest) {
+            this.cert = cert;
+            this.entry = entry;
+            this.signer = signer;
+            this.container = container;
+            this.rawSignature = rawSignature;
+            this.document = document;
+            this.digest = digest;
+            this.signerKey = signerKey(cert, entry);
+        }
+
+        boolean isComplete() {
+            if (document == null) return false;
+            if (container != null) return true;
+            return rawSignature != null && (cert != null || entry != null);
+        }
+
+        boolean sameSelection(Inputs o) {
+            return Objects.equals(signerKey, o.signerKey) && container == o.container
+                    && rawSignature == o.rawSignature
+                    && (document == null ? o.document == null : document.equals(o.document));
+        }
+
+        @Nullable
+        private static String signerKey(@Nullable X509Certificate cert, @Nullable SignerDirectory.Entry entry) {
+            if (entry != null) return entry.fingerprintHex;
+            if (cert == null) return null;
+            try {
+                return new BigInteger(1, SignerDirectory.fingerprint(cert)).toString(16);
+            } catch (Exception e) {
+                // Sin huella no se puede reconocer: nunca coincide con otra selección
+                return "unreadable@" + System.identityHashCode(cert);
+            }
+        }
+    }
+
+    private final Context context;
+    private final PqcCertificateManager certManager;
+    private final MetricsRegistry metrics;
+    private final ExecutorService executor;
+
+    // Selección actual y lo adelantado para ella (protegido por this)
+    private X509Certificate cert;
+    private SignerDirectory.Entry entry;
+    private CompletableFuture<SignerDirectory.Entry> signer;
+    private SignatureContainer container;
+    private byte[] rawSignature;
+    private Uri document;
+    private CompletableFuture<DocumentDigest> digest;
+    private CompletableFuture<Result> result;
+    // Cambian con cada selección: las lecturas de una selección anterior se abortan
+    private final AtomicInteger documentGeneration = new AtomicInteger();
+    private final AtomicInteger resultGeneration = new AtomicInteger();
+
+    public SpeculativeVerifier(Context context, PqcCertificateManager certManager) {
+        this.context = context.getApplicationContext();
+        this.certManager = certManager;
+        this.metrics = MetricsRegistry.get();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2,
+                10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger n = new AtomicInteger();
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread t = new Thread(r, "speculative-verify-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        t.setPriority(Thread.NORM_PRIORITY - 1);
+                        return t;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    // -------------------------
+    // Selección (hilo principal)
+    // -------------------------
+
+    /**
+     * Certificado del firmante elegido; entry es su entrada en el directorio si ya se conoce.
+     * La clave pública se decodifica y su verificador se inicializa en segundo plano.
+     */
+    public synchronized void selectSigner(@Nullable X509Certificate newCert,
+                                          @Nullable SignerDirectory.Entry newEntry) {
+        if (newCert == cert && newEntry == entry) return;
+        cert = newCert;
+        entry = newEntry;
+        signer = null;
+        if (newCert != null || newEntry != null) {
+            signer = CompletableFuture.supplyAsync(() -> {
+                try (Tracer.Span span = Tracer.begin("speculate.signer")) {
+                    // Solo en memoria: elegir un certificado no lo añade al directorio
+                    SignerDirectory.Entry e = newEntry != null
+                            ? newEntry : certManager.getSignerDirectory().decode(newCert);
+                    prewarm(e);
+                    return e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+        restart();
+    }
+
+    /** Fichero de firma elegido: contenedor o firma en bruto (.bin). */
+    public synchronized void selectSignature(@Nullable SignatureContainer newContainer,
+                                             @Nullable byte[] newRawSignature) {
+        if (newContainer == container && newRawSignature == rawSignature) return;
+        container = newContainer;
+        rawSignature = newRawSignature;
+        if (newContainer != null) {
+            // El contenedor lleva la huella del firmante: se prepara su verificador
+            executor.execute(() -> {
+                SignerDirectory.Entry e = certManager.getSignerDirectory()
+                        .findByFingerprint(newContainer.signerFingerprint);
+                if (e != null) prewarm(e);
+            });
+        }
+        restart();
+    }
+
+    /** Documento elegido: se calcula su resumen en segundo plano. */
+    public synchronized void selectDocument(@Nullable Uri newDocument) {
+        if (newDocument == null ? document == null : newDocument.equals(document)) return;
+        final int gen = documentGeneration.incrementAndGet();
+        document = newDocument;
+        digest = null;
+        if (newDocument != null) {
+            digest = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return DocumentDigest.compute(context, newDocument, () -> documentGeneration.get() != gen);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+        restart();
+    }
+
+    // Con la selección completa, la verificación entera se hace en segundo plano
+    private void restart() {
+        final int gen = resultGeneration.incrementAndGet();
+        result = null;
+        final Inputs in = snapshot();
+        if (!in.isComplete()) return;
+        final Background ctx = new Background(gen);
+        result = CompletableFuture.supplyAsync(() -> {
+            try (Tracer.Span span = Tracer.begin("speculate.verify")) {
+                return check(in, ctx);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private Inputs snapshot() {
+        return new Inputs(cert, entry, signer, container, rawSignature, document, digest);
+    }
+
+    // -------------------------
+    // Verificación (hilo de trabajo)
+    // -------------------------
+
+    /**
+     * Verifica la selección indicada. Si coincide con la actual y el documento no ha cambiado se
+     * devuelve lo verificado por adelantado (esperando a que termine si está en curso).
+     */
+    @WorkerThread
+    public Result verify(@Nullable X509Certificate forCert, @Nullable SignerDirectory.Entry forEntry,
+                         @Nullable SignatureContainer forContainer, @Nullable byte[] forRawSignature,
+                         Uri forDocument, CryptoExecutor.TaskContext ctx) throws Exception {
+        Inputs requested = new Inputs(forCert, forEntry, null, forContainer, forRawSignature, forDocument, null);
+        Inputs current;
+        CompletableFuture<Result> r;
+        synchronized (this) {
+            current = snapshot();
+            r = result;
+        }
+        String alg = forContainer != null ? forContainer.algorithm
+                : forEntry != null ? forEntry.algorithm : "unknown";
+
+        Result res;
+        if (current.sameSelection(requested)) {
+            res = r != null ? SpeculativeSigner.awaitOrNull(r, ctx) : null;
+            if (res != null && DocumentDigest.isSameDocument(res.stamp, DocumentDigest.stamp(context, forDocument))) {
+                record(alg, SpeculativeSigner.RESULT_HIT);
+            } else {
+                // Se aprovecha lo que haya (firmante resuelto, resumen del documento)
+                record(alg, SpeculativeSigner.RESULT_PARTIAL);
+                res = check(current, ctx);
+            }
+        } else {
+            record(alg, SpeculativeSigner.RESULT_MISS);
+            res = check(requested, ctx);
+        }
+        return res;
+    }
+
+    private Result check(Inputs in, CryptoExecutor.TaskContext ctx) throws Exception {
+        String stamp = DocumentDigest.stamp(context, in.document);
+        DocumentSource doc;
+        try (Tracer.Span query = Tracer.begin("io.queryDocument")) {
+            doc = DocumentSource.forUri(context, in.document);
+        }
+
+        if (in.container != null) {
+            // Con el resumen ya calculado, un documento equivocado se descarta sin leerlo
+            DocumentDigest known = in.digest != null ? SpeculativeSigner.awaitOrNull(in.digest, ctx) : null;
+            if (known != null && !DocumentDigest.isSameDocument(known.stamp, stamp)) {
+                known = null;   // modificado, o sin marca fiable: se resume al leerlo
+            }
+            // El certificado elegido manda, como al verificar en primer plano; si no hay, el
+            // firmante se busca por la huella del contenedor
+            SignerDirectory.Entry chosen = chosenSigner(in, ctx);
+            PqcCertificateManager.ContainerVerification res;
+            try (InputStream s = ctx.track(doc.open(), doc.length())) {
+                res = known != null
+                        ? certManager.verifyContainer(in.container, s, chosen, known)
+                        : certManager.verifyContainer(in.container, s, doc.length(), chosen);
+            }
+            return new Result(res.signer, res.isValid(), res.status, stamp);
+        }
+
+        // Firma en bruto: hace falta el certificado (decodificación solo la primera vez)
+        SignerDirectory.Entry resolved = chosenSigner(in, ctx);
+        boolean valid;
+        try (InputStream s = ctx.track(doc.open(), doc.length())) {
+            valid = certManager.verifyStreamWithSigner(resolved, s, in.rawSignature);
+        }
+        return new Result(resolved, valid, null, stamp);
+    }
+
+    // Firmante elegido a mano (ya decodificado si se adelantó), o null si no se eligió ninguno
+    @Nullable
+    private SignerDirectory.Entry chosenSigner(Inputs in, CryptoExecutor.TaskContext ctx) throws Exception {
+        SignerDirectory.Entry resolved = in.signer != null ? SpeculativeSigner.awaitOrNull(in.signer, ctx) : null;
+        if (resolved == null && (in.entry != null || in.cert != null)) {
+            try (Tracer.Span decode = Tracer.begin("signer.resolve")) {
+                resolved = in.entry != null ? in.entry : certManager.getSignerDirectory().decode(in.cert);
+            }
+        }
+        return resolved;
+    }
+
+    private void prewarm(SignerDirectory.Entry e) {
+        try {
+            PreparedVerifierCache.get().prewarm(e.algorithm, e.publicKey, PROVIDER);
+        } catch (Exception ignored) {
+            // Solo es una optimización: la verificación lo volverá a intentar
+        }
+    }
+
+    private void record(String alg, String result) {
+        metrics.counter(SpeculativeSigner.SPECULATION, "op", "verify", "alg", alg, "result", result).increment();
+    }
+
+    /** Descarta todo lo adelantado. */
+    @Override
+    public synchronized void close() {
+        documentGeneration.incrementAndGet();
+        resultGeneration.incrementAndGet();
+        result = null;
+        digest = null;
+        signer = null;
+        executor.shutdown();
+    }
+
+    // Contexto de la verificación adelantada: se cancela al cambiar la selección
+    private final class Background implements CryptoExecutor.TaskContext {
+        private final int gen;
+
+        Background(int gen) {
+            this.gen = gen;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return resultGeneration.get() != gen;
+        }
+
+        @Override
+        public void throwIfCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+
+        @Override
+        public void reportProgress(long done, long total) {
+            // Nadie la está esperando todavía
+        }
+
+        @Override
+        public InputStream track(InputStream in, long total) {
+            return new ProgressInputStream(in, total, this);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.minibaseapp.task;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estado de la cola de firma en SQLite: un trabajo por alias y carpeta de salida, y una fila por
+ * documento con su estado, que se actualiza en cuanto se firma.
+ */
+final class SqliteJobStore implements SigningJobQueue.Store {
+
+    private final Db db;
+
+    SqliteJobStore(Context context) {
+        this.db = new Db(context);
+    }
+
+    @Override
+    public void requeueRunning() {
+        ContentValues v = new ContentValues();
+        v.put("state", SigningJobQueue.STATE_PENDING);
+        db.getWritableDatabase().update("items", v, "state = ?", new String[]{SigningJobQueue.STATE_RUNNING});
+    }
+
+    @Override
+    public long addJob(String alias, String outputTree, List<SigningJobQueue.Item> documents, long now) {
+        SQLiteDatabase d = db.getWritableDatabase();
+        d.beginTransaction();
+        try {
+            ContentValues job = new ContentValues();
+            job.put("alias", alias);
+            job.put("output_tree", outputTree);
+            job.put("created_at", now);
+            long jobId = d.insertOrThrow("jobs", null, job);
+
+            for (SigningJobQueue.Item doc : documents) {
+                ContentValues item = new ContentValues();
+                item.put("job_id", jobId);
+                item.put("document_uri", doc.uri);
+                item.put("document_name", doc.name);
+                item.put("output_name", doc.output);
+                item.put("state", SigningJobQueue.STATE_PENDING);
+                item.put("updated_at", now);
+                d.insertOrThrow("items", null, item);
+            }
+            d.setTransactionSuccessful();
+            return jobId;
+        } finally {
+            d.endTransaction();
+        }
+    }
+
+    @Nullable
+    @Override
+    public synchronized SigningJobQueue.Claim claimNext(String alias, int limit, long now) {
+        SQLiteDatabase d = db.getWritableDatabase();
+        d.beginTransaction();
+        try {
+            long jobId;
+            String tree;
+            try (Cursor c = d.rawQuery(
+                    "SELECT j.id, j.output_tree FROM jobs j WHERE j.alias = ? AND EXISTS "
+                            + "(SELECT 1 FROM items i WHERE i.job_id = j.id AND i.state = ?) ORDER BY j.id LIMIT 1",
+                    new String[]{alias, SigningJobQueue.STATE_PENDING})) {
+                if (!c.moveToFirst()) return null;
+                jobId = c.getLong(0);
+                tree = c.getString(1);
+            }
+
+            List<SigningJobQueue.Item> items = new ArrayList<>();
+            try (Cursor c = d.rawQuery(
+                    "SELECT id, document_uri, document_name, output_name, output_uri FROM items "
+                            + "WHERE job_id = ? AND state = ? ORDER BY id LIMIT "
+                            + limit,
+                    new String[]{Long.toString(jobId), SigningJobQueue.STATE_PENDING})) {
+                while (c.moveToNext()) {
+                    items.add(new SigningJobQueue.Item(c.getLong(0), c.getString(1), c.getString(2), c.getString(3),
+                            c.getString(4)));
+                }
+            }
+            ContentValues v = new ContentValues();
+            v.put("state", SigningJobQueue.STATE_RUNNING);
+            v.put("updated_at", now);
+            for (SigningJobQueue.Item item : items) {
+                d.update("items", v, "id = ?", new String[]{Long.toString(item.id)});
+            }
+            d.setTransactionSuccessful();
+            return new SigningJobQueue.Claim(jobId, tree, items);
+        } finally {
+            d.endTransaction();
+        }
+    }
+
+    @Override
+    public void recordOutput(long itemId, String output, String outputUri) {
+        ContentValues v = new ContentValues();
+        v.put("output_name", output);
+        v.put("output_uri", outputUri);
+        db.getWritableDatabase().update("items", v, "id = ?", new String[]{Long.toString(itemId)});
+    }
+
+    @Override
+    public void markItem(long itemId, String state, @Nullable String output, @Nullable String error,
+                         long bytes, double latencyMs, long now) {
+        ContentValues v = new ContentValues();
+        v.put("state", state);
+        if (output != null) {
+            // El nombre con el que ha quedado; si falla se conserva el elegido al encolar
+            v.put("output_name", output);
+        }
+        v.put("error", error);
+        v.put("bytes", bytes);
+        v.put("latency_ms", latencyMs);
+        v.put("updated_at", now);
+        db.getWritableDatabase().update("items", v, "id = ?", new String[]{Long.toString(itemId)});
+    }
+
+    @Override
+    public void releaseUnfinished(long jobId) {
+        ContentValues v = new ContentValues();
+        v.put("state", SigningJobQueue.STATE_PENDING);
+        db.getWritableDatabase().update("items", v, "job_id = ? AND state = ?",
+                new String[]{Long.toString(jobId), SigningJobQueue.STATE_RUNNING});
+    }
+
+    @Nullable
+    @Override
+    public List<String> documentsIfFinished(long jobId) {
+        SQLiteDatabase d = db.getReadableDatabase();
+        try (Cursor c = d.rawQuery("SELECT COUNT(*) FROM items WHERE job_id = ? AND state IN (?, ?)",
+                new String[]{Long.toString(jobId), SigningJobQueue.STATE_PENDING, SigningJobQueue.STATE_RUNNING})) {
+            if (c.moveToFirst() && c.getInt(0) > 0) return null;
+        }
+        List<String> uris = new ArrayList<>();
+        try (Cursor c = d.rawQuery("SELECT document_uri FROM items WHERE job_id = ?",
+                new String[]{Long.toString(jobId)})) {
+            while (c.moveToNext()) {
+                uris.add(c.getString(0));
+            }
+        }
+        return uris;
+    }
+
+    @Override
+    public Map<String, Integer> countByState() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        try (Cursor c = db.getReadableDatabase().rawQuery("SELECT state, COUNT(*) FROM items GROUP BY state", null)) {
+            while (c.moveToNext()) {
+                out.put(c.getString(0), c.getInt(1));
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public int countDoneSince(long since) {
+        try (Cursor c = db.getReadableDatabase().rawQuery(
+                "SELECT COUNT(*) FROM items WHERE state = ? AND updated_at > ?",
+                new String[]{SigningJobQueue.STATE_DONE, Long.toString(since)})) {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        }
+    }
+
+    @Override
+    public Map<String, Integer> pendingByAlias() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        try (Cursor c = db.getReadableDatabase().rawQuery(
+                "SELECT j.alias, COUNT(*) FROM items i JOIN jobs j ON i.job_id = j.id "
+                        + "WHERE i.state IN (?, ?) GROUP BY j.alias",
+                new String[]{SigningJobQueue.STATE_PENDING, SigningJobQueue.STATE_RUNNING})) {
+            while (c.moveToNext()) {
+                out.put(c.getString(0), c.getInt(1));
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public void pruneFinished(long before) {
+        SQLiteDatabase d = db.getWritableDatabase();
+        d.beginTransaction();
+        try {
+            String finished = "SELECT job_id FROM items GROUP BY job_id "
+                    + "HAVING SUM(state IN (?, ?)) = 0 AND MAX(updated_at) < ?";
+            String[] args = {SigningJobQueue.STATE_PENDING, SigningJobQueue.STATE_RUNNING, Long.toString(before)};
+            d.delete("jobs", "id IN (" + finished + ")", args);
+            // Sus documentos, y los trabajos que se quedaron sin ninguno
+            d.delete("items", "job_id NOT IN (SELECT id FROM jobs)", null);
+            d.delete("jobs", "id NOT IN (SELECT job_id FROM items)", null);
+            d.setTransactionSuccessful();
+        } finally {
+            d.endTransaction();
+        }
+    }
+
+    // -------------------------
+    // Base de datos
+    // -------------------------
+    private static final class Db extends SQLiteOpenHelper {
+        private static final String NAME = "signing_queue.db";
+        // 2: items.output_uri
+        private static final int VERSION = 2;
+
+        Db(Context context) {
+            super(context, NAME, null, VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase d) {
+            d.execSQL("CREATE TABLE jobs ("
+                    + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "alias TEXT NOT NULL, "
+                    + "output_tree TEXT NOT NULL, "
+                    + "created_at INTEGER NOT NULL)");
+            d.execSQL("CREATE TABLE items ("
+                    + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "job_id INTEGER NOT NULL REFERENCES jobs(id), "
+                    + "document_uri TEXT NOT NULL, "
+                    + "document_name TEXT NOT NULL, "
+                    + "state TEXT NOT NULL, "
+                    + "output_name TEXT, "
+                    + "output_uri TEXT, "
+                    + "error TEXT, "
+                    + "bytes INTEGER, "
+                    + "latency_ms REAL, "
+                    + "updated_at INTEGER NOT NULL)");
+            d.execSQL("CREATE INDEX items_job_state ON items(job_id, state)");
+            d.execSQL("CREATE INDEX items_state_updated ON items(state, updated_at)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase d, int oldVersion, int newVersion) {
+            if (oldVersion < 2) {
+                d.execSQL("ALTER TABLE items ADD COLUMN output_uri TEXT");
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.minibaseapp.task;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.liboqs.Common;
+import com.example.liboqs.NativeBuild;
+import com.example.liboqs.PreparedPublicKey;
+import com.example.liboqs.PreparedSigningKey;
+import com.example.liboqs.Sigs;
+import com.example.minibaseapp.crypto.PqcCertificateManager;
+import com.example.minibaseapp.crypto.SignerDirectory;
+import com.example.minibaseapp.metrics.MetricsRegistry;
+import com.example.minibaseapp.metrics.Tracer;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Arranque de la parte criptográfica fuera del hilo principal.
+ *
+ * Al crear la aplicación se lanzan en paralelo, en hilos de fondo, el registro de BouncyCastle,
+ * la carga de liboqs (cuyo JNI_OnLoad registra los métodos nativos de firma y verificación) y,
+ * cuando cada uno termina, una firma y verificación de calentamiento por algoritmo: los de los
+ * firmantes conocidos con BouncyCastle y los de liboqs que usa la app. Así la primera firma del
+ * usuario no paga la carga de clases, la resolución de proveedores ni los fallos de página de
+ * la librería nativa.
+ *
+ * Cada fase expone un futuro ("listo") y su duración se registra en
+ * minibase_startup_stage_seconds{stage}. Quien necesita una fase antes de que termine no tiene
+ * que esperar al futuro: PqcCertificateManager.ensureProvider() y la inicialización de Sigs
+ * están sincronizadas y simplemente esperan a que acabe.
+ */
+public final class StartupOrchestrator {
+
+    private static final String TAG = "StartupOrchestrator";
+
+    static final String STARTUP_STAGE = "minibase_startup_stage_seconds";
+
+    public static final String STAGE_PROVIDER = "provider";
+    public static final String STAGE_NATIVE = "native";
+    public static final String STAGE_WARMUP_BC = "warmup_bc";
+    public static final String STAGE_WARMUP_LIBOQS = "warmup_liboqs";
+    public static final String STAGE_TOTAL = "total";
+
+    // Se calienta aunque aún no haya firmantes conocidos
+    static final String DEFAULT_WARMUP_ALGORITHM = "ML-DSA-44";
+    private static final byte[] WARMUP_MESSAGE = "minibase warm-up".getBytes(StandardCharsets.UTF_8);
+
+    private static final StartupOrchestrator INSTANCE =
+            new StartupOrchestrator(MetricsRegistry.get(), StartupOrchestrator::loadLiboqs);
+
+    /** Fase que puede fallar; el error se propaga a su futuro. */
+    interface Step {
+        void run() throws Exception;
+    }
+
+    private final MetricsRegistry metrics;
+    private final Step nativeLoader;
+    private final ExecutorService executor;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Map<String, Long> stageNanos = new ConcurrentHashMap<>();
+
+    private final CompletableFuture<Void> providerReady = new CompletableFuture<>();
+    private final CompletableFuture<Void> nativeReady = new CompletableFuture<>();
+    private final CompletableFuture<Void> warmedUp = new CompletableFuture<>();
+
+    StartupOrchestrator(MetricsRegistry metrics, Step nativeLoader) {
+        this.metrics = metrics;
+        this.nativeLoader = nativeLoader;
+        // Una fase por hilo como máximo: registro de BC y carga nativa a la vez
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 3));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger n = new AtomicInteger();
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread t = new Thread(r, "startup-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        t.setPriority(Thread.NORM_PRIORITY - 1);
+                        return t;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    public static StartupOrchestrator get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lanza el arranque (solo la primera vez) y vuelve de inmediato.
+     *
+     * @param liboqsAlgorithms algoritmos de liboqs que usa la app, para calentarlos
+     */
+    public void start(Context context, String... liboqsAlgorithms) {
+        final Context app = context.getApplicationContext();
+        run(() -> storedAlgorithms(app), liboqsAlgorithms);
+    }
+
+    void run(Callable<Collection<String>> storedAlgorithms, String... liboqsAlgorithms) {
+        if (!started.compareAndSet(false, true)) return;
+        final long t0 = System.nanoTime();
+
+        executor.execute(() -> complete(providerReady, STAGE_PROVIDER, PqcCertificateManager::ensureProvider));
+        executor.execute(() -> complete(nativeReady, STAGE_NATIVE, nativeLoader));
+
+        CompletableFuture<Void> bc = providerReady.thenRunAsync(() -> timed(STAGE_WARMUP_BC,
+                () -> warmUpBouncyCastle(storedAlgorithms.call())), executor);
+        CompletableFuture<Void> oqs = nativeReady.thenRunAsync(() -> timed(STAGE_WARMUP_LIBOQS,
+                () -> warmUpLiboqs(liboqsAlgorithms)), executor);
+        // El calentamiento es best-effort: se da por terminado aunque alguna fase haya fallado
+        CompletableFuture.allOf(bc, oqs).whenComplete((v, e) -> {
+            record(STAGE_TOTAL, System.nanoTime() - t0);
+            warmedUp.complete(null);
+        });
+    }
+
+    // -------------------------
+    // Futuros y tiempos
+    // -------------------------
+
+    /** BouncyCastle registrado como proveedor. */
+    public CompletableFuture<Void> providerReady() {
+        return providerReady;
+    }
+
+    /** liboqs cargada y sus métodos nativos registrados. Falla si la librería no se pudo cargar. */
+    public CompletableFuture<Void> nativeReady() {
+        return nativeReady;
+    }
+
+    /** Calentamiento terminado (aunque alguna fase haya fallado). */
+    public CompletableFuture<Void> warmedUp() {
+        return warmedUp;
+    }
+
+    /** Duración en ms de cada fase terminada. */
+    public Map<String, Double> stageMillis() {
+        Map<String, Double> out = new TreeMap<>();
+        for (Map.Entry<String, Long> e : stageNanos.entrySet()) {
+            out.put(e.getKey(), e.getValue() / 1_000_000.0);
+        }
+        return out;
+    }
+
+    // -------------------------
+    // Fases
+    // -------------------------
+
+    private void complete(CompletableFuture<Void> ready, String stage, Step step) {
+        try {
+            timed(stage, step);
+            ready.complete(null);
+        } catch (Throwable e) {
+            ready.completeExceptionally(e instanceof CompletionException && e.getCause() != null
+                    ? e.getCause() : e);
+        }
+    }
+
+    private void timed(String stage, Step step) {
+        long t0 = System.nanoTime();
+        try (Tracer.Span span = Tracer.begin("startup." + stage)) {
+            step.run();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+        record(stage, System.nanoTime() - t0);
+    }
+
+    private void record(String stage, long nanos) {
+        stageNanos.put(stage, nanos);
+        metrics.histogram(STARTUP_STAGE, "stage", stage).recordNanos(nanos);
+    }
+
+    // Sigs carga la librería en su inicialización; JNI_OnLoad registra los nativos
+    private static void loadLiboqs() {
+        Sigs.get_instance();
+        Log.i(TAG, "liboqs " + NativeBuild.version() + " (" + Common.get_loaded_variant()
+                + "), nativos registrados: " + NativeBuild.registered_natives());
+    }
+
+    private static Collection<String> storedAlgorithms(Context context) {
+        Set<String> algorithms = new LinkedHashSet<>();
+        for (SignerDirectory.Entry entry : SignerDirectory.getInstance(context).list()) {
+            algorithms.add(entry.algorithm);
+        }
+        if (algorithms.isEmpty()) {
+            return Collections.singleton(DEFAULT_WARMUP_ALGORITHM);
+        }
+        return algorithms;
+    }
+
+    // Claves efímeras: no se toca el almacén (necesita contraseña) ni la caché de verificadores
+    private static void warmUpBouncyCastle(Collection<String> algorithms) {
+        for (String alg : algorithms) {
+            try {
+                KeyPair kp = KeyPairGenerator.getInstance(alg, BouncyCastleProvider.PROVIDER_NAME)
+                        .generateKeyPair();
+                Signature signer = Signature.getInstance(alg, BouncyCastleProvider.PROVIDER_NAME);
+                signer.initSign(kp.getPrivate());
+                signer.update(WARMUP_MESSAGE);
+                byte[] sig = signer.sign();
+                Signature verifier = Signature.getInstance(alg, BouncyCastleProvider.PROVIDER_NAME);
+                verifier.initVerify(kp.getPublic());
+                verifier.update(WARMUP_MESSAGE);
+                verifier.verify(sig);
+            } catch (Exception e) {
+                Log.w(TAG, "Calentamiento BC fallido para " + alg, e);
+            }
+        }
+    }
+
+    // Mismo camino que la pantalla de firma: clave de firma y clave pública preparadas
+    private static void warmUpLiboqs(String... algorithms) {
+        for (String alg : algorithms) {
+            com.example.liboqs.Signature sig = new com.example.liboqs.Signature(alg);
+            try {
+                byte[] publicKey = sig.generate_keypair();
+                byte[] signature;
+                try (PreparedSigningKey key = new PreparedSigningKey(alg, sig.export_secret_key())) {
+                    signature = key.sign(WARMUP_MESSAGE);
+                }
+                PreparedPublicKey verifier = new PreparedPublicKey(alg, publicKey);
+                try {
+                    verifier.verify(WARMUP_MESSAGE, signature);
+                } finally {
+                    verifier.dispose();
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Calentamiento liboqs fallido para " + alg, e);
+            } finally {
+                sig.dispose_sig();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.minibaseapp.crypto;
+
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la firma incremental (documento entregado por partes antes de firmar) y de los
+ * nombres de salida de un lote.
+ */
+public class BatchSignerTest {
+
+    private static final String ALG = "ML-DSA-44";
+    private static KeyPair keyPair;
+    private static X509Certificate cert;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        keyPair = KeyPairGenerator.getInstance(ALG, "BC").generateKeyPair();
+        X500Name name = new X500Name("CN=Prueba");
+        Date now = new Date();
+        cert = new JcaX509CertificateConverter().setProvider("BC").getCertificate(
+                new JcaX509v3CertificateBuilder(name, BigInteger.ONE, now,
+                        new Date(now.getTime() + 86_400_000L), name, keyPair.getPublic())
+                        .build(contentSigner(keyPair.getPrivate())));
+    }
+
+    // Firmante de certificados mínimo, sin el buscador de identificadores de bcpkix
+    private static ContentSigner contentSigner(PrivateKey key) {
+        ByteArrayOutputStream tbs = new ByteArrayOutputStream();
+        return new ContentSigner() {
+            @Override
+            public AlgorithmIdentifier getAlgorithmIdentifier() {
+                return new AlgorithmIdentifier(NISTObjectIdentifiers.id_ml_dsa_44);
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                return tbs;
+            }
+
+            @Override
+            public byte[] getSignature() {
+                try {
+                    Signature s = Signature.getInstance(ALG, "BC");
+                    s.initSign(key);
+                    s.update(tbs.toByteArray());
+                    return s.sign();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    private static BatchSigner newSigner() throws Exception {
+        return new BatchSigner("alias", new PqcCertificateManager.KeyAndCert(keyPair.getPrivate(), cert));
+    }
+
+    private static boolean verifies(SignatureContainer c, byte[] document) throws Exception {
+        return verifies(c, document, null);
+    }
+
+    private static boolean verifies(SignatureContainer c, byte[] message, byte[] context) throws Exception {
+        Signature v = Signature.getInstance(ALG, "BC");
+        v.initVerify(keyPair.getPublic());
+        SigningContext.apply(v, ALG, context);
+        v.update(message);
+        return v.verify(c.signature);
+    }
+
+    @Test
+    public void pending_matchesStreamingSignature() throws Exception {
+        byte[] doc = "documento firmado por partes".getBytes(StandardCharsets.UTF_8);
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(doc);
+
+        try (BatchSigner signer = newSigner()) {
+            signer.prepare();
+            SignatureContainer incremental;
+            try (BatchSigner.Pending pending = signer.begin()) {
+                pending.update(doc, 0, 10);
+                pending.update(doc, 10, doc.length - 10);
+                assertEquals(doc.length, pending.length());
+                assertArrayEquals(sha256, pending.documentDigest());
+                incremental = pending.finish();
+            }
+            SignatureContainer streamed = signer.sign(new ByteArrayInputStream(doc));
+
+            assertTrue(verifies(incremental, doc));
+            assertEquals(streamed.documentLength, incremental.documentLength);
+            assertArrayEquals(streamed.documentDigest, incremental.documentDigest);
+            assertArrayEquals(streamed.signerFingerprint, incremental.signerFingerprint);
+        }
+    }
+
+    @Test
+    public void prehashed_signsTheTreeDigestMessage() throws Exception {
+        byte[] doc = "documento grande".getBytes(StandardCharsets.UTF_8);
+        TreeHash tree = TreeHash.compute(new ByteArrayInputStream(doc), null, () -> false);
+        try (BatchSigner signer = newSigner()) {
+            SignatureContainer c = signer.signPrehashed(tree);
+            assertTrue(c.isPrehashed());
+            assertEquals(doc.length, c.documentLength);
+            assertArrayEquals(tree.digest, c.documentDigest);
+            byte[] message = TreeHash.signedMessage(tree.length, tree.digest);
+            assertTrue(verifies(c, message, SigningContext.TREE_HASH));
+            // Ni como documento suelto ni como raíz de lote
+            assertFalse(verifies(c, message));
+            assertFalse(verifies(c, message, SigningContext.BATCH_ROOT));
+            assertFalse(verifies(c, doc));
+        }
+    }
+
+    @Test
+    public void abandonedPending_doesNotLeakIntoNextSignature() throws Exception {
+        byte[] doc = "documento".getBytes(StandardCharsets.UTF_8);
+        try (BatchSigner signer = newSigner()) {
+            try (BatchSigner.Pending pending = signer.begin()) {
+                pending.update(new byte[]{1, 2, 3}, 0, 3); // descartada sin terminar
+            }
+            SignatureContainer c = signer.sign(new ByteArrayInputStream(doc));
+            assertTrue(verifies(c, doc));
+        }
+    }
+
+    @Test
+    public void outputNames_disambiguateRepeatedDocuments() {
+        assertEquals(Arrays.asList("a.pdf.pqsig", "a (3).pdf.pqsig", "a (2).pdf.pqsig", "b.pqsig", "b (2).pqsig"),
+                BatchSigner.outputNamesFor(Arrays.asList("x/a.pdf", "y/a.pdf", "a (2).pdf", "b", "b")));
+    }
+}
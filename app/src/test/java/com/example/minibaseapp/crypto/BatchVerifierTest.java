@@ -0,0 +1,106 @@
+package com.example.minibaseapp.crypto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del emparejado documento/firma y del informe JSONL.
+ */
+public class BatchVerifierTest {
+
+    private static DocumentSource source(final String name) {
+        return new DocumentSource() {
+            @Override public String name() { return name; }
+            @Override public long length() { return 0; }
+            @Override public InputStream open() { return new ByteArrayInputStream(new byte[0]); }
+        };
+    }
+
+    private static Map<String, String> pairsOf(List<BatchVerifier.Pair> pairs) {
+        Map<String, String> m = new HashMap<>();
+        for (BatchVerifier.Pair p : pairs) {
+            m.put(p.signature.name(), p.document != null ? p.document.name() : null);
+        }
+        return m;
+    }
+
+    @Test
+    public void pair_matchesByFullNameThenStem() {
+        List<DocumentSource> files = new ArrayList<>();
+        for (String n : Arrays.asList("a.pdf", "a.pdf.pqsig", "b.txt", "b.pqsig",
+                "sub/a.pdf", "sub/a.pqsig", "huerfana.pqsig", "c.pdf", "c.bin")) {
+            files.add(source(n));
+        }
+
+        Map<String, String> m = pairsOf(BatchVerifier.pair(files, false));
+        assertEquals(4, m.size());
+        assertEquals("a.pdf", m.get("a.pdf.pqsig"));
+        assertEquals("b.txt", m.get("b.pqsig"));
+        assertEquals("sub/a.pdf", m.get("sub/a.pqsig"));
+        assertNull(m.get("huerfana.pqsig"));
+        assertTrue(m.containsKey("huerfana.pqsig"));
+
+        // Las firmas .bin solo se consideran si hay firmante por defecto
+        Map<String, String> withLegacy = pairsOf(BatchVerifier.pair(files, true));
+        assertEquals("c.pdf", withLegacy.get("c.bin"));
+    }
+
+    @Test
+    public void pair_reportsAmbiguousStems() {
+        List<DocumentSource> files = new ArrayList<>();
+        for (String n : Arrays.asList("doc.pdf", "doc.txt", "doc.pqsig", "doc.pdf.pqsig")) {
+            files.add(source(n));
+        }
+
+        BatchVerifier.Pair ambiguous = null;
+        for (BatchVerifier.Pair p : BatchVerifier.pair(files, false)) {
+            if (p.signature.name().equals("doc.pqsig")) {
+                ambiguous = p;
+            } else {
+                // El nombre completo sigue siendo único
+                assertEquals("doc.pdf", p.document.name());
+                assertNull(p.candidates);
+            }
+        }
+        assertNotNull(ambiguous);
+        assertNull(ambiguous.document);
+        assertEquals(Arrays.asList("doc.pdf", "doc.txt"), ambiguous.candidates);
+
+        BatchVerifier.ItemResult r = new BatchVerifier(null, 1, null).verifyOne(ambiguous);
+        assertEquals(BatchVerifier.Verdict.AMBIGUOUS_DOCUMENT, r.verdict);
+        assertTrue(r.error.contains("doc.txt"));
+    }
+
+    @Test
+    public void report_isOneJsonObjectPerLinePlusSummary() throws Exception {
+        List<BatchVerifier.ItemResult> items = new ArrayList<>();
+        items.add(new BatchVerifier.ItemResult("a.pdf", "a.pdf.pqsig", BatchVerifier.Verdict.VALID,
+                "CN=Ana", 10, 1.5, null));
+        items.add(new BatchVerifier.ItemResult("b\"x.pdf", "b.pqsig", BatchVerifier.Verdict.ERROR,
+                null, 0, 0.2, "fallo\nde lectura"));
+        BatchVerifier.Report report = new BatchVerifier.Report(items, 2.0);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        report.writeJsonl(bos);
+        String[] lines = new String(bos.toByteArray(), StandardCharsets.UTF_8).split("\n");
+
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("\"verdict\":\"VALID\""));
+        assertTrue(lines[0].contains("\"latency_ms\":1.500"));
+        assertTrue(lines[1].contains("\"document\":\"b\\\"x.pdf\""));
+        assertTrue(lines[1].contains("\"error\":\"fallo\\nde lectura\""));
+        assertTrue(lines[2].contains("\"total\":2"));
+        assertTrue(lines[2].contains("\"valid\":1"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.minibaseapp.crypto;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del índice de seriales revocados (sin Android ni ficheros).
+ */
+public class CrlCacheTest {
+
+    private static long fp(long serial) {
+        return CrlCache.serialFingerprint(BigInteger.valueOf(serial));
+    }
+
+    @Test
+    public void index_containsOnlyRevokedSerials() {
+        long[] revoked = new long[1000];
+        for (int i = 0; i < revoked.length; i++) {
+            revoked[i] = fp(i * 2L);
+        }
+        CrlCache.IssuerIndex idx = CrlCache.IssuerIndex.build("CN=CA", BigInteger.ONE, 0, 0, revoked);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(idx.contains(fp(i * 2L)));
+            assertFalse(idx.contains(fp(i * 2L + 1)));
+        }
+    }
+
+    @Test
+    public void delta_addsAndRemovesEntries() {
+        CrlCache.IssuerIndex base = CrlCache.IssuerIndex.build("CN=CA", BigInteger.ONE, 0, 0,
+                new long[]{fp(1), fp(2), fp(3)});
+
+        CrlCache.IssuerIndex delta = base.merge(BigInteger.valueOf(2), 0, 0,
+                new long[]{fp(4), fp(2)}, new long[]{fp(1)});
+
+        assertFalse(delta.contains(fp(1)));
+        assertTrue(delta.contains(fp(2)));
+        assertTrue(delta.contains(fp(3)));
+        assertTrue(delta.contains(fp(4)));
+        assertEquals(3, delta.serials.length);
+        assertEquals(BigInteger.valueOf(2), delta.crlNumber);
+        // La base no se modifica (índices inmutables)
+        assertTrue(base.contains(fp(1)));
+    }
+
+    @Test
+    public void emptyIndex_neverReportsRevoked() {
+        CrlCache.IssuerIndex idx = CrlCache.IssuerIndex.build("CN=CA", BigInteger.ONE, 0, 0, new long[0]);
+        assertFalse(idx.contains(fp(42)));
+    }
+
+    @Test
+    public void localSources_areRetriedWhenChangedOrAfterTheBackOff() {
+        assertTrue(CrlCache.isPendingSource(null, "10:100", 0));
+        assertFalse(CrlCache.isPendingSource("10:100", "10:100", 0));
+        assertTrue(CrlCache.isPendingSource("10:100", "11:100", 0));
+
+        // Fallo: no se reintenta hasta que el fichero cambie o venza la espera
+        String failed = CrlCache.failedSourceStamp("10:100", 1000);
+        assertFalse(CrlCache.isPendingSource(failed, "10:100", 1000));
+        assertTrue(CrlCache.isPendingSource(failed, "10:101", 1000));
+        assertTrue(CrlCache.isPendingSource(failed, "10:100", 1000 + 7 * 60 * 60 * 1000L));
+    }
+}
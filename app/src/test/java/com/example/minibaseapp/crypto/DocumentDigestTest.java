@@ -0,0 +1,21 @@
+package com.example.minibaseapp.crypto;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Marca de documento: sin tamaño o sin fecha del proveedor no sirve para reconocer el contenido.
+ */
+public class DocumentDigestTest {
+
+    @Test
+    public void unknownStamps_neverMatch() {
+        assertTrue(DocumentDigest.isSameDocument("1024:1700000000000", "1024:1700000000000"));
+        assertFalse(DocumentDigest.isSameDocument("1024:1700000000000", "1024:1700000000001"));
+
+        assertFalse(DocumentDigest.isSameDocument("-1:-1", "-1:-1"));
+        assertFalse(DocumentDigest.isSameDocument("1024:-1", "1024:-1"));
+        assertFalse(DocumentDigest.isSameDocument("-1:1700000000000", "-1:1700000000000"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.minibaseapp.crypto;
+
+import com.example.minibaseapp.metrics.MetricsRegistry;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Security;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del árbol de Merkle de la firma por lotes y de la caché de raíces verificadas.
+ */
+public class MerkleTreeTest {
+
+    private static List<byte[]> leaves(int n) throws Exception {
+        List<byte[]> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            byte[] doc = ("documento " + i).getBytes(StandardCharsets.UTF_8);
+            out.add(MerkleTree.leafHash(doc.length, SignatureContainer.DIGEST_SHA256,
+                    MessageDigest.getInstance("SHA-256").digest(doc)));
+        }
+        return out;
+    }
+
+    @Test
+    public void everyProof_leadsToTheRoot() throws Exception {
+        for (int n = 1; n <= 17; n++) {
+            List<byte[]> leaves = leaves(n);
+            MerkleTree tree = new MerkleTree(leaves);
+            for (int i = 0; i < n; i++) {
+                MerkleTree.Proof proof = tree.proof(i);
+                assertArrayEquals("n=" + n + " i=" + i, tree.root(), proof.rootFor(leaves.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void proof_doesNotFitAnotherLeafOrPosition() throws Exception {
+        List<byte[]> leaves = leaves(6);
+        MerkleTree tree = new MerkleTree(leaves);
+        MerkleTree.Proof proof = tree.proof(2);
+
+        assertFalse(Arrays.equals(tree.root(), proof.rootFor(leaves.get(3))));
+
+        // Misma prueba en otra posición: o sobran hermanos o sale otra raíz
+        MerkleTree.Proof moved = new MerkleTree.Proof(5, 6, new byte[][]{
+                proof.sibling(0), proof.sibling(1), proof.sibling(2)});
+        byte[] root = moved.rootFor(leaves.get(2));
+        assertTrue(root == null || !Arrays.equals(tree.root(), root));
+    }
+
+    @Test
+    public void rootCache_verifiesOncePerRootAndRejectsOtherSignatures() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        KeyPair kp = KeyPairGenerator.getInstance("ML-DSA-44", "BC").generateKeyPair();
+        MerkleTree tree = new MerkleTree(leaves(5));
+        byte[] message = MerkleTree.rootMessage(tree.leafCount(), tree.root());
+        Signature s = Signature.getInstance("ML-DSA-44", "BC");
+        s.initSign(kp.getPrivate());
+        SigningContext.apply(s, "ML-DSA-44", SigningContext.BATCH_ROOT);
+        s.update(message);
+        byte[] signature = s.sign();
+
+        BatchRootCache cache = new BatchRootCache(MetricsRegistry.get(), new PreparedVerifierCache(MetricsRegistry.get()));
+        assertTrue(cache.verify("ML-DSA-44", kp.getPublic(), "BC", message, signature));
+        assertTrue(cache.verify("ML-DSA-44", kp.getPublic(), "BC", message, signature));
+        assertEquals(1, cache.size());
+
+        byte[] other = MerkleTree.rootMessage(tree.leafCount() + 1, tree.root());
+        assertFalse(cache.verify("ML-DSA-44", kp.getPublic(), "BC", other, signature));
+
+        // La misma raíz firmada como si fuera un documento (sin contexto) no vale como raíz
+        s.initSign(kp.getPrivate());
+        s.update(message);
+        assertFalse(cache.verify("ML-DSA-44", kp.getPublic(), "BC", message, s.sign()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.minibaseapp.crypto;
+
+import com.example.minibaseapp.metrics.MetricsRegistry;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.Signature;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la reutilización de verificadores inicializados.
+ */
+public class PreparedVerifierCacheTest {
+
+    private static final String ALG = "ML-DSA-44";
+    private static KeyPair keyPair;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        keyPair = KeyPairGenerator.getInstance(ALG, "BC").generateKeyPair();
+    }
+
+    private static byte[] sign(byte[] data) throws Exception {
+        Signature s = Signature.getInstance(ALG, "BC");
+        s.initSign(keyPair.getPrivate());
+        s.update(data);
+        return s.sign();
+    }
+
+    private static boolean verify(PreparedVerifierCache cache, byte[] data, byte[] sig) throws Exception {
+        try (PreparedVerifierCache.Lease lease = cache.acquire(ALG, keyPair.getPublic(), "BC")) {
+            lease.update(data);
+            return lease.verify(sig);
+        }
+    }
+
+    @Test
+    public void reusedVerifier_givesSameResults() throws Exception {
+        PreparedVerifierCache cache = new PreparedVerifierCache(MetricsRegistry.get());
+        byte[] a = "documento A".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "documento B".getBytes(StandardCharsets.UTF_8);
+        byte[] sigA = sign(a);
+        byte[] sigB = sign(b);
+
+        assertTrue(verify(cache, a, sigA));
+        assertEquals(1, cache.idleCount());
+        // La instancia reutilizada no arrastra datos de la verificación anterior
+        assertFalse(verify(cache, a, sigB));
+        assertTrue(verify(cache, b, sigB));
+        assertTrue(verify(cache, a, sigA));
+        assertEquals(1, cache.idleCount());
+    }
+
+    @Test
+    public void unfinishedLease_isDiscarded() throws Exception {
+        PreparedVerifierCache cache = new PreparedVerifierCache(MetricsRegistry.get());
+        byte[] a = "documento A".getBytes(StandardCharsets.UTF_8);
+        try (PreparedVerifierCache.Lease lease = cache.acquire(ALG, keyPair.getPublic(), "BC")) {
+            lease.update(a); // abandonada sin verify(): tiene datos a medias
+        }
+        assertEquals(0, cache.idleCount());
+        assertTrue(verify(cache, a, sign(a)));
+    }
+
+    @Test
+    public void prewarm_leavesOneReadyVerifier() throws Exception {
+        PreparedVerifierCache cache = new PreparedVerifierCache(MetricsRegistry.get());
+        cache.prewarm(ALG, keyPair.getPublic(), "BC");
+        cache.prewarm(ALG, keyPair.getPublic(), "BC");
+        assertEquals(1, cache.idleCount());
+
+        byte[] a = "documento A".getBytes(StandardCharsets.UTF_8);
+        assertTrue(verify(cache, a, sign(a)));
+        assertEquals(1, cache.idleCount());
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.minibaseapp.crypto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del formato del contenedor de firma.
+ */
+public class SignatureContainerTest {
+
+    private static SignatureContainer sample() {
+        byte[] fp = new byte[SignerDirectory.FINGERPRINT_LENGTH];
+        Arrays.fill(fp, (byte) 7);
+        byte[] digest = new byte[32];
+        Arrays.fill(digest, (byte) 3);
+        byte[] sig = new byte[2420];
+        Arrays.fill(sig, (byte) 9);
+        return new SignatureContainer("ML-DSA-44", fp, 123456L,
+                SignatureContainer.DIGEST_SHA256, digest, sig);
+    }
+
+    @Test
+    public void roundTrip_preservesAllFields() throws IOException {
+        SignatureContainer c = sample();
+        byte[] bytes = c.toByteArray();
+        assertTrue(SignatureContainer.hasContainerHeader(bytes));
+
+        SignatureContainer r = SignatureContainer.readFrom(new ByteArrayInputStream(bytes));
+        assertEquals(c.algorithm, r.algorithm);
+        assertArrayEquals(c.signerFingerprint, r.signerFingerprint);
+        assertEquals(c.documentLength, r.documentLength);
+        assertEquals(c.digestAlgorithm, r.digestAlgorithm);
+        assertArrayEquals(c.documentDigest, r.documentDigest);
+        assertArrayEquals(c.signature, r.signature);
+    }
+
+    @Test
+    public void batchContainer_roundTripsItsProof() throws IOException {
+        SignatureContainer c = sample();
+        byte[][] path = {new byte[32], new byte[32], new byte[32]};
+        path[1][0] = 1;
+        path[2][0] = 2;
+        SignatureContainer batch = new SignatureContainer(c.algorithm, c.signerFingerprint, c.documentLength,
+                c.digestAlgorithm, c.documentDigest, c.signature, new MerkleTree.Proof(4, 7, path));
+
+        SignatureContainer r = SignatureContainer.readFrom(new ByteArrayInputStream(batch.toByteArray()));
+        assertTrue(r.isBatch());
+        assertEquals(4, r.batchProof.leafIndex);
+        assertEquals(7, r.batchProof.leafCount);
+        assertEquals(3, r.batchProof.pathLength());
+        assertArrayEquals(path[2], r.batchProof.sibling(2));
+        assertArrayEquals(c.signature, r.signature);
+        assertFalse(SignatureContainer.readFrom(new ByteArrayInputStream(c.toByteArray())).isBatch());
+    }
+
+    @Test
+    public void rawSignature_isNotAContainer() {
+        byte[] raw = new byte[2420];
+        assertFalse(SignatureContainer.hasContainerHeader(raw));
+        try {
+            SignatureContainer.readFrom(new ByteArrayInputStream(raw));
+            fail("Se esperaba IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void digestAlgorithm_isCheckedWhenParsing() throws IOException {
+        SignatureContainer c = sample();
+        byte[][] path = {new byte[32]};
+        SignatureContainer tree = new SignatureContainer(c.algorithm, c.signerFingerprint, c.documentLength,
+                SignatureContainer.DIGEST_TREE_SHA256, c.documentDigest, c.signature,
+                new MerkleTree.Proof(0, 2, path));
+        SignatureContainer r = SignatureContainer.readFrom(new ByteArrayInputStream(tree.toByteArray()));
+        assertTrue(r.isBatch());
+        assertTrue(r.isPrehashed());
+
+        // magic + versión + flags + algLen + "ML-DSA-44" + huella + longitud
+        byte[] bytes = c.toByteArray();
+        bytes[4 + 1 + 1 + 1 + 9 + SignerDirectory.FINGERPRINT_LENGTH + 8] = 9;
+        try {
+            SignatureContainer.readFrom(new ByteArrayInputStream(bytes));
+            fail("Se esperaba IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("resumen"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedContainer_isRejected() throws IOException {
+        byte[] bytes = sample().toByteArray();
+        SignatureContainer.readFrom(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 10)));
+    }
+}
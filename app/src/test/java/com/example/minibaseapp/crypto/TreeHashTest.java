@@ -0,0 +1,79 @@
+package com.example.minibaseapp.crypto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del resumen en árbol por bloques (modo pre-hash).
+ */
+public class TreeHashTest {
+
+    private static final int CHUNK = TreeHash.CHUNK_SIZE;
+
+    private static byte[] data(int length) {
+        byte[] b = new byte[length];
+        new Random(length).nextBytes(b);
+        return b;
+    }
+
+    private static TreeHash streamed(byte[] doc) throws Exception {
+        return TreeHash.compute(new ByteArrayInputStream(doc), null, () -> false);
+    }
+
+    private static byte[] sha256(byte prefix, byte[]... parts) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(prefix);
+        for (byte[] p : parts) md.update(p);
+        return md.digest();
+    }
+
+    @Test
+    public void mappedFile_matchesStreamedInput() throws Exception {
+        for (int length : new int[]{0, 1, CHUNK - 1, CHUNK, 3 * CHUNK + 123}) {
+            byte[] doc = data(length);
+            File f = File.createTempFile("treehash", ".bin");
+            try {
+                try (FileOutputStream os = new FileOutputStream(f)) {
+                    os.write(doc);
+                }
+                TreeHash mapped;
+                try (FileInputStream in = new FileInputStream(f)) {
+                    mapped = TreeHash.compute(in, null, () -> false);
+                    assertEquals(-1, in.read()); // consumido entero
+                }
+                TreeHash stream = streamed(doc);
+                assertEquals(length, mapped.length);
+                assertEquals(length, stream.length);
+                assertArrayEquals("length=" + length, stream.digest, mapped.digest);
+            } finally {
+                f.delete();
+            }
+        }
+    }
+
+    @Test
+    public void digest_isTheMerkleRootOfTheChunks() throws Exception {
+        byte[] small = data(100);
+        assertArrayEquals(sha256((byte) 0, small), streamed(small).digest);
+
+        byte[] two = data(CHUNK + 10);
+        byte[] left = sha256((byte) 0, Arrays.copyOfRange(two, 0, CHUNK));
+        byte[] right = sha256((byte) 0, Arrays.copyOfRange(two, CHUNK, two.length));
+        assertArrayEquals(sha256((byte) 1, left, right), streamed(two).digest);
+    }
+
+    @Test
+    public void signedMessage_bindsTheLength() {
+        byte[] digest = new byte[32];
+        assertFalse(Arrays.equals(TreeHash.signedMessage(10, digest), TreeHash.signedMessage(11, digest)));
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.minibaseapp.crypto;
+
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.ContentSigner;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del proveedor recortado: los servicios que usa PqcCertificateManager funcionan con él
+ * y solo se registran al pedirlos. No se registra en Security para no afectar a otras pruebas.
+ */
+public class TrimmedBouncyCastleProviderTest {
+
+    private static final String ALG = "ML-DSA-44";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    // Firmante de certificados mínimo, sin el buscador de identificadores de bcpkix
+    private static ContentSigner contentSigner(Provider provider, PrivateKey key) {
+        ByteArrayOutputStream tbs = new ByteArrayOutputStream();
+        return new ContentSigner() {
+            @Override
+            public AlgorithmIdentifier getAlgorithmIdentifier() {
+                return new AlgorithmIdentifier(NISTObjectIdentifiers.id_ml_dsa_44);
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                return tbs;
+            }
+
+            @Override
+            public byte[] getSignature() {
+                try {
+                    Signature s = Signature.getInstance(ALG, provider);
+                    s.initSign(key);
+                    s.update(tbs.toByteArray());
+                    return s.sign();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void servicesAreRegisteredOnFirstUse() throws Exception {
+        TrimmedBouncyCastleProvider provider = new TrimmedBouncyCastleProvider();
+        int initial = provider.registeredEntries(); // solo las propiedades de Provider
+        assertFalse(provider.hasAlgorithm("Signature", ALG));
+
+        Signature.getInstance(ALG, provider);
+        int mlDsaOnly = provider.registeredEntries();
+        assertTrue(mlDsaOnly > initial);
+        assertFalse(provider.hasAlgorithm("KeyStore", "PKCS12"));
+        assertTrue(mlDsaOnly < new BouncyCastleProvider().size() / 10);
+    }
+
+    // Certificado de "subject" con la clave pública de "kp", firmado por "issuerKey"
+    private static X509Certificate certificate(Provider provider, String subject, String issuer,
+                                               KeyPair kp, PrivateKey issuerKey) throws Exception {
+        Date now = new Date();
+        X509CertificateHolder holder = new JcaX509v3CertificateBuilder(new X500Name(issuer), BigInteger.ONE,
+                now, new Date(now.getTime() + 86_400_000L), new X500Name(subject), kp.getPublic())
+                .build(contentSigner(provider, issuerKey));
+        return new JcaX509CertificateConverter().setProvider(provider).getCertificate(holder);
+    }
+
+    /** Un almacén guardado con el proveedor completo (cadena usuario + CA) se abre con el recortado. */
+    @Test
+    public void existingKeystoreAndChainLoad() throws Exception {
+        BouncyCastleProvider full = new BouncyCastleProvider();
+        KeyPair caKp = KeyPairGenerator.getInstance(ALG, full).generateKeyPair();
+        KeyPair userKp = KeyPairGenerator.getInstance(ALG, full).generateKeyPair();
+        X509Certificate caCert = certificate(full, "CN=CA", "CN=CA", caKp, caKp.getPrivate());
+        X509Certificate userCert = certificate(full, "CN=Usuario", "CN=CA", userKp, caKp.getPrivate());
+        KeyStore ks = KeyStore.getInstance("PKCS12", full);
+        ks.load(null, PASSWORD);
+        ks.setKeyEntry("alias", userKp.getPrivate(), PASSWORD, new Certificate[]{userCert, caCert});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ks.store(out, PASSWORD);
+
+        TrimmedBouncyCastleProvider provider = new TrimmedBouncyCastleProvider();
+        KeyStore reopened = KeyStore.getInstance("PKCS12", provider);
+        reopened.load(new ByteArrayInputStream(out.toByteArray()), PASSWORD);
+        Certificate[] chain = reopened.getCertificateChain("alias");
+        assertEquals(2, chain.length);
+        chain[0].verify(chain[1].getPublicKey(), provider);
+        chain[1].verify(chain[1].getPublicKey(), provider);
+        assertArrayEquals(userKp.getPrivate().getEncoded(), reopened.getKey("alias", PASSWORD).getEncoded());
+        assertFalse(provider.hasAlgorithm("CertPathValidator", "PKIX"));
+    }
+
+    @Test
+    public void signCertificatePemAndPkcs12() throws Exception {
+        TrimmedBouncyCastleProvider provider = new TrimmedBouncyCastleProvider();
+        KeyPair kp = KeyPairGenerator.getInstance(ALG, provider).generateKeyPair();
+
+        // Firma y verificación
+        byte[] data = "documento".getBytes(StandardCharsets.UTF_8);
+        Signature signer = Signature.getInstance(ALG, provider);
+        signer.initSign(kp.getPrivate());
+        signer.update(data);
+        byte[] sig = signer.sign();
+        Signature verifier = Signature.getInstance(ALG, provider);
+        verifier.initVerify(kp.getPublic());
+        verifier.update(data);
+        assertTrue(verifier.verify(sig));
+
+        // Conversión X.509
+        X500Name name = new X500Name("CN=Prueba");
+        Date now = new Date();
+        X509CertificateHolder holder = new JcaX509v3CertificateBuilder(name, BigInteger.ONE,
+                now, new Date(now.getTime() + 86_400_000L), name, kp.getPublic())
+                .build(contentSigner(provider, kp.getPrivate()));
+        X509Certificate cert = new JcaX509CertificateConverter().setProvider(provider).getCertificate(holder);
+        cert.verify(kp.getPublic(), provider);
+
+        // Parseo PEM de la clave privada
+        StringWriter pem = new StringWriter();
+        try (JcaPEMWriter w = new JcaPEMWriter(pem)) {
+            w.writeObject(kp.getPrivate());
+        }
+        PrivateKey parsed;
+        try (PEMParser parser = new PEMParser(new StringReader(pem.toString()))) {
+            parsed = new JcaPEMKeyConverter().setProvider(provider)
+                    .getPrivateKey((PrivateKeyInfo) parser.readObject());
+        }
+        assertArrayEquals(kp.getPrivate().getEncoded(), parsed.getEncoded());
+
+        // Almacén PKCS#12: guardar y volver a abrir
+        KeyStore ks = KeyStore.getInstance("PKCS12", provider);
+        ks.load(null, PASSWORD);
+        ks.setKeyEntry("alias", parsed, PASSWORD, new Certificate[]{cert});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ks.store(out, PASSWORD);
+
+        KeyStore reopened = KeyStore.getInstance("PKCS12", provider);
+        reopened.load(new ByteArrayInputStream(out.toByteArray()), PASSWORD);
+        Key key = reopened.getKey("alias", PASSWORD);
+        assertArrayEquals(kp.getPrivate().getEncoded(), key.getEncoded());
+        assertEquals(cert, reopened.getCertificate("alias"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.minibaseapp.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la medida de asignaciones por operación en la JVM.
+ */
+public class AllocationMeterTest {
+
+    private static volatile byte[] sink;
+
+    @Test
+    public void measuresThreadAllocations() {
+        assertTrue(AllocationMeter.isPerThread());
+        long a0 = AllocationMeter.allocatedBytes();
+        sink = new byte[1024 * 1024];
+        long allocated = AllocationMeter.allocatedSince(a0);
+        assertTrue("asignados: " + allocated, allocated >= 1024 * 1024);
+        assertEquals(-1, AllocationMeter.allocatedSince(-1));
+    }
+
+    @Test
+    public void exportsBytesBySizeClass() throws Exception {
+        MetricsRegistry r = new MetricsRegistry();
+        r.recordAllocation("sign", "ML-DSA-44", "bc", 10_000, 123_456);
+        r.registerGauge("minibase_test_live_handles", "prueba", false, () -> 3);
+        r.registerGauge("minibase_test_broken", "prueba", false, () -> {
+            throw new UnsatisfiedLinkError();
+        });
+
+        StringWriter w = new StringWriter();
+        r.writePrometheus(w);
+        String text = w.toString();
+
+        assertTrue(text.contains("minibase_crypto_op_alloc_bytes_sum{alg=\"ML-DSA-44\",backend=\"bc\",op=\"sign\",size=\"le_64KiB\"} 123456\n"));
+        assertTrue(text.contains("# TYPE minibase_test_live_handles gauge\nminibase_test_live_handles 3\n"));
+        assertFalse(text.contains("minibase_test_broken"));
+    }
+
+    @Test
+    public void sizeClasses() {
+        assertEquals("none", MetricsRegistry.sizeClass(-1));
+        assertEquals("le_4KiB", MetricsRegistry.sizeClass(4096));
+        assertEquals("le_1MiB", MetricsRegistry.sizeClass(4096 * 100));
+        assertEquals("gt_16MiB", MetricsRegistry.sizeClass(17L * 1024 * 1024));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.minibaseapp.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del histograma de latencias y del volcado en formato Prometheus.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesWithinRelativeError() {
+        LatencyHistogram h = new LatencyHistogram();
+        // 1..10000 µs
+        for (long us = 1; us <= 10_000; us++) {
+            h.recordNanos(us * 1000);
+        }
+        LatencyHistogram.Snapshot s = h.snapshot();
+        assertEquals(10_000, s.count);
+        assertEquals(10_000_000L, s.maxNanos);
+        assertWithin(5_000_000L, s.percentileNanos(0.5));
+        assertWithin(9_900_000L, s.percentileNanos(0.99));
+        assertEquals(s.maxNanos, s.percentileNanos(1.0));
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        long prev = -1;
+        for (int i = 0; i < 2000; i++) {
+            long hi = LatencyHistogram.highestValueOf(i);
+            assertEquals(i, LatencyHistogram.indexOf(hi));
+            assertEquals(i, LatencyHistogram.indexOf(prev + 1));
+            prev = hi;
+        }
+    }
+
+    @Test
+    public void exportsPrometheusText() throws Exception {
+        MetricsRegistry r = new MetricsRegistry();
+        r.histogram(MetricsRegistry.CRYPTO_LATENCY, "op", "sign", "alg", "ML-DSA-44", "backend", "bc")
+                .recordNanos(2_000_000);
+        r.counter(MetricsRegistry.CRYPTO_ERRORS, "op", "verify", "alg", "ML-DSA-44", "backend", "bc")
+                .increment();
+
+        StringWriter w = new StringWriter();
+        r.writePrometheus(w);
+        String text = w.toString();
+
+        assertTrue(text.contains("# TYPE minibase_crypto_op_latency_seconds summary\n"));
+        assertTrue(text.contains("minibase_crypto_op_latency_seconds{alg=\"ML-DSA-44\",backend=\"bc\",op=\"sign\",quantile=\"0.99\"} 0.002"));
+        assertTrue(text.contains("minibase_crypto_op_latency_seconds_count{alg=\"ML-DSA-44\",backend=\"bc\",op=\"sign\"} 1\n"));
+        assertTrue(text.contains("minibase_crypto_op_latency_seconds_max{alg=\"ML-DSA-44\",backend=\"bc\",op=\"sign\"} 0.002000000\n"));
+        assertTrue(text.contains("minibase_crypto_op_errors_total{alg=\"ML-DSA-44\",backend=\"bc\",op=\"verify\"} 1\n"));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        double err = Math.abs(actual - expected) / (double) expected;
+        assertTrue("esperado ~" + expected + " y se obtuvo " + actual, err < 0.02);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.minibaseapp.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las trazas por fases en la JVM (JSON de trace events de Chrome).
+ */
+public class TracerTest {
+
+    @After
+    public void tearDown() {
+        Tracer.stopRecording();
+    }
+
+    @Test
+    public void nestedSpansAreRecordedAsCompleteEvents() throws Exception {
+        Tracer.startRecording();
+        try (Tracer.Span outer = Tracer.begin("sign.container").arg("alg", "ML-DSA-44")) {
+            try (Tracer.Span inner = Tracer.begin("sign.stream")) {
+                TimedInputStream in = new TimedInputStream(new ByteArrayInputStream(new byte[1024]));
+                while (in.read(new byte[100]) != -1) { /* consumir */ }
+                inner.arg("bytes", 1024).arg("read_ms", in.readMillis());
+            }
+        }
+        Tracer.Span async = Tracer.beginAsync("ui.sign");
+        async.close();
+        async.close(); // cerrar dos veces no duplica el evento
+
+        StringWriter w = new StringWriter();
+        Tracer.writeChromeTrace(w);
+        String json = w.toString();
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\""));
+        assertTrue(json.contains("\"name\":\"thread_name\",\"ph\":\"M\""));
+        assertTrue(json.contains("\"name\":\"sign.stream\",\"cat\":\"minibase\",\"ph\":\"X\""));
+        assertTrue(json.contains("\"args\":{\"alg\":\"ML-DSA-44\"}"));
+        assertTrue(json.contains("\"bytes\":1024"));
+        assertEquals(1, count(json, "\"name\":\"ui.sign\",\"cat\":\"minibase\",\"ph\":\"b\""));
+        assertEquals(1, count(json, "\"name\":\"ui.sign\",\"cat\":\"minibase\",\"ph\":\"e\""));
+        // La fase interna se cierra (y se graba) antes que la externa
+        assertTrue(json.indexOf("\"sign.stream\"") < json.indexOf("\"sign.container\""));
+    }
+
+    @Test
+    public void nothingIsRecordedWhenDisabled() throws Exception {
+        Tracer.startRecording();
+        Tracer.stopRecording();
+        try (Tracer.Span s = Tracer.begin("verify.stream")) {
+            s.arg("bytes", 1);
+        }
+        StringWriter w = new StringWriter();
+        Tracer.writeChromeTrace(w);
+        assertFalse(w.toString().contains("verify.stream"));
+    }
+
+    private static int count(String s, String sub) {
+        int n = 0;
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1)) n++;
+        return n;
+    }
+}
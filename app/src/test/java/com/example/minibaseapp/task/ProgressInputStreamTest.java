@@ -0,0 +1,53 @@
+package com.example.minibaseapp.task;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del flujo con progreso y cancelación (sin hilo principal).
+ */
+public class ProgressInputStreamTest {
+
+    private static class FakeContext implements CryptoExecutor.TaskContext {
+        volatile boolean cancelled;
+        long lastDone = -1;
+        long lastTotal;
+
+        @Override public boolean isCancelled() { return cancelled; }
+        @Override public void throwIfCancelled() { if (cancelled) throw new CancellationException(); }
+        @Override public void reportProgress(long done, long total) { lastDone = done; lastTotal = total; }
+        @Override public InputStream track(InputStream in, long total) { return new ProgressInputStream(in, total, this); }
+    }
+
+    @Test
+    public void reportsBytesRead() throws Exception {
+        FakeContext ctx = new FakeContext();
+        byte[] data = new byte[10_000];
+        try (InputStream in = ctx.track(new ByteArrayInputStream(data), data.length)) {
+            byte[] buf = new byte[4096];
+            while (in.read(buf) != -1) { /* consumir */ }
+        }
+        assertEquals(data.length, ctx.lastDone);
+        assertEquals(data.length, ctx.lastTotal);
+    }
+
+    @Test
+    public void cancellationAbortsRead() throws Exception {
+        FakeContext ctx = new FakeContext();
+        InputStream in = ctx.track(new ByteArrayInputStream(new byte[10_000]), -1);
+        byte[] buf = new byte[1024];
+        assertEquals(1024, in.read(buf));
+
+        ctx.cancelled = true;
+        try {
+            in.read(buf);
+            fail("Se esperaba CancellationException");
+        } catch (CancellationException expected) {
+        }
+    }
+}
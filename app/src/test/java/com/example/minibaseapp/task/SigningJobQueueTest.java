@@ -0,0 +1,440 @@
+package com.example.minibaseapp.task;
+
+import com.example.minibaseapp.crypto.PqcCertificateManager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la cola de firma: reclamo por alias y por bloques, registro de cada documento en
+ * cuanto se firma y reanudación de lo que quedó a medias. La base de datos y la sesión de
+ * firma se sustituyen por versiones en memoria.
+ */
+public class SigningJobQueueTest {
+
+    private static final char[] PASSWORD = "secreto".toCharArray();
+
+    @Test
+    public void resume_claimsTheAliasInChunksAndChecksEachDocument() throws Exception {
+        MemoryStore store = new MemoryStore();
+        FakePlatform platform = new FakePlatform();
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue queue = new SigningJobQueue(null, store, platform, runner);
+
+        long job = queue.enqueue("a", "tree-a", documents("a", 40));
+        queue.enqueue("b", "tree-b", documents("b", 3));
+
+        assertTrue(queue.resume(null, "a", PASSWORD));
+        await(runner);
+
+        assertEquals(Collections.singletonList("a"), platform.opened);
+        assertEquals(Arrays.asList(SigningJobQueue.CLAIM_CHUNK, 40 - SigningJobQueue.CLAIM_CHUNK),
+                platform.chunkSizes);
+        assertEquals(40, store.count("a", SigningJobQueue.STATE_DONE));
+        assertEquals(3, store.count("b", SigningJobQueue.STATE_PENDING));
+        // Trabajo completo: se liberan sus permisos y se purgan los terminados hace tiempo
+        assertEquals(Collections.singletonList(job), platform.finishedJobs);
+        assertTrue(store.prunedBefore.get(store.prunedBefore.size() - 1)
+                <= System.currentTimeMillis() - SigningJobQueue.RETENTION_MS);
+        // Lo recién terminado se conserva
+        assertEquals(40, store.count("a", SigningJobQueue.STATE_DONE));
+        // La contraseña se copia y la copia se borra; la del llamante no se toca
+        assertArrayEquals(new char[PASSWORD.length], platform.passwords.get(0));
+        assertEquals("secreto", new String(PASSWORD));
+        assertFalse(queue.isRunning());
+    }
+
+    @Test
+    public void checkpoint_keepsWhatWasSignedWhenTheRunDies() throws Exception {
+        MemoryStore store = new MemoryStore();
+        FakePlatform platform = new FakePlatform();
+        // Firma 5, falla el sexto y muere a mitad del primer bloque
+        platform.failAt = 5;
+        platform.dieAt = 6;
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue queue = new SigningJobQueue(null, store, platform, runner);
+        queue.enqueue("a", "tree-a", documents("a", 10));
+
+        queue.resume(null, "a", PASSWORD);
+        await(runner);
+
+        assertEquals(5, store.count("a", SigningJobQueue.STATE_DONE));
+        assertEquals(1, store.count("a", SigningJobQueue.STATE_FAILED));
+        assertEquals(4, store.count("a", SigningJobQueue.STATE_PENDING));
+        assertEquals(0, store.count("a", SigningJobQueue.STATE_RUNNING));
+        assertEquals(Collections.singletonList("a"), platform.failures);
+        assertTrue(platform.finishedJobs.isEmpty());
+    }
+
+    @Test
+    public void resume_afterRestart_signsOnlyWhatWasLeft() throws Exception {
+        MemoryStore store = new MemoryStore();
+        FakePlatform first = new FakePlatform();
+        first.dieAt = 3;
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue queue = new SigningJobQueue(null, store, first, runner);
+        long job = queue.enqueue("a", "tree-a", documents("a", 8));
+        queue.resume(null, "a", PASSWORD);
+        await(runner);
+        // El proceso murió sin devolver lo reclamado a la cola
+        store.setState(job, SigningJobQueue.STATE_PENDING, SigningJobQueue.STATE_RUNNING);
+
+        FakePlatform second = new FakePlatform();
+        runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue restarted = new SigningJobQueue(null, store, second, runner);
+        assertEquals(Collections.singletonMap("a", 5), restarted.pendingByAlias());
+        restarted.resume(null, "a", PASSWORD);
+        await(runner);
+
+        assertEquals(Arrays.asList("a-3", "a-4", "a-5", "a-6", "a-7"), second.signed);
+        assertEquals(8, store.count("a", SigningJobQueue.STATE_DONE));
+        assertEquals(Collections.singletonList(job), second.finishedJobs);
+    }
+
+    @Test
+    public void resume_reusesTheOutputCreatedBeforeDying() throws Exception {
+        MemoryStore store = new MemoryStore();
+        FakePlatform first = new FakePlatform();
+        first.dieAfterOutputAt = 1;
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue queue = new SigningJobQueue(null, store, first, runner);
+        queue.enqueue("a", "tree-a", documents("a", 3));
+        queue.resume(null, "a", PASSWORD);
+        await(runner);
+
+        FakePlatform second = new FakePlatform();
+        runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue restarted = new SigningJobQueue(null, store, second, runner);
+        restarted.resume(null, "a", PASSWORD);
+        await(runner);
+
+        // a-1 ya tenía su .pqsig creado: se sobrescribe ese en vez de crear otro
+        assertEquals(Collections.singletonList("a-1"), second.reused);
+        assertEquals(Arrays.asList("a-1", "a-2"), second.signed);
+        assertEquals(3, store.count("a", SigningJobQueue.STATE_DONE));
+    }
+
+    @Test
+    public void enqueue_givesRepeatedNamesDistinctOutputs() throws Exception {
+        MemoryStore store = new MemoryStore();
+        FakePlatform platform = new FakePlatform();
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue queue = new SigningJobQueue(null, store, platform, runner);
+        List<SigningJobQueue.Item> docs = new ArrayList<>();
+        docs.add(new SigningJobQueue.Item(0, "content://x/1", "informe.pdf"));
+        docs.add(new SigningJobQueue.Item(0, "content://y/1", "informe.pdf"));
+        queue.enqueue("a", "tree-a", docs);
+        queue.resume(null, "a", PASSWORD);
+        await(runner);
+
+        assertEquals(Arrays.asList("informe.pdf.pqsig", "informe (2).pdf.pqsig"), platform.outputs);
+    }
+
+    @Test
+    public void resume_whileRunning_chainsTheOtherAlias() throws Exception {
+        MemoryStore store = new MemoryStore();
+        FakePlatform platform = new FakePlatform();
+        platform.gate = new CountDownLatch(1);
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue queue = new SigningJobQueue(null, store, platform, runner);
+        queue.enqueue("a", "tree-a", documents("a", 2));
+        queue.enqueue("b", "tree-b", documents("b", 2));
+
+        assertTrue(queue.resume(null, "a", PASSWORD));
+        assertFalse(queue.resume(null, "b", PASSWORD));
+        // Ya hay una ejecución de b esperando turno
+        assertFalse(queue.resume(null, "b", PASSWORD));
+        assertTrue(queue.isRunning());
+        platform.gate.countDown();
+        await(runner);
+
+        assertEquals(Arrays.asList("a", "b"), platform.opened);
+        assertEquals(2, store.count("a", SigningJobQueue.STATE_DONE));
+        assertEquals(2, store.count("b", SigningJobQueue.STATE_DONE));
+        assertFalse(queue.isRunning());
+    }
+
+    @Test
+    public void resume_withNothingPending_doesNotOpenTheKeystore() throws Exception {
+        FakePlatform platform = new FakePlatform();
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        SigningJobQueue queue = new SigningJobQueue(null, new MemoryStore(), platform, runner);
+
+        assertTrue(queue.resume(null, "a", PASSWORD));
+        await(runner);
+
+        assertTrue(platform.opened.isEmpty());
+    }
+
+    // -------------------------
+    // Utilidades
+    // -------------------------
+
+    private static List<SigningJobQueue.Item> documents(String alias, int n) {
+        List<SigningJobQueue.Item> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            out.add(new SigningJobQueue.Item(0, "content://" + alias + "/" + i, alias + "-" + i));
+        }
+        return out;
+    }
+
+    private static void await(ExecutorService runner) throws InterruptedException {
+        runner.shutdown();
+        assertTrue(runner.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    /** Sesión de firma simulada: registra lo que firma y puede bloquearse o morir a mitad. */
+    private static final class FakePlatform implements SigningJobQueue.Platform {
+        final List<String> opened = Collections.synchronizedList(new ArrayList<String>());
+        final List<char[]> passwords = Collections.synchronizedList(new ArrayList<char[]>());
+        final List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<String> signed = Collections.synchronizedList(new ArrayList<String>());
+        final List<Long> finishedJobs = Collections.synchronizedList(new ArrayList<Long>());
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> reused = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> outputs = Collections.synchronizedList(new ArrayList<String>());
+        volatile int failAt = -1;                    // documento que falla (orden de llegada)
+        volatile int dieAt = Integer.MAX_VALUE;      // documentos tratados antes de morir
+        volatile int dieAfterOutputAt = -1;          // documento cuyo .pqsig se crea y no se marca
+        volatile CountDownLatch gate;
+        private int handled;
+
+        @Override
+        public SigningJobQueue.Session open(PqcCertificateManager certManager, String alias, char[] password)
+                throws Exception {
+            opened.add(alias);
+            passwords.add(password);
+            CountDownLatch g = gate;
+            if (g != null) {
+                assertTrue(g.await(30, TimeUnit.SECONDS));
+            }
+            return new SigningJobQueue.Session() {
+                @Override
+                public void sign(SigningJobQueue.Claim claim, SigningJobQueue.Checkpoint checkpoint) {
+                    chunkSizes.add(claim.items.size());
+                    for (SigningJobQueue.Item item : claim.items) {
+                        if (handled == dieAt) {
+                            throw new IllegalStateException("proceso muerto");
+                        }
+                        if (item.outputUri != null) {
+                            reused.add(item.name);
+                        } else {
+                            checkpoint.onOutput(item, item.output, "content://salida/" + item.output);
+                        }
+                        if (handled == dieAfterOutputAt) {
+                            throw new IllegalStateException("proceso muerto");
+                        }
+                        if (handled++ == failAt) {
+                            checkpoint.onFailed(item, "ilegible", 1.0);
+                        } else {
+                            signed.add(item.name);
+                            outputs.add(item.output);
+                            checkpoint.onSigned(item, item.output, 100, 1.0);
+                        }
+                    }
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public void jobFinished(long jobId, String outputTree, List<String> documents) {
+            finishedJobs.add(jobId);
+        }
+
+        @Override
+        public void runFailed(String alias, Exception e) {
+            failures.add(alias);
+        }
+
+        @Override
+        public void post(Runnable r) {
+            r.run();
+        }
+    }
+
+    /** Misma semántica que SqliteJobStore, en memoria. */
+    private static final class MemoryStore implements SigningJobQueue.Store {
+        private static final class Row {
+            final long id;
+            final long jobId;
+            final String uri;
+            final String name;
+            String output;
+            String outputUri;
+            String state = SigningJobQueue.STATE_PENDING;
+            long updatedAt;
+
+            Row(long id, long jobId, String uri, String name, String output, long now) {
+                this.id = id;
+                this.jobId = jobId;
+                this.uri = uri;
+                this.name = name;
+                this.output = output;
+                this.updatedAt = now;
+            }
+        }
+
+        private final Map<Long, String[]> jobs = new LinkedHashMap<>();   // id -> {alias, tree}
+        private final List<Row> rows = new ArrayList<>();
+        final List<Long> prunedBefore = Collections.synchronizedList(new ArrayList<Long>());
+        private long nextId = 1;
+
+        synchronized int count(String alias, String state) {
+            int n = 0;
+            for (Row r : rows) {
+                if (jobs.get(r.jobId)[0].equals(alias) && r.state.equals(state)) n++;
+            }
+            return n;
+        }
+
+        synchronized void setState(long jobId, String from, String to) {
+            for (Row r : rows) {
+                if (r.jobId == jobId && r.state.equals(from)) r.state = to;
+            }
+        }
+
+        @Override
+        public synchronized void requeueRunning() {
+            for (Row r : rows) {
+                if (r.state.equals(SigningJobQueue.STATE_RUNNING)) r.state = SigningJobQueue.STATE_PENDING;
+            }
+        }
+
+        @Override
+        public synchronized long addJob(String alias, String outputTree, List<SigningJobQueue.Item> documents, long now) {
+            long jobId = nextId++;
+            jobs.put(jobId, new String[]{alias, outputTree});
+            for (SigningJobQueue.Item doc : documents) {
+                rows.add(new Row(nextId++, jobId, doc.uri, doc.name, doc.output, now));
+            }
+            return jobId;
+        }
+
+        @Override
+        public synchronized SigningJobQueue.Claim claimNext(String alias, int limit, long now) {
+            for (Map.Entry<Long, String[]> job : jobs.entrySet()) {
+                if (!job.getValue()[0].equals(alias)) continue;
+                List<SigningJobQueue.Item> items = new ArrayList<>();
+                for (Row r : rows) {
+                    if (items.size() == limit) break;
+                    if (r.jobId == job.getKey() && r.state.equals(SigningJobQueue.STATE_PENDING)) {
+                        r.state = SigningJobQueue.STATE_RUNNING;
+                        r.updatedAt = now;
+                        items.add(new SigningJobQueue.Item(r.id, r.uri, r.name, r.output, r.outputUri));
+                    }
+                }
+                if (!items.isEmpty()) {
+                    return new SigningJobQueue.Claim(job.getKey(), job.getValue()[1], items);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized void recordOutput(long itemId, String output, String outputUri) {
+            for (Row r : rows) {
+                if (r.id == itemId) {
+                    r.output = output;
+                    r.outputUri = outputUri;
+                }
+            }
+        }
+
+        @Override
+        public synchronized void markItem(long itemId, String state, String output, String error,
+                                          long bytes, double latencyMs, long now) {
+            for (Row r : rows) {
+                if (r.id == itemId) {
+                    r.state = state;
+                    if (output != null) r.output = output;
+                    r.updatedAt = now;
+                }
+            }
+        }
+
+        @Override
+        public synchronized void releaseUnfinished(long jobId) {
+            setState(jobId, SigningJobQueue.STATE_RUNNING, SigningJobQueue.STATE_PENDING);
+        }
+
+        @Override
+        public synchronized List<String> documentsIfFinished(long jobId) {
+            List<String> uris = new ArrayList<>();
+            for (Row r : rows) {
+                if (r.jobId != jobId) continue;
+                if (r.state.equals(SigningJobQueue.STATE_PENDING) || r.state.equals(SigningJobQueue.STATE_RUNNING)) {
+                    return null;
+                }
+                uris.add(r.uri);
+            }
+            return uris;
+        }
+
+        @Override
+        public synchronized Map<String, Integer> countByState() {
+            Map<String, Integer> out = new LinkedHashMap<>();
+            for (Row r : rows) {
+                Integer n = out.get(r.state);
+                out.put(r.state, n == null ? 1 : n + 1);
+            }
+            return out;
+        }
+
+        @Override
+        public synchronized int countDoneSince(long since) {
+            int n = 0;
+            for (Row r : rows) {
+                if (r.state.equals(SigningJobQueue.STATE_DONE) && r.updatedAt > since) n++;
+            }
+            return n;
+        }
+
+        @Override
+        public synchronized void pruneFinished(long before) {
+            prunedBefore.add(before);
+            for (Long jobId : new ArrayList<>(jobs.keySet())) {
+                boolean finished = true;
+                for (Row r : rows) {
+                    if (r.jobId != jobId) continue;
+                    if (r.state.equals(SigningJobQueue.STATE_PENDING) || r.state.equals(SigningJobQueue.STATE_RUNNING)
+                            || r.updatedAt >= before) {
+                        finished = false;
+                    }
+                }
+                if (finished) {
+                    jobs.remove(jobId);
+                    rows.removeIf(r -> r.jobId == jobId);
+                }
+            }
+        }
+
+        @Override
+        public synchronized Map<String, Integer> pendingByAlias() {
+            Map<String, Integer> out = new LinkedHashMap<>();
+            for (Row r : rows) {
+                if (r.state.equals(SigningJobQueue.STATE_PENDING) || r.state.equals(SigningJobQueue.STATE_RUNNING)) {
+                    String alias = jobs.get(r.jobId)[0];
+                    Integer n = out.get(alias);
+                    out.put(alias, n == null ? 1 : n + 1);
+                }
+            }
+            return out;
+        }
+    }
+}
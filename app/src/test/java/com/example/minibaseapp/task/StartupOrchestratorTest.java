@@ -0,0 +1,59 @@
+package com.example.minibaseapp.task;
+
+import com.example.minibaseapp.metrics.MetricsRegistry;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Test;
+
+import java.security.Security;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del arranque en segundo plano (sin liboqs: la carga nativa se sustituye).
+ */
+public class StartupOrchestratorTest {
+
+    private static final Collection<String> ALGORITHMS = Collections.singleton("ML-DSA-44");
+
+    @Test
+    public void stagesCompleteAndAreTimed() throws Exception {
+        StartupOrchestrator startup = new StartupOrchestrator(MetricsRegistry.get(), () -> { });
+        startup.run(() -> ALGORITHMS);
+
+        startup.providerReady().get(30, TimeUnit.SECONDS);
+        assertNotNull(Security.getProvider(BouncyCastleProvider.PROVIDER_NAME));
+        startup.nativeReady().get(30, TimeUnit.SECONDS);
+        startup.warmedUp().get(60, TimeUnit.SECONDS);
+
+        Map<String, Double> stages = startup.stageMillis();
+        assertTrue(stages.containsKey(StartupOrchestrator.STAGE_PROVIDER));
+        assertTrue(stages.containsKey(StartupOrchestrator.STAGE_NATIVE));
+        assertTrue(stages.containsKey(StartupOrchestrator.STAGE_WARMUP_BC));
+        assertTrue(stages.containsKey(StartupOrchestrator.STAGE_WARMUP_LIBOQS));
+        assertTrue(stages.get(StartupOrchestrator.STAGE_TOTAL) >= stages.get(StartupOrchestrator.STAGE_WARMUP_BC));
+    }
+
+    @Test
+    public void nativeFailureDoesNotBlockWarmUp() throws Exception {
+        StartupOrchestrator startup = new StartupOrchestrator(MetricsRegistry.get(), () -> {
+            throw new UnsatisfiedLinkError("oqs-jni");
+        });
+        startup.run(() -> ALGORITHMS);
+
+        try {
+            startup.nativeReady().get(30, TimeUnit.SECONDS);
+            fail("La carga nativa debería fallar");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnsatisfiedLinkError);
+        }
+        startup.warmedUp().get(60, TimeUnit.SECONDS);
+        assertTrue(startup.stageMillis().containsKey(StartupOrchestrator.STAGE_WARMUP_BC));
+        assertFalse(startup.stageMillis().containsKey(StartupOrchestrator.STAGE_WARMUP_LIBOQS));
+    }
+}
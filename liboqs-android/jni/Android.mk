@@ -9,12 +9,35 @@ LOCAL_SRC_FILES := jniLibs/$(TARGET_ARCH_ABI)/liboqs.so
 LOCAL_EXPORT_C_INCLUDES := $(LOCAL_PATH)/include
 include $(PREBUILT_SHARED_LIBRARY)
 
+OQS_JNI_SRC_FILES := $(LOCAL_PATH)/jni/handle.c $(LOCAL_PATH)/jni/Digest.c $(LOCAL_PATH)/jni/KEMs.c  $(LOCAL_PATH)/jni/KeyEncapsulation.c  $(LOCAL_PATH)/jni/NativeBuild.c  $(LOCAL_PATH)/jni/NativeMemory.c  $(LOCAL_PATH)/jni/OnLoad.c  $(LOCAL_PATH)/jni/PreparedEncapsulationKey.c  $(LOCAL_PATH)/jni/PreparedPublicKey.c  $(LOCAL_PATH)/jni/PreparedSigningKey.c  $(LOCAL_PATH)/jni/Rand.c  $(LOCAL_PATH)/jni/Signature.c  $(LOCAL_PATH)/jni/Sigs.c
+
 # Create jni wrapper.
 include $(CLEAR_VARS)
 LOCAL_MODULE     := oqs-jni
 LOCAL_C_INCLUDES := $(LOCAL_PATH)/include
 LOCAL_CFLAGS     += -Wall
-LOCAL_SRC_FILES := $(LOCAL_PATH)/jni/handle.c $(LOCAL_PATH)/jni/KEMs.c  $(LOCAL_PATH)/jni/KeyEncapsulation.c  $(LOCAL_PATH)/jni/Rand.c  $(LOCAL_PATH)/jni/Signature.c  $(LOCAL_PATH)/jni/Sigs.c
-LOCAL_LDLIBS    := -llog -landroid
+LOCAL_SRC_FILES := $(OQS_JNI_SRC_FILES)
+LOCAL_LDLIBS    := -llog -landroid -ldl
 LOCAL_SHARED_LIBRARIES := oqs
 include $(BUILD_SHARED_LIBRARY)
+
+# Optional optimized variant: liboqs built with OQS_USE_CPU_EXTENSIONS=ON and
+# OQS_PORTABLE_BUILD=ON (soname liboqs_opt.so, headers of that build in include-opt).
+# It is only built for the ABIs that ship it; Common.loadNativeLibrary() loads it
+# when the CPU has the required features and falls back to oqs-jni otherwise.
+ifneq ($(wildcard $(LOCAL_PATH)/jniLibs-opt/$(TARGET_ARCH_ABI)/liboqs_opt.so),)
+include $(CLEAR_VARS)
+LOCAL_MODULE := oqs_opt
+LOCAL_SRC_FILES := jniLibs-opt/$(TARGET_ARCH_ABI)/liboqs_opt.so
+LOCAL_EXPORT_C_INCLUDES := $(LOCAL_PATH)/include-opt
+include $(PREBUILT_SHARED_LIBRARY)
+
+include $(CLEAR_VARS)
+LOCAL_MODULE     := oqs-jni-opt
+LOCAL_C_INCLUDES := $(LOCAL_PATH)/include-opt
+LOCAL_CFLAGS     += -Wall
+LOCAL_SRC_FILES := $(OQS_JNI_SRC_FILES)
+LOCAL_LDLIBS    := -llog -landroid -ldl
+LOCAL_SHARED_LIBRARIES := oqs_opt
+include $(BUILD_SHARED_LIBRARY)
+endif
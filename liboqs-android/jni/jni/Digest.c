@@ -0,0 +1,236 @@
+/* dladdr (always declared by bionic; glibc needs _GNU_SOURCE) */
+#define _GNU_SOURCE
+#include <dlfcn.h>
+#include <pthread.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <oqs/oqs.h>
+#include "Digest.h"
+#include "handle.h"
+
+/*
+ * Incremental SHA3/SHAKE on the Keccak code of liboqs.
+ *
+ * The OQS_SHA3_* functions are declared without OQS_API, so whether they are
+ * exported depends on how liboqs was built. Linking against them would make the
+ * whole wrapper fail to load when they are hidden; instead they are looked up
+ * once in the liboqs already loaded by this library, and Digest falls back to
+ * its Java Keccak when any of them is missing.
+ */
+
+/* Every OQS_SHA3_*_inc_ctx is a struct holding a single pointer */
+typedef struct {
+    void *ctx;
+} inc_ctx;
+
+typedef void (*init_fn)(inc_ctx *);
+typedef void (*absorb_fn)(inc_ctx *, const uint8_t *, size_t);
+typedef void (*finalize_fn)(uint8_t *, inc_ctx *);
+typedef void (*xof_finalize_fn)(inc_ctx *);
+typedef void (*squeeze_fn)(uint8_t *, size_t, inc_ctx *);
+typedef void (*release_fn)(inc_ctx *);
+
+typedef struct {
+    const char *prefix;
+    int xof;
+    init_fn init;
+    absorb_fn absorb;
+    finalize_fn finalize;           /* SHA3 */
+    xof_finalize_fn xof_finalize;   /* SHAKE */
+    squeeze_fn squeeze;             /* SHAKE */
+    release_fn release;
+} sha3_ops;
+
+/* Indexed by the algorithm ids of com.example.liboqs.Digest */
+static sha3_ops ops_table[] = {
+    { "OQS_SHA3_sha3_256", 0 },
+    { "OQS_SHA3_sha3_384", 0 },
+    { "OQS_SHA3_sha3_512", 0 },
+    { "OQS_SHA3_shake128", 1 },
+    { "OQS_SHA3_shake256", 1 },
+};
+
+#define N_OPS ((jint) (sizeof(ops_table) / sizeof(ops_table[0])))
+
+/* Largest fixed output (SHA3-512) */
+#define MAX_SHA3_OUTPUT 64
+
+/* Keccak state allocated by liboqs behind inc_ctx.ctx (25 lanes + position) */
+#define KECCAK_STATE_BYTES (25 * 8 + 8)
+
+/* Heap arrays are pinned at most this many bytes at a time, so that a large
+ * update does not hold off the garbage collector */
+#define CRITICAL_SLICE (256 * 1024)
+
+static pthread_once_t resolve_once = PTHREAD_ONCE_INIT;
+static int resolved = 0;
+
+typedef struct {
+    const sha3_ops *ops;
+    inc_ctx state;
+} native_digest;
+
+static void *lookup(void *lib, const char *prefix, const char *suffix)
+{
+    char name[64];
+    snprintf(name, sizeof(name), "%s_%s", prefix, suffix);
+    return dlsym(lib, name);
+}
+
+static void resolve(void)
+{
+    // liboqs is loaded as a dependency of this library: find it through an exported function
+    Dl_info info;
+    if (dladdr((void *) OQS_SIG_new, &info) == 0 || info.dli_fname == NULL) {
+        return;
+    }
+    void *lib = dlopen(info.dli_fname, RTLD_NOW | RTLD_NOLOAD);
+    if (lib == NULL) {
+        return;
+    }
+    int ok = 1;
+    for (jint i = 0; i < N_OPS; i++) {
+        sha3_ops *ops = &ops_table[i];
+        ops->init = (init_fn) lookup(lib, ops->prefix, "inc_init");
+        ops->absorb = (absorb_fn) lookup(lib, ops->prefix, "inc_absorb");
+        ops->release = (release_fn) lookup(lib, ops->prefix, "inc_ctx_release");
+        if (ops->xof) {
+            ops->xof_finalize = (xof_finalize_fn) lookup(lib, ops->prefix, "inc_finalize");
+            ops->squeeze = (squeeze_fn) lookup(lib, ops->prefix, "inc_squeeze");
+            ok &= ops->xof_finalize != NULL && ops->squeeze != NULL;
+        } else {
+            ops->finalize = (finalize_fn) lookup(lib, ops->prefix, "inc_finalize");
+            ok &= ops->finalize != NULL;
+        }
+        ok &= ops->init != NULL && ops->absorb != NULL && ops->release != NULL;
+    }
+    // The handle is kept: liboqs stays loaded for the life of the process anyway
+    resolved = ok;
+}
+
+/*
+ * Class:     com_example_liboqs_Digest
+ * Method:    is_native_sha3_available
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_example_liboqs_Digest_is_1native_1sha3_1available
+  (JNIEnv *env, jclass cls)
+{
+    pthread_once(&resolve_once, resolve);
+    return resolved ? JNI_TRUE : JNI_FALSE;
+}
+
+/*
+ * Class:     com_example_liboqs_Digest
+ * Method:    create_digest
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_Digest_create_1digest
+  (JNIEnv *env, jobject obj, jint alg_id)
+{
+    pthread_once(&resolve_once, resolve);
+    if (!resolved || alg_id < 0 || alg_id >= N_OPS) {
+        return -1;
+    }
+    native_digest *digest = malloc(sizeof(native_digest));
+    if (digest == NULL) {
+        return -1;
+    }
+    digest->ops = &ops_table[alg_id];
+    digest->ops->init(&digest->state);
+
+    accountHandle((long long) (sizeof(native_digest) + KECCAK_STATE_BYTES));
+    setHandle(env, obj, digest, "native_digest_handle_");
+    return 0;
+}
+
+/*
+ * Class:     com_example_liboqs_Digest
+ * Method:    free_digest
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_example_liboqs_Digest_free_1digest
+  (JNIEnv *env, jobject obj)
+{
+    native_digest *digest = (native_digest *) getHandle(env, obj, "native_digest_handle_");
+    if (digest == NULL) {
+        return;
+    }
+    digest->ops->release(&digest->state);
+    accountHandle(-(long long) (sizeof(native_digest) + KECCAK_STATE_BYTES));
+    free(digest);
+    setHandle(env, obj, NULL, "native_digest_handle_");
+}
+
+/*
+ * Class:     com_example_liboqs_Digest
+ * Method:    absorb
+ * Signature: ([BII)V
+ */
+JNIEXPORT void JNICALL Java_com_example_liboqs_Digest_absorb
+  (JNIEnv *env, jobject obj, jbyteArray jdata, jint off, jint len)
+{
+    native_digest *digest = (native_digest *) getHandle(env, obj, "native_digest_handle_");
+    if (digest == NULL) {
+        return;
+    }
+    while (len > 0) {
+        jint n = len < CRITICAL_SLICE ? len : CRITICAL_SLICE;
+        jbyte *data = getCriticalByteArray(env, jdata);
+        if (data == NULL) {
+            return;
+        }
+        digest->ops->absorb(&digest->state, (const uint8_t *) data + off, (size_t) n);
+        (*env)->ReleasePrimitiveArrayCritical(env, jdata, data, JNI_ABORT);
+        off += n;
+        len -= n;
+    }
+}
+
+/*
+ * Class:     com_example_liboqs_Digest
+ * Method:    absorb_direct
+ * Signature: (Ljava/nio/ByteBuffer;II)V
+ */
+JNIEXPORT void JNICALL Java_com_example_liboqs_Digest_absorb_1direct
+  (JNIEnv *env, jobject obj, jobject jbuffer, jint off, jint len)
+{
+    native_digest *digest = (native_digest *) getHandle(env, obj, "native_digest_handle_");
+    uint8_t *address = (uint8_t *) (*env)->GetDirectBufferAddress(env, jbuffer);
+    if (digest == NULL || address == NULL) {
+        return;
+    }
+    digest->ops->absorb(&digest->state, address + off, (size_t) len);
+}
+
+/*
+ * Class:     com_example_liboqs_Digest
+ * Method:    finish
+ * Signature: ([BI)V
+ */
+JNIEXPORT void JNICALL Java_com_example_liboqs_Digest_finish
+  (JNIEnv *env, jobject obj, jbyteArray joutput, jint output_len)
+{
+    native_digest *digest = (native_digest *) getHandle(env, obj, "native_digest_handle_");
+    if (digest == NULL) {
+        return;
+    }
+    const sha3_ops *ops = digest->ops;
+    if (!ops->xof) {
+        uint8_t output[MAX_SHA3_OUTPUT];
+        // Finalize also releases the state
+        ops->finalize(output, &digest->state);
+        (*env)->SetByteArrayRegion(env, joutput, 0, output_len, (jbyte *) output);
+    } else {
+        uint8_t *output = malloc((size_t) output_len);
+        ops->xof_finalize(&digest->state);
+        if (output != NULL) {
+            ops->squeeze(output, (size_t) output_len, &digest->state);
+            (*env)->SetByteArrayRegion(env, joutput, 0, output_len, (jbyte *) output);
+            free(output);
+        }
+        ops->release(&digest->state);
+    }
+    // Ready for the next message
+    ops->init(&digest->state);
+}
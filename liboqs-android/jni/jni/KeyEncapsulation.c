@@ -14,6 +14,9 @@ JNIEXPORT void JNICALL Java_com_example_liboqs_KeyEncapsulation_create_1KEM_1new
     const char *str_native = (*env)->GetStringUTFChars(env, jstr, 0);
     OQS_KEM *kem = OQS_KEM_new(str_native);
     (*env)->ReleaseStringUTFChars(env, jstr, str_native);
+    if (kem != NULL) {
+        accountHandle((long long) sizeof(OQS_KEM));
+    }
     // Stow the native OQS_KEM pointer in the Java handle.
     setHandle(env, obj, kem, "native_kem_handle_");
 }
@@ -27,7 +30,12 @@ JNIEXPORT void JNICALL Java_com_example_liboqs_KeyEncapsulation_free_1KEM
   (JNIEnv *env, jobject obj)
 {
     OQS_KEM *kem = (OQS_KEM *) getHandle(env, obj, "native_kem_handle_");
+    if (kem != NULL) {
+        accountHandle(-(long long) sizeof(OQS_KEM));
+    }
     OQS_KEM_free(kem);
+    // Avoid a double free (and double accounting) if dispose is called twice
+    setHandle(env, obj, NULL, "native_kem_handle_");
 }
 
 /*
@@ -97,8 +105,8 @@ JNIEXPORT jobject JNICALL Java_com_example_liboqs_KeyEncapsulation_get_1KEM_1det
 JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_generate_1keypair
   (JNIEnv *env, jobject obj, jbyteArray jpublic_key, jbyteArray jsecret_key)
 {
-    jbyte *public_key_native = (*env)->GetByteArrayElements(env, jpublic_key, 0);
-    jbyte *secret_key_native = (*env)->GetByteArrayElements(env, jsecret_key, 0);
+    jbyte *public_key_native = getByteArray(env, jpublic_key);
+    jbyte *secret_key_native = getByteArray(env, jsecret_key);
 
     // Get pointer to KEM
     OQS_KEM *kem = (OQS_KEM *) getHandle(env, obj, "native_kem_handle_");
@@ -111,48 +119,170 @@ JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_generate_1keypai
     return (rv_ == OQS_SUCCESS) ? 0 : -1;
 }
 
+/*
+ * The encapsulation and decapsulation entry points write straight into the
+ * caller's buffers at the given offsets. Java arrays are accessed inside critical
+ * regions, so the VM normally hands out the array itself instead of a copy. No JNI
+ * function may be called while a critical region is open, so every length is read
+ * and checked before the first array is pinned, the arrays are then taken with bare
+ * GetPrimitiveArrayCritical calls and released in reverse order; liboqs makes no
+ * JNI calls in between.
+ */
+
+/* True if length bytes starting at offset fit in an array of array_length bytes */
+static int fits(jsize array_length, jint offset, size_t length)
+{
+    return offset >= 0 && (size_t) offset <= (size_t) array_length
+        && length <= (size_t) array_length - (size_t) offset;
+}
+
 /*
  * Class:     org_openquantumsafe_KeyEncapsulation
- * Method:    encap_secret
- * Signature: ([B[B[B)I
+ * Method:    encap_secret_into
+ * Signature: ([B[BI[BI)I
  */
-JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_encap_1secret
-  (JNIEnv *env, jobject obj, jbyteArray jciphertext, jbyteArray jshared_secret, jbyteArray jpublic_key)
+JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_encap_1secret_1into
+  (JNIEnv *env, jobject obj, jbyteArray jpublic_key,
+      jbyteArray jciphertext, jint ciphertext_offset,
+      jbyteArray jshared_secret, jint shared_secret_offset)
 {
-    // Convert public_key to jbyte array
-    jbyte *public_key = (*env)->GetByteArrayElements(env, jpublic_key, 0);
-    jbyte* ciphertext = (*env)->GetByteArrayElements(env, jciphertext, 0);
-    jbyte* shared_secret = (*env)->GetByteArrayElements(env, jshared_secret, 0);
+    OQS_KEM *kem = (OQS_KEM *) getHandle(env, obj, "native_kem_handle_");
 
-    // Get pointer to KEM and invoke liboqs encapsulate secret function
+    jsize public_key_len = (*env)->GetArrayLength(env, jpublic_key);
+    jsize ciphertext_len = (*env)->GetArrayLength(env, jciphertext);
+    jsize shared_secret_len = (*env)->GetArrayLength(env, jshared_secret);
+    if (kem == NULL || !fits(public_key_len, 0, kem->length_public_key)
+        || !fits(ciphertext_len, ciphertext_offset, kem->length_ciphertext)
+        || !fits(shared_secret_len, shared_secret_offset, kem->length_shared_secret)) {
+        return -1;
+    }
+
+    // From here until the last release: no JNI calls
+    jboolean is_copy = JNI_FALSE;
+    jbyte *public_key = (jbyte *) (*env)->GetPrimitiveArrayCritical(env, jpublic_key, &is_copy);
+    if (public_key != NULL) countCriticalCopy(public_key_len, is_copy);
+    jbyte *ciphertext = NULL;
+    if (public_key != NULL) {
+        ciphertext = (jbyte *) (*env)->GetPrimitiveArrayCritical(env, jciphertext, &is_copy);
+        if (ciphertext != NULL) countCriticalCopy(ciphertext_len, is_copy);
+    }
+    jbyte *shared_secret = NULL;
+    if (ciphertext != NULL) {
+        shared_secret = (jbyte *) (*env)->GetPrimitiveArrayCritical(env, jshared_secret, &is_copy);
+        if (shared_secret != NULL) countCriticalCopy(shared_secret_len, is_copy);
+    }
+
+    OQS_STATUS rv_ = OQS_ERROR;
+    if (shared_secret != NULL) {
+        rv_ = OQS_KEM_encaps(kem, (uint8_t*) ciphertext + ciphertext_offset,
+                             (uint8_t*) shared_secret + shared_secret_offset,
+                             (uint8_t*) public_key);
+    }
+
+    // Release in reverse order; outputs are committed, the public key is read-only
+    if (shared_secret != NULL) (*env)->ReleasePrimitiveArrayCritical(env, jshared_secret, shared_secret, 0);
+    if (ciphertext != NULL) (*env)->ReleasePrimitiveArrayCritical(env, jciphertext, ciphertext, 0);
+    if (public_key != NULL) (*env)->ReleasePrimitiveArrayCritical(env, jpublic_key, public_key, JNI_ABORT);
+    return (rv_ == OQS_SUCCESS) ? 0 : -1;
+}
+
+/*
+ * Class:     org_openquantumsafe_KeyEncapsulation
+ * Method:    encap_secret_direct
+ * Signature: ([BLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_encap_1secret_1direct
+  (JNIEnv *env, jobject obj, jbyteArray jpublic_key,
+      jobject jciphertext, jint ciphertext_offset,
+      jobject jshared_secret, jint shared_secret_offset)
+{
     OQS_KEM *kem = (OQS_KEM *) getHandle(env, obj, "native_kem_handle_");
-    OQS_STATUS rv_ = OQS_KEM_encaps(kem, (uint8_t*) ciphertext, (uint8_t*) shared_secret, (uint8_t*) public_key);
+    uint8_t *ciphertext = (uint8_t *) (*env)->GetDirectBufferAddress(env, jciphertext);
+    uint8_t *shared_secret = (uint8_t *) (*env)->GetDirectBufferAddress(env, jshared_secret);
+    if (ciphertext == NULL || shared_secret == NULL) {
+        return -1;
+    }
 
-    // Release C public_key
-    (*env)->ReleaseByteArrayElements(env, jpublic_key, public_key, JNI_ABORT);
-    (*env)->ReleaseByteArrayElements(env, jciphertext, ciphertext, JNI_COMMIT);
-    (*env)->ReleaseByteArrayElements(env, jshared_secret, shared_secret, JNI_COMMIT);
+    jbyte *public_key = getCriticalByteArray(env, jpublic_key);
+    if (public_key == NULL) {
+        return -1;
+    }
+    OQS_STATUS rv_ = OQS_KEM_encaps(kem, ciphertext + ciphertext_offset,
+                                    shared_secret + shared_secret_offset, (uint8_t*) public_key);
+    (*env)->ReleasePrimitiveArrayCritical(env, jpublic_key, public_key, JNI_ABORT);
     return (rv_ == OQS_SUCCESS) ? 0 : -1;
 }
 
 /*
  * Class:     org_openquantumsafe_KeyEncapsulation
- * Method:    decap_secret
- * Signature: ([B[B[B)I
+ * Method:    decap_secret_into
+ * Signature: ([BI[BI[B)I
  */
-JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_decap_1secret
-  (JNIEnv *env, jobject obj, jbyteArray jshared_secret, jbyteArray jciphertext, jbyteArray jsecret_key)
+JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_decap_1secret_1into
+  (JNIEnv *env, jobject obj, jbyteArray jciphertext, jint ciphertext_offset,
+      jbyteArray jshared_secret, jint shared_secret_offset, jbyteArray jsecret_key)
 {
-    jbyte *shared_secret_native = (*env)->GetByteArrayElements(env, jshared_secret, 0);
-    jbyte *ciphertext_native = (*env)->GetByteArrayElements(env, jciphertext, 0);
-    jbyte *secret_key_native = (*env)->GetByteArrayElements(env, jsecret_key, 0);
+    OQS_KEM *kem = (OQS_KEM *) getHandle(env, obj, "native_kem_handle_");
+
+    jsize ciphertext_len = (*env)->GetArrayLength(env, jciphertext);
+    jsize shared_secret_len = (*env)->GetArrayLength(env, jshared_secret);
+    jsize secret_key_len = (*env)->GetArrayLength(env, jsecret_key);
+    if (kem == NULL || !fits(ciphertext_len, ciphertext_offset, kem->length_ciphertext)
+        || !fits(shared_secret_len, shared_secret_offset, kem->length_shared_secret)
+        || !fits(secret_key_len, 0, kem->length_secret_key)) {
+        return -1;
+    }
+
+    // From here until the last release: no JNI calls
+    jboolean is_copy = JNI_FALSE;
+    jbyte *ciphertext = (jbyte *) (*env)->GetPrimitiveArrayCritical(env, jciphertext, &is_copy);
+    if (ciphertext != NULL) countCriticalCopy(ciphertext_len, is_copy);
+    jbyte *shared_secret = NULL;
+    if (ciphertext != NULL) {
+        shared_secret = (jbyte *) (*env)->GetPrimitiveArrayCritical(env, jshared_secret, &is_copy);
+        if (shared_secret != NULL) countCriticalCopy(shared_secret_len, is_copy);
+    }
+    jbyte *secret_key = NULL;
+    if (shared_secret != NULL) {
+        secret_key = (jbyte *) (*env)->GetPrimitiveArrayCritical(env, jsecret_key, &is_copy);
+        if (secret_key != NULL) countCriticalCopy(secret_key_len, is_copy);
+    }
+
+    OQS_STATUS rv_ = OQS_ERROR;
+    if (secret_key != NULL) {
+        rv_ = OQS_KEM_decaps(kem, (uint8_t*) shared_secret + shared_secret_offset,
+                             (uint8_t*) ciphertext + ciphertext_offset,
+                             (uint8_t*) secret_key);
+    }
 
+    if (secret_key != NULL) (*env)->ReleasePrimitiveArrayCritical(env, jsecret_key, secret_key, JNI_ABORT);
+    if (shared_secret != NULL) (*env)->ReleasePrimitiveArrayCritical(env, jshared_secret, shared_secret, 0);
+    if (ciphertext != NULL) (*env)->ReleasePrimitiveArrayCritical(env, jciphertext, ciphertext, JNI_ABORT);
+    return (rv_ == OQS_SUCCESS) ? 0 : -1;
+}
+
+/*
+ * Class:     org_openquantumsafe_KeyEncapsulation
+ * Method:    decap_secret_direct
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;I[B)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_decap_1secret_1direct
+  (JNIEnv *env, jobject obj, jobject jciphertext, jint ciphertext_offset,
+      jobject jshared_secret, jint shared_secret_offset, jbyteArray jsecret_key)
+{
     OQS_KEM *kem = (OQS_KEM *) getHandle(env, obj, "native_kem_handle_");
-    OQS_STATUS rv_ = OQS_KEM_decaps(kem, (uint8_t*) shared_secret_native, (uint8_t*) ciphertext_native, (uint8_t*) secret_key_native);
+    uint8_t *ciphertext = (uint8_t *) (*env)->GetDirectBufferAddress(env, jciphertext);
+    uint8_t *shared_secret = (uint8_t *) (*env)->GetDirectBufferAddress(env, jshared_secret);
+    if (ciphertext == NULL || shared_secret == NULL) {
+        return -1;
+    }
 
-    // release memory
-    (*env)->ReleaseByteArrayElements(env, jshared_secret, shared_secret_native, JNI_COMMIT);
-    (*env)->ReleaseByteArrayElements(env, jciphertext, ciphertext_native, JNI_ABORT);
-    (*env)->ReleaseByteArrayElements(env, jsecret_key, secret_key_native, JNI_ABORT);
+    jbyte *secret_key = getCriticalByteArray(env, jsecret_key);
+    if (secret_key == NULL) {
+        return -1;
+    }
+    OQS_STATUS rv_ = OQS_KEM_decaps(kem, shared_secret + shared_secret_offset,
+                                    ciphertext + ciphertext_offset, (uint8_t*) secret_key);
+    (*env)->ReleasePrimitiveArrayCritical(env, jsecret_key, secret_key, JNI_ABORT);
     return (rv_ == OQS_SUCCESS) ? 0 : -1;
 }
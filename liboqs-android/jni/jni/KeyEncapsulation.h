@@ -42,19 +42,35 @@ JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_generate_1keypai
 
 /*
  * Class:     org_openquantumsafe_KeyEncapsulation
- * Method:    encap_secret
- * Signature: ([B[B[B)I
+ * Method:    encap_secret_into
+ * Signature: ([B[BI[BI)I
  */
-JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_encap_1secret
-  (JNIEnv *, jobject, jbyteArray, jbyteArray, jbyteArray);
+JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_encap_1secret_1into
+  (JNIEnv *, jobject, jbyteArray, jbyteArray, jint, jbyteArray, jint);
 
 /*
  * Class:     org_openquantumsafe_KeyEncapsulation
- * Method:    decap_secret
- * Signature: ([B[B[B)I
+ * Method:    encap_secret_direct
+ * Signature: ([BLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;I)I
  */
-JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_decap_1secret
-  (JNIEnv *, jobject, jbyteArray, jbyteArray, jbyteArray);
+JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_encap_1secret_1direct
+  (JNIEnv *, jobject, jbyteArray, jobject, jint, jobject, jint);
+
+/*
+ * Class:     org_openquantumsafe_KeyEncapsulation
+ * Method:    decap_secret_into
+ * Signature: ([BI[BI[B)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_decap_1secret_1into
+  (JNIEnv *, jobject, jbyteArray, jint, jbyteArray, jint, jbyteArray);
+
+/*
+ * Class:     org_openquantumsafe_KeyEncapsulation
+ * Method:    decap_secret_direct
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;I[B)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_KeyEncapsulation_decap_1secret_1direct
+  (JNIEnv *, jobject, jobject, jint, jobject, jint, jbyteArray);
 
 #ifdef __cplusplus
 }
@@ -0,0 +1,156 @@
+#include <string.h>
+#include <oqs/oqs.h>
+#include "NativeBuild.h"
+
+/*
+ * Build information of the liboqs variant this wrapper was compiled against.
+ * Each wrapper variant (see Android.mk) is compiled with the headers of its own
+ * liboqs build, so the OQS_ENABLE_* and OQS_USE_* macros describe the library
+ * that is actually loaded.
+ */
+
+#ifndef OQS_COMPILE_BUILD_TARGET
+#define OQS_COMPILE_BUILD_TARGET "unknown"
+#endif
+
+/*
+ * Mechanisms with an optimized implementation in liboqs 0.5, and whether this
+ * build includes it. In a portable build liboqs picks it at run time when the
+ * CPU has the extension; otherwise it runs the reference ("ref") code.
+ */
+typedef struct {
+    const char *alg_name;
+    int optimized_built;
+} optimized_impl;
+
+static const optimized_impl avx2_impls[] = {
+#if defined(OQS_ENABLE_SIG_dilithium_2_avx2)
+    { OQS_SIG_alg_dilithium_2, 1 },
+#endif
+#if defined(OQS_ENABLE_SIG_dilithium_3_avx2)
+    { OQS_SIG_alg_dilithium_3, 1 },
+#endif
+#if defined(OQS_ENABLE_SIG_dilithium_4_avx2)
+    { OQS_SIG_alg_dilithium_4, 1 },
+#endif
+#if defined(OQS_ENABLE_SIG_falcon_512_avx2)
+    { OQS_SIG_alg_falcon_512, 1 },
+#endif
+#if defined(OQS_ENABLE_SIG_falcon_1024_avx2)
+    { OQS_SIG_alg_falcon_1024, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_kyber_512_avx2)
+    { OQS_KEM_alg_kyber_512, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_kyber_768_avx2)
+    { OQS_KEM_alg_kyber_768, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_kyber_1024_avx2)
+    { OQS_KEM_alg_kyber_1024, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_kyber_512_90s_avx2)
+    { OQS_KEM_alg_kyber_512_90s, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_kyber_768_90s_avx2)
+    { OQS_KEM_alg_kyber_768_90s, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_kyber_1024_90s_avx2)
+    { OQS_KEM_alg_kyber_1024_90s, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_saber_lightsaber_avx2)
+    { OQS_KEM_alg_saber_lightsaber, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_saber_saber_avx2)
+    { OQS_KEM_alg_saber_saber, 1 },
+#endif
+#if defined(OQS_ENABLE_KEM_saber_firesaber_avx2)
+    { OQS_KEM_alg_saber_firesaber, 1 },
+#endif
+    { NULL, 0 }
+};
+
+static int cpu_has_avx2(void) {
+#if defined(OQS_USE_CPU_EXTENSIONS) && defined(ARCH_X86_64)
+    return OQS_get_available_CPU_extensions().AVX2_ENABLED != 0;
+#elif defined(OQS_USE_AVX2_INSTRUCTIONS)
+    // Non-portable build for a CPU with AVX2: always taken
+    return 1;
+#else
+    return 0;
+#endif
+}
+
+/*
+ * Class:     com_example_liboqs_NativeBuild
+ * Method:    version
+ * Signature: ()Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_com_example_liboqs_NativeBuild_version
+  (JNIEnv *env, jclass cls)
+{
+    return (*env)->NewStringUTF(env, OQS_VERSION_TEXT);
+}
+
+/*
+ * Class:     com_example_liboqs_NativeBuild
+ * Method:    build_target
+ * Signature: ()Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_com_example_liboqs_NativeBuild_build_1target
+  (JNIEnv *env, jclass cls)
+{
+    return (*env)->NewStringUTF(env, OQS_COMPILE_BUILD_TARGET);
+}
+
+/*
+ * Class:     com_example_liboqs_NativeBuild
+ * Method:    cpu_extensions
+ * Signature: ()[Ljava/lang/String;
+ */
+JNIEXPORT jobjectArray JNICALL Java_com_example_liboqs_NativeBuild_cpu_1extensions
+  (JNIEnv *env, jclass cls)
+{
+    jclass string_cls = (*env)->FindClass(env, "java/lang/String");
+#if defined(OQS_USE_CPU_EXTENSIONS)
+    // The struct is a sequence of unsigned int flags, named by OQS_get_cpu_extension_name
+    OQS_CPU_EXTENSIONS ext = OQS_get_available_CPU_extensions();
+    const unsigned int *flags = (const unsigned int *) &ext;
+    unsigned int n_flags = sizeof(ext) / sizeof(unsigned int);
+    unsigned int n_enabled = 0;
+    for (unsigned int i = 0; i < n_flags; i++) {
+        if (flags[i]) n_enabled++;
+    }
+    jobjectArray result = (*env)->NewObjectArray(env, (jsize) n_enabled, string_cls, NULL);
+    jsize j = 0;
+    for (unsigned int i = 0; i < n_flags; i++) {
+        if (flags[i]) {
+            (*env)->SetObjectArrayElement(env, result, j++,
+                                          (*env)->NewStringUTF(env, OQS_get_cpu_extension_name(i)));
+        }
+    }
+    return result;
+#else
+    // Built without CPU extensions: only reference code is compiled in
+    return (*env)->NewObjectArray(env, 0, string_cls, NULL);
+#endif
+}
+
+/*
+ * Class:     com_example_liboqs_NativeBuild
+ * Method:    implementation
+ * Signature: (Ljava/lang/String;)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_com_example_liboqs_NativeBuild_implementation
+  (JNIEnv *env, jclass cls, jstring jalg_name)
+{
+    const char *alg_name = (*env)->GetStringUTFChars(env, jalg_name, 0);
+    const char *impl = "ref";
+    for (const optimized_impl *p = avx2_impls; p->alg_name != NULL; p++) {
+        if (strcmp(p->alg_name, alg_name) == 0) {
+            impl = (p->optimized_built && cpu_has_avx2()) ? "avx2" : "ref";
+            break;
+        }
+    }
+    (*env)->ReleaseStringUTFChars(env, jalg_name, alg_name);
+    return (*env)->NewStringUTF(env, impl);
+}
@@ -0,0 +1,35 @@
+#include "NativeMemory.h"
+#include "handle.h"
+
+/*
+ * Class:     com_example_liboqs_NativeMemory
+ * Method:    live_handles
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_liboqs_NativeMemory_live_1handles
+  (JNIEnv *env, jclass cls)
+{
+    return (jlong) liveHandles();
+}
+
+/*
+ * Class:     com_example_liboqs_NativeMemory
+ * Method:    live_handle_bytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_liboqs_NativeMemory_live_1handle_1bytes
+  (JNIEnv *env, jclass cls)
+{
+    return (jlong) liveHandleBytes();
+}
+
+/*
+ * Class:     com_example_liboqs_NativeMemory
+ * Method:    jni_copied_bytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_liboqs_NativeMemory_jni_1copied_1bytes
+  (JNIEnv *env, jclass cls)
+{
+    return (jlong) jniCopiedBytes();
+}
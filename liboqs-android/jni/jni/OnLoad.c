@@ -0,0 +1,93 @@
+#include <jni.h>
+#include "NativeBuild.h"
+#include "PreparedPublicKey.h"
+#include "PreparedSigningKey.h"
+#include "Signature.h"
+#include "Sigs.h"
+
+/*
+ * Natives of the signing and verification path are bound in JNI_OnLoad, while
+ * System.loadLibrary runs (on a background thread at application startup),
+ * instead of being looked up by symbol name on their first call from the UI.
+ * A class or method that fails to register keeps the lazy lookup by name, so a
+ * mismatch never prevents the library from loading.
+ */
+
+typedef struct {
+    const char *class_name;
+    const JNINativeMethod *methods;
+    jint n_methods;
+} native_class;
+
+static const JNINativeMethod sigs_methods[] = {
+    { "max_number_sigs", "()I", (void *) Java_com_example_liboqs_Sigs_max_1number_1sigs },
+    { "is_sig_enabled", "(Ljava/lang/String;)Z", (void *) Java_com_example_liboqs_Sigs_is_1sig_1enabled },
+    { "get_sig_name", "(J)Ljava/lang/String;", (void *) Java_com_example_liboqs_Sigs_get_1sig_1name },
+};
+
+static const JNINativeMethod signature_methods[] = {
+    { "create_sig_new", "(Ljava/lang/String;)V", (void *) Java_com_example_liboqs_Signature_create_1sig_1new },
+    { "free_sig", "()V", (void *) Java_com_example_liboqs_Signature_free_1sig },
+    { "get_sig_details", "()Lcom/example/liboqs/Signature$SignatureDetails;",
+      (void *) Java_com_example_liboqs_Signature_get_1sig_1details },
+    { "generate_keypair", "([B[B)I", (void *) Java_com_example_liboqs_Signature_generate_1keypair },
+    { "sign", "([BLcom/example/liboqs/Signature$Mutable;[BJ[B)I", (void *) Java_com_example_liboqs_Signature_sign },
+    { "verify", "([BJ[BJ[B)Z", (void *) Java_com_example_liboqs_Signature_verify },
+};
+
+static const JNINativeMethod prepared_public_key_methods[] = {
+    { "create_prepared", "(Ljava/lang/String;[B)I", (void *) Java_com_example_liboqs_PreparedPublicKey_create_1prepared },
+    { "free_prepared", "()V", (void *) Java_com_example_liboqs_PreparedPublicKey_free_1prepared },
+    { "verify", "([BJ[BJ)Z", (void *) Java_com_example_liboqs_PreparedPublicKey_verify },
+};
+
+static const JNINativeMethod prepared_signing_key_methods[] = {
+    { "create_prepared", "(Ljava/lang/String;[B)I", (void *) Java_com_example_liboqs_PreparedSigningKey_create_1prepared },
+    { "free_prepared", "()V", (void *) Java_com_example_liboqs_PreparedSigningKey_free_1prepared },
+    { "sign", "([BJ)[B", (void *) Java_com_example_liboqs_PreparedSigningKey_sign },
+};
+
+#define N_METHODS(a) ((jint) (sizeof(a) / sizeof((a)[0])))
+
+static const native_class native_classes[] = {
+    { "com/example/liboqs/Sigs", sigs_methods, N_METHODS(sigs_methods) },
+    { "com/example/liboqs/Signature", signature_methods, N_METHODS(signature_methods) },
+    { "com/example/liboqs/PreparedPublicKey", prepared_public_key_methods, N_METHODS(prepared_public_key_methods) },
+    { "com/example/liboqs/PreparedSigningKey", prepared_signing_key_methods, N_METHODS(prepared_signing_key_methods) },
+};
+
+static jint registered_natives = 0;
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved)
+{
+    JNIEnv *env;
+    if ((*vm)->GetEnv(vm, (void **) &env, JNI_VERSION_1_6) != JNI_OK) {
+        return JNI_ERR;
+    }
+    for (jint i = 0; i < N_METHODS(native_classes); i++) {
+        const native_class *p = &native_classes[i];
+        jclass cls = (*env)->FindClass(env, p->class_name);
+        if (cls == NULL) {
+            (*env)->ExceptionClear(env);
+            continue;
+        }
+        if ((*env)->RegisterNatives(env, cls, p->methods, p->n_methods) == JNI_OK) {
+            registered_natives += p->n_methods;
+        } else {
+            (*env)->ExceptionClear(env);
+        }
+        (*env)->DeleteLocalRef(env, cls);
+    }
+    return JNI_VERSION_1_6;
+}
+
+/*
+ * Class:     com_example_liboqs_NativeBuild
+ * Method:    registered_natives
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_NativeBuild_registered_1natives
+  (JNIEnv *env, jclass cls)
+{
+    return registered_natives;
+}
@@ -0,0 +1,104 @@
+#include <stdlib.h>
+#include <oqs/oqs.h>
+#include "PreparedEncapsulationKey.h"
+#include "handle.h"
+
+/*
+ * A recipient public key bound to its OQS_KEM once. The mechanism lookup, the
+ * OQS_KEM allocation and the copy of the key into native memory happen when the
+ * key is prepared; each encapsulation only writes the two outputs back to Java.
+ */
+typedef struct {
+    OQS_KEM *kem;
+    size_t public_key_len;
+    uint8_t public_key[];
+} prepared_encapsulation_key;
+
+/*
+ * Class:     com_example_liboqs_PreparedEncapsulationKey
+ * Method:    create_prepared
+ * Signature: (Ljava/lang/String;[B[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_PreparedEncapsulationKey_create_1prepared
+  (JNIEnv *env, jobject obj, jstring jstr, jbyteArray jpublic_key, jlongArray jlengths)
+{
+    const char *str_native = (*env)->GetStringUTFChars(env, jstr, 0);
+    OQS_KEM *kem = OQS_KEM_new(str_native);
+    (*env)->ReleaseStringUTFChars(env, jstr, str_native);
+    if (kem == NULL) {
+        return -1;
+    }
+
+    jsize public_key_len = (*env)->GetArrayLength(env, jpublic_key);
+    if ((size_t) public_key_len != kem->length_public_key) {
+        OQS_KEM_free(kem);
+        return -2;
+    }
+
+    size_t size = sizeof(prepared_encapsulation_key) + (size_t) public_key_len;
+    prepared_encapsulation_key *key = malloc(size);
+    if (key == NULL) {
+        OQS_KEM_free(kem);
+        return -1;
+    }
+    key->kem = kem;
+    key->public_key_len = (size_t) public_key_len;
+    (*env)->GetByteArrayRegion(env, jpublic_key, 0, public_key_len, (jbyte *) key->public_key);
+
+    // Output lengths for the Java side: { ciphertext, shared secret }
+    jlong lengths[2] = { (jlong) kem->length_ciphertext, (jlong) kem->length_shared_secret };
+    (*env)->SetLongArrayRegion(env, jlengths, 0, 2, lengths);
+
+    accountHandle((long long) (size + sizeof(OQS_KEM)));
+    setHandle(env, obj, key, "native_prepared_handle_");
+    return 0;
+}
+
+/*
+ * Class:     com_example_liboqs_PreparedEncapsulationKey
+ * Method:    free_prepared
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_example_liboqs_PreparedEncapsulationKey_free_1prepared
+  (JNIEnv *env, jobject obj)
+{
+    prepared_encapsulation_key *key = (prepared_encapsulation_key *) getHandle(env, obj, "native_prepared_handle_");
+    if (key == NULL) {
+        return;
+    }
+    accountHandle(-(long long) (sizeof(prepared_encapsulation_key) + key->public_key_len + sizeof(OQS_KEM)));
+    OQS_KEM_free(key->kem);
+    free(key);
+    setHandle(env, obj, NULL, "native_prepared_handle_");
+}
+
+/*
+ * Class:     com_example_liboqs_PreparedEncapsulationKey
+ * Method:    encap_secret
+ * Signature: ([B[B)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_PreparedEncapsulationKey_encap_1secret
+  (JNIEnv *env, jobject obj, jbyteArray jciphertext, jbyteArray jshared_secret)
+{
+    prepared_encapsulation_key *key = (prepared_encapsulation_key *) getHandle(env, obj, "native_prepared_handle_");
+    if (key == NULL) {
+        return -1;
+    }
+    OQS_KEM *kem = key->kem;
+
+    // Outputs are produced in native memory and copied once into the Java arrays
+    uint8_t *buffer = malloc(kem->length_ciphertext + kem->length_shared_secret);
+    if (buffer == NULL) {
+        return -1;
+    }
+    uint8_t *ciphertext = buffer;
+    uint8_t *shared_secret = buffer + kem->length_ciphertext;
+
+    OQS_STATUS rv_ = OQS_KEM_encaps(kem, ciphertext, shared_secret, key->public_key);
+    if (rv_ == OQS_SUCCESS) {
+        (*env)->SetByteArrayRegion(env, jciphertext, 0, (jsize) kem->length_ciphertext, (jbyte *) ciphertext);
+        (*env)->SetByteArrayRegion(env, jshared_secret, 0, (jsize) kem->length_shared_secret, (jbyte *) shared_secret);
+    }
+    OQS_MEM_secure_free(buffer, kem->length_ciphertext + kem->length_shared_secret);
+    return (rv_ == OQS_SUCCESS) ? 0 : -1;
+}
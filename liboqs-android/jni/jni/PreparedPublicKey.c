@@ -0,0 +1,99 @@
+#include <stdlib.h>
+#include <string.h>
+#include <oqs/oqs.h>
+#include "PreparedPublicKey.h"
+#include "handle.h"
+
+/*
+ * A public key bound to its OQS_SIG once: the mechanism lookup, the OQS_SIG
+ * allocation and the copy of the key into native memory happen when the key is
+ * prepared, so each verify only has to pin the message and the signature.
+ */
+typedef struct {
+    OQS_SIG *sig;
+    size_t public_key_len;
+    uint8_t public_key[];
+} prepared_public_key;
+
+/*
+ * Class:     com_example_liboqs_PreparedPublicKey
+ * Method:    create_prepared
+ * Signature: (Ljava/lang/String;[B)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_PreparedPublicKey_create_1prepared
+  (JNIEnv *env, jobject obj, jstring jstr, jbyteArray jpublic_key)
+{
+    const char *str_native = (*env)->GetStringUTFChars(env, jstr, 0);
+    OQS_SIG *sig = OQS_SIG_new(str_native);
+    (*env)->ReleaseStringUTFChars(env, jstr, str_native);
+    if (sig == NULL) {
+        return -1;
+    }
+
+    jsize public_key_len = (*env)->GetArrayLength(env, jpublic_key);
+    if ((size_t) public_key_len != sig->length_public_key) {
+        OQS_SIG_free(sig);
+        return -2;
+    }
+
+    size_t size = sizeof(prepared_public_key) + (size_t) public_key_len;
+    prepared_public_key *key = malloc(size);
+    if (key == NULL) {
+        OQS_SIG_free(sig);
+        return -1;
+    }
+    key->sig = sig;
+    key->public_key_len = (size_t) public_key_len;
+    // Copy straight into the struct: no intermediate pinned array
+    (*env)->GetByteArrayRegion(env, jpublic_key, 0, public_key_len, (jbyte *) key->public_key);
+
+    accountHandle((long long) (size + sizeof(OQS_SIG)));
+    setHandle(env, obj, key, "native_prepared_handle_");
+    return 0;
+}
+
+/*
+ * Class:     com_example_liboqs_PreparedPublicKey
+ * Method:    free_prepared
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_example_liboqs_PreparedPublicKey_free_1prepared
+  (JNIEnv *env, jobject obj)
+{
+    prepared_public_key *key = (prepared_public_key *) getHandle(env, obj, "native_prepared_handle_");
+    if (key == NULL) {
+        return;
+    }
+    accountHandle(-(long long) (sizeof(prepared_public_key) + key->public_key_len + sizeof(OQS_SIG)));
+    OQS_SIG_free(key->sig);
+    free(key);
+    setHandle(env, obj, NULL, "native_prepared_handle_");
+}
+
+/*
+ * Class:     com_example_liboqs_PreparedPublicKey
+ * Method:    verify
+ * Signature: ([BJ[BJ)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_example_liboqs_PreparedPublicKey_verify
+  (JNIEnv *env, jobject obj, jbyteArray jmessage, jlong message_len,
+      jbyteArray jsignature, jlong signature_len)
+{
+    prepared_public_key *key = (prepared_public_key *) getHandle(env, obj, "native_prepared_handle_");
+    if (key == NULL) {
+        return JNI_FALSE;
+    }
+
+    jbyte *message_native = getByteArray(env, jmessage);
+    jbyte *signature_native = getByteArray(env, jsignature);
+
+    OQS_STATUS rv_ = OQS_SIG_verify(key->sig, (uint8_t*) message_native, message_len,
+                                    (uint8_t*) signature_native, signature_len,
+                                    key->public_key);
+
+    // Read-only inputs: nothing to copy back
+    (*env)->ReleaseByteArrayElements(env, jsignature, signature_native, JNI_ABORT);
+    (*env)->ReleaseByteArrayElements(env, jmessage, message_native, JNI_ABORT);
+
+    return (rv_ == OQS_SUCCESS) ? JNI_TRUE : JNI_FALSE;
+}
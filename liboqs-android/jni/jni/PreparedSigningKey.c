@@ -0,0 +1,110 @@
+#include <stdlib.h>
+#include <oqs/oqs.h>
+#include "PreparedSigningKey.h"
+#include "handle.h"
+
+/*
+ * A secret key bound to its OQS_SIG once and kept in native memory until it is
+ * freed. Each sign only pins the message and the output buffer: the secret key is
+ * not passed through JNI (nor copied by the VM) again.
+ */
+typedef struct {
+    OQS_SIG *sig;
+    size_t secret_key_len;
+    uint8_t secret_key[];
+} prepared_signing_key;
+
+/*
+ * Class:     com_example_liboqs_PreparedSigningKey
+ * Method:    create_prepared
+ * Signature: (Ljava/lang/String;[B)I
+ */
+JNIEXPORT jint JNICALL Java_com_example_liboqs_PreparedSigningKey_create_1prepared
+  (JNIEnv *env, jobject obj, jstring jstr, jbyteArray jsecret_key)
+{
+    const char *str_native = (*env)->GetStringUTFChars(env, jstr, 0);
+    OQS_SIG *sig = OQS_SIG_new(str_native);
+    (*env)->ReleaseStringUTFChars(env, jstr, str_native);
+    if (sig == NULL) {
+        return -1;
+    }
+
+    jsize secret_key_len = (*env)->GetArrayLength(env, jsecret_key);
+    if ((size_t) secret_key_len != sig->length_secret_key) {
+        OQS_SIG_free(sig);
+        return -2;
+    }
+
+    size_t size = sizeof(prepared_signing_key) + (size_t) secret_key_len;
+    prepared_signing_key *key = malloc(size);
+    if (key == NULL) {
+        OQS_SIG_free(sig);
+        return -1;
+    }
+    key->sig = sig;
+    key->secret_key_len = (size_t) secret_key_len;
+    // Copy straight into the struct so that no other native copy of the key exists
+    (*env)->GetByteArrayRegion(env, jsecret_key, 0, secret_key_len, (jbyte *) key->secret_key);
+
+    accountHandle((long long) (size + sizeof(OQS_SIG)));
+    setHandle(env, obj, key, "native_prepared_handle_");
+    return 0;
+}
+
+/*
+ * Class:     com_example_liboqs_PreparedSigningKey
+ * Method:    free_prepared
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_example_liboqs_PreparedSigningKey_free_1prepared
+  (JNIEnv *env, jobject obj)
+{
+    prepared_signing_key *key = (prepared_signing_key *) getHandle(env, obj, "native_prepared_handle_");
+    if (key == NULL) {
+        return;
+    }
+    size_t size = sizeof(prepared_signing_key) + key->secret_key_len;
+    accountHandle(-(long long) (size + sizeof(OQS_SIG)));
+    OQS_SIG_free(key->sig);
+    // Wipes the secret key before releasing the memory
+    OQS_MEM_secure_free(key, size);
+    setHandle(env, obj, NULL, "native_prepared_handle_");
+}
+
+/*
+ * Class:     com_example_liboqs_PreparedSigningKey
+ * Method:    sign
+ * Signature: ([BJ)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_com_example_liboqs_PreparedSigningKey_sign
+  (JNIEnv *env, jobject obj, jbyteArray jmessage, jlong message_len)
+{
+    prepared_signing_key *key = (prepared_signing_key *) getHandle(env, obj, "native_prepared_handle_");
+    if (key == NULL) {
+        return NULL;
+    }
+
+    // Sign into native memory and hand back an array of the exact length
+    uint8_t *signature_native = malloc(key->sig->length_signature);
+    if (signature_native == NULL) {
+        return NULL;
+    }
+    jbyte *message_native = getByteArray(env, jmessage);
+
+    size_t len_sig = 0;
+    OQS_STATUS rv_ = OQS_SIG_sign(key->sig, signature_native, &len_sig,
+                                  (uint8_t*) message_native, message_len,
+                                  key->secret_key);
+
+    (*env)->ReleaseByteArrayElements(env, jmessage, message_native, JNI_ABORT);
+
+    jbyteArray jsignature = NULL;
+    if (rv_ == OQS_SUCCESS) {
+        jsignature = (*env)->NewByteArray(env, (jsize) len_sig);
+        if (jsignature != NULL) {
+            (*env)->SetByteArrayRegion(env, jsignature, 0, (jsize) len_sig, (jbyte *) signature_native);
+        }
+    }
+    free(signature_native);
+    return jsignature;
+}
@@ -1,5 +1,6 @@
 #include <oqs/oqs.h>
 #include "Rand.h"
+#include "handle.h"
 
 /*
  * Class:     org_openquantumsafe_Rand
@@ -50,12 +51,12 @@ JNIEXPORT jint JNICALL Java_com_example_liboqs_Rand_randombytes_1switch_1algorit
 JNIEXPORT void JNICALL Java_com_example_liboqs_Rand_randombytes_1nist_1kat_1init
   (JNIEnv *env, jclass cls, jbyteArray jentropy_input, jbyteArray jpers_str, jlong pers_str_len)
 {
-    jbyte *entropy_input_native = (*env)->GetByteArrayElements(env, jentropy_input, 0);
+    jbyte *entropy_input_native = getByteArray(env, jentropy_input);
 
     if (pers_str_len == 0) {
         OQS_randombytes((uint8_t*) entropy_input_native, (size_t) pers_str_len);
     } else {
-        jbyte *pers_str_native = (*env)->GetByteArrayElements(env, jpers_str, 0);
+        jbyte *pers_str_native = getByteArray(env, jpers_str);
         OQS_randombytes((uint8_t*) entropy_input_native, (size_t) pers_str_len);
         (*env)->ReleaseByteArrayElements(env, jpers_str, pers_str_native, JNI_ABORT);
     }
@@ -14,6 +14,9 @@ JNIEXPORT void JNICALL Java_com_example_liboqs_Signature_create_1sig_1new
     const char *str_native = (*env)->GetStringUTFChars(env, jstr, 0);
     OQS_SIG *sig = OQS_SIG_new(str_native);
     (*env)->ReleaseStringUTFChars(env, jstr, str_native);
+    if (sig != NULL) {
+        accountHandle((long long) sizeof(OQS_SIG));
+    }
     // Stow the native OQS_SIG pointer in the Java handle.
     setHandle(env, obj, sig, "native_sig_handle_");
 }
@@ -27,7 +30,12 @@ JNIEXPORT void JNICALL Java_com_example_liboqs_Signature_free_1sig
   (JNIEnv *env, jobject obj)
 {
     OQS_SIG *sig = (OQS_SIG *) getHandle(env, obj, "native_sig_handle_");
+    if (sig != NULL) {
+        accountHandle(-(long long) sizeof(OQS_SIG));
+    }
     OQS_SIG_free(sig);
+    // Avoid a double free (and double accounting) if dispose is called twice
+    setHandle(env, obj, NULL, "native_sig_handle_");
 }
 
 /*
@@ -92,8 +100,8 @@ JNIEXPORT jobject JNICALL Java_com_example_liboqs_Signature_get_1sig_1details
 JNIEXPORT jint JNICALL Java_com_example_liboqs_Signature_generate_1keypair
   (JNIEnv *env, jobject obj, jbyteArray jpublic_key, jbyteArray jsecret_key)
 {
-    jbyte *public_key_native = (*env)->GetByteArrayElements(env, jpublic_key, 0);
-    jbyte *secret_key_native = (*env)->GetByteArrayElements(env, jsecret_key, 0);
+    jbyte *public_key_native = getByteArray(env, jpublic_key);
+    jbyte *secret_key_native = getByteArray(env, jsecret_key);
 
     // Get pointer to sig
     OQS_SIG *sig = (OQS_SIG *) getHandle(env, obj, "native_sig_handle_");
@@ -116,9 +124,9 @@ JNIEXPORT jint JNICALL Java_com_example_liboqs_Signature_sign
       jbyteArray jmessage, jlong message_len, jbyteArray jsecret_key)
 {
     // Convert to jbyte arrays
-    jbyte *signature_native = (*env)->GetByteArrayElements(env, jsignature, 0);
-    jbyte *message_native = (*env)->GetByteArrayElements(env, jmessage, 0);
-    jbyte *secret_key_native = (*env)->GetByteArrayElements(env, jsecret_key, 0);
+    jbyte *signature_native = getByteArray(env, jsignature);
+    jbyte *message_native = getByteArray(env, jmessage);
+    jbyte *secret_key_native = getByteArray(env, jsecret_key);
 
     OQS_SIG *sig = (OQS_SIG *) getHandle(env, obj, "native_sig_handle_");
     size_t len_sig;
@@ -157,9 +165,9 @@ JNIEXPORT jboolean JNICALL Java_com_example_liboqs_Signature_verify
       jbyteArray jsignature, jlong signature_len, jbyteArray jpublic_key)
 {
     // Convert to jbyte arrays
-    jbyte *message_native = (*env)->GetByteArrayElements(env, jmessage, 0);
-    jbyte *signature_native = (*env)->GetByteArrayElements(env, jsignature, 0);
-    jbyte *public_key_native = (*env)->GetByteArrayElements(env, jpublic_key, 0);
+    jbyte *message_native = getByteArray(env, jmessage);
+    jbyte *signature_native = getByteArray(env, jsignature);
+    jbyte *public_key_native = getByteArray(env, jpublic_key);
 
     OQS_SIG *sig = (OQS_SIG *) getHandle(env, obj, "native_sig_handle_");
     OQS_STATUS rv_ = OQS_SIG_verify(sig, (uint8_t*) message_native, message_len,
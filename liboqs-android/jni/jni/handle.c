@@ -14,3 +14,69 @@ void setHandle(JNIEnv *env, jobject obj, void *t, char *handle_field) {
     jlong handle = (jlong) (t);
     (*env)->SetLongField(env, obj, getHandleField(env, obj, handle_field), handle);
 }
+
+/*
+ * Native memory accounting. Counters are updated with relaxed atomics: they are
+ * statistics, not synchronisation.
+ */
+static long long live_handles_ = 0;
+static long long live_handle_bytes_ = 0;
+static long long jni_copied_bytes_ = 0;
+
+void accountHandle(long long bytes) {
+    __atomic_add_fetch(&live_handles_, bytes >= 0 ? 1 : -1, __ATOMIC_RELAXED);
+    __atomic_add_fetch(&live_handle_bytes_, bytes, __ATOMIC_RELAXED);
+}
+
+/*
+ * GetByteArrayElements that also counts the bytes the VM had to copy into native
+ * memory (ART usually copies; the copy lives until the matching Release call).
+ */
+jbyte *getByteArray(JNIEnv *env, jbyteArray array) {
+    jboolean is_copy = JNI_FALSE;
+    jbyte *elements = (*env)->GetByteArrayElements(env, array, &is_copy);
+    if (elements != NULL && is_copy == JNI_TRUE) {
+        __atomic_add_fetch(&jni_copied_bytes_, (long long) (*env)->GetArrayLength(env, array),
+                           __ATOMIC_RELAXED);
+    }
+    return elements;
+}
+
+/*
+ * GetPrimitiveArrayCritical with the same accounting. Between this call and the
+ * matching ReleasePrimitiveArrayCritical no other JNI function may be called, so
+ * the length is read before entering the critical region. Because of that, it
+ * can only pin one array at a time: to hold several, read their lengths first,
+ * take each with GetPrimitiveArrayCritical and report it with countCriticalCopy.
+ */
+jbyte *getCriticalByteArray(JNIEnv *env, jbyteArray array) {
+    jsize length = (*env)->GetArrayLength(env, array);
+    jboolean is_copy = JNI_FALSE;
+    jbyte *elements = (jbyte *) (*env)->GetPrimitiveArrayCritical(env, array, &is_copy);
+    if (elements != NULL) {
+        countCriticalCopy(length, is_copy);
+    }
+    return elements;
+}
+
+/*
+ * Accounting for an array taken with GetPrimitiveArrayCritical; makes no JNI
+ * calls, so it is safe inside a critical region.
+ */
+void countCriticalCopy(jsize length, jboolean is_copy) {
+    if (is_copy == JNI_TRUE) {
+        __atomic_add_fetch(&jni_copied_bytes_, (long long) length, __ATOMIC_RELAXED);
+    }
+}
+
+long long liveHandles(void) {
+    return __atomic_load_n(&live_handles_, __ATOMIC_RELAXED);
+}
+
+long long liveHandleBytes(void) {
+    return __atomic_load_n(&live_handle_bytes_, __ATOMIC_RELAXED);
+}
+
+long long jniCopiedBytes(void) {
+    return __atomic_load_n(&jni_copied_bytes_, __ATOMIC_RELAXED);
+}
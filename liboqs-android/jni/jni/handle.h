@@ -10,4 +10,19 @@ void *getHandle(JNIEnv *, jobject, char *);
 
 void setHandle(JNIEnv *, jobject, void *, char *);
 
+/* Native memory accounting (exposed through com.example.liboqs.NativeMemory) */
+void accountHandle(long long bytes);
+
+jbyte *getByteArray(JNIEnv *, jbyteArray);
+
+jbyte *getCriticalByteArray(JNIEnv *, jbyteArray);
+
+void countCriticalCopy(jsize, jboolean);
+
+long long liveHandles(void);
+
+long long liveHandleBytes(void);
+
+long long jniCopiedBytes(void);
+
 #endif
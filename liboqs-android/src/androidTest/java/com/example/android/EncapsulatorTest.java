@@ -0,0 +1,38 @@
+package com.example.android;
+
+import com.example.liboqs.Encapsulator;
+import com.example.liboqs.KeyEncapsulation;
+import com.example.liboqs.Pair;
+
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EncapsulatorTest {
+
+    private static final String KEM_NAME = "Kyber512";
+
+    /**
+     * Secrets encapsulated to a prepared key must decapsulate with the recipient's
+     * secret key, and the prepared key must be reused
+     */
+    @Test
+    public void testPreparedEncapsulation() {
+        KeyEncapsulation recipient = new KeyEncapsulation(KEM_NAME);
+        byte[] public_key = recipient.generate_keypair();
+
+        Encapsulator encapsulator = new Encapsulator(2);
+        try {
+            for (int i = 0; i < 3; i++) {
+                Pair<byte[], byte[]> pair = encapsulator.encap_secret(KEM_NAME, public_key);
+                assertArrayEquals(pair.getRight(), recipient.decap_secret(pair.getLeft()));
+            }
+            assertEquals(1, encapsulator.get_misses());
+            assertEquals(2, encapsulator.get_hits());
+        } finally {
+            encapsulator.clear();
+            recipient.dispose_KEM();
+        }
+    }
+}
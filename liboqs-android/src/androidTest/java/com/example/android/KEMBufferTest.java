@@ -0,0 +1,74 @@
+package com.example.android;
+
+import com.example.liboqs.KeyEncapsulation;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class KEMBufferTest {
+
+    private static final String KEM_NAME = "Kyber512";
+    private static final int OFFSET = 7;
+
+    /**
+     * Encapsulation and decapsulation into caller-owned arrays at an offset
+     */
+    @Test
+    public void testArraysAtOffset() {
+        KeyEncapsulation client = new KeyEncapsulation(KEM_NAME);
+        KeyEncapsulation server = new KeyEncapsulation(KEM_NAME);
+        try {
+            byte[] public_key = client.generate_keypair();
+            int ct_len = server.get_length_ciphertext();
+            int ss_len = server.get_length_shared_secret();
+
+            byte[] ciphertext = new byte[OFFSET + ct_len];
+            byte[] server_secret = new byte[OFFSET + ss_len];
+            byte[] client_secret = new byte[OFFSET + ss_len];
+            server.encap_secret(public_key, ciphertext, OFFSET, server_secret, OFFSET);
+            client.decap_secret(ciphertext, OFFSET, client_secret, OFFSET);
+
+            assertArrayEquals(server_secret, client_secret);
+            assertArrayEquals(new byte[OFFSET], Arrays.copyOf(client_secret, OFFSET));
+        } finally {
+            client.dispose_KEM();
+            server.dispose_KEM();
+        }
+    }
+
+    /**
+     * Encapsulation and decapsulation through direct ByteBuffers
+     */
+    @Test
+    public void testDirectBuffers() {
+        KeyEncapsulation client = new KeyEncapsulation(KEM_NAME);
+        KeyEncapsulation server = new KeyEncapsulation(KEM_NAME);
+        try {
+            byte[] public_key = client.generate_keypair();
+            int ct_len = server.get_length_ciphertext();
+            int ss_len = server.get_length_shared_secret();
+
+            ByteBuffer ciphertext = ByteBuffer.allocateDirect(OFFSET + ct_len);
+            ByteBuffer server_secret = ByteBuffer.allocateDirect(ss_len);
+            ByteBuffer client_secret = ByteBuffer.allocateDirect(ss_len);
+            ciphertext.position(OFFSET);
+            server.encap_secret(public_key, ciphertext, server_secret);
+            assertEquals(OFFSET + ct_len, ciphertext.position());
+
+            ciphertext.position(OFFSET);
+            client.decap_secret(ciphertext, client_secret);
+
+            server_secret.flip();
+            client_secret.flip();
+            assertEquals(server_secret, client_secret);
+        } finally {
+            client.dispose_KEM();
+            server.dispose_KEM();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.android;
+
+import com.example.liboqs.KeyPairPool;
+import com.example.liboqs.Signature;
+
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeyPairPoolTest {
+
+    private static final String SIG_NAME = "Dilithium2";
+    private final byte[] message = "This is the message to sign".getBytes();
+
+    /**
+     * Pooled key pairs must be valid and a miss must fall back to synchronous generation
+     */
+    @Test
+    public void testTakeFromPool() throws InterruptedException {
+        KeyPairPool pool = KeyPairPool.for_signature(SIG_NAME, 2, 1);
+        try {
+            // Empty pool: generated on this thread
+            KeyPairPool.KeyPair miss = pool.take();
+            assertEquals(1, pool.get_stats().misses);
+
+            // Wait for the background refill triggered by the miss
+            for (int i = 0; i < 100 && pool.get_stats().available < 2; i++) {
+                Thread.sleep(50);
+            }
+            KeyPairPool.KeyPair hit = pool.take();
+            assertEquals(1, pool.get_stats().hits);
+
+            for (KeyPairPool.KeyPair kp : new KeyPairPool.KeyPair[] { miss, hit }) {
+                Signature signer = new Signature(SIG_NAME, kp.secret_key);
+                byte[] signature = signer.sign(message);
+                assertTrue(signer.verify(message, signature, kp.public_key));
+                signer.dispose_sig();
+                kp.wipe();
+                assertArrayEquals(new byte[kp.secret_key.length], kp.secret_key);
+            }
+        } finally {
+            pool.close();
+        }
+        assertEquals(0, pool.get_stats().available);
+    }
+}
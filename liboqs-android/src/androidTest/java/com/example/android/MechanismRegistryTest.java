@@ -0,0 +1,87 @@
+package com.example.android;
+
+import com.example.liboqs.Digest;
+import com.example.liboqs.KEMs;
+import com.example.liboqs.KeyEncapsulation;
+import com.example.liboqs.MechanismRegistry;
+import com.example.liboqs.Signature;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MechanismRegistryTest {
+
+    @Test
+    public void testFamilyOf() {
+        assertEquals("dilithium", MechanismRegistry.family_of("DILITHIUM_2"));
+        assertEquals("sphincs", MechanismRegistry.family_of("SPHINCS+-SHA256-128f-simple"));
+        assertEquals("kyber", MechanismRegistry.family_of("Kyber512-90s"));
+        assertEquals("mceliece", MechanismRegistry.family_of("Classic-McEliece-348864"));
+        assertEquals("ntruprime", MechanismRegistry.family_of("sntrup761"));
+    }
+
+    /**
+     * The first operation of a family is recorded once, with the mechanisms used
+     */
+    @Test
+    public void testFirstUse() {
+        MechanismRegistry registry = MechanismRegistry.get_instance();
+
+        KeyEncapsulation kem = new KeyEncapsulation("Kyber512");
+        kem.generate_keypair();
+        kem.dispose_KEM();
+        assertTrue(registry.is_loaded("Kyber768"));
+
+        KeyEncapsulation other = new KeyEncapsulation("Kyber768");
+        other.generate_keypair();
+        other.dispose_KEM();
+
+        List<MechanismRegistry.FamilyStats> stats = registry.get_family_stats();
+        int kyber = 0;
+        for (MechanismRegistry.FamilyStats s : stats) {
+            if (s.family.equals("kyber")) {
+                kyber++;
+                assertTrue(s.load_ms > 0);
+                assertTrue(s.resident_bytes >= 0);
+                assertTrue(s.mechanisms.contains("Kyber512"));
+            }
+        }
+        assertEquals(1, kyber);
+
+        Signature sig = new Signature("Falcon-512");
+        sig.generate_keypair();
+        sig.dispose_sig();
+        assertTrue(registry.is_loaded("Falcon-1024"));
+        assertTrue(registry.get_core_stats().load_ms > 0);
+    }
+
+    /**
+     * The clock starts at the first operation: an instance that is never used does not
+     * claim its family, and the native digest reports its own family
+     */
+    @Test
+    public void testFirstUseStartsAtTheOperation() {
+        MechanismRegistry registry = MechanismRegistry.get_instance();
+        String alg = "FrodoKEM-640-AES";
+        if (KEMs.is_KEM_enabled(alg)) {
+            KeyEncapsulation idle = new KeyEncapsulation(alg);
+            assertFalse(registry.is_loaded(alg));
+            KeyEncapsulation used = new KeyEncapsulation(alg);
+            used.generate_keypair();
+            assertTrue(registry.is_loaded(alg));
+            idle.dispose_KEM();
+            used.dispose_KEM();
+        }
+
+        if (Digest.is_native_available()) {
+            Digest.digest(Digest.SHAKE128, new byte[1]);
+            assertTrue(registry.is_loaded(Digest.SHA3_256));
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.example.android;
+
+import com.example.liboqs.Common;
+import com.example.liboqs.KEMs;
+import com.example.liboqs.MechanismNotEnabledError;
+import com.example.liboqs.NativeBuild;
+import com.example.liboqs.Sigs;
+
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NativeBuildTest {
+
+    /**
+     * Exactly one wrapper variant is loaded and it reports the liboqs build
+     */
+    @Test
+    public void testLoadedVariant() {
+        Sigs.get_instance();
+        String variant = Common.get_loaded_variant();
+        assertTrue(Common.VARIANT_REFERENCE.equals(variant) || Common.VARIANT_OPTIMIZED.equals(variant));
+        assertFalse(NativeBuild.version().isEmpty());
+        assertNotNull(NativeBuild.cpu_extensions());
+        if (Common.VARIANT_REFERENCE.equals(variant)) {
+            assertTrue(NativeBuild.cpu_extensions().length == 0);
+        }
+    }
+
+    /**
+     * Every enabled mechanism reports an implementation; the reference build only runs "ref"
+     */
+    @Test
+    public void testImplementation() {
+        for (String alg : Sigs.get_enabled_sigs()) {
+            String impl = Sigs.get_implementation(alg);
+            assertTrue(impl.equals("ref") || impl.equals("avx2"), alg + ": " + impl);
+        }
+        for (String alg : KEMs.get_enabled_KEMs()) {
+            String impl = KEMs.get_implementation(alg);
+            assertTrue(impl.equals("ref") || impl.equals("avx2"), alg + ": " + impl);
+        }
+        assertThrows(MechanismNotEnabledError.class, () -> Sigs.get_implementation("NoSuchSig"));
+    }
+
+}
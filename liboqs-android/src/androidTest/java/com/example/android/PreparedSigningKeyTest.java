@@ -0,0 +1,58 @@
+package com.example.android;
+
+import com.example.liboqs.PreparedSigningKey;
+import com.example.liboqs.Signature;
+import com.example.liboqs.Verifier;
+
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PreparedSigningKeyTest {
+
+    private static final String SIG_NAME = "Dilithium2";
+
+    /**
+     * Signatures made with a prepared key must verify, and a closed key must not sign
+     */
+    @Test
+    public void testPreparedSign() {
+        Signature signer = new Signature(SIG_NAME);
+        byte[] public_key = signer.generate_keypair();
+        PreparedSigningKey prepared = new PreparedSigningKey(SIG_NAME, signer.export_secret_key());
+        try {
+            for (int i = 0; i < 3; i++) {
+                byte[] message = ("Message " + i).getBytes();
+                byte[] signature = prepared.sign(message);
+                assertTrue(signer.verify(message, signature, public_key));
+            }
+        } finally {
+            prepared.close();
+            signer.dispose_sig();
+        }
+        assertThrows(IllegalStateException.class, () -> prepared.sign("Message".getBytes()));
+    }
+
+    /**
+     * A signature made under a context verifies only under that same context
+     */
+    @Test
+    public void testContextSeparatesSignatures() {
+        Signature signer = new Signature(SIG_NAME);
+        byte[] public_key = signer.generate_keypair();
+        byte[] message = "Message".getBytes();
+        byte[] context = "TEST-CONTEXT".getBytes();
+        try (PreparedSigningKey prepared = new PreparedSigningKey(SIG_NAME, signer.export_secret_key())) {
+            byte[] signature = prepared.sign(message, context);
+            Verifier verifier = Verifier.get_instance();
+            assertTrue(verifier.verify(SIG_NAME, public_key, message, signature, context));
+            assertFalse(verifier.verify(SIG_NAME, public_key, message, signature));
+            assertFalse(verifier.verify(SIG_NAME, public_key, message, signature, "OTHER".getBytes()));
+            assertFalse(verifier.verify(SIG_NAME, public_key, message, prepared.sign(message), context));
+        } finally {
+            signer.dispose_sig();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.android;
+
+import com.example.liboqs.PreparedSigningKey;
+import com.example.liboqs.Signature;
+import com.example.liboqs.SignedLog;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SignedLogTest {
+
+    private static final String SIG_NAME = "Dilithium2";
+
+    private static byte[] writeLog(PreparedSigningKey key, int records, int every) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (SignedLog.Writer writer = new SignedLog.Writer(bos, key, every, 0)) {
+            for (int i = 0; i < records; i++) {
+                writer.append(("event " + i).getBytes());
+            }
+            assertEquals(records / every, writer.get_checkpoint_count());
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * A range is verified against the first checkpoint that covers it, and the
+     * whole log against the final checkpoint written by close()
+     */
+    @Test
+    public void testVerifyRanges() throws IOException {
+        Signature signer = new Signature(SIG_NAME);
+        byte[] public_key = signer.generate_keypair();
+        try (PreparedSigningKey key = new PreparedSigningKey(SIG_NAME, signer.export_secret_key())) {
+            byte[] log = writeLog(key, 25, 10);
+
+            List<Long> seen = new ArrayList<>();
+            SignedLog.Result range = SignedLog.verify(new ByteArrayInputStream(log), public_key, 3, 5,
+                    (index, timestamp_ms, payload) -> seen.add(index));
+            assertTrue(range.is_valid());
+            assertEquals(10, range.signed_records);
+            assertEquals(1, range.checkpoints_read);
+            assertEquals(2, seen.size());
+
+            SignedLog.Result all = SignedLog.verify(new ByteArrayInputStream(log), public_key, 0, -1, null);
+            assertTrue(all.is_valid());
+            assertEquals(25, all.signed_records);
+            assertEquals(3, all.checkpoints_read);
+        } finally {
+            signer.dispose_sig();
+        }
+    }
+
+    /**
+     * A modified record breaks the chain, and another key does not verify the checkpoints
+     */
+    @Test
+    public void testTamperedLog() throws IOException {
+        Signature signer = new Signature(SIG_NAME);
+        byte[] public_key = signer.generate_keypair();
+        Signature other = new Signature(SIG_NAME);
+        byte[] other_public_key = other.generate_keypair();
+        try (PreparedSigningKey key = new PreparedSigningKey(SIG_NAME, signer.export_secret_key())) {
+            byte[] log = writeLog(key, 5, 5);
+
+            assertEquals(SignedLog.Status.INVALID_SIGNATURE,
+                    SignedLog.verify(new ByteArrayInputStream(log), other_public_key, 0, -1, null).status);
+
+            String text = new String(log, "ISO-8859-1");
+            int at = text.indexOf("event 2") + "event ".length();
+            log[at] = '7';
+            assertEquals(SignedLog.Status.BROKEN_CHAIN,
+                    SignedLog.verify(new ByteArrayInputStream(log), public_key, 0, -1, null).status);
+        } finally {
+            signer.dispose_sig();
+            other.dispose_sig();
+        }
+    }
+}
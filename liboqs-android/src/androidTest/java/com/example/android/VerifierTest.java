@@ -0,0 +1,45 @@
+package com.example.android;
+
+import com.example.liboqs.PreparedPublicKey;
+import com.example.liboqs.Signature;
+import com.example.liboqs.Verifier;
+
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VerifierTest {
+
+    private static final String SIG_NAME = "Dilithium2";
+    private final byte[] message = "This is the message to sign".getBytes();
+
+    /**
+     * A prepared public key must accept the same signatures as Signature.verify
+     * and be reused for the same key
+     */
+    @Test
+    public void testPreparedVerify() {
+        Signature signer = new Signature(SIG_NAME);
+        byte[] public_key = signer.generate_keypair();
+        byte[] signature = signer.sign(message);
+        byte[] other = signer.sign("Another message".getBytes());
+        signer.dispose_sig();
+
+        Verifier verifier = new Verifier(2);
+        try {
+            assertTrue(verifier.verify(SIG_NAME, public_key, message, signature));
+            assertFalse(verifier.verify(SIG_NAME, public_key, message, other));
+            assertEquals(1, verifier.get_misses());
+            assertEquals(1, verifier.get_hits());
+
+            PreparedPublicKey prepared = verifier.prepare(SIG_NAME, public_key);
+            assertSame(prepared, verifier.prepare(SIG_NAME, public_key.clone()));
+            assertTrue(prepared.verify(message, signature));
+        } finally {
+            verifier.clear();
+        }
+    }
+}
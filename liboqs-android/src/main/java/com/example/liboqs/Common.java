@@ -1,7 +1,5 @@
 package com.example.liboqs;
 
-import android.os.Build;
-
 import java.util.Arrays;
 
 public class Common {
@@ -24,11 +22,64 @@ public class Common {
         return OS.contains("nux");
     }
 
-    public static void loadNativeLibrary() {
+    /**
+     * Reference wrapper (always shipped) and optimized wrapper (only for the ABIs whose
+     * liboqs was built with CPU extensions, see jni/Android.mk).
+     */
+    public static final String VARIANT_REFERENCE = "oqs-jni";
+    public static final String VARIANT_OPTIMIZED = "oqs-jni-opt";
+
+    private static String loaded_variant_ = null;
+    private static long load_nanos_ = 0;
+
+    /**
+     * \brief Loads the wrapper once per process, picking the optimized variant when the CPU
+     * supports it and falling back to the reference one if it is missing or fails to load
+     */
+    public static synchronized void loadNativeLibrary() {
+        if (loaded_variant_ != null) return;
+        long t0 = System.nanoTime();
+        String abi = CpuFeatures.get_abi();
+        String variant = VARIANT_REFERENCE;
+        if (cpu_supports_optimized(abi)) {
+            try {
+                System.loadLibrary(VARIANT_OPTIMIZED);
+                variant = VARIANT_OPTIMIZED;
+            } catch (UnsatisfiedLinkError e) {
+                // Variant not packaged for this ABI
+            }
+        }
+        if (variant.equals(VARIANT_REFERENCE)) {
+            System.loadLibrary(VARIANT_REFERENCE);
+        }
+        loaded_variant_ = variant;
+        load_nanos_ = System.nanoTime() - t0;
         System.err.println("---------------------------");
-        System.err.println("Loading liboqs for: " + Build.CPU_ABI);
+        System.err.println("Loading liboqs for: " + abi + " (" + variant + ")");
         System.err.println("---------------------------");
-        System.loadLibrary("oqs-jni");
+    }
+
+    /**
+     * \brief Wrapper variant loaded by loadNativeLibrary(), null if not loaded yet
+     */
+    public static synchronized String get_loaded_variant() {
+        return loaded_variant_;
+    }
+
+    /**
+     * \brief Time spent in loadNativeLibrary() loading the wrapper and liboqs, 0 if not loaded yet
+     */
+    public static synchronized long get_load_nanos() {
+        return load_nanos_;
+    }
+
+    // The optimized liboqs 0.5 code is x86_64 only (AVX2 + BMI2 + POPCNT, as checked by
+    // its own run-time dispatch); on ARM it would run the reference code anyway
+    private static boolean cpu_supports_optimized(String abi) {
+        if ("x86_64".equals(abi)) {
+            return CpuFeatures.has("avx2", "bmi2", "popcnt");
+        }
+        return false;
     }
 
     public static <E, T extends Iterable<E>> void print_list(T list) {
@@ -0,0 +1,78 @@
+package com.example.liboqs;
+
+import android.os.Build;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * \brief CPU features of the device, read from /proc/cpuinfo
+ *
+ * Used before any native library is loaded to pick the liboqs variant, so it can
+ * not depend on liboqs' own detection. x86 kernels list the features on "flags"
+ * lines and ARM kernels on "Features" lines; both are merged into one set.
+ */
+public class CpuFeatures {
+
+    private static final String CPUINFO = "/proc/cpuinfo";
+
+    private static Set<String> features_ = null;
+
+    private CpuFeatures() {}
+
+    /**
+     * \brief Primary ABI of the device (e.g. "arm64-v8a", "x86_64")
+     */
+    public static String get_abi() {
+        // Never empty since API 21, the minimum of this library
+        return Build.SUPPORTED_ABIS[0];
+    }
+
+    /**
+     * \brief Features reported by the kernel (lower case), empty if unreadable
+     */
+    public static synchronized Set<String> get_features() {
+        if (features_ == null) {
+            features_ = Collections.unmodifiableSet(read_features());
+        }
+        return features_;
+    }
+
+    /**
+     * \brief Checks whether the CPU reports every feature in \a names
+     */
+    public static boolean has(String... names) {
+        Set<String> features = get_features();
+        for (String name : names) {
+            if (!features.contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> read_features() {
+        Set<String> features = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(CPUINFO))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                String key = line.substring(0, colon).trim();
+                if (!key.equals("flags") && !key.equals("Features")) continue;
+                for (String f : line.substring(colon + 1).trim().split("\\s+")) {
+                    if (!f.isEmpty()) features.add(f.toLowerCase(Locale.ROOT));
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            // Unknown features: only the reference variant is used
+        }
+        return features;
+    }
+
+}
@@ -0,0 +1,291 @@
+package com.example.liboqs;
+
+import java.nio.ByteBuffer;
+
+/**
+ * \brief SHA-3 and SHAKE hashing backed by the Keccak code of liboqs
+ *
+ * Incremental init/update/final in the style of MessageDigest: do_final() returns the
+ * digest and leaves the object ready for the next message. Direct buffers are
+ * absorbed in place, without copying them into the Java heap.
+ *
+ * The OQS_SHA3_* functions are not part of the exported API of every liboqs build;
+ * the wrapper looks them up when the first Digest is created and, if they are not
+ * there (or the native library is not loaded, as in host unit tests), the same
+ * digests are computed by a Java Keccak. is_native() tells which one is in use.
+ *
+ * Not thread-safe: use one instance per thread.
+ */
+public class Digest implements AutoCloseable {
+
+    public static final String SHA3_256 = "SHA3-256";
+    public static final String SHA3_384 = "SHA3-384";
+    public static final String SHA3_512 = "SHA3-512";
+    public static final String SHAKE128 = "SHAKE128";
+    public static final String SHAKE256 = "SHAKE256";
+
+    /**
+     * Algorithm ids shared with jni/Digest.c
+     */
+    private static final int ID_SHA3_256 = 0;
+    private static final int ID_SHA3_384 = 1;
+    private static final int ID_SHA3_512 = 2;
+    private static final int ID_SHAKE128 = 3;
+    private static final int ID_SHAKE256 = 4;
+
+    private static final boolean NATIVE_AVAILABLE;
+
+    static {
+        boolean available;
+        try {
+            Common.loadNativeLibrary();
+            available = is_native_sha3_available();
+        } catch (UnsatisfiedLinkError | RuntimeException e) {
+            available = false;
+        }
+        NATIVE_AVAILABLE = available;
+    }
+
+    /**
+     * Keep native pointers for Java to remember which C memory it is managing.
+     */
+    private long native_digest_handle_;
+
+    private final String alg_name_;
+    private final int output_length_;
+    private final Keccak fallback_;
+    private final MechanismRegistry.Tracker family_tracker_;
+    private byte[] heap_copy_;
+    private boolean closed_;
+
+    /**
+     * \brief Constructs a digest with the standard output length (32 bytes for
+     * SHAKE128, 64 for SHAKE256)
+     */
+    public Digest(String alg_name) {
+        this(alg_name, default_output_length(alg_name));
+    }
+
+    /**
+     * \brief Constructs a digest
+     * \param alg_name One of SHA3_256, SHA3_384, SHA3_512, SHAKE128, SHAKE256
+     * \param output_length Bytes returned by do_final(); any positive length for
+     * SHAKE, the fixed length for SHA3
+     */
+    public Digest(String alg_name, int output_length) {
+        int id = id_of(alg_name);
+        boolean shake = id == ID_SHAKE128 || id == ID_SHAKE256;
+        if (output_length <= 0 || (!shake && output_length != default_output_length(alg_name))) {
+            throw new IllegalArgumentException("Invalid output length for " + alg_name + ": " + output_length);
+        }
+        this.alg_name_ = alg_name;
+        this.output_length_ = output_length;
+        this.family_tracker_ = new MechanismRegistry.Tracker(alg_name);
+        if (NATIVE_AVAILABLE && create_digest(id) == 0) {
+            this.fallback_ = null;
+        } else {
+            this.fallback_ = new Keccak(rate_of(id), shake ? (byte) 0x1f : (byte) 0x06);
+        }
+    }
+
+    /**
+     * \brief One-shot digest of data
+     */
+    public static byte[] digest(String alg_name, byte[] data) {
+        try (Digest d = new Digest(alg_name)) {
+            return d.do_final(data);
+        }
+    }
+
+    /**
+     * \brief True if the liboqs SHA3 functions were found in the loaded library
+     */
+    public static boolean is_native_available() {
+        return NATIVE_AVAILABLE;
+    }
+
+    /**
+     * \brief Checks that the OQS_SHA3_* functions can be resolved in liboqs
+     */
+    private static native boolean is_native_sha3_available();
+
+    /**
+     * \brief Allocates and initializes the incremental state stored in
+     * native_digest_handle_
+     * \return 0 on success, -1 otherwise
+     */
+    private native int create_digest(int alg_id);
+
+    /**
+     * \brief Releases the incremental state
+     */
+    private native void free_digest();
+
+    /**
+     * \brief Absorbs len bytes of data starting at off
+     */
+    private native void absorb(byte[] data, int off, int len);
+
+    /**
+     * \brief Absorbs len bytes of a direct buffer starting at off, in place
+     */
+    private native void absorb_direct(ByteBuffer buffer, int off, int len);
+
+    /**
+     * \brief Writes the digest into output and re-initializes the state
+     */
+    private native void finish(byte[] output, int output_len);
+
+    public String get_alg_name() {
+        return alg_name_;
+    }
+
+    public int get_output_length() {
+        return output_length_;
+    }
+
+    /**
+     * \brief True if this instance hashes with liboqs, false if with the Java fallback
+     */
+    public boolean is_native() {
+        return fallback_ == null;
+    }
+
+    public void update(byte[] data) {
+        update(data, 0, data.length);
+    }
+
+    public void update(byte[] data, int off, int len) {
+        check_open();
+        if (off < 0 || len < 0 || off > data.length - len) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) return;
+        if (fallback_ != null) {
+            fallback_.absorb(data, off, len);
+        } else {
+            MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+            try {
+                absorb(data, off, len);
+            } finally {
+                MechanismRegistry.end(first_use);
+            }
+        }
+    }
+
+    /**
+     * \brief Absorbs the remaining bytes of buffer and advances its position
+     */
+    public void update(ByteBuffer buffer) {
+        check_open();
+        int len = buffer.remaining();
+        if (len == 0) return;
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), len);
+        } else if (buffer.isDirect() && fallback_ == null) {
+            MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+            try {
+                absorb_direct(buffer, buffer.position(), len);
+            } finally {
+                MechanismRegistry.end(first_use);
+            }
+        } else {
+            // Read-only heap buffer, or direct buffer with the Java fallback
+            if (heap_copy_ == null) heap_copy_ = new byte[16 * 1024];
+            ByteBuffer view = buffer.duplicate();
+            while (view.hasRemaining()) {
+                int n = Math.min(view.remaining(), heap_copy_.length);
+                view.get(heap_copy_, 0, n);
+                update(heap_copy_, 0, n);
+            }
+        }
+        buffer.position(buffer.position() + len);
+    }
+
+    /**
+     * \brief Returns the digest and resets the state for the next message
+     */
+    public byte[] do_final() {
+        check_open();
+        byte[] output = new byte[output_length_];
+        if (fallback_ != null) {
+            fallback_.squeeze(output, 0, output.length);
+            fallback_.reset();
+        } else {
+            MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+            try {
+                finish(output, output.length);
+            } finally {
+                MechanismRegistry.end(first_use);
+            }
+        }
+        return output;
+    }
+
+    public byte[] do_final(byte[] data) {
+        update(data);
+        return do_final();
+    }
+
+    /**
+     * \brief Discards the data absorbed so far
+     */
+    public void reset() {
+        check_open();
+        if (fallback_ != null) {
+            fallback_.reset();
+        } else {
+            finish(new byte[output_length_], output_length_);
+        }
+    }
+
+    /**
+     * \brief Frees the native state
+     */
+    @Override
+    public void close() {
+        if (closed_) return;
+        closed_ = true;
+        if (fallback_ == null) {
+            free_digest();
+        }
+    }
+
+    private void check_open() {
+        if (closed_) throw new IllegalStateException("Digest is closed");
+    }
+
+    private static int id_of(String alg_name) {
+        switch (alg_name) {
+            case SHA3_256: return ID_SHA3_256;
+            case SHA3_384: return ID_SHA3_384;
+            case SHA3_512: return ID_SHA3_512;
+            case SHAKE128: return ID_SHAKE128;
+            case SHAKE256: return ID_SHAKE256;
+            default: throw new IllegalArgumentException("Unsupported digest: " + alg_name);
+        }
+    }
+
+    private static int default_output_length(String alg_name) {
+        switch (id_of(alg_name)) {
+            case ID_SHA3_256: return 32;
+            case ID_SHA3_384: return 48;
+            case ID_SHA3_512: return 64;
+            case ID_SHAKE128: return 32;
+            default: return 64;
+        }
+    }
+
+    /**
+     * Bytes absorbed per permutation: 200 - 2 * security level in bytes
+     */
+    private static int rate_of(int id) {
+        switch (id) {
+            case ID_SHA3_256: return 136;
+            case ID_SHA3_384: return 104;
+            case ID_SHA3_512: return 72;
+            case ID_SHAKE128: return 168;
+            default: return 136;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.liboqs;
+
+/**
+ * \brief Encapsulator with a bounded cache of prepared recipient public keys
+ *
+ * Prepared keys are looked up by algorithm and public key fingerprint (SHA-256);
+ * the least recently used one is disposed when the cache is full. Meant for
+ * senders that encapsulate many times to a small set of recipients.
+ */
+public class Encapsulator {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static volatile Encapsulator instance;
+
+    private final PreparedKeyCache<PreparedEncapsulationKey> keys_;
+
+    /**
+     * \brief Constructs an encapsulator whose cache holds up to capacity prepared keys
+     */
+    public Encapsulator(int capacity) {
+        this.keys_ = new PreparedKeyCache<PreparedEncapsulationKey>(capacity) {
+            @Override
+            PreparedEncapsulationKey create(String alg_name, byte[] key) {
+                return new PreparedEncapsulationKey(alg_name, key);
+            }
+
+            @Override
+            boolean is_disposed(PreparedEncapsulationKey prepared) {
+                return prepared.is_disposed();
+            }
+
+            @Override
+            void dispose(PreparedEncapsulationKey prepared) {
+                prepared.dispose();
+            }
+        };
+    }
+
+    /**
+     * \brief Process-wide encapsulator with DEFAULT_CAPACITY keys
+     */
+    public static Encapsulator get_instance() {
+        if (instance == null) {
+            synchronized (Encapsulator.class) {
+                if (instance == null) {
+                    instance = new Encapsulator(DEFAULT_CAPACITY);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * \brief Return the prepared key for (alg_name, public_key), preparing it on a miss
+     */
+    public PreparedEncapsulationKey prepare(String alg_name, byte[] public_key) throws RuntimeException {
+        return keys_.get(alg_name, public_key);
+    }
+
+    /**
+     * \brief Encapsulate a fresh secret, reusing the prepared key for public_key if cached
+     * \return Pair <ciphertext, shared secret>
+     */
+    public Pair<byte[], byte[]> encap_secret(String alg_name, byte[] public_key) throws RuntimeException {
+        try {
+            return prepare(alg_name, public_key).encap_secret();
+        } catch (IllegalStateException e) {
+            // Evicted between prepare() and encap_secret(): prepare it again
+            return prepare(alg_name, public_key).encap_secret();
+        }
+    }
+
+    public long get_hits() {
+        return keys_.hits();
+    }
+
+    public long get_misses() {
+        return keys_.misses();
+    }
+
+    public int size() {
+        return keys_.size();
+    }
+
+    /**
+     * \brief Dispose every cached prepared key
+     */
+    public void clear() {
+        keys_.clear();
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.example.liboqs;
+
+/**
+ * \brief Keccak-f[1600] sponge (FIPS 202) used by Digest when the native SHA3 of
+ * liboqs is not available
+ */
+final class Keccak {
+
+    private static final long[] ROUND_CONSTANTS = {
+        0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL, 0x8000000080008000L,
+        0x000000000000808bL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+        0x000000000000008aL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
+        0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L, 0x8000000000008003L,
+        0x8000000000008002L, 0x8000000000000080L, 0x000000000000800aL, 0x800000008000000aL,
+        0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L,
+    };
+
+    private static final int[] ROTATIONS = {
+         0,  1, 62, 28, 27,
+        36, 44,  6, 55, 20,
+         3, 10, 43, 25, 39,
+        41, 45, 15, 21,  8,
+        18,  2, 61, 56, 14,
+    };
+
+    private final long[] state_ = new long[25];
+    private final long[] scratch_ = new long[25];
+    private final int rate_;
+    private final byte suffix_;
+    private int offset_;
+    private boolean squeezing_;
+
+    /**
+     * \param rate Bytes absorbed per permutation
+     * \param suffix Domain separation bits: 0x06 for SHA3, 0x1f for SHAKE
+     */
+    Keccak(int rate, byte suffix) {
+        this.rate_ = rate;
+        this.suffix_ = suffix;
+    }
+
+    void reset() {
+        java.util.Arrays.fill(state_, 0L);
+        offset_ = 0;
+        squeezing_ = false;
+    }
+
+    void absorb(byte[] data, int off, int len) {
+        if (squeezing_) throw new IllegalStateException("Keccak is squeezing");
+        while (len > 0) {
+            if (offset_ == 0 && len >= rate_ && (rate_ & 7) == 0) {
+                // Whole blocks straight into the lanes
+                for (int i = 0; i < rate_ >> 3; i++) {
+                    state_[i] ^= le_long(data, off + (i << 3));
+                }
+                permute();
+                off += rate_;
+                len -= rate_;
+                continue;
+            }
+            int n = Math.min(len, rate_ - offset_);
+            for (int i = 0; i < n; i++) {
+                xor_byte(offset_ + i, data[off + i]);
+            }
+            offset_ += n;
+            off += n;
+            len -= n;
+            if (offset_ == rate_) {
+                permute();
+                offset_ = 0;
+            }
+        }
+    }
+
+    void squeeze(byte[] out, int off, int len) {
+        if (!squeezing_) {
+            xor_byte(offset_, suffix_);
+            xor_byte(rate_ - 1, (byte) 0x80);
+            permute();
+            offset_ = 0;
+            squeezing_ = true;
+        }
+        while (len > 0) {
+            if (offset_ == rate_) {
+                permute();
+                offset_ = 0;
+            }
+            int n = Math.min(len, rate_ - offset_);
+            for (int i = 0; i < n; i++) {
+                int pos = offset_ + i;
+                out[off + i] = (byte) (state_[pos >> 3] >>> ((pos & 7) << 3));
+            }
+            offset_ += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void xor_byte(int pos, byte b) {
+        state_[pos >> 3] ^= (b & 0xffL) << ((pos & 7) << 3);
+    }
+
+    private static long le_long(byte[] b, int off) {
+        return (b[off] & 0xffL)
+                | (b[off + 1] & 0xffL) << 8
+                | (b[off + 2] & 0xffL) << 16
+                | (b[off + 3] & 0xffL) << 24
+                | (b[off + 4] & 0xffL) << 32
+                | (b[off + 5] & 0xffL) << 40
+                | (b[off + 6] & 0xffL) << 48
+                | (b[off + 7] & 0xffL) << 56;
+    }
+
+    private void permute() {
+        long[] a = state_;
+        long[] b = scratch_;
+        for (int round = 0; round < 24; round++) {
+            // theta
+            long c0 = a[0] ^ a[5] ^ a[10] ^ a[15] ^ a[20];
+            long c1 = a[1] ^ a[6] ^ a[11] ^ a[16] ^ a[21];
+            long c2 = a[2] ^ a[7] ^ a[12] ^ a[17] ^ a[22];
+            long c3 = a[3] ^ a[8] ^ a[13] ^ a[18] ^ a[23];
+            long c4 = a[4] ^ a[9] ^ a[14] ^ a[19] ^ a[24];
+            long d0 = c4 ^ Long.rotateLeft(c1, 1);
+            long d1 = c0 ^ Long.rotateLeft(c2, 1);
+            long d2 = c1 ^ Long.rotateLeft(c3, 1);
+            long d3 = c2 ^ Long.rotateLeft(c4, 1);
+            long d4 = c3 ^ Long.rotateLeft(c0, 1);
+            for (int y = 0; y < 25; y += 5) {
+                a[y] ^= d0;
+                a[y + 1] ^= d1;
+                a[y + 2] ^= d2;
+                a[y + 3] ^= d3;
+                a[y + 4] ^= d4;
+            }
+            // rho and pi: lane (x, y) moves to (y, 2x + 3y)
+            for (int x = 0; x < 5; x++) {
+                for (int y = 0; y < 5; y++) {
+                    int from = x + 5 * y;
+                    b[y + 5 * ((2 * x + 3 * y) % 5)] = Long.rotateLeft(a[from], ROTATIONS[from]);
+                }
+            }
+            // chi
+            for (int y = 0; y < 25; y += 5) {
+                for (int x = 0; x < 5; x++) {
+                    a[y + x] = b[y + x] ^ (~b[y + (x + 1) % 5] & b[y + (x + 2) % 5]);
+                }
+            }
+            // iota
+            a[0] ^= ROUND_CONSTANTS[round];
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.liboqs;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -52,6 +53,11 @@ public class KeyEncapsulation {
      */
     private KeyEncapsulationDetails alg_details_;
 
+    /**
+     * Reports the first use of the family in this process, see MechanismRegistry.
+     */
+    private final MechanismRegistry.Tracker family_tracker_;
+
     /**
      * \brief Constructs an instance of oqs::KeyEncapsulation
      * \param alg_name Cryptographic algorithm method_name
@@ -78,6 +84,7 @@ public class KeyEncapsulation {
         }
         create_KEM_new(alg_name);
         alg_details_ = get_KEM_details();
+        family_tracker_ = new MechanismRegistry.Tracker(alg_name);
         // initialize keys
         if (secret_key != null) {
             this.secret_key_ = Arrays.copyOf(secret_key, secret_key.length);
@@ -119,26 +126,48 @@ public class KeyEncapsulation {
      *                                               uint8_t *ciphertext,
      *                                               uint8_t *shared_secret,
      *                                               const uint8_t *public_key);
-     * \param ciphertext
-     * \param shared secret>
+     * Writes into the arrays at the given offsets (bounds checked by the caller).
      * \param Public key
+     * \param ciphertext
+     * \param ciphertext_offset
+     * \param shared_secret
+     * \param shared_secret_offset
      * \return Status
      */
-    private native int encap_secret(byte[] ciphertext, byte[] shared_secret,
-                                    byte[] public_key);
+    private native int encap_secret_into(byte[] public_key,
+                                         byte[] ciphertext, int ciphertext_offset,
+                                         byte[] shared_secret, int shared_secret_offset);
+
+    /**
+     * \brief Same as encap_secret_into, writing into direct ByteBuffers at absolute offsets
+     */
+    private native int encap_secret_direct(byte[] public_key,
+                                           ByteBuffer ciphertext, int ciphertext_offset,
+                                           ByteBuffer shared_secret, int shared_secret_offset);
 
     /**
      * \brief Wrapper for OQS_API OQS_STATUS OQS_KEM_decaps(const OQS_KEM *kem,
      *                                          uint8_t *shared_secret,
      *                                          const unsigned char *ciphertext,
      *                                          const uint8_t *secret_key);
-     * \param shared_secret
+     * Reads and writes the arrays at the given offsets (bounds checked by the caller).
      * \param ciphertext
+     * \param ciphertext_offset
+     * \param shared_secret
+     * \param shared_secret_offset
      * \param secret_key
      * \return Status
      */
-    private native int decap_secret(byte[] shared_secret, byte[] ciphertext,
-                                    byte[] secret_key);
+    private native int decap_secret_into(byte[] ciphertext, int ciphertext_offset,
+                                         byte[] shared_secret, int shared_secret_offset,
+                                         byte[] secret_key);
+
+    /**
+     * \brief Same as decap_secret_into, on direct ByteBuffers at absolute offsets
+     */
+    private native int decap_secret_direct(ByteBuffer ciphertext, int ciphertext_offset,
+                                           ByteBuffer shared_secret, int shared_secret_offset,
+                                           byte[] secret_key);
 
     /**
      * \brief Invoke native free_KEM
@@ -154,7 +183,13 @@ public class KeyEncapsulation {
      * from alg_details_. Check return value and if != 0 throw Exception.
      */
     public byte[] generate_keypair() throws RuntimeException {
-        int rv_ = generate_keypair(this.public_key_, this.secret_key_);
+        MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+        int rv_;
+        try {
+            rv_ = generate_keypair(this.public_key_, this.secret_key_);
+        } finally {
+            MechanismRegistry.end(first_use);
+        }
         if (rv_ != 0) throw new RuntimeException("Cannot generate keypair");
         return this.public_key_;
     }
@@ -173,6 +208,20 @@ public class KeyEncapsulation {
         return this.secret_key_;
     }
 
+    /**
+     * \brief Ciphertext length in bytes
+     */
+    public int get_length_ciphertext() {
+        return (int) alg_details_.length_ciphertext;
+    }
+
+    /**
+     * \brief Shared secret length in bytes
+     */
+    public int get_length_shared_secret() {
+        return (int) alg_details_.length_shared_secret;
+    }
+
     /**
      * \brief Invoke native encap_secret method
      * \param Public key
@@ -180,18 +229,70 @@ public class KeyEncapsulation {
      */
     public Pair<byte[], byte[]> encap_secret(byte[] public_key)
                                                     throws RuntimeException {
-        if (public_key.length != alg_details_.length_public_key) {
-            throw new RuntimeException("Incorrect public key length");
-        }
-
-        byte[] ciphertext = new byte[(int) alg_details_.length_ciphertext];
-        byte[] shared_secret = new byte[(int) alg_details_.length_shared_secret];
+        byte[] ciphertext = new byte[get_length_ciphertext()];
+        byte[] shared_secret = new byte[get_length_shared_secret()];
+        encap_secret(public_key, ciphertext, 0, shared_secret, 0);
+        return new Pair<>(ciphertext, shared_secret);
+    }
 
-        int rv_= encap_secret(ciphertext, shared_secret, public_key);
+    /**
+     * \brief Encapsulate a secret into caller-owned arrays, without allocating
+     * \param public_key Public key
+     * \param ciphertext Receives get_length_ciphertext() bytes at ciphertext_offset
+     * \param ciphertext_offset
+     * \param shared_secret Receives get_length_shared_secret() bytes at shared_secret_offset
+     * \param shared_secret_offset
+     */
+    public void encap_secret(byte[] public_key,
+                             byte[] ciphertext, int ciphertext_offset,
+                             byte[] shared_secret, int shared_secret_offset)
+                                                    throws RuntimeException {
+        check_public_key(public_key);
+        check_range(ciphertext.length, ciphertext_offset, get_length_ciphertext(), "ciphertext");
+        check_range(shared_secret.length, shared_secret_offset, get_length_shared_secret(), "shared secret");
+        MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+        int rv_;
+        try {
+            rv_ = encap_secret_into(public_key, ciphertext, ciphertext_offset,
+                                    shared_secret, shared_secret_offset);
+        } finally {
+            MechanismRegistry.end(first_use);
+        }
+        if (rv_ != 0) throw new RuntimeException("Cannot encapsulate secret");
+    }
 
-        Pair<byte[], byte[]> pair = new Pair<>(ciphertext, shared_secret);
+    /**
+     * \brief Encapsulate a secret into ByteBuffers (direct or array-backed) at
+     * their current positions, which are advanced past the written bytes
+     * \param public_key Public key
+     * \param ciphertext Receives get_length_ciphertext() bytes
+     * \param shared_secret Receives get_length_shared_secret() bytes
+     */
+    public void encap_secret(byte[] public_key, ByteBuffer ciphertext, ByteBuffer shared_secret)
+                                                    throws RuntimeException {
+        check_public_key(public_key);
+        int ct_len = get_length_ciphertext();
+        int ss_len = get_length_shared_secret();
+        check_writable(ciphertext, ct_len, "ciphertext");
+        check_writable(shared_secret, ss_len, "shared secret");
+        check_same_kind(ciphertext, shared_secret);
+        MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+        int rv_;
+        try {
+            if (ciphertext.isDirect() && shared_secret.isDirect()) {
+                rv_ = encap_secret_direct(public_key, ciphertext, ciphertext.position(),
+                                          shared_secret, shared_secret.position());
+            } else {
+                rv_ = encap_secret_into(public_key,
+                        ciphertext.array(), ciphertext.arrayOffset() + ciphertext.position(),
+                        shared_secret.array(), shared_secret.arrayOffset() + shared_secret.position());
+            }
+        } finally {
+            MechanismRegistry.end(first_use);
+        }
         if (rv_ != 0) throw new RuntimeException("Cannot encapsulate secret");
-        return pair;
+        ciphertext.position(ciphertext.position() + ct_len);
+        shared_secret.position(shared_secret.position() + ss_len);
     }
 
     /**
@@ -203,15 +304,104 @@ public class KeyEncapsulation {
         if (ciphertext.length != alg_details_.length_ciphertext) {
             throw new RuntimeException("Incorrect ciphertext length");
         }
+        byte[] shared_secret = new byte[get_length_shared_secret()];
+        decap_secret(ciphertext, 0, shared_secret, 0);
+        return shared_secret;
+    }
+
+    /**
+     * \brief Decapsulate a secret into a caller-owned array, without allocating
+     * \param ciphertext Holds get_length_ciphertext() bytes at ciphertext_offset
+     * \param ciphertext_offset
+     * \param shared_secret Receives get_length_shared_secret() bytes at shared_secret_offset
+     * \param shared_secret_offset
+     */
+    public void decap_secret(byte[] ciphertext, int ciphertext_offset,
+                             byte[] shared_secret, int shared_secret_offset)
+                                                    throws RuntimeException {
+        check_secret_key();
+        check_range(ciphertext.length, ciphertext_offset, get_length_ciphertext(), "ciphertext");
+        check_range(shared_secret.length, shared_secret_offset, get_length_shared_secret(), "shared secret");
+        MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+        int rv_;
+        try {
+            rv_ = decap_secret_into(ciphertext, ciphertext_offset,
+                                    shared_secret, shared_secret_offset, this.secret_key_);
+        } finally {
+            MechanismRegistry.end(first_use);
+        }
+        if (rv_ != 0) throw new RuntimeException("Cannot decapsulate secret");
+    }
+
+    /**
+     * \brief Decapsulate a secret from ByteBuffers (direct or array-backed) at
+     * their current positions, which are advanced past the bytes read and written
+     * \param ciphertext Holds get_length_ciphertext() bytes
+     * \param shared_secret Receives get_length_shared_secret() bytes
+     */
+    public void decap_secret(ByteBuffer ciphertext, ByteBuffer shared_secret)
+                                                    throws RuntimeException {
+        check_secret_key();
+        int ct_len = get_length_ciphertext();
+        int ss_len = get_length_shared_secret();
+        if (ciphertext.remaining() < ct_len) {
+            throw new IllegalArgumentException("Not enough ciphertext bytes remaining");
+        }
+        check_writable(shared_secret, ss_len, "shared secret");
+        check_same_kind(ciphertext, shared_secret);
+        MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+        int rv_;
+        try {
+            if (ciphertext.isDirect() && shared_secret.isDirect()) {
+                rv_ = decap_secret_direct(ciphertext, ciphertext.position(),
+                                          shared_secret, shared_secret.position(), this.secret_key_);
+            } else {
+                rv_ = decap_secret_into(ciphertext.array(), ciphertext.arrayOffset() + ciphertext.position(),
+                        shared_secret.array(), shared_secret.arrayOffset() + shared_secret.position(),
+                        this.secret_key_);
+            }
+        } finally {
+            MechanismRegistry.end(first_use);
+        }
+        if (rv_ != 0) throw new RuntimeException("Cannot decapsulate secret");
+        ciphertext.position(ciphertext.position() + ct_len);
+        shared_secret.position(shared_secret.position() + ss_len);
+    }
+
+    private void check_public_key(byte[] public_key) {
+        if (public_key.length != alg_details_.length_public_key) {
+            throw new RuntimeException("Incorrect public key length");
+        }
+    }
+
+    private void check_secret_key() {
         if (this.secret_key_.length != alg_details_.length_secret_key) {
             throw new RuntimeException("Incorrect secret key length, " +
                                     "make sure you specify one in the " +
                                     "constructor or run generate_keypair()");
         }
-        byte[] shared_secret = new byte[(int)alg_details_.length_shared_secret];
-        int rv_ = decap_secret(shared_secret, ciphertext, this.secret_key_);
-        if (rv_ != 0) throw new RuntimeException("Cannot decapsulate secret");
-        return shared_secret;
+    }
+
+    private static void check_range(int array_length, int offset, int length, String what) {
+        if (offset < 0 || offset > array_length - length) {
+            throw new IndexOutOfBoundsException("No room for the " + what + " at offset " + offset);
+        }
+    }
+
+    private static void check_same_kind(ByteBuffer ciphertext, ByteBuffer shared_secret) {
+        boolean direct = ciphertext.isDirect() && shared_secret.isDirect();
+        if (!direct && !(ciphertext.hasArray() && shared_secret.hasArray())) {
+            throw new IllegalArgumentException("Buffers must be both direct or both array-backed");
+        }
+    }
+
+    private static void check_writable(ByteBuffer buffer, int length, String what) {
+        if (buffer.isReadOnly()) {
+            throw new IllegalArgumentException("Read-only " + what + " buffer");
+        }
+        if (buffer.remaining() < length) {
+            throw new IllegalArgumentException("Not enough room for the " + what);
+        }
     }
 
     /**
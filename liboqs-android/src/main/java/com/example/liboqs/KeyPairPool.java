@@ -0,0 +1,271 @@
+package com.example.liboqs;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * \brief Pool of pre-generated key pairs for one mechanism
+ *
+ * Key generation for large-parameter schemes (SLH-DSA, Classic McEliece...) can take
+ * seconds. The pool generates key pairs ahead of time on low-priority background
+ * threads and hands them out with take(), which only generates synchronously when
+ * the pool is empty (a miss). Whenever the number of pooled pairs drops below the
+ * low-water mark a refill up to the capacity is scheduled.
+ *
+ * Pooled secret keys are held in plain byte arrays that are wiped when the pool is
+ * closed; a pair handed out belongs to the caller, who should wipe() it when done.
+ */
+public class KeyPairPool implements AutoCloseable {
+
+    /**
+     * \brief A generated key pair. The secret key can be wiped in place.
+     */
+    public static class KeyPair {
+        public final byte[] public_key;
+        public final byte[] secret_key;
+
+        KeyPair(byte[] public_key, byte[] secret_key) {
+            this.public_key = public_key;
+            this.secret_key = secret_key;
+        }
+
+        /**
+         * \brief Overwrite the secret key with zeros
+         */
+        public void wipe() {
+            Common.wipe(this.secret_key);
+        }
+    }
+
+    /**
+     * \brief Generates one key pair (must be safe to call from several threads)
+     */
+    public interface Generator {
+        KeyPair generate() throws RuntimeException;
+    }
+
+    /**
+     * \brief Pool counters
+     */
+    public static class Stats {
+        public final int available;
+        public final long hits;
+        public final long misses;
+        public final long generated;
+        public final long refills;
+        public final double mean_generation_ms;
+
+        Stats(int available, long hits, long misses, long generated, long refills,
+              double mean_generation_ms) {
+            this.available = available;
+            this.hits = hits;
+            this.misses = misses;
+            this.generated = generated;
+            this.refills = refills;
+            this.mean_generation_ms = mean_generation_ms;
+        }
+    }
+
+    /**
+     * Shared background executor: at most one thread per core minus one (the UI
+     * thread keeps a core), at minimum priority so that refills use idle cores only.
+     */
+    private static final Executor REFILL_EXECUTOR;
+
+    static {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger n = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "oqs-keygen-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MIN_PRIORITY);
+                        return t;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        REFILL_EXECUTOR = pool;
+    }
+
+    private final String alg_name_;
+    private final Generator generator_;
+    private final int capacity_;
+    private final int low_water_;
+    private final ArrayBlockingQueue<KeyPair> pairs_;
+    private final AtomicBoolean refilling_ = new AtomicBoolean();
+    private volatile boolean closed_;
+
+    private final AtomicLong hits_ = new AtomicLong();
+    private final AtomicLong misses_ = new AtomicLong();
+    private final AtomicLong generated_ = new AtomicLong();
+    private final AtomicLong refills_ = new AtomicLong();
+    private final AtomicLong generation_nanos_ = new AtomicLong();
+
+    /**
+     * \brief Constructs a pool around an arbitrary generator
+     * \param alg_name Mechanism name (informational)
+     * \param generator Key pair generator
+     * \param capacity Maximum number of pooled key pairs
+     * \param low_water Refill when fewer than this many pairs are pooled
+     */
+    public KeyPairPool(String alg_name, Generator generator, int capacity, int low_water) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity < 1");
+        if (low_water < 0 || low_water > capacity) {
+            throw new IllegalArgumentException("low_water must be in [0, capacity]");
+        }
+        this.alg_name_ = alg_name;
+        this.generator_ = generator;
+        this.capacity_ = capacity;
+        this.low_water_ = low_water;
+        this.pairs_ = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * \brief Pool of signature key pairs
+     */
+    public static KeyPairPool for_signature(final String alg_name, int capacity, int low_water) {
+        // Fail early (and on the caller's thread) if the mechanism is not available
+        new Signature(alg_name).dispose_sig();
+        return new KeyPairPool(alg_name, new Generator() {
+            @Override
+            public KeyPair generate() {
+                Signature sig = new Signature(alg_name);
+                try {
+                    byte[] pk = sig.generate_keypair().clone();
+                    byte[] sk = sig.export_secret_key().clone();
+                    return new KeyPair(pk, sk);
+                } finally {
+                    sig.dispose_sig(); // wipes the instance's copy of the secret key
+                }
+            }
+        }, capacity, low_water);
+    }
+
+    /**
+     * \brief Pool of KEM key pairs
+     */
+    public static KeyPairPool for_KEM(final String alg_name, int capacity, int low_water) {
+        new KeyEncapsulation(alg_name).dispose_KEM();
+        return new KeyPairPool(alg_name, new Generator() {
+            @Override
+            public KeyPair generate() {
+                KeyEncapsulation kem = new KeyEncapsulation(alg_name);
+                try {
+                    byte[] pk = kem.generate_keypair().clone();
+                    byte[] sk = kem.export_secret_key().clone();
+                    return new KeyPair(pk, sk);
+                } finally {
+                    kem.dispose_KEM();
+                }
+            }
+        }, capacity, low_water);
+    }
+
+    public String get_alg_name() {
+        return alg_name_;
+    }
+
+    /**
+     * \brief Fill the pool up to its capacity in the background
+     */
+    public void prefill() {
+        schedule_refill();
+    }
+
+    /**
+     * \brief Take a key pair; generates one on the calling thread if the pool is empty
+     * \return Key pair owned by the caller
+     */
+    public KeyPair take() throws RuntimeException {
+        if (closed_) throw new IllegalStateException("KeyPairPool is closed");
+        KeyPair kp = pairs_.poll();
+        if (kp != null) {
+            hits_.incrementAndGet();
+        } else {
+            misses_.incrementAndGet();
+            kp = generate();
+        }
+        if (pairs_.size() < low_water_) {
+            schedule_refill();
+        }
+        return kp;
+    }
+
+    /**
+     * \brief Take a pooled key pair without generating
+     * \return Key pair owned by the caller, or null if the pool is empty
+     */
+    public KeyPair poll() {
+        if (closed_) return null;
+        KeyPair kp = pairs_.poll();
+        if (kp != null) {
+            hits_.incrementAndGet();
+            if (pairs_.size() < low_water_) {
+                schedule_refill();
+            }
+        }
+        return kp;
+    }
+
+    public Stats get_stats() {
+        long gen = generated_.get();
+        return new Stats(pairs_.size(), hits_.get(), misses_.get(), gen, refills_.get(),
+                gen > 0 ? generation_nanos_.get() / 1_000_000.0 / gen : 0);
+    }
+
+    /**
+     * \brief Stop refilling and wipe every pooled secret key
+     */
+    @Override
+    public void close() {
+        closed_ = true;
+        KeyPair kp;
+        while ((kp = pairs_.poll()) != null) {
+            kp.wipe();
+        }
+    }
+
+    private KeyPair generate() {
+        long t0 = System.nanoTime();
+        KeyPair kp = generator_.generate();
+        generation_nanos_.addAndGet(System.nanoTime() - t0);
+        generated_.incrementAndGet();
+        return kp;
+    }
+
+    private void schedule_refill() {
+        if (closed_ || !refilling_.compareAndSet(false, true)) return;
+        refills_.incrementAndGet();
+        REFILL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!closed_ && pairs_.size() < capacity_) {
+                        KeyPair kp = generate();
+                        if (closed_ || !pairs_.offer(kp)) {
+                            kp.wipe();
+                            break;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // The next take() falls back to synchronous generation
+                } finally {
+                    refilling_.set(false);
+                }
+                // close() may have raced with the last offer
+                if (closed_) close();
+            }
+        });
+    }
+}
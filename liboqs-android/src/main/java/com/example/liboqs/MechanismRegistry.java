@@ -0,0 +1,300 @@
+package com.example.liboqs;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * \brief Registry of the algorithm families and of their first use
+ *
+ * The wrapper and liboqs are loaded once (the core, see Common.loadNativeLibrary()),
+ * but the code and tables of a family (Dilithium, Falcon, SPHINCS+, Kyber,
+ * Classic McEliece...) are only paged in by the kernel when the family first runs.
+ * Signature, KeyEncapsulation, the Prepared* keys (and so Verifier) and the native
+ * Digest report their first operation per family here, so that the cost of bringing
+ * each family in (time and resident native memory, read from /proc/self/smaps for
+ * the liboqs mappings) is measured separately from the cost of loading the core.
+ * The clock starts right before that first native operation, not when the object
+ * is constructed, so idle time is not counted and a family whose first instance is
+ * never used is still reported by the next one that is.
+ */
+public class MechanismRegistry {
+
+    /**
+     * \brief Cost of loading the core or of the first use of a family
+     */
+    public static class FamilyStats {
+        public final String family;
+        public final List<String> mechanisms;
+        public final double load_ms;
+        public final long resident_bytes;
+
+        FamilyStats(String family, List<String> mechanisms, double load_ms, long resident_bytes) {
+            this.family = family;
+            this.mechanisms = mechanisms;
+            this.load_ms = load_ms;
+            this.resident_bytes = resident_bytes;
+        }
+    }
+
+    /**
+     * \brief Notified once per family, after its first operation
+     */
+    public interface Listener {
+        void on_family_loaded(FamilyStats stats);
+    }
+
+    /**
+     * \brief First operation of a family in progress; end() must be called once it returns
+     * or throws, so a failed first operation still marks the family loaded
+     */
+    static final class FirstUse {
+        private final Family family_;
+        private final long start_nanos_;
+        private final long resident_before_;
+
+        FirstUse(Family family, long start_nanos, long resident_before) {
+            this.family_ = family;
+            this.start_nanos_ = start_nanos;
+            this.resident_before_ = resident_before;
+        }
+
+        void end() {
+            long nanos = System.nanoTime() - start_nanos_;
+            long resident = Math.max(0, resident_native_bytes() - resident_before_);
+            get_instance().family_loaded(family_, nanos, resident);
+        }
+    }
+
+    /**
+     * \brief Per-instance gate in front of the native operations of a mechanism: only
+     * the first call of the instance asks the registry, later ones read a flag
+     */
+    static final class Tracker {
+        private final String alg_name_;
+        private volatile boolean checked_;
+
+        Tracker(String alg_name) {
+            this.alg_name_ = alg_name;
+        }
+
+        /**
+         * \brief Called right before a native operation
+         * \return The FirstUse to pass to MechanismRegistry.end() after it, or null
+         */
+        FirstUse begin() {
+            if (checked_) return null;
+            checked_ = true;
+            return get_instance().begin(alg_name_);
+        }
+    }
+
+    private static final class Family {
+        final String name;
+        final TreeSet<String> mechanisms = new TreeSet<>();
+        boolean started;
+        boolean loaded;
+        long load_nanos;
+        long resident_bytes;
+
+        Family(String name) {
+            this.name = name;
+        }
+    }
+
+    public static final String CORE = "core";
+
+    // Mechanism name prefix -> family; the names are those of liboqs 0.5
+    private static final String[][] FAMILY_PREFIXES = {
+            {"DILITHIUM_", "dilithium"}, {"Dilithium", "dilithium"},
+            {"Falcon-", "falcon"},
+            {"SPHINCS+-", "sphincs"},
+            {"picnic", "picnic"},
+            {"Rainbow-", "rainbow"},
+            {"Kyber", "kyber"},
+            {"Classic-McEliece-", "mceliece"},
+            {"BIKE", "bike"},
+            {"HQC-", "hqc"},
+            {"NTRU-", "ntru"},
+            {"ntrulpr", "ntruprime"}, {"sntrup", "ntruprime"},
+            {"LightSaber", "saber"}, {"Saber", "saber"}, {"FireSaber", "saber"},
+            {"FrodoKEM-", "frodokem"},
+            {"SIDH-", "sike"}, {"SIKE-", "sike"},
+            {"SHA3-", "sha3"}, {"SHAKE", "sha3"},
+    };
+
+    private static final String SMAPS = "/proc/self/smaps";
+
+    private static MechanismRegistry single_instance = null;
+
+    private final Map<String, Family> families_ = new LinkedHashMap<>();
+    private Listener listener_;
+
+    private MechanismRegistry() {}
+
+    public static synchronized MechanismRegistry get_instance() {
+        if (single_instance == null) {
+            single_instance = new MechanismRegistry();
+        }
+        return single_instance;
+    }
+
+    /**
+     * \brief Family of the mechanism \a alg_name (its own name if not known)
+     */
+    public static String family_of(String alg_name) {
+        for (String[] prefix : FAMILY_PREFIXES) {
+            if (alg_name.startsWith(prefix[0])) {
+                return prefix[1];
+            }
+        }
+        return alg_name;
+    }
+
+    /**
+     * \brief Listener for families loaded from now on; the ones already loaded are
+     * reported immediately
+     */
+    public void set_listener(Listener listener) {
+        List<FamilyStats> loaded;
+        synchronized (this) {
+            listener_ = listener;
+            loaded = get_family_stats();
+        }
+        if (listener != null) {
+            for (FamilyStats stats : loaded) {
+                listener.on_family_loaded(stats);
+            }
+        }
+    }
+
+    /**
+     * \brief Cost of loading the core: wrapper load time, and the resident memory of
+     * the liboqs mappings that is not attributed to any family
+     */
+    public FamilyStats get_core_stats() {
+        long families = 0;
+        synchronized (this) {
+            for (Family f : families_.values()) {
+                families += f.resident_bytes;
+            }
+        }
+        long resident = Math.max(0, resident_native_bytes() - families);
+        return new FamilyStats(CORE, Collections.<String>emptyList(),
+                Common.get_load_nanos() / 1_000_000.0, resident);
+    }
+
+    /**
+     * \brief Families used so far, in order of first use
+     */
+    public synchronized List<FamilyStats> get_family_stats() {
+        List<FamilyStats> stats = new ArrayList<>();
+        for (Family f : families_.values()) {
+            if (f.loaded) {
+                stats.add(to_stats(f));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * \brief Checks whether the family of \a alg_name has already run
+     */
+    public synchronized boolean is_loaded(String alg_name) {
+        Family f = families_.get(family_of(alg_name));
+        return f != null && f.loaded;
+    }
+
+    /**
+     * \brief Called before an operation of \a alg_name
+     * \return A FirstUse to end() after the operation if it is the first one of its
+     * family, null otherwise
+     */
+    FirstUse begin(String alg_name) {
+        Family family;
+        synchronized (this) {
+            String name = family_of(alg_name);
+            family = families_.get(name);
+            if (family == null) {
+                family = new Family(name);
+                families_.put(name, family);
+            }
+            family.mechanisms.add(alg_name);
+            if (family.started) {
+                return null;
+            }
+            family.started = true;
+        }
+        // Resident first: reading smaps is not part of the load being timed
+        long resident_before = resident_native_bytes();
+        return new FirstUse(family, System.nanoTime(), resident_before);
+    }
+
+    /**
+     * \brief Ends \a first_use, if any, once its operation has returned
+     */
+    static void end(FirstUse first_use) {
+        if (first_use != null) {
+            first_use.end();
+        }
+    }
+
+    private void family_loaded(Family family, long nanos, long resident) {
+        FamilyStats stats;
+        Listener listener;
+        synchronized (this) {
+            family.loaded = true;
+            family.load_nanos = nanos;
+            family.resident_bytes = resident;
+            stats = to_stats(family);
+            listener = listener_;
+        }
+        if (listener != null) {
+            listener.on_family_loaded(stats);
+        }
+    }
+
+    private static FamilyStats to_stats(Family f) {
+        return new FamilyStats(f.name, new ArrayList<>(f.mechanisms),
+                f.load_nanos / 1_000_000.0, f.resident_bytes);
+    }
+
+    /**
+     * \brief Resident bytes (Rss) of the mappings of liboqs and of its wrapper
+     * \return Bytes, or 0 if /proc/self/smaps can not be read
+     */
+    public static long resident_native_bytes() {
+        long kb = 0;
+        boolean in_liboqs = false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(SMAPS))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (is_mapping_header(line)) {
+                    in_liboqs = line.contains("/liboqs");
+                } else if (in_liboqs && line.startsWith("Rss:")) {
+                    kb += Long.parseLong(line.substring(4).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | SecurityException | NumberFormatException e) {
+            return 0;
+        }
+        return kb * 1024;
+    }
+
+    // Mapping headers start with the address range ("7f12a000-7f12b000 r-xp ...")
+    private static boolean is_mapping_header(String line) {
+        int dash = line.indexOf('-');
+        if (dash <= 0) return false;
+        for (int i = 0; i < dash; i++) {
+            if (Character.digit(line.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.example.liboqs;
+
+/**
+ * \brief Build information of the liboqs variant that was loaded
+ *
+ * The wrapper is compiled once per liboqs variant (see Common.loadNativeLibrary()),
+ * so these values describe the library that is actually running on this device.
+ */
+public class NativeBuild {
+
+    static {
+        Common.loadNativeLibrary();
+    }
+
+    private NativeBuild() {}
+
+    /**
+     * \brief liboqs version (OQS_VERSION_TEXT)
+     */
+    public static native String version();
+
+    /**
+     * \brief Target the liboqs build was compiled for (OQS_COMPILE_BUILD_TARGET)
+     */
+    public static native String build_target();
+
+    /**
+     * \brief CPU extensions liboqs detected at run time and may dispatch to
+     * \return Extension names, empty if the build has no CPU extensions compiled in
+     */
+    public static native String[] cpu_extensions();
+
+    /**
+     * \brief Implementation liboqs runs for \a alg_name on this device
+     * \param alg_name Cryptographic algorithm name
+     * \return "avx2" or "ref"
+     */
+    static native String implementation(String alg_name);
+
+    /**
+     * \brief Number of natives bound by JNI_OnLoad when the library was loaded; the
+     * rest are resolved by name on their first call
+     */
+    public static native int registered_natives();
+
+}
@@ -0,0 +1,33 @@
+package com.example.liboqs;
+
+/**
+ * \brief Native memory accounting for the liboqs wrappers
+ *
+ * Counts the OQS_SIG / OQS_KEM structures that are still allocated (a Signature
+ * or KeyEncapsulation that was never disposed keeps its handle alive) and the bytes
+ * the VM copied into native memory for JNI calls (GetByteArrayElements).
+ */
+public class NativeMemory {
+
+    static {
+        Common.loadNativeLibrary();
+    }
+
+    private NativeMemory() {}
+
+    /**
+     * \brief Number of liboqs handles not yet freed
+     */
+    public static native long live_handles();
+
+    /**
+     * \brief Native bytes held by liboqs handles not yet freed
+     */
+    public static native long live_handle_bytes();
+
+    /**
+     * \brief Cumulative bytes copied from Java arrays into native memory by JNI calls
+     */
+    public static native long jni_copied_bytes();
+
+}
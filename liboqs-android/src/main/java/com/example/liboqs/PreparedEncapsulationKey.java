@@ -0,0 +1,139 @@
+package com.example.liboqs;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * \brief Recipient public key prepared once for repeated encapsulation
+ *
+ * The OQS_KEM object and a native copy of the public key are created when the key
+ * is prepared and reused by every encap_secret(), so encapsulating many times to
+ * the same peer skips the mechanism lookup, the per-call OQS_KEM allocation and the
+ * JNI copy of the public key.
+ *
+ * encap_secret() may be called from several threads at once; dispose() waits for
+ * the encapsulations in progress.
+ */
+public class PreparedEncapsulationKey {
+
+    /**
+     * Keep native pointers for Java to remember which C memory it is managing.
+     */
+    private long native_prepared_handle_;
+
+    private final String alg_name_;
+    private final MechanismRegistry.Tracker family_tracker_;
+    private final byte[] fingerprint_;
+    private final int length_ciphertext_;
+    private final int length_shared_secret_;
+    private final ReentrantReadWriteLock lock_ = new ReentrantReadWriteLock();
+    private boolean disposed_;
+
+    /**
+     * \brief Constructs a prepared encapsulation key
+     * \param alg_name Cryptographic algorithm method_name
+     * \param public_key Recipient public key (copied into native memory)
+     */
+    public PreparedEncapsulationKey(String alg_name, byte[] public_key) throws RuntimeException {
+        if (!KEMs.is_KEM_enabled(alg_name)) {
+            if (KEMs.is_KEM_supported(alg_name)) {
+                throw new MechanismNotEnabledError(alg_name);
+            } else {
+                throw new MechanismNotSupportedError(alg_name);
+            }
+        }
+        long[] lengths = new long[2];
+        int rv_ = create_prepared(alg_name, public_key, lengths);
+        if (rv_ == -2) throw new RuntimeException("Incorrect public key length");
+        if (rv_ != 0) throw new RuntimeException("Cannot prepare public key");
+        this.alg_name_ = alg_name;
+        this.family_tracker_ = new MechanismRegistry.Tracker(alg_name);
+        this.fingerprint_ = PreparedPublicKey.fingerprint(public_key);
+        this.length_ciphertext_ = (int) lengths[0];
+        this.length_shared_secret_ = (int) lengths[1];
+    }
+
+    /**
+     * \brief Calls OQS_KEM_new and copies the public key into a native structure
+     * stored in native_prepared_handle_.
+     * \param lengths Filled with { ciphertext length, shared secret length }
+     * \return 0 on success, -2 if the public key length is wrong, -1 otherwise
+     */
+    private native int create_prepared(String method_name, byte[] public_key, long[] lengths);
+
+    /**
+     * \brief Frees the native structure created by create_prepared
+     */
+    private native void free_prepared();
+
+    /**
+     * \brief Wrapper for OQS_KEM_encaps with the prepared public key
+     */
+    private native int encap_secret(byte[] ciphertext, byte[] shared_secret);
+
+    public String get_alg_name() {
+        return alg_name_;
+    }
+
+    /**
+     * \brief SHA-256 of the public key
+     */
+    public byte[] get_fingerprint() {
+        return fingerprint_.clone();
+    }
+
+    public int get_length_ciphertext() {
+        return length_ciphertext_;
+    }
+
+    public int get_length_shared_secret() {
+        return length_shared_secret_;
+    }
+
+    /**
+     * \brief Encapsulate a fresh secret to the prepared public key
+     * \return Pair <ciphertext, shared secret>
+     */
+    public Pair<byte[], byte[]> encap_secret() throws RuntimeException {
+        byte[] ciphertext = new byte[length_ciphertext_];
+        byte[] shared_secret = new byte[length_shared_secret_];
+        lock_.readLock().lock();
+        try {
+            if (disposed_) throw new IllegalStateException("PreparedEncapsulationKey is disposed");
+            MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+            int rv_;
+            try {
+                rv_ = encap_secret(ciphertext, shared_secret);
+            } finally {
+                MechanismRegistry.end(first_use);
+            }
+            if (rv_ != 0) throw new RuntimeException("Cannot encapsulate secret");
+        } finally {
+            lock_.readLock().unlock();
+        }
+        return new Pair<>(ciphertext, shared_secret);
+    }
+
+    public boolean is_disposed() {
+        lock_.readLock().lock();
+        try {
+            return disposed_;
+        } finally {
+            lock_.readLock().unlock();
+        }
+    }
+
+    /**
+     * \brief Invoke native free_prepared once no encapsulation is in progress
+     */
+    public void dispose() {
+        lock_.writeLock().lock();
+        try {
+            if (disposed_) return;
+            disposed_ = true;
+            free_prepared();
+        } finally {
+            lock_.writeLock().unlock();
+        }
+    }
+
+}
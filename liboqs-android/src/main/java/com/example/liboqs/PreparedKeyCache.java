@@ -0,0 +1,102 @@
+package com.example.liboqs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * \brief Bounded LRU cache of prepared keys, keyed by algorithm and key fingerprint
+ *
+ * Shared by Verifier and Encapsulator. The least recently used key is disposed when
+ * the cache is full; dispose() of a prepared key waits for the operations in progress.
+ */
+abstract class PreparedKeyCache<T> {
+
+    private final int capacity_;
+    private final LinkedHashMap<String, T> keys_;
+    private final AtomicLong hits_ = new AtomicLong();
+    private final AtomicLong misses_ = new AtomicLong();
+
+    PreparedKeyCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity < 1");
+        this.capacity_ = capacity;
+        this.keys_ = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    abstract T create(String alg_name, byte[] key);
+
+    abstract boolean is_disposed(T prepared);
+
+    abstract void dispose(T prepared);
+
+    /**
+     * \brief Return the prepared key for (alg_name, key), preparing it on a miss
+     */
+    T get(String alg_name, byte[] key) throws RuntimeException {
+        String cache_key = cache_key(alg_name, PreparedPublicKey.fingerprint(key));
+        synchronized (keys_) {
+            T prepared = keys_.get(cache_key);
+            if (prepared != null && !is_disposed(prepared)) {
+                hits_.incrementAndGet();
+                return prepared;
+            }
+        }
+        misses_.incrementAndGet();
+        T prepared = create(alg_name, key);
+        T evicted = null;
+        synchronized (keys_) {
+            T raced = keys_.get(cache_key);
+            if (raced != null && !is_disposed(raced)) {
+                // Another thread prepared the same key meanwhile: keep theirs
+                dispose(prepared);
+                return raced;
+            }
+            keys_.put(cache_key, prepared);
+            if (keys_.size() > capacity_) {
+                Map.Entry<String, T> eldest = keys_.entrySet().iterator().next();
+                evicted = eldest.getValue();
+                keys_.remove(eldest.getKey());
+            }
+        }
+        if (evicted != null) {
+            dispose(evicted);
+        }
+        return prepared;
+    }
+
+    long hits() {
+        return hits_.get();
+    }
+
+    long misses() {
+        return misses_.get();
+    }
+
+    int size() {
+        synchronized (keys_) {
+            return keys_.size();
+        }
+    }
+
+    void clear() {
+        Object[] all;
+        synchronized (keys_) {
+            all = keys_.values().toArray();
+            keys_.clear();
+        }
+        for (Object k : all) {
+            @SuppressWarnings("unchecked")
+            T prepared = (T) k;
+            dispose(prepared);
+        }
+    }
+
+    private static String cache_key(String alg_name, byte[] fingerprint) {
+        StringBuilder sb = new StringBuilder(alg_name).append(':');
+        for (byte b : fingerprint) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.example.liboqs;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * \brief Public key prepared once for repeated verification
+ *
+ * The OQS_SIG object and a native copy of the public key are created when the key
+ * is prepared and reused by every verify(), so verifying many signatures against
+ * the same signer skips the mechanism lookup, the per-call OQS_SIG allocation and
+ * the JNI copy of the public key. Unlike Signature, no secret key array is allocated.
+ *
+ * verify() may be called from several threads at once; dispose() waits for the
+ * verifications in progress.
+ */
+public class PreparedPublicKey {
+
+    /**
+     * Keep native pointers for Java to remember which C memory it is managing.
+     */
+    private long native_prepared_handle_;
+
+    private final String alg_name_;
+    private final MechanismRegistry.Tracker family_tracker_;
+    private final byte[] fingerprint_;
+    private final ReentrantReadWriteLock lock_ = new ReentrantReadWriteLock();
+    private boolean disposed_;
+
+    /**
+     * \brief Constructs a prepared public key
+     * \param alg_name Cryptographic algorithm method_name
+     * \param public_key Public key (copied into native memory)
+     */
+    public PreparedPublicKey(String alg_name, byte[] public_key) throws RuntimeException {
+        if (!Sigs.is_sig_enabled(alg_name)) {
+            if (Sigs.is_sig_supported(alg_name)) {
+                throw new MechanismNotEnabledError(alg_name);
+            } else {
+                throw new MechanismNotSupportedError(alg_name);
+            }
+        }
+        int rv_ = create_prepared(alg_name, public_key);
+        if (rv_ == -2) throw new RuntimeException("Incorrect public key length");
+        if (rv_ != 0) throw new RuntimeException("Cannot prepare public key");
+        this.alg_name_ = alg_name;
+        this.family_tracker_ = new MechanismRegistry.Tracker(alg_name);
+        this.fingerprint_ = fingerprint(public_key);
+    }
+
+    /**
+     * \brief Calls OQS_SIG_new and copies the public key into a native structure
+     * stored in native_prepared_handle_.
+     * \return 0 on success, -2 if the public key length is wrong, -1 otherwise
+     */
+    private native int create_prepared(String method_name, byte[] public_key);
+
+    /**
+     * \brief Frees the native structure created by create_prepared
+     */
+    private native void free_prepared();
+
+    /**
+     * \brief Wrapper for OQS_SIG_verify with the prepared public key
+     */
+    private native boolean verify(byte[] message, long message_len,
+                                byte[] signature, long signature_len);
+
+    /**
+     * \brief SHA-256 of a public key, used to identify prepared keys
+     */
+    public static byte[] fingerprint(byte[] public_key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(public_key);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String get_alg_name() {
+        return alg_name_;
+    }
+
+    /**
+     * \brief SHA-256 of the public key
+     */
+    public byte[] get_fingerprint() {
+        return fingerprint_.clone();
+    }
+
+    /**
+     * \brief Verify a signature with the prepared public key
+     * \param message
+     * \param signature
+     * \return True if the signature is valid, false otherwise
+     */
+    public boolean verify(byte[] message, byte[] signature) throws RuntimeException {
+        lock_.readLock().lock();
+        try {
+            if (disposed_) throw new IllegalStateException("PreparedPublicKey is disposed");
+            MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+            boolean valid;
+            try {
+                valid = verify(message, message.length, signature, signature.length);
+            } finally {
+                MechanismRegistry.end(first_use);
+            }
+            return valid;
+        } finally {
+            lock_.readLock().unlock();
+        }
+    }
+
+    /**
+     * \brief Verify a signature made by PreparedSigningKey.sign(message, context)
+     */
+    public boolean verify(byte[] message, byte[] signature, byte[] context) throws RuntimeException {
+        return verify(SigningContext.frame(context, message), signature);
+    }
+
+    public boolean is_disposed() {
+        lock_.readLock().lock();
+        try {
+            return disposed_;
+        } finally {
+            lock_.readLock().unlock();
+        }
+    }
+
+    /**
+     * \brief Invoke native free_prepared once no verification is in progress
+     */
+    public void dispose() {
+        lock_.writeLock().lock();
+        try {
+            if (disposed_) return;
+            disposed_ = true;
+            free_prepared();
+        } finally {
+            lock_.writeLock().unlock();
+        }
+    }
+
+}
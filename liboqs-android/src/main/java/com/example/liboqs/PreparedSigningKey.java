@@ -0,0 +1,118 @@
+package com.example.liboqs;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * \brief Secret key prepared once for repeated signing
+ *
+ * The OQS_SIG object and the secret key are moved into native memory when the key
+ * is prepared, so signing many messages with one key skips the mechanism lookup,
+ * the per-call OQS_SIG allocation and the JNI copy of the secret key, and returns
+ * a signature of the exact length without an intermediate buffer. The native copy
+ * of the key is wiped by close().
+ *
+ * sign() may be called from several threads at once; close() waits for the
+ * signatures in progress.
+ */
+public class PreparedSigningKey implements AutoCloseable {
+
+    /**
+     * Keep native pointers for Java to remember which C memory it is managing.
+     */
+    private long native_prepared_handle_;
+
+    private final String alg_name_;
+    private final MechanismRegistry.Tracker family_tracker_;
+    private final ReentrantReadWriteLock lock_ = new ReentrantReadWriteLock();
+    private boolean closed_;
+
+    /**
+     * \brief Constructs a prepared signing key
+     * \param alg_name Cryptographic algorithm method_name
+     * \param secret_key Secret key (copied into native memory; the caller may wipe it)
+     */
+    public PreparedSigningKey(String alg_name, byte[] secret_key) throws RuntimeException {
+        if (!Sigs.is_sig_enabled(alg_name)) {
+            if (Sigs.is_sig_supported(alg_name)) {
+                throw new MechanismNotEnabledError(alg_name);
+            } else {
+                throw new MechanismNotSupportedError(alg_name);
+            }
+        }
+        int rv_ = create_prepared(alg_name, secret_key);
+        if (rv_ == -2) throw new RuntimeException("Incorrect secret key length");
+        if (rv_ != 0) throw new RuntimeException("Cannot prepare secret key");
+        this.alg_name_ = alg_name;
+        this.family_tracker_ = new MechanismRegistry.Tracker(alg_name);
+    }
+
+    /**
+     * \brief Calls OQS_SIG_new and copies the secret key into a native structure
+     * stored in native_prepared_handle_.
+     * \return 0 on success, -2 if the secret key length is wrong, -1 otherwise
+     */
+    private native int create_prepared(String method_name, byte[] secret_key);
+
+    /**
+     * \brief Wipes and frees the native structure created by create_prepared
+     */
+    private native void free_prepared();
+
+    /**
+     * \brief Wrapper for OQS_SIG_sign with the prepared secret key
+     * \return Signature, or null on failure
+     */
+    private native byte[] sign(byte[] message, long message_len);
+
+    public String get_alg_name() {
+        return alg_name_;
+    }
+
+    /**
+     * \brief Sign a message with the prepared secret key
+     * \param message
+     * \return signature
+     */
+    public byte[] sign(byte[] message) throws RuntimeException {
+        lock_.readLock().lock();
+        try {
+            if (closed_) throw new IllegalStateException("PreparedSigningKey is closed");
+            MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+            byte[] signature;
+            try {
+                signature = sign(message, message.length);
+            } finally {
+                MechanismRegistry.end(first_use);
+            }
+            if (signature == null) throw new RuntimeException("Cannot sign message");
+            return signature;
+        } finally {
+            lock_.readLock().unlock();
+        }
+    }
+
+    /**
+     * \brief Sign a message under a context string, verified by
+     * PreparedPublicKey.verify(message, signature, context)
+     * \param context Up to 255 bytes naming what the message is
+     */
+    public byte[] sign(byte[] message, byte[] context) throws RuntimeException {
+        return sign(SigningContext.frame(context, message));
+    }
+
+    /**
+     * \brief Wipe and free the native secret key once no signature is in progress
+     */
+    @Override
+    public void close() {
+        lock_.writeLock().lock();
+        try {
+            if (closed_) return;
+            closed_ = true;
+            free_prepared();
+        } finally {
+            lock_.writeLock().unlock();
+        }
+    }
+
+}
@@ -50,6 +50,11 @@ public class Signature {
      */
     private SignatureDetails alg_details_;
 
+    /**
+     * Reports the first use of the family in this process, see MechanismRegistry.
+     */
+    private final MechanismRegistry.Tracker family_tracker_;
+
     /**
      * \brief Constructs an instance of oqs::Signature
      * \param alg_name Cryptographic algorithm method_name
@@ -76,6 +81,7 @@ public class Signature {
         }
         create_sig_new(alg_name);
         alg_details_ = get_sig_details();
+        family_tracker_ = new MechanismRegistry.Tracker(alg_name);
         // initialize keys
         if (secret_key != null) {
             this.secret_key_ = Arrays.copyOf(secret_key, secret_key.length);
@@ -160,7 +166,13 @@ public class Signature {
      * from alg_details_. Check return value and if != 0 throw RuntimeException.
      */
     public byte[] generate_keypair() throws RuntimeException {
-        int rv_ = generate_keypair(this.public_key_, this.secret_key_);
+        MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+        int rv_;
+        try {
+            rv_ = generate_keypair(this.public_key_, this.secret_key_);
+        } finally {
+            MechanismRegistry.end(first_use);
+        }
         if (rv_ != 0) throw new RuntimeException("Cannot generate keypair");
         return this.public_key_;
     }
@@ -192,8 +204,14 @@ public class Signature {
         }
         byte[] signature = new byte[(int) alg_details_.max_length_signature];
         Mutable<Long> signature_len_ret = new Mutable<>();
-        int rv_= sign(signature, signature_len_ret,
+        MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+        int rv_;
+        try {
+            rv_ = sign(signature, signature_len_ret,
                         message, message.length, this.secret_key_);
+        } finally {
+            MechanismRegistry.end(first_use);
+        }
         long actual_signature_len = signature_len_ret.value;
         byte[] actual_signature = new byte[(int) actual_signature_len];
         System.arraycopy(signature, 0,
@@ -218,7 +236,14 @@ public class Signature {
             throw new RuntimeException("Incorrect signature length");
         }
 
-        return verify(message, message.length, signature, signature.length, public_key);
+        MechanismRegistry.FirstUse first_use = family_tracker_.begin();
+        boolean valid;
+        try {
+            valid = verify(message, message.length, signature, signature.length, public_key);
+        } finally {
+            MechanismRegistry.end(first_use);
+        }
+        return valid;
     }
 
     /**
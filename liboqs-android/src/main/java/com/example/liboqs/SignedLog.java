@@ -0,0 +1,404 @@
+package com.example.liboqs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * \brief Append-only log of hash-chained records with periodic signed checkpoints
+ *
+ * Every record is chained to the previous one with SHA-256, so appending a record
+ * costs one hash. Every checkpoint_every records, or once checkpoint_interval_ms
+ * have passed since the previous checkpoint with records pending, a checkpoint
+ * with the chain head is signed with the prepared key: one signature
+ * authenticates every record before it.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *  header      "PQLG" | version 1 | algLen 1 | alg | log id 16
+ *  record      0x01 | timestamp 8 | length 4 | payload
+ *  checkpoint  0x02 | records 8 | timestamp 8 | head 32 | sigLen 4 | signature
+ * </pre>
+ * head_0 = SHA-256(0x00 | header), head_i = SHA-256(0x01 | head_i-1 | timestamp | length | payload),
+ * and a checkpoint signs records | timestamp | head under the context "PQLG-CHECKPOINT",
+ * so no document signed with the same key verifies as a checkpoint. The log id keeps
+ * checkpoints of one log from being spliced into another log of the same key.
+ */
+public class SignedLog {
+
+    private static final byte[] MAGIC = {'P', 'Q', 'L', 'G'};
+    private static final int VERSION = 1;
+    private static final byte[] CHECKPOINT_CONTEXT = "PQLG-CHECKPOINT".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int LOG_ID_LENGTH = 16;
+    private static final int HEAD_LENGTH = 32;
+    private static final int TAG_RECORD = 0x01;
+    private static final int TAG_CHECKPOINT = 0x02;
+
+    /**
+     * Sanity limits when reading
+     */
+    private static final int MAX_RECORD_LENGTH = 16 << 20;
+    private static final int MAX_SIGNATURE_LENGTH = 1 << 20;
+
+    /**
+     * Shared timer for time-based checkpoints: one low-priority daemon thread.
+     */
+    private static volatile ScheduledThreadPoolExecutor timer;
+
+    private SignedLog() {
+    }
+
+    /**
+     * \brief Writes a new log. Methods may be called from several threads.
+     */
+    public static class Writer implements AutoCloseable {
+
+        private final DataOutputStream out_;
+        private final PreparedSigningKey key_;
+        private final int checkpoint_every_;
+        private final long checkpoint_interval_ms_;
+        private final MessageDigest md_;
+        private final ScheduledFuture<?> tick_;
+
+        private byte[] head_;
+        private long records_;
+        private long signed_records_;
+        private long checkpoints_;
+        private long last_checkpoint_ms_;
+        private IOException deferred_error_;
+        private boolean closed_;
+
+        /**
+         * \brief Starts a log on out
+         * \param out Destination (buffered here; flushed at every checkpoint)
+         * \param key Prepared signing key, owned by the caller
+         * \param checkpoint_every Records per checkpoint
+         * \param checkpoint_interval_ms Time between checkpoints while records are pending
+         * (checked on append and by a timer), or 0 for no limit
+         */
+        public Writer(OutputStream out, PreparedSigningKey key, int checkpoint_every,
+                      long checkpoint_interval_ms) throws IOException {
+            if (checkpoint_every <= 0) {
+                throw new IllegalArgumentException("checkpoint_every must be positive");
+            }
+            this.out_ = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+            this.key_ = key;
+            this.checkpoint_every_ = checkpoint_every;
+            this.checkpoint_interval_ms_ = checkpoint_interval_ms;
+            this.md_ = sha256();
+
+            byte[] log_id = new byte[LOG_ID_LENGTH];
+            new SecureRandom().nextBytes(log_id);
+            byte[] header = header(key.get_alg_name(), log_id);
+            out_.write(header);
+            md_.update((byte) 0x00);
+            md_.update(header);
+            this.head_ = md_.digest();
+            this.last_checkpoint_ms_ = System.currentTimeMillis();
+
+            if (checkpoint_interval_ms > 0) {
+                // The tick keeps a reference to the writer until close()
+                this.tick_ = timer().scheduleAtFixedRate(this::checkpoint_if_due,
+                        checkpoint_interval_ms, checkpoint_interval_ms, TimeUnit.MILLISECONDS);
+            } else {
+                this.tick_ = null;
+            }
+        }
+
+        /**
+         * \brief Append a record (one hash); signs a checkpoint when one is due
+         * \return Index of the record in the log
+         */
+        public synchronized long append(byte[] record) throws IOException {
+            check_open();
+            long timestamp = System.currentTimeMillis();
+            out_.writeByte(TAG_RECORD);
+            out_.writeLong(timestamp);
+            out_.writeInt(record.length);
+            out_.write(record);
+            head_ = chain(md_, head_, timestamp, record, 0, record.length);
+            long index = records_++;
+            if (records_ - signed_records_ >= checkpoint_every_ || interval_elapsed(timestamp)) {
+                checkpoint();
+            }
+            return index;
+        }
+
+        /**
+         * \brief Sign the current chain head now, if any record is still unsigned
+         */
+        public synchronized void checkpoint() throws IOException {
+            check_open();
+            if (records_ == signed_records_) return;
+            long timestamp = System.currentTimeMillis();
+            byte[] signature = key_.sign(checkpoint_message(records_, timestamp, head_),
+                    CHECKPOINT_CONTEXT);
+            out_.writeByte(TAG_CHECKPOINT);
+            out_.writeLong(records_);
+            out_.writeLong(timestamp);
+            out_.write(head_);
+            out_.writeInt(signature.length);
+            out_.write(signature);
+            out_.flush();
+            signed_records_ = records_;
+            last_checkpoint_ms_ = timestamp;
+            checkpoints_++;
+        }
+
+        public synchronized long get_record_count() {
+            return records_;
+        }
+
+        public synchronized long get_checkpoint_count() {
+            return checkpoints_;
+        }
+
+        /**
+         * \brief Sign the pending records and close the destination. The key is not closed.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed_) return;
+            if (tick_ != null) tick_.cancel(false);
+            try {
+                if (deferred_error_ == null) checkpoint();
+            } finally {
+                closed_ = true;
+                out_.close();
+            }
+            check_deferred();
+        }
+
+        private synchronized void checkpoint_if_due() {
+            if (closed_ || deferred_error_ != null) return;
+            if (!interval_elapsed(System.currentTimeMillis())) return;
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                // Reported to the next caller
+                deferred_error_ = e;
+            } catch (RuntimeException e) {
+                deferred_error_ = new IOException("Cannot sign checkpoint", e);
+            }
+        }
+
+        private boolean interval_elapsed(long now) {
+            return checkpoint_interval_ms_ > 0 && records_ > signed_records_
+                    && now - last_checkpoint_ms_ >= checkpoint_interval_ms_;
+        }
+
+        private void check_open() throws IOException {
+            if (closed_) throw new IOException("SignedLog is closed");
+            check_deferred();
+        }
+
+        private void check_deferred() throws IOException {
+            if (deferred_error_ != null) throw deferred_error_;
+        }
+    }
+
+    /**
+     * \brief Outcome of verify()
+     */
+    public enum Status {
+        VALID,
+        INVALID_SIGNATURE,   // the covering checkpoint is not signed by the key
+        BROKEN_CHAIN,        // a record was changed, removed or inserted
+        NOT_COVERED,         // no checkpoint covers the requested range (yet)
+        MALFORMED            // not a log, or an unknown algorithm
+    }
+
+    public static class Result {
+        public final Status status;
+        public final long records_read;
+        public final long signed_records;   // records covered by the verified checkpoint
+        public final int checkpoints_read;
+        public final boolean truncated;     // the log ends inside a frame (interrupted write)
+
+        Result(Status status, long records_read, long signed_records, int checkpoints_read, boolean truncated) {
+            this.status = status;
+            this.records_read = records_read;
+            this.signed_records = signed_records;
+            this.checkpoints_read = checkpoints_read;
+            this.truncated = truncated;
+        }
+
+        public boolean is_valid() {
+            return status == Status.VALID;
+        }
+    }
+
+    /**
+     * \brief Receives the records of the requested range while they are read
+     *
+     * Records are delivered before their checkpoint is verified: only act on them
+     * once verify() returns VALID.
+     */
+    public interface RecordHandler {
+        void on_record(long index, long timestamp_ms, byte[] payload) throws IOException;
+    }
+
+    /**
+     * \brief Verify records [from, to) of a log in one streaming pass
+     *
+     * The chain is recomputed from the start of the log and every checkpoint read is
+     * checked against it, but only the first checkpoint that covers the range is
+     * signature-verified (it authenticates every earlier record); reading stops there.
+     * \param to End of the range (exclusive), or -1 for the whole log; then the records
+     * after the last checkpoint (records_read - signed_records) are not authenticated
+     * \param handler Receives the records in the range, may be null
+     */
+    public static Result verify(InputStream in, byte[] public_key, long from, long to,
+                                RecordHandler handler) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] header;
+        String alg_name;
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            int version = data.readUnsignedByte();
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                return new Result(Status.MALFORMED, 0, 0, 0, false);
+            }
+            byte[] alg = new byte[data.readUnsignedByte()];
+            data.readFully(alg);
+            byte[] log_id = new byte[LOG_ID_LENGTH];
+            data.readFully(log_id);
+            alg_name = new String(alg, StandardCharsets.UTF_8);
+            header = header(alg_name, log_id);
+        } catch (EOFException e) {
+            return new Result(Status.MALFORMED, 0, 0, 0, true);
+        }
+        if (!Sigs.is_sig_enabled(alg_name)) {
+            return new Result(Status.MALFORMED, 0, 0, 0, false);
+        }
+
+        MessageDigest md = sha256();
+        md.update((byte) 0x00);
+        md.update(header);
+        byte[] head = md.digest();
+
+        long records = 0;
+        int checkpoints = 0;
+        // Last checkpoint read, verified at the end when reading the whole log
+        long last_records = 0;
+        byte[] last_message = null;
+        byte[] last_signature = null;
+        byte[] buf = new byte[4096];
+        boolean truncated = false;
+
+        try {
+            while (true) {
+                int tag = data.read();
+                if (tag == -1) break;
+                if (tag == TAG_RECORD) {
+                    long timestamp = data.readLong();
+                    int length = data.readInt();
+                    if (length < 0 || length > MAX_RECORD_LENGTH) {
+                        return new Result(Status.MALFORMED, records, 0, checkpoints, false);
+                    }
+                    if (buf.length < length) buf = new byte[Math.max(length, buf.length * 2)];
+                    data.readFully(buf, 0, length);
+                    head = chain(md, head, timestamp, buf, 0, length);
+                    if (handler != null && records >= from && (to < 0 || records < to)) {
+                        handler.on_record(records, timestamp, Arrays.copyOf(buf, length));
+                    }
+                    records++;
+                } else if (tag == TAG_CHECKPOINT) {
+                    long covered = data.readLong();
+                    long timestamp = data.readLong();
+                    byte[] signed_head = new byte[HEAD_LENGTH];
+                    data.readFully(signed_head);
+                    int sig_length = data.readInt();
+                    if (sig_length <= 0 || sig_length > MAX_SIGNATURE_LENGTH) {
+                        return new Result(Status.MALFORMED, records, 0, checkpoints, false);
+                    }
+                    byte[] signature = new byte[sig_length];
+                    data.readFully(signature);
+                    checkpoints++;
+                    if (covered != records || !MessageDigest.isEqual(signed_head, head)) {
+                        return new Result(Status.BROKEN_CHAIN, records, 0, checkpoints, false);
+                    }
+                    last_records = covered;
+                    last_message = checkpoint_message(covered, timestamp, head);
+                    last_signature = signature;
+                    if (to >= 0 && covered >= to) break;
+                } else {
+                    return new Result(Status.MALFORMED, records, 0, checkpoints, false);
+                }
+            }
+        } catch (EOFException e) {
+            truncated = true;
+        }
+
+        if (last_message == null || (to >= 0 && last_records < to)) {
+            return new Result(Status.NOT_COVERED, records, 0, checkpoints, truncated);
+        }
+        boolean valid = Verifier.get_instance().verify(alg_name, public_key, last_message, last_signature,
+                CHECKPOINT_CONTEXT);
+        return new Result(valid ? Status.VALID : Status.INVALID_SIGNATURE, records,
+                valid ? last_records : 0, checkpoints, truncated);
+    }
+
+    // -------------------------
+
+    private static byte[] header(String alg_name, byte[] log_id) {
+        byte[] alg = alg_name.getBytes(StandardCharsets.UTF_8);
+        if (alg.length > 255) throw new IllegalArgumentException("Algorithm name too long");
+        return ByteBuffer.allocate(MAGIC.length + 2 + alg.length + LOG_ID_LENGTH)
+                .put(MAGIC).put((byte) VERSION).put((byte) alg.length).put(alg).put(log_id).array();
+    }
+
+    private static byte[] chain(MessageDigest md, byte[] head, long timestamp,
+                                byte[] payload, int off, int len) {
+        md.update((byte) TAG_RECORD);
+        md.update(head);
+        md.update(ByteBuffer.allocate(12).putLong(timestamp).putInt(len).array());
+        md.update(payload, off, len);
+        return md.digest();
+    }
+
+    private static byte[] checkpoint_message(long records, long timestamp, byte[] head) {
+        return ByteBuffer.allocate(16 + head.length).putLong(records).putLong(timestamp).put(head).array();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor timer() {
+        if (timer == null) {
+            synchronized (SignedLog.class) {
+                if (timer == null) {
+                    ScheduledThreadPoolExecutor t = new ScheduledThreadPoolExecutor(1, r -> {
+                        Thread thread = new Thread(r, "signed-log-checkpoint");
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    });
+                    t.setRemoveOnCancelPolicy(true);
+                    timer = t;
+                }
+            }
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.liboqs;
+
+/**
+ * \brief Context strings for signatures over messages that are not documents
+ *
+ * ML-DSA (FIPS 204) signs 0x00 | len(ctx) | ctx | message, so a signature made
+ * under one context never verifies under another, whatever the message bytes are.
+ * The bundled liboqs 0.5 has no OQS_SIG_sign_with_ctx_str and its Dilithium
+ * takes no context, so the same prefix is built here and signed as the message.
+ * Documents keep being signed as they are, without a prefix.
+ */
+final class SigningContext {
+
+    private static final int MAX_CONTEXT_LENGTH = 255;
+
+    private SigningContext() {
+    }
+
+    /**
+     * \brief The message actually signed for message under context
+     */
+    static byte[] frame(byte[] context, byte[] message) {
+        if (context.length > MAX_CONTEXT_LENGTH) {
+            throw new IllegalArgumentException("Context longer than 255 bytes");
+        }
+        byte[] framed = new byte[2 + context.length + message.length];
+        framed[0] = 0x00;
+        framed[1] = (byte) context.length;
+        System.arraycopy(context, 0, framed, 2, context.length);
+        System.arraycopy(message, 0, framed, 2 + context.length, message.length);
+        return framed;
+    }
+}
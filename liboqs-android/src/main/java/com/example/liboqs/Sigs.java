@@ -88,4 +88,17 @@ public class Sigs {
         return supported_Sigs.contains(alg_name);
     }
     
+    /**
+     * \brief Implementation of the signature algorithm \a alg_name that runs on this device
+     * \param alg_name Cryptographic algorithm name
+     * \return "avx2" when an optimized implementation is compiled into the loaded
+     * liboqs variant and selected for this CPU, "ref" for the reference code
+     */
+    public static String get_implementation(String alg_name) {
+        if (!is_sig_enabled(alg_name)) {
+            throw new MechanismNotEnabledError(alg_name);
+        }
+        return NativeBuild.implementation(alg_name);
+    }
+    
 }
@@ -0,0 +1,103 @@
+package com.example.liboqs;
+
+/**
+ * \brief Verifier with a bounded cache of prepared public keys
+ *
+ * Prepared keys are looked up by algorithm and public key fingerprint (SHA-256);
+ * the least recently used one is disposed when the cache is full. Meant for
+ * workloads that verify many signatures against a small set of signer keys.
+ */
+public class Verifier {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static volatile Verifier instance;
+
+    private final PreparedKeyCache<PreparedPublicKey> keys_;
+
+    /**
+     * \brief Constructs a verifier whose cache holds up to capacity prepared keys
+     */
+    public Verifier(int capacity) {
+        this.keys_ = new PreparedKeyCache<PreparedPublicKey>(capacity) {
+            @Override
+            PreparedPublicKey create(String alg_name, byte[] key) {
+                return new PreparedPublicKey(alg_name, key);
+            }
+
+            @Override
+            boolean is_disposed(PreparedPublicKey prepared) {
+                return prepared.is_disposed();
+            }
+
+            @Override
+            void dispose(PreparedPublicKey prepared) {
+                prepared.dispose();
+            }
+        };
+    }
+
+    /**
+     * \brief Process-wide verifier with DEFAULT_CAPACITY keys
+     */
+    public static Verifier get_instance() {
+        if (instance == null) {
+            synchronized (Verifier.class) {
+                if (instance == null) {
+                    instance = new Verifier(DEFAULT_CAPACITY);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * \brief Return the prepared key for (alg_name, public_key), preparing it on a miss
+     */
+    public PreparedPublicKey prepare(String alg_name, byte[] public_key) throws RuntimeException {
+        return keys_.get(alg_name, public_key);
+    }
+
+    /**
+     * \brief Verify a signature, reusing the prepared key for public_key if cached
+     * \return True if the signature is valid, false otherwise
+     */
+    public boolean verify(String alg_name, byte[] public_key,
+                          byte[] message, byte[] signature) throws RuntimeException {
+        try {
+            return prepare(alg_name, public_key).verify(message, signature);
+        } catch (IllegalStateException e) {
+            // Evicted between prepare() and verify(): prepare it again
+            return prepare(alg_name, public_key).verify(message, signature);
+        }
+    }
+
+    /**
+     * \brief Verify a signature made under a context string
+     * \return True if the signature is valid, false otherwise
+     */
+    public boolean verify(String alg_name, byte[] public_key, byte[] message,
+                          byte[] signature, byte[] context) throws RuntimeException {
+        return verify(alg_name, public_key, SigningContext.frame(context, message), signature);
+    }
+
+    public long get_hits() {
+        return keys_.hits();
+    }
+
+    public long get_misses() {
+        return keys_.misses();
+    }
+
+    public int size() {
+        return keys_.size();
+    }
+
+    /**
+     * \brief Dispose every cached prepared key
+     */
+    public void clear() {
+        keys_.clear();
+    }
+
+}
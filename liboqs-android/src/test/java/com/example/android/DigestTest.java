@@ -0,0 +1,121 @@
+package com.example.android;
+
+import com.example.liboqs.Digest;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Known-answer tests for Digest. On the host the native library is not loaded, so
+ * they exercise the Java Keccak fallback that must match liboqs byte for byte.
+ */
+public class DigestTest {
+
+    private static final byte[] ABC = "abc".getBytes(StandardCharsets.US_ASCII);
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder();
+        for (byte x : b) sb.append(String.format("%02x", x));
+        return sb.toString();
+    }
+
+    private static byte[] pattern(int length) {
+        byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) b[i] = (byte) (i % 251);
+        return b;
+    }
+
+    @Test
+    public void knownAnswers() {
+        assertEquals("a7ffc6f8bf1ed76651c14756a061d662f580ff4de43b49fa82d80a4b80f8434a",
+                hex(Digest.digest(Digest.SHA3_256, new byte[0])));
+        assertEquals("3a985da74fe225b2045c172d6bd390bd855f086e3e9d525b46bfe24511431532",
+                hex(Digest.digest(Digest.SHA3_256, ABC)));
+        assertEquals("ec01498288516fc926459f58e2c6ad8df9b473cb0fc08c2596da7cf0e49be4b2"
+                        + "98d88cea927ac7f539f1edf228376d25",
+                hex(Digest.digest(Digest.SHA3_384, ABC)));
+        assertEquals("b751850b1a57168a5693cd924b6b096e08f621827444f70d884f5d0240d2712e"
+                        + "10e116e9192af3c91a7ec57647e3934057340b4cf408d5a56592f8274eec53f0",
+                hex(Digest.digest(Digest.SHA3_512, ABC)));
+        assertEquals("7f9c2ba4e88f827d616045507605853ed73b8093f6efbc88eb1a6eacfa66ef26",
+                hex(Digest.digest(Digest.SHAKE128, new byte[0])));
+        assertEquals("46b9dd2b0ba88d13233b3feb743eeb243fcd52ea62b81b82b50c27646ed5762f"
+                        + "d75dc4ddd8c0f200cb05019d67b592f6fc821c49479ab48640292eacb3b7c4be",
+                hex(Digest.digest(Digest.SHAKE256, new byte[0])));
+    }
+
+    @Test
+    public void incrementalUpdates_matchOneShot() throws Exception {
+        Random random = new Random(1);
+        MessageDigest reference = MessageDigest.getInstance("SHA3-256");
+        try (Digest digest = new Digest(Digest.SHA3_256)) {
+            for (int length : new int[]{1, 135, 136, 137, 1000, 10000}) {
+                byte[] data = new byte[length];
+                random.nextBytes(data);
+                int off = 0;
+                while (off < length) {
+                    int n = Math.min(length - off, 1 + random.nextInt(300));
+                    digest.update(data, off, n);
+                    off += n;
+                }
+                // do_final leaves the digest ready for the next message
+                assertArrayEquals("length=" + length, reference.digest(data), digest.do_final());
+            }
+        }
+    }
+
+    @Test
+    public void shake_squeezesPastOneBlock() throws Exception {
+        try (Digest shake = new Digest(Digest.SHAKE128, 500)) {
+            byte[] output = shake.do_final(pattern(1000));
+            assertEquals(500, output.length);
+            assertEquals("190cccedf00ac65f0e0c33671614bbc1ae4e984cc793dded6f2df0b359568ce8",
+                    hex(MessageDigest.getInstance("SHA3-256").digest(output)));
+        }
+    }
+
+    @Test
+    public void byteBuffers_areAbsorbedFromTheirPosition() {
+        byte[] data = pattern(1000);
+        byte[] expected = Digest.digest(Digest.SHA3_512, data);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(1010);
+        direct.position(10);
+        direct.put(data);
+        direct.position(10);
+        ByteBuffer heap = ByteBuffer.wrap(new byte[1010], 10, 1000).slice();
+        heap.put(data).flip();
+
+        for (ByteBuffer buffer : new ByteBuffer[]{direct, heap, heap.duplicate().asReadOnlyBuffer()}) {
+            try (Digest digest = new Digest(Digest.SHA3_512)) {
+                digest.update(buffer.duplicate());
+                assertArrayEquals(expected, digest.do_final());
+            }
+        }
+        try (Digest digest = new Digest(Digest.SHA3_512)) {
+            digest.update(direct);
+            assertEquals(1010, direct.position());
+            assertArrayEquals(expected, digest.do_final());
+        }
+    }
+
+    @Test
+    public void reset_discardsAbsorbedData() {
+        try (Digest digest = new Digest(Digest.SHA3_256)) {
+            digest.update(pattern(500));
+            digest.reset();
+            assertArrayEquals(Digest.digest(Digest.SHA3_256, ABC), digest.do_final(ABC));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sha3_rejectsAnotherOutputLength() {
+        new Digest(Digest.SHA3_256, 16);
+    }
+}